@@ -265,7 +265,7 @@ public abstract class PipelineControls extends JPanel {
                 configurePipeline(pipeline, getPipelineParameterAssignments(), false);
                 Camera camera = (Camera) pipeline.getProperty("camera");
                 CameraView cameraView = MainFrame.get().getCameraViews().getCameraView(camera); 
-                pipeline.process();
+                pipeline.process(true);
                 List<BufferedImage> showImages = new ArrayList<>(); 
                 CvStage effectStage = hasEffectStage ? pipeline.getStage(paramStage.getEffectStageName()) : null;
                 if (effectStage != null) {
@@ -255,6 +255,11 @@ public class IndexFeeder extends ReferenceFeeder {
         throw new FeedFailureException("Failed to feed for an unknown reason. Is the feeder inserted?");
     }
 
+    @Override
+    public boolean canFeedAhead() {
+        return true;
+    }
+
     @Override
     public String getPropertySheetHolderTitle() {
         String classSimpleName = getClass().getSimpleName();
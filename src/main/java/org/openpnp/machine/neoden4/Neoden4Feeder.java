@@ -126,6 +126,12 @@ public class Neoden4Feeder extends ReferenceFeeder {
         setFeedCount(getFeedCount() + 1);
     }
 
+    @Override
+    public boolean canFeedAhead() {
+        // Vision moves the camera to the feeder.
+        return !vision.isEnabled();
+    }
+
     private Location getVisionOffsets(Head head, Location pickLocation) throws Exception {
         Logger.debug("getVisionOffsets({}, {})", head.getName(), pickLocation);
         
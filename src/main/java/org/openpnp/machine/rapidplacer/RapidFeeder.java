@@ -68,6 +68,11 @@ public class RapidFeeder extends ReferenceFeeder {
         actuator.actuate(String.format("%s %d", address, pitch));
     }
     
+    @Override
+    public boolean canFeedAhead() {
+        return true;
+    }
+
 	@Override
     public Wizard getConfigurationWizard() {
         return new RapidFeederConfigurationWizard(this);
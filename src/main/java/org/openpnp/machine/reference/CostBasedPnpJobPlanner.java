@@ -0,0 +1,599 @@
+package org.openpnp.machine.reference;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openpnp.machine.reference.vision.AbstractPartAlignment;
+import org.openpnp.model.BoardLocation;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Location;
+import org.openpnp.model.Part;
+import org.openpnp.spi.Camera;
+import org.openpnp.spi.Feeder;
+import org.openpnp.spi.Head;
+import org.openpnp.spi.Machine;
+import org.openpnp.spi.Nozzle;
+import org.openpnp.spi.NozzleTip;
+import org.openpnp.spi.PnpJobPlanner;
+import org.openpnp.spi.PnpJobProcessor.JobPlacement;
+import org.openpnp.util.Utils2D;
+import org.pmw.tinylog.Logger;
+import org.simpleframework.xml.Attribute;
+import org.simpleframework.xml.Root;
+
+/**
+ * A planner that batches placements across all the nozzles by minimizing an estimated cost of the job, rather
+ * than taking the first compatible placement for each nozzle.
+ *
+ * The cost is estimated in seconds and consists of the travel from feeder to feeder for picking, over the
+ * bottom camera if any of the parts needs alignment, and from placement to placement, plus fixed times for
+ * each cycle, each vision pass and each nozzle tip change. Picking multiple parts from the same feeder comes
+ * naturally without travel.
+ *
+ * Each candidate assignment of nozzle tips to the nozzles is evaluated by a greedy rollout, in each cycle
+ * inserting the placements at the cheapest position of the route. The assignment is kept for the next
+ * lookaheadCycles cycles, then the rollout completes the remaining placements, changing nozzle tips only where
+ * nozzles run out of work. The assignment with the lowest total cost wins and its first cycle is planned. This way
+ * a nozzle tip change is only done when it pays off, and nozzles are only left empty when there is no compatible
+ * work for them.
+ *
+ * Only the first planningWindow pending placements are considered, and only those with the same part height as
+ * the first one, so the job order given by the job processor is kept on a coarse level, and parts are never
+ * placed before lower ones. The number of nozzle tip assignments and the planning time are
+ * limited, so the planning time per cycle stays bounded.
+ */
+@Root
+public class CostBasedPnpJobPlanner implements PnpJobPlanner {
+    @Attribute(required = false)
+    protected int planningWindow = 64;
+
+    @Attribute(required = false)
+    protected int lookaheadCycles = 3;
+
+    @Attribute(required = false)
+    protected int maxNozzleTipAssignments = 256;
+
+    @Attribute(required = false)
+    protected long maxPlanningMilliseconds = 200;
+
+    /**
+     * Assumed effective travel speed, to convert distances to time.
+     */
+    @Attribute(required = false)
+    protected double travelSpeed = 250; // mm/s
+
+    @Attribute(required = false)
+    protected double nozzleTipChangeTime = 10; // s
+
+    @Attribute(required = false)
+    protected double cycleTime = 1.5; // s
+
+    @Attribute(required = false)
+    protected double visionPassTime = 0.5; // s
+
+    /**
+     * A job placement with everything the cost model needs, in Millimeters.
+     */
+    protected static class Item {
+        final JobPlacement jobPlacement;
+        final org.openpnp.model.Package pkg;
+        final double pickX;
+        final double pickY;
+        final double placeX;
+        final double placeY;
+        final boolean vision;
+
+        Item(JobPlacement jobPlacement, Location pickLocation, Location placementLocation, boolean vision) {
+            this.jobPlacement = jobPlacement;
+            this.pkg = jobPlacement.getPlacement().getPart().getPackage();
+            if (pickLocation == null) {
+                pickLocation = placementLocation;
+            }
+            this.pickX = pickLocation.getX();
+            this.pickY = pickLocation.getY();
+            this.placeX = placementLocation.getX();
+            this.placeY = placementLocation.getY();
+            this.vision = vision;
+        }
+
+        boolean isCompatible(NozzleTip nozzleTip) {
+            return nozzleTip != null && pkg.getCompatibleNozzleTips().contains(nozzleTip);
+        }
+    }
+
+    /**
+     * A planned cycle, with the items in route order and their nozzles.
+     */
+    protected class Cycle {
+        final List<Item> items = new ArrayList<>();
+        final List<Integer> nozzles = new ArrayList<>();
+        double cost;
+
+        double getLastX(double x) {
+            return items.isEmpty() ? x : items.get(items.size() - 1).placeX;
+        }
+
+        double getLastY(double y) {
+            return items.isEmpty() ? y : items.get(items.size() - 1).placeY;
+        }
+    }
+
+    // The planning context.
+    private List<Nozzle> nozzles;
+    private List<Item> items;
+    private double startX;
+    private double startY;
+    private boolean hasStart;
+    private Location cameraLocation;
+
+    @Override
+    public List<PlannedPlacement> plan(Head head, List<JobPlacement> jobPlacements) {
+        long t0 = System.currentTimeMillis();
+        Machine machine = head.getMachine();
+        nozzles = new ArrayList<>(head.getNozzles());
+        items = createItems(machine, jobPlacements);
+        initializeLocations(head, machine);
+
+        List<NozzleTip> nozzleTips = new ArrayList<>(machine.getNozzleTips());
+        List<List<NozzleTip>> options = getNozzleTipOptions(nozzleTips);
+
+        // Enumerate the nozzle tip assignments and roll each one out.
+        NozzleTip [] assignment = new NozzleTip[nozzles.size()];
+        Plan best = new Plan();
+        int [] count = new int[1];
+        enumerateAssignments(options, 0, assignment, best, count, t0);
+
+        List<PlannedPlacement> plannedPlacements = new ArrayList<>();
+        if (best.cycle != null) {
+            for (int i = 0; i < best.cycle.items.size(); i++) {
+                Nozzle nozzle = nozzles.get(best.cycle.nozzles.get(i));
+                plannedPlacements.add(new PlannedPlacement(nozzle, best.assignment[best.cycle.nozzles.get(i)],
+                        best.cycle.items.get(i).jobPlacement));
+            }
+        }
+        Logger.debug("{} evaluated {} nozzle tip assignments in {}ms, estimated {}s for {} placements",
+                getClass().getSimpleName(), count[0], (System.currentTimeMillis() - t0), best.cost, items.size());
+        return plannedPlacements;
+    }
+
+    protected class Plan {
+        double cost = Double.POSITIVE_INFINITY;
+        NozzleTip [] assignment;
+        Cycle cycle;
+    }
+
+    protected List<Item> createItems(Machine machine, List<JobPlacement> jobPlacements) {
+        List<Item> items = new ArrayList<>();
+        Map<Part, Location> pickLocations = new HashMap<>();
+        Map<Part, Boolean> visionRequired = new HashMap<>();
+        Double partHeight = null;
+        for (JobPlacement jobPlacement : jobPlacements) {
+            if (items.size() >= planningWindow) {
+                break;
+            }
+            Part part = jobPlacement.getPlacement().getPart();
+            if (part == null || part.getPackage() == null || !isPlaceable(part.getPackage())) {
+                continue;
+            }
+            // Keep to the part height group of the first placement, taller parts must wait.
+            if (partHeight == null) {
+                partHeight = jobPlacement.getPartHeight();
+            }
+            else if (jobPlacement.getPartHeight() != partHeight) {
+                continue;
+            }
+            Location pickLocation = pickLocations.computeIfAbsent(part, (p) -> getPickLocation(machine, p));
+            boolean vision = visionRequired.computeIfAbsent(part, (p) -> isVisionRequired(p));
+            BoardLocation boardLocation = jobPlacement.getBoardLocation();
+            Location placementLocation = Utils2D.calculateBoardPlacementLocation(boardLocation,
+                    jobPlacement.getPlacement().getLocation())
+                    .convertToUnits(LengthUnit.Millimeters);
+            items.add(new Item(jobPlacement, pickLocation, placementLocation, vision));
+        }
+        return items;
+    }
+
+    /**
+     * @param pkg
+     * @return True if any of the nozzles can handle the package, with or without nozzle tip change.
+     */
+    protected boolean isPlaceable(org.openpnp.model.Package pkg) {
+        for (Nozzle nozzle : nozzles) {
+            if (nozzle.getNozzleTip() != null && pkg.getCompatibleNozzleTips().contains(nozzle.getNozzleTip())) {
+                return true;
+            }
+            for (NozzleTip nozzleTip : nozzle.getCompatibleNozzleTips()) {
+                if (pkg.getCompatibleNozzleTips().contains(nozzleTip)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param machine
+     * @param part
+     * @return The pick location of the feeder that would be used for the part, or null if none is known.
+     */
+    protected Location getPickLocation(Machine machine, Part part) {
+        for (Feeder feeder : machine.getFeeders()) {
+            if (feeder.getPart() == part && feeder.isEnabled()) {
+                try {
+                    Location location = feeder.getPickLocation();
+                    return (location == null ? null : location.convertToUnits(LengthUnit.Millimeters));
+                }
+                catch (Exception e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    protected boolean isVisionRequired(Part part) {
+        return AbstractPartAlignment.getPartAlignment(part) != null;
+    }
+
+    protected void initializeLocations(Head head, Machine machine) {
+        hasStart = false;
+        try {
+            Location location = head.getDefaultCamera().getLocation().convertToUnits(LengthUnit.Millimeters);
+            startX = location.getX();
+            startY = location.getY();
+            hasStart = true;
+        }
+        catch (Exception e) {
+            // No start location, the first leg is not counted.
+        }
+        cameraLocation = null;
+        for (Camera camera : machine.getCameras()) {
+            if (camera.getLooking() == Camera.Looking.Up) {
+                try {
+                    cameraLocation = camera.getLocation().convertToUnits(LengthUnit.Millimeters);
+                }
+                catch (Exception e) {
+                    // Vision passes still get their fixed time.
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * Get the nozzle tip options per nozzle: the loaded one first, then the ones that are compatible with the
+     * most items. Options are only included if there is work for them.
+     */
+    protected List<List<NozzleTip>> getNozzleTipOptions(List<NozzleTip> nozzleTips) {
+        List<List<NozzleTip>> options = new ArrayList<>();
+        for (Nozzle nozzle : nozzles) {
+            List<NozzleTip> nozzleOptions = new ArrayList<>();
+            NozzleTip loaded = nozzle.getNozzleTip();
+            Map<NozzleTip, Integer> work = new HashMap<>();
+            for (NozzleTip nozzleTip : nozzleTips) {
+                if (nozzleTip == loaded || nozzle.getCompatibleNozzleTips().contains(nozzleTip)) {
+                    int n = 0;
+                    for (Item item : items) {
+                        if (item.isCompatible(nozzleTip)) {
+                            n++;
+                        }
+                    }
+                    if (n > 0) {
+                        work.put(nozzleTip, n);
+                        if (nozzleTip != loaded) {
+                            nozzleOptions.add(nozzleTip);
+                        }
+                    }
+                }
+            }
+            nozzleOptions.sort((a, b) -> work.get(b) - work.get(a));
+            if (loaded != null && work.containsKey(loaded)) {
+                nozzleOptions.add(0, loaded);
+            }
+            // Leaving the nozzle out is always an option.
+            nozzleOptions.add(null);
+            options.add(nozzleOptions);
+        }
+        return options;
+    }
+
+    /**
+     * Enumerate the nozzle tip assignments depth first and evaluate each one. The budget is checked on every
+     * level, so the enumeration stops as soon as it is used up, but at least one assignment is evaluated.
+     * 
+     * @return False if the budget is used up.
+     */
+    protected boolean enumerateAssignments(List<List<NozzleTip>> options, int n, NozzleTip [] assignment,
+            Plan best, int [] count, long t0) {
+        if (count[0] > 0 && (count[0] >= maxNozzleTipAssignments
+                || System.currentTimeMillis() - t0 > maxPlanningMilliseconds)) {
+            return false;
+        }
+        if (n == assignment.length) {
+            count[0]++;
+            evaluate(assignment, best);
+            return true;
+        }
+        for (NozzleTip nozzleTip : options.get(n)) {
+            boolean used = false;
+            for (int i = 0; i < n; i++) {
+                if (nozzleTip != null && assignment[i] == nozzleTip) {
+                    used = true;
+                }
+            }
+            if (!used) {
+                assignment[n] = nozzleTip;
+                if (!enumerateAssignments(options, n + 1, assignment, best, count, t0)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Roll out the nozzle tip assignment and record it, if it is the best so far. The assignment is kept for
+     * the lookahead cycles. The remaining placements of the window are then completed with nozzle tip changes
+     * wherever a nozzle runs out of compatible work, so all the assignments are compared on the same work.
+     */
+    protected void evaluate(NozzleTip [] assignment, Plan best) {
+        NozzleTip [] nozzleTips = assignment.clone();
+        NozzleTip [] loaded = new NozzleTip[nozzles.size()];
+        for (int n = 0; n < loaded.length; n++) {
+            loaded[n] = nozzles.get(n).getNozzleTip();
+        }
+        boolean [] done = new boolean[items.size()];
+        double x = startX;
+        double y = startY;
+        boolean start = hasStart;
+        double cost = 0;
+        int placed = 0;
+        Cycle first = null;
+        for (int c = 0; placed < items.size(); c++) {
+            if (c >= lookaheadCycles) {
+                changeIdleNozzleTips(nozzleTips, done);
+            }
+            Cycle cycle = planCycle(nozzleTips, done, x, y, start);
+            if (cycle.items.isEmpty()) {
+                break;
+            }
+            for (int n : cycle.nozzles) {
+                if (nozzleTips[n] != loaded[n]) {
+                    cost += nozzleTipChangeTime;
+                    loaded[n] = nozzleTips[n];
+                }
+            }
+            cost += cycle.cost;
+            placed += cycle.items.size();
+            x = cycle.getLastX(x);
+            y = cycle.getLastY(y);
+            start = true;
+            if (first == null) {
+                first = cycle;
+            }
+            if (best.cost <= cost) {
+                // Can't get any better.
+                return;
+            }
+        }
+        if (first == null) {
+            return;
+        }
+        // Whatever could not be placed, would at least need a nozzle tip change and a cycle.
+        cost += (items.size() - placed)*(nozzleTipChangeTime + cycleTime);
+        if (cost < best.cost) {
+            best.cost = cost;
+            best.assignment = assignment.clone();
+            best.cycle = first;
+        }
+    }
+
+    /**
+     * Change the nozzle tip of the nozzles that have no compatible work left, to the free nozzle tip with the
+     * most work.
+     */
+    protected void changeIdleNozzleTips(NozzleTip [] nozzleTips, boolean [] done) {
+        for (int n = 0; n < nozzleTips.length; n++) {
+            if (countWork(nozzleTips[n], done) > 0) {
+                continue;
+            }
+            NozzleTip bestNozzleTip = nozzleTips[n];
+            int bestWork = 0;
+            for (NozzleTip nozzleTip : nozzles.get(n).getCompatibleNozzleTips()) {
+                boolean used = false;
+                for (NozzleTip other : nozzleTips) {
+                    used |= (other == nozzleTip);
+                }
+                if (!used) {
+                    int work = countWork(nozzleTip, done);
+                    if (work > bestWork) {
+                        bestWork = work;
+                        bestNozzleTip = nozzleTip;
+                    }
+                }
+            }
+            nozzleTips[n] = bestNozzleTip;
+        }
+    }
+
+    private int countWork(NozzleTip nozzleTip, boolean [] done) {
+        int work = 0;
+        for (int i = 0; i < items.size(); i++) {
+            if (!done[i] && items.get(i).isCompatible(nozzleTip)) {
+                work++;
+            }
+        }
+        return work;
+    }
+
+    /**
+     * Plan one cycle greedily. Each step adds the item with the cheapest insertion into the route to the
+     * compatible free nozzle with the least alternatives.
+     */
+    protected Cycle planCycle(NozzleTip [] assignment, boolean [] done, double x, double y, boolean start) {
+        Cycle cycle = new Cycle();
+        boolean [] busy = new boolean[assignment.length];
+        double cost = routeCost(cycle.items, x, y, start);
+        int [] alternatives = new int[assignment.length];
+        while (true) {
+            // Count the remaining compatible items per free nozzle.
+            for (int n = 0; n < assignment.length; n++) {
+                alternatives[n] = 0;
+                if (!busy[n] && assignment[n] != null) {
+                    for (int i = 0; i < items.size(); i++) {
+                        if (!done[i] && items.get(i).isCompatible(assignment[n])) {
+                            alternatives[n]++;
+                        }
+                    }
+                }
+            }
+            int bestItem = -1;
+            int bestPosition = 0;
+            int bestNozzle = -1;
+            double bestCost = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < items.size(); i++) {
+                if (done[i]) {
+                    continue;
+                }
+                Item item = items.get(i);
+                int nozzle = getNozzle(assignment, busy, alternatives, item);
+                if (nozzle < 0) {
+                    continue;
+                }
+                for (int position = 0; position <= cycle.items.size(); position++) {
+                    cycle.items.add(position, item);
+                    double itemCost = routeCost(cycle.items, x, y, start);
+                    cycle.items.remove(position);
+                    if (itemCost < bestCost) {
+                        bestCost = itemCost;
+                        bestItem = i;
+                        bestPosition = position;
+                        bestNozzle = nozzle;
+                    }
+                }
+            }
+            if (bestItem < 0) {
+                break;
+            }
+            done[bestItem] = true;
+            busy[bestNozzle] = true;
+            cycle.items.add(bestPosition, items.get(bestItem));
+            cycle.nozzles.add(bestPosition, bestNozzle);
+            cost = bestCost;
+        }
+        cycle.cost = cost;
+        return cycle;
+    }
+
+    private int getNozzle(NozzleTip [] assignment, boolean [] busy, int [] alternatives, Item item) {
+        int bestNozzle = -1;
+        for (int n = 0; n < assignment.length; n++) {
+            if (!busy[n] && item.isCompatible(assignment[n])
+                    && (bestNozzle < 0 || alternatives[n] < alternatives[bestNozzle])) {
+                bestNozzle = n;
+            }
+        }
+        return bestNozzle;
+    }
+
+    /**
+     * The estimated time of a cycle with the items picked and placed in the given order.
+     */
+    protected double routeCost(List<Item> route, double x, double y, boolean start) {
+        if (route.isEmpty()) {
+            return 0;
+        }
+        double distance = 0;
+        boolean vision = false;
+        for (Item item : route) {
+            if (start) {
+                distance += Math.hypot(item.pickX - x, item.pickY - y);
+            }
+            x = item.pickX;
+            y = item.pickY;
+            start = true;
+            vision |= item.vision;
+        }
+        double time = cycleTime;
+        if (vision) {
+            time += visionPassTime;
+            if (cameraLocation != null) {
+                distance += Math.hypot(cameraLocation.getX() - x, cameraLocation.getY() - y);
+                x = cameraLocation.getX();
+                y = cameraLocation.getY();
+            }
+        }
+        for (Item item : route) {
+            distance += Math.hypot(item.placeX - x, item.placeY - y);
+            x = item.placeX;
+            y = item.placeY;
+        }
+        return time + distance/travelSpeed;
+    }
+
+    public int getPlanningWindow() {
+        return planningWindow;
+    }
+
+    public void setPlanningWindow(int planningWindow) {
+        this.planningWindow = planningWindow;
+    }
+
+    public int getLookaheadCycles() {
+        return lookaheadCycles;
+    }
+
+    public void setLookaheadCycles(int lookaheadCycles) {
+        this.lookaheadCycles = lookaheadCycles;
+    }
+
+    public int getMaxNozzleTipAssignments() {
+        return maxNozzleTipAssignments;
+    }
+
+    public void setMaxNozzleTipAssignments(int maxNozzleTipAssignments) {
+        this.maxNozzleTipAssignments = maxNozzleTipAssignments;
+    }
+
+    public long getMaxPlanningMilliseconds() {
+        return maxPlanningMilliseconds;
+    }
+
+    public void setMaxPlanningMilliseconds(long maxPlanningMilliseconds) {
+        this.maxPlanningMilliseconds = maxPlanningMilliseconds;
+    }
+
+    public double getTravelSpeed() {
+        return travelSpeed;
+    }
+
+    public void setTravelSpeed(double travelSpeed) {
+        this.travelSpeed = travelSpeed;
+    }
+
+    public double getNozzleTipChangeTime() {
+        return nozzleTipChangeTime;
+    }
+
+    public void setNozzleTipChangeTime(double nozzleTipChangeTime) {
+        this.nozzleTipChangeTime = nozzleTipChangeTime;
+    }
+
+    public double getCycleTime() {
+        return cycleTime;
+    }
+
+    public void setCycleTime(double cycleTime) {
+        this.cycleTime = cycleTime;
+    }
+
+    public double getVisionPassTime() {
+        return visionPassTime;
+    }
+
+    public void setVisionPassTime(double visionPassTime) {
+        this.visionPassTime = visionPassTime;
+    }
+}
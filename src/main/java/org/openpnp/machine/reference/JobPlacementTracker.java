@@ -0,0 +1,242 @@
+package org.openpnp.machine.reference;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.openpnp.model.Package;
+import org.openpnp.spi.PnpJobProcessor.JobPlacement;
+import org.openpnp.spi.PnpJobProcessor.JobPlacement.Status;
+
+/**
+ * Tracks the JobPlacements of a job by status, so the job processor does not have to re-filter the whole job on
+ * each step.
+ *
+ * The placements are sorted once, in job order, and each is given its ordinal in that order. For each status
+ * there is a set of ordinals, and the pending ordinals are additionally bucketed by package, i.e. by nozzle tip
+ * compatibility. The sets are updated as the JobPlacements fire their status changes. A planner can then get the
+ * first pending placement compatible with a nozzle tip by looking at one bucket per package, and iterate the
+ * pending placements in job order, both without touching the placements that are already done.
+ *
+ * Like the job processor, the tracker is not thread safe, all status changes are expected on the machine thread.
+ */
+public class JobPlacementTracker implements PropertyChangeListener {
+    private final JobPlacement [] jobPlacements;
+    private final Comparator<JobPlacement> order;
+    private final Map<JobPlacement, Integer> ordinals = new IdentityHashMap<>();
+    private final Map<Status, BitSet> statusSets = new EnumMap<>(Status.class);
+    private final Map<Status, Integer> statusCounts = new EnumMap<>(Status.class);
+    private final Map<Package, BitSet> pendingByPackage = new IdentityHashMap<>();
+    private final Package [] packages;
+
+    /**
+     * @param jobPlacements The JobPlacements of the job.
+     * @param order The order in which the pending placements are handed to the planner.
+     */
+    public JobPlacementTracker(List<JobPlacement> jobPlacements, Comparator<JobPlacement> order) {
+        this.order = order;
+        List<JobPlacement> sorted = new ArrayList<>(jobPlacements);
+        sorted.sort(order);
+        this.jobPlacements = sorted.toArray(new JobPlacement[sorted.size()]);
+        this.packages = new Package[this.jobPlacements.length];
+        for (Status status : Status.values()) {
+            statusSets.put(status, new BitSet(this.jobPlacements.length));
+            statusCounts.put(status, 0);
+        }
+        for (int i = 0; i < this.jobPlacements.length; i++) {
+            JobPlacement jobPlacement = this.jobPlacements[i];
+            ordinals.put(jobPlacement, i);
+            packages[i] = (jobPlacement.getPlacement().getPart() == null ? null
+                    : jobPlacement.getPlacement().getPart().getPackage());
+            add(i, jobPlacement.getStatus());
+            jobPlacement.addPropertyChangeListener("status", this);
+        }
+    }
+
+    /**
+     * @return The order this tracker was built with.
+     */
+    public Comparator<JobPlacement> getOrder() {
+        return order;
+    }
+
+    /**
+     * Stop tracking the JobPlacements.
+     */
+    public void dispose() {
+        for (JobPlacement jobPlacement : jobPlacements) {
+            jobPlacement.removePropertyChangeListener("status", this);
+        }
+    }
+
+    @Override
+    public void propertyChange(PropertyChangeEvent evt) {
+        Integer ordinal = ordinals.get(evt.getSource());
+        if (ordinal != null && evt.getOldValue() != evt.getNewValue()) {
+            remove(ordinal, (Status) evt.getOldValue());
+            add(ordinal, (Status) evt.getNewValue());
+        }
+    }
+
+    private void add(int ordinal, Status status) {
+        statusSets.get(status).set(ordinal);
+        statusCounts.put(status, statusCounts.get(status) + 1);
+        if (status == Status.Pending) {
+            pendingByPackage.computeIfAbsent(packages[ordinal], (p) -> new BitSet()).set(ordinal);
+        }
+    }
+
+    private void remove(int ordinal, Status status) {
+        statusSets.get(status).clear(ordinal);
+        statusCounts.put(status, statusCounts.get(status) - 1);
+        if (status == Status.Pending) {
+            BitSet bucket = pendingByPackage.get(packages[ordinal]);
+            bucket.clear(ordinal);
+            if (bucket.isEmpty()) {
+                pendingByPackage.remove(packages[ordinal]);
+            }
+        }
+    }
+
+    /**
+     * @param status
+     * @return The number of JobPlacements with the status.
+     */
+    public int getCount(Status status) {
+        return statusCounts.get(status);
+    }
+
+    /**
+     * @param status
+     * @return A copy of the JobPlacements with the status, in job order.
+     */
+    public List<JobPlacement> getJobPlacements(Status status) {
+        BitSet set = statusSets.get(status);
+        List<JobPlacement> list = new ArrayList<>(getCount(status));
+        for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) {
+            list.add(jobPlacements[i]);
+        }
+        return list;
+    }
+
+    /**
+     * Create a planning view of the pending placements. The view is a List in job order that is evaluated
+     * lazily, so a planner only pays for the placements it actually looks at. Removing placements from the view
+     * only hides them from the view, i.e. from the rest of the planning, their status is not affected.
+     *
+     * The view must not be used after the status of any of the placements changed.
+     *
+     * @return
+     */
+    public PendingList getPendingList() {
+        return new PendingList();
+    }
+
+    public class PendingList extends AbstractList<JobPlacement> {
+        private final BitSet pending = statusSets.get(Status.Pending);
+        private final BitSet removed = new BitSet();
+        private int removedCount;
+        /**
+         * The element at cursorIndex is the first available ordinal at or after cursorOrdinal. This makes
+         * sequential access O(1) per element.
+         */
+        private int cursorIndex;
+        private int cursorOrdinal;
+
+        private int nextAvailable(BitSet set, int ordinal) {
+            ordinal = set.nextSetBit(ordinal);
+            while (ordinal >= 0 && removed.get(ordinal)) {
+                ordinal = set.nextSetBit(ordinal + 1);
+            }
+            return ordinal;
+        }
+
+        private int getOrdinal(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: "+index+", Size: "+size());
+            }
+            if (index < cursorIndex) {
+                cursorIndex = 0;
+                cursorOrdinal = 0;
+            }
+            int ordinal = nextAvailable(pending, cursorOrdinal);
+            for (int i = cursorIndex; i < index; i++) {
+                ordinal = nextAvailable(pending, ordinal + 1);
+            }
+            cursorIndex = index;
+            cursorOrdinal = ordinal;
+            return ordinal;
+        }
+
+        @Override
+        public JobPlacement get(int index) {
+            return jobPlacements[getOrdinal(index)];
+        }
+
+        @Override
+        public int size() {
+            return getCount(Status.Pending) - removedCount;
+        }
+
+        @Override
+        public JobPlacement remove(int index) {
+            int ordinal = getOrdinal(index);
+            removed.set(ordinal);
+            removedCount++;
+            modCount++;
+            // The next available element now takes this index.
+            cursorOrdinal = ordinal + 1;
+            return jobPlacements[ordinal];
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            Integer ordinal = ordinals.get(o);
+            if (ordinal == null || !pending.get(ordinal) || removed.get(ordinal)) {
+                return false;
+            }
+            removed.set(ordinal);
+            removedCount++;
+            modCount++;
+            if (ordinal < cursorOrdinal) {
+                cursorIndex--;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            Integer ordinal = ordinals.get(o);
+            return ordinal != null && pending.get(ordinal) && !removed.get(ordinal);
+        }
+
+        /**
+         * Get the first placement, in job order, whose package is accepted. Only looks at the first placement of
+         * each package, regardless of how many placements are pending.
+         *
+         * @param compatible Tells if a package is compatible, i.e. with a certain nozzle tip.
+         * @return The first compatible placement or null if there is none.
+         */
+        public JobPlacement getFirst(Predicate<Package> compatible) {
+            int first = -1;
+            for (Map.Entry<Package, BitSet> entry : pendingByPackage.entrySet()) {
+                if (entry.getKey() == null || !compatible.test(entry.getKey())) {
+                    continue;
+                }
+                int ordinal = nextAvailable(entry.getValue(), 0);
+                if (ordinal >= 0 && (first < 0 || ordinal < first)) {
+                    first = ordinal;
+                }
+            }
+            return first < 0 ? null : jobPlacements[first];
+        }
+    }
+}
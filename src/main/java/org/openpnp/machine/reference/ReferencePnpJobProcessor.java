@@ -19,14 +19,22 @@
 
 package org.openpnp.machine.reference;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import org.openpnp.gui.support.Wizard;
@@ -35,9 +43,11 @@ import org.openpnp.machine.reference.wizards.ReferencePnpJobProcessorConfigurati
 import org.openpnp.model.BoardLocation;
 import org.openpnp.model.Configuration;
 import org.openpnp.model.Job;
+import org.openpnp.model.JobProgressJournal;
 import org.openpnp.model.Length;
 import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
+import org.openpnp.model.MotionProfile;
 import org.openpnp.model.Panel;
 import org.openpnp.model.Part;
 import org.openpnp.model.Placement;
@@ -48,6 +58,7 @@ import org.openpnp.spi.Machine;
 import org.openpnp.spi.Nozzle;
 import org.openpnp.spi.NozzleTip;
 import org.openpnp.spi.PartAlignment;
+import org.openpnp.spi.PartAlignment.PartAlignmentOffset;
 import org.openpnp.spi.PnpJobPlanner;
 import org.openpnp.spi.PnpJobPlanner.PlannedPlacement;
 import org.openpnp.spi.PnpJobProcessor.JobPlacement.Status;
@@ -73,15 +84,42 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         Part
     }
 
+    public enum FeederSelection {
+        /**
+         * The first enabled feeder in machine order is used until it is disabled.
+         */
+        First,
+        /**
+         * The enabled feeder with the most parts remaining, then the nearest, is used, spreading the load
+         * across duplicate feeders.
+         */
+        Ranked
+    }
+
     @Attribute(required = false)
     protected JobOrderHint jobOrder = JobOrderHint.PartHeight;
 
+    @Attribute(required = false)
+    protected FeederSelection feederSelection = FeederSelection.First;
+
     @Attribute(required = false)
     protected int maxVisionRetries = 3;
+
+    @Attribute(required = false)
+    protected boolean pipelinedAlignment = false;
+
+    @Attribute(required = false)
+    protected boolean pickAhead = false;
     
     @Attribute(required = false)
     boolean steppingToNextMotion = true;
 
+    @Attribute(required = false)
+    protected boolean journalEnabled = true;
+
+    @Attribute(required = false)
+    protected long journalSyncMilliseconds = 1000;
+
     @Element(required = false)
     public PnpJobPlanner planner = new SimplePnpJobPlanner();
 
@@ -93,7 +131,27 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
 
     protected List<JobPlacement> jobPlacements = new ArrayList<>();
 
+    protected JobPlacementTracker jobPlacementTracker;
+
+    private JobOrderHint jobPlacementTrackerOrder;
+
+    protected JobProgressJournal journal;
+
     private Step currentStep = null;
+
+    private ExecutorService alignmentExecutor;
+
+    /**
+     * The plan for the next cycle, made ahead to feed its parts, see {@link FeedAhead}.
+     */
+    protected List<PlannedPlacement> plannedAhead;
+
+    /**
+     * The feeders that were fed ahead and still present the fed part, until picked. This is cleared when a job
+     * starts or is aborted, as the part may have been taken off the feeder in the meantime. The next job rather
+     * feeds once too often than skipping a needed feed.
+     */
+    protected final Set<Feeder> feedersFedAhead = new LinkedHashSet<>();
     
     long startTime;
     int totalPartsPlaced;
@@ -127,6 +185,8 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
     }
 
     public synchronized void abort() throws JobProcessorException {
+        closeJournal(false);
+        feedersFedAhead.clear();
         try {
             new Cleanup().step();
         }
@@ -157,8 +217,12 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         public Step step() throws JobProcessorException {
             startTime = System.currentTimeMillis();
             totalPartsPlaced = 0;
+            MotionProfile.getSolutionCache().resetStatistics();
             
             jobPlacements.clear();
+            resetJobPlacementTracker();
+            plannedAhead = null;
+            feedersFedAhead.clear();
 
             // Create some shortcuts for things that won't change during the run
             machine = Configuration.get().getMachine();
@@ -177,6 +241,8 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             
             scriptJobStarting();
 
+            openJournal();
+
             return new PanelFiducialCheck();
         }
         
@@ -443,30 +509,17 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         public Step step() throws JobProcessorException {
             fireTextStatus("Planning placements.");
 
-            List<JobPlacement> jobPlacements;
-
-            if (jobOrder.equals(JobOrderHint.Part)) {
-                // Get the list of unfinished placements and sort them by part.
-                    jobPlacements = getPendingJobPlacements().stream()
-                            .sorted(Comparator.comparing(JobPlacement::getPartId))
-                            .collect(Collectors.toList());
-            } 
-            else {
-                // Get the list of unfinished placements and sort them by part height.
-                    jobPlacements = getPendingJobPlacements().stream()
-                            .sorted(Comparator
-                                .comparing(JobPlacement::getPartHeight)
-                                .thenComparing(JobPlacement::getPartId))
-                            .collect(Collectors.toList());
-            }
-
-            if (jobPlacements.isEmpty()) {
+            JobPlacementTracker tracker = getJobPlacementTracker();
+            if (tracker.getCount(Status.Pending) == 0) {
                 return new Finish();
             }
 
-            long t = System.currentTimeMillis();
-            List<PlannedPlacement> plannedPlacements = planner.plan(head, jobPlacements);
-            Logger.debug("Planner complete in {}ms: {}", (System.currentTimeMillis() - t), plannedPlacements);
+            List<PlannedPlacement> plannedPlacements = plannedAhead;
+            plannedAhead = null;
+            if (plannedPlacements == null || plannedPlacements.isEmpty() || !plannedPlacements.stream()
+                    .allMatch(p -> p.jobPlacement.getStatus() == Status.Pending)) {
+                plannedPlacements = plan();
+            }
 
             if (plannedPlacements.isEmpty()) {
                 throw new JobProcessorException(planner, "Planner failed to plan any placements. Please contact support.");
@@ -482,6 +535,22 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         }
     }
     
+    /**
+     * Plan the next cycle.
+     * 
+     * @return
+     */
+    protected List<PlannedPlacement> plan() {
+        // Get the unfinished placements, already sorted in job order. The list is evaluated lazily,
+        // so the planner only pays for the placements it looks at.
+        List<JobPlacement> jobPlacements = getJobPlacementTracker().getPendingList();
+
+        long t = System.currentTimeMillis();
+        List<PlannedPlacement> plannedPlacements = planner.plan(head, jobPlacements);
+        Logger.debug("Planner complete in {}ms: {}", (System.currentTimeMillis() - t), plannedPlacements);
+        return plannedPlacements;
+    }
+
     protected class ChangeNozzleTips extends PlannedPlacementStep {
         public ChangeNozzleTips(List<PlannedPlacement> plannedPlacements) {
             super(plannedPlacements);
@@ -560,6 +629,9 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         @Override
         public Step stepImpl(PlannedPlacement plannedPlacement) throws JobProcessorException {
             if (plannedPlacement == null) {
+                if (pickAhead) {
+                    return new FeedAhead(plannedPlacements);
+                }
                 return new Align(plannedPlacements);
             }
             
@@ -579,7 +651,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                  * Find an available feeder. If one cannot be found this will throw. There's nothing
                  * else we can do with this part.
                  */
-                final Feeder feeder = findFeeder(machine, part);
+                final Feeder feeder = selectFeeder(part, nozzle);
                 
                 /**
                  * Run the placement starting script. An error here will throw. That's the user's
@@ -647,6 +719,10 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         }
         
         private void feed(Feeder feeder, Nozzle nozzle) throws JobProcessorException {
+            if (feedersFedAhead.remove(feeder)) {
+                Logger.debug("Feeder {} was fed ahead.", feeder.getName());
+                return;
+            }
             Exception lastException = null;
             for (int i = 0; i < 1 + feeder.getFeedRetryCount(); i++) {
                 try {
@@ -694,6 +770,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                 }
                 catch (Exception e) {
                     lastException = e;
+                    feeder.pickFailed(nozzle);
                 }
             }
             throw new JobProcessorException(feeder, lastException);
@@ -749,7 +826,72 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         }
     }
 
+    /**
+     * Select the feeder to pick the part from. A feeder that was fed ahead is used first.
+     * 
+     * @param part
+     * @param nozzle
+     * @return
+     * @throws JobProcessorException
+     */
+    protected Feeder selectFeeder(Part part, Nozzle nozzle) throws JobProcessorException {
+        for (Feeder feeder : feedersFedAhead) {
+            if (feeder.getPart() == part && feeder.isEnabled()) {
+                return feeder;
+            }
+        }
+        return (feederSelection == FeederSelection.Ranked
+                ? findFeeder(machine, part, nozzle.getLocation())
+                : findFeeder(machine, part));
+    }
+
+    /**
+     * Plan the next cycle and feed its parts from the feeders that can feed ahead, so the feeder mechanisms 
+     * advance while the current cycle is aligned and placed. The next Plan step takes the plan over, as long as 
+     * its placements are still pending. 
+     */
+    protected class FeedAhead implements Step {
+        private final List<PlannedPlacement> plannedPlacements;
+
+        public FeedAhead(List<PlannedPlacement> plannedPlacements) {
+            this.plannedPlacements = plannedPlacements;
+        }
+
+        public Step step() throws JobProcessorException {
+            plannedAhead = plan();
+            for (PlannedPlacement plannedPlacement : plannedAhead) {
+                final Part part = plannedPlacement.jobPlacement.getPlacement().getPart();
+                final Feeder feeder;
+                try {
+                    feeder = selectFeeder(part, plannedPlacement.nozzle);
+                }
+                catch (JobProcessorException e) {
+                    // Will be handled when picking.
+                    continue;
+                }
+                if (!feeder.canFeedAhead() || feedersFedAhead.contains(feeder)) {
+                    continue;
+                }
+                try {
+                    fireTextStatus("Feed ahead %s on %s.", feeder.getName(), part.getId());
+                    feeder.feed(plannedPlacement.nozzle);
+                    feedersFedAhead.add(feeder);
+                }
+                catch (Exception e) {
+                    // Not fatal, the feed is repeated with retries when picking.
+                    Logger.warn(e, "Feeding ahead on {} failed.", feeder.getName());
+                }
+            }
+            return new Align(plannedPlacements);
+        }
+    }
+
     protected class Align extends PlannedPlacementStep {
+        /**
+         * The pipelined alignments still processing.
+         */
+        private final Map<PlannedPlacement, Future<PartAlignmentOffset>> pendingAlignments = new HashMap<>();
+
         public Align(List<PlannedPlacement> plannedPlacements) {
             super(plannedPlacements);
         }
@@ -757,6 +899,9 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         @Override
         public Step stepImpl(PlannedPlacement plannedPlacement) throws JobProcessorException {
             if (plannedPlacement == null) {
+                if (!pendingAlignments.isEmpty()) {
+                    return new JoinAlignment(plannedPlacements, pendingAlignments);
+                }
                 return new Place(plannedPlacements);
             }
             
@@ -773,37 +918,40 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                 return this;
             }
 
-            align(plannedPlacement, partAlignment);
+            if (pipelinedAlignment) {
+                submitAlignment(plannedPlacement, partAlignment);
+            }
+            else {
+                align(plannedPlacement, partAlignment, getMaxVisionRetries(), null);
+            }
             
             checkPartOn(nozzle);
 
             return this;
         }
-        
-        private void align(PlannedPlacement plannedPlacement, PartAlignment partAlignment) throws JobProcessorException {
+
+        /**
+         * Capture the alignment images and leave the processing to the alignment executor, so the machine can 
+         * move on to the next nozzle in the meantime.
+         */
+        private void submitAlignment(PlannedPlacement plannedPlacement, PartAlignment partAlignment) throws JobProcessorException {
             final Nozzle nozzle = plannedPlacement.nozzle;
             final JobPlacement jobPlacement = plannedPlacement.jobPlacement;
             final Placement placement = jobPlacement.getPlacement();
             final BoardLocation boardLocation = jobPlacement.getBoardLocation();
             final Part part = placement.getPart();
 
-            Exception lastException = null;
-            for (int i = 0; i < ReferencePnpJobProcessor.this.getMaxVisionRetries(); i++) {
-                fireTextStatus("Aligning %s for %s.", part.getId(), placement.getId());
-                try {
-                    plannedPlacement.alignmentOffsets = VisionUtils.findPartAlignmentOffsets(
-                            partAlignment,
-                            part,
-                            boardLocation,
-                            placement.getLocation(), nozzle);
-                    Logger.debug("Align {} with {}, offsets {}", part, nozzle, plannedPlacement.alignmentOffsets);
-                    return;
-                }
-                catch (Exception e) {
-                    lastException = e;
-                }
+            fireTextStatus("Aligning %s for %s.", part.getId(), placement.getId());
+            try {
+                pendingAlignments.put(plannedPlacement, VisionUtils.submitPartAlignmentOffsets(
+                        partAlignment,
+                        part,
+                        boardLocation,
+                        placement.getLocation(), nozzle, getAlignmentExecutor()));
+            }
+            catch (Exception e) {
+                align(plannedPlacement, partAlignment, getMaxVisionRetries() - 1, e);
             }
-            throw new JobProcessorException(part, lastException);
         }
         
         private void checkPartOn(Nozzle nozzle) throws JobProcessorException {
@@ -824,6 +972,89 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         }
     }
 
+    /**
+     * Joins the pipelined alignments before placing. A failed alignment is retried synchronously.
+     */
+    protected class JoinAlignment extends PlannedPlacementStep {
+        private final Map<PlannedPlacement, Future<PartAlignmentOffset>> pendingAlignments;
+
+        public JoinAlignment(List<PlannedPlacement> plannedPlacements,
+                Map<PlannedPlacement, Future<PartAlignmentOffset>> pendingAlignments) {
+            super(plannedPlacements);
+            this.pendingAlignments = pendingAlignments;
+        }
+
+        @Override
+        public Step stepImpl(PlannedPlacement plannedPlacement) throws JobProcessorException {
+            if (plannedPlacement == null) {
+                return new Place(plannedPlacements);
+            }
+
+            Future<PartAlignmentOffset> future = pendingAlignments.remove(plannedPlacement);
+            if (future == null) {
+                // Not pipelined.
+                return this;
+            }
+
+            final Nozzle nozzle = plannedPlacement.nozzle;
+            final Part part = plannedPlacement.jobPlacement.getPlacement().getPart();
+            try {
+                plannedPlacement.alignmentOffsets = VisionUtils.joinPartAlignmentOffsets(future, part, nozzle);
+                Logger.debug("Align {} with {}, offsets {}", part, nozzle, plannedPlacement.alignmentOffsets);
+            }
+            catch (Exception e) {
+                align(plannedPlacement, AbstractPartAlignment.getPartAlignment(part), getMaxVisionRetries() - 1, e);
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Align the part, retrying on failure.
+     * 
+     * @param plannedPlacement
+     * @param partAlignment
+     * @param attempts The number of attempts.
+     * @param lastException The exception of a previous attempt, if any.
+     * @throws JobProcessorException
+     */
+    private void align(PlannedPlacement plannedPlacement, PartAlignment partAlignment, int attempts,
+            Exception lastException) throws JobProcessorException {
+        final Nozzle nozzle = plannedPlacement.nozzle;
+        final JobPlacement jobPlacement = plannedPlacement.jobPlacement;
+        final Placement placement = jobPlacement.getPlacement();
+        final BoardLocation boardLocation = jobPlacement.getBoardLocation();
+        final Part part = placement.getPart();
+
+        for (int i = 0; i < attempts; i++) {
+            fireTextStatus("Aligning %s for %s.", part.getId(), placement.getId());
+            try {
+                plannedPlacement.alignmentOffsets = VisionUtils.findPartAlignmentOffsets(
+                        partAlignment,
+                        part,
+                        boardLocation,
+                        placement.getLocation(), nozzle);
+                Logger.debug("Align {} with {}, offsets {}", part, nozzle, plannedPlacement.alignmentOffsets);
+                return;
+            }
+            catch (Exception e) {
+                lastException = e;
+            }
+        }
+        throw new JobProcessorException(part, lastException);
+    }
+
+    protected synchronized ExecutorService getAlignmentExecutor() {
+        if (alignmentExecutor == null) {
+            alignmentExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ReferencePnpJobProcessor Alignment");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return alignmentExecutor;
+    }
+
     protected class Place extends PlannedPlacementStep {
         public Place(List<PlannedPlacement> plannedPlacements) {
             super(plannedPlacements);
@@ -856,6 +1087,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             
             // Mark the placement as "placed"
             boardLocation.setPlaced(jobPlacement.getPlacement().getId(), true);
+            recordPlaced(boardLocation, placement);
             
             totalPartsPlaced++;
             
@@ -1063,6 +1295,9 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
     
     protected class Finish implements Step {
         public Step step() throws JobProcessorException {
+            // The job is through, its progress no longer needs to be recovered.
+            closeJournal(true);
+
             new Cleanup().step();
           
             double dtSec = (System.currentTimeMillis() - startTime) / 1000.0;
@@ -1078,6 +1313,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
 
             Logger.info("Job finished {} parts in {} sec. This is {} CPH", totalPartsPlaced,
                     df.format(dtSec), df.format(totalPartsPlaced / (dtSec / 3600.0)));
+            Logger.info("Motion profile solution cache: {}", MotionProfile.getSolutionCache());
 
             try {
                 HashMap<String, Object> params = new HashMap<>();
@@ -1116,6 +1352,9 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
     
     protected class Abort implements Step {
         public Step step() throws JobProcessorException {
+            closeJournal(false);
+            feedersFedAhead.clear();
+
             new Cleanup().step();
             
             fireTextStatus("Aborted.");
@@ -1124,14 +1363,104 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         }
     }
     
+    /**
+     * Start the journal of the job progress, if enabled and the job has a file to put it next to.
+     * Journaling problems are logged, but do not stop the job.
+     */
+    protected void openJournal() {
+        closeJournal(false);
+        if (!journalEnabled || job.getFile() == null) {
+            return;
+        }
+        try {
+            journal = new JobProgressJournal(job, journalSyncMilliseconds);
+        }
+        catch (IOException e) {
+            Logger.warn(e, "Cannot start the job journal, the job progress will not be journaled.");
+        }
+    }
+
+    protected void recordPlaced(BoardLocation boardLocation, Placement placement) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.recordPlaced(boardLocation, placement);
+        }
+        catch (IOException e) {
+            Logger.warn(e, "Cannot write the job journal, the job progress will no longer be journaled.");
+            closeJournal(false);
+        }
+    }
+
+    /**
+     * Close the journal.
+     * 
+     * @param delete True to also delete it, i.e. when the job is through.
+     */
+    protected void closeJournal(boolean delete) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+            if (delete) {
+                Files.deleteIfExists(journal.getFile().toPath());
+            }
+        }
+        catch (IOException e) {
+            Logger.warn(e, "Cannot close the job journal.");
+        }
+        journal = null;
+    }
+
+    /**
+     * Get the order in which the pending placements are handed to the planner.
+     * 
+     * @return
+     */
+    protected Comparator<JobPlacement> getJobPlacementOrder() {
+        if (jobOrder.equals(JobOrderHint.Part)) {
+            // Sort by part.
+            return Comparator.comparing(JobPlacement::getPartId);
+        }
+        // Sort by part height.
+        return Comparator
+                .comparing(JobPlacement::getPartHeight)
+                .thenComparing(JobPlacement::getPartId);
+    }
+
+    /**
+     * Get the tracker of the jobPlacements by status. It is created on first use after the jobPlacements
+     * were populated, and re-created if the job order is changed.
+     * 
+     * @return
+     */
+    protected JobPlacementTracker getJobPlacementTracker() {
+        if (jobPlacementTracker == null || jobPlacementTrackerOrder != jobOrder) {
+            resetJobPlacementTracker();
+            jobPlacementTrackerOrder = jobOrder;
+            jobPlacementTracker = new JobPlacementTracker(jobPlacements, getJobPlacementOrder());
+        }
+        return jobPlacementTracker;
+    }
+
+    /**
+     * Drop the tracker, i.e. when the jobPlacements are re-populated.
+     */
+    protected void resetJobPlacementTracker() {
+        if (jobPlacementTracker != null) {
+            jobPlacementTracker.dispose();
+            jobPlacementTracker = null;
+        }
+    }
+
     protected List<JobPlacement> getPendingJobPlacements() {
-        return this.jobPlacements.stream().filter((jobPlacement) -> {
-            return jobPlacement.getStatus() == Status.Pending;
-        }).collect(Collectors.toList());
+        return getJobPlacementTracker().getJobPlacements(Status.Pending);
     }
 
     protected boolean isJobComplete() {
-        return getPendingJobPlacements().isEmpty();
+        return getJobPlacementTracker().getCount(Status.Pending) == 0;
     }
     
     @Override
@@ -1147,6 +1476,46 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         this.jobOrder = newJobOrder;
     }    
 
+    public FeederSelection getFeederSelection() {
+        return feederSelection;
+    }
+
+    public void setFeederSelection(FeederSelection feederSelection) {
+        this.feederSelection = feederSelection;
+    }
+
+    public boolean isJournalEnabled() {
+        return journalEnabled;
+    }
+
+    public void setJournalEnabled(boolean journalEnabled) {
+        this.journalEnabled = journalEnabled;
+    }
+
+    public long getJournalSyncMilliseconds() {
+        return journalSyncMilliseconds;
+    }
+
+    public void setJournalSyncMilliseconds(long journalSyncMilliseconds) {
+        this.journalSyncMilliseconds = journalSyncMilliseconds;
+    }
+
+    public boolean isPipelinedAlignment() {
+        return pipelinedAlignment;
+    }
+
+    public void setPipelinedAlignment(boolean pipelinedAlignment) {
+        this.pipelinedAlignment = pipelinedAlignment;
+    }
+
+    public boolean isPickAhead() {
+        return pickAhead;
+    }
+
+    public void setPickAhead(boolean pickAhead) {
+        this.pickAhead = pickAhead;
+    }
+
     public int getMaxVisionRetries() {
         return maxVisionRetries;
     }
@@ -1409,14 +1778,12 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             if (nozzle.getNozzleTip() == null) {
                 return null;
             }
-            for (JobPlacement jobPlacement : jobPlacements) {
-                Placement placement = jobPlacement.getPlacement();
-                Part part = placement.getPart();
-                org.openpnp.model.Package pkg = part.getPackage();
-                NozzleTip nozzleTip = nozzle.getNozzleTip();
-                if (pkg.getCompatibleNozzleTips().contains(nozzleTip)) {
-                    return new PlannedPlacement(nozzle, nozzleTip, jobPlacement);
-                }
+            NozzleTip nozzleTip = nozzle.getNozzleTip();
+            JobPlacement jobPlacement = findFirst(jobPlacements, pkg -> {
+                return pkg.getCompatibleNozzleTips().contains(nozzleTip);
+            });
+            if (jobPlacement != null) {
+                return new PlannedPlacement(nozzle, nozzleTip, jobPlacement);
             }
             return null;
         }
@@ -1434,23 +1801,46 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         protected PlannedPlacement planWithNozzleTipChange(Nozzle nozzle, 
                 List<JobPlacement> jobPlacements,
                 List<NozzleTip> nozzleTips) {
+            JobPlacement jobPlacement = findFirst(jobPlacements, pkg -> {
+                return getGoodNozzleTip(nozzle, pkg, nozzleTips) != null;
+            });
+            if (jobPlacement != null) {
+                org.openpnp.model.Package pkg = jobPlacement.getPlacement().getPart().getPackage();
+                return new PlannedPlacement(nozzle, getGoodNozzleTip(nozzle, pkg, nozzleTips), jobPlacement);
+            }
+            return null;
+        }
+
+        /**
+         * Get the first of the nozzle tips that are not yet used, are compatible with the package, and are
+         * compatible with the nozzle.
+         */
+        private static NozzleTip getGoodNozzleTip(Nozzle nozzle, org.openpnp.model.Package pkg,
+                List<NozzleTip> nozzleTips) {
+            return nozzleTips
+                    .stream()
+                    .filter(nozzleTip -> {
+                        return pkg.getCompatibleNozzleTips().contains(nozzleTip);
+                    })
+                    .filter(nozzleTip -> {
+                        return nozzle.getCompatibleNozzleTips().contains(nozzleTip);
+                    })
+                    .findFirst()
+                    .orElse(null);
+        }
+
+        /**
+         * Find the first job placement whose package is compatible. If the job placements are the
+         * pending list of a JobPlacementTracker, it only looks at the first placement per package.
+         */
+        private static JobPlacement findFirst(List<JobPlacement> jobPlacements,
+                Predicate<org.openpnp.model.Package> compatible) {
+            if (jobPlacements instanceof JobPlacementTracker.PendingList) {
+                return ((JobPlacementTracker.PendingList) jobPlacements).getFirst(compatible);
+            }
             for (JobPlacement jobPlacement : jobPlacements) {
-                Placement placement = jobPlacement.getPlacement();
-                Part part = placement.getPart();
-                org.openpnp.model.Package pkg = part.getPackage();
-                // Get the intersection of nozzle tips that are not yet used, are compatible with
-                // the package, and are compatible with the nozzle.
-                List<NozzleTip> goodNozzleTips = nozzleTips
-                        .stream()
-                        .filter(nozzleTip -> {
-                            return pkg.getCompatibleNozzleTips().contains(nozzleTip);
-                        })
-                        .filter(nozzleTip -> {
-                            return nozzle.getCompatibleNozzleTips().contains(nozzleTip);
-                        })
-                        .collect(Collectors.toList());
-                if (!goodNozzleTips.isEmpty()) {
-                    return new PlannedPlacement(nozzle, goodNozzleTips.get(0), jobPlacement);
+                if (compatible.test(jobPlacement.getPlacement().getPart().getPackage())) {
+                    return jobPlacement;
                 }
             }
             return null;
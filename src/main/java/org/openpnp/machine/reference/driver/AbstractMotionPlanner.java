@@ -24,8 +24,6 @@ package org.openpnp.machine.reference.driver;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
 
 import javax.swing.Action;
 import javax.swing.Icon;
@@ -85,7 +83,10 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
     private ReferenceMachine machine;
 
     protected LinkedList<Motion> motionCommands = new LinkedList<>();
-    protected TreeMap<Double, Motion> motionPlan = new TreeMap<Double, Motion>();
+    /**
+     * The real-time motion plan, bounded in size and readable without taking the planner's lock.
+     */
+    protected MotionHistory motionPlan = new MotionHistory();
 
     private AxesLocation lastDirectionalBacklashOffset = new AxesLocation();
     private List<Driver> lastPlannedDrivers = new ArrayList<Driver>(); 
@@ -391,15 +392,33 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
      * @throws Exception
      */
     protected synchronized void executeMotionPlan(CompletionType completionType) throws Exception {
-        if (motionCommands.isEmpty()) {
+        executeMotionPlan(completionType, motionCommands.size());
+    }
+
+    /**
+     * Plan and then execute the first count pending motion commands. The remaining motion commands stay 
+     * pending, i.e. they must continue where the executed ones leave off. 
+     * 
+     * @param completionType
+     * @param count
+     * @throws Exception
+     */
+    protected synchronized void executeMotionPlan(CompletionType completionType, int count) throws Exception {
+        if (motionCommands.isEmpty() || count <= 0) {
             return;
         }
 
         // Put the recorded motion commands into an execution plan. 
-        List<Motion> executionPlan = motionCommands;
-
-        // The motion commands are reset.
-        motionCommands = new LinkedList<>();
+        List<Motion> executionPlan;
+        if (count >= motionCommands.size()) {
+            executionPlan = motionCommands;
+            // The motion commands are reset.
+            motionCommands = new LinkedList<>();
+        }
+        else {
+            executionPlan = new ArrayList<>(motionCommands.subList(0, count));
+            motionCommands.subList(0, count).clear();
+        }
 
         // Apply any optimization to the execution plan. This is where advanced MotionPlanner sub-classes will shine.
         optimizeExecutionPlan(executionPlan, completionType);
@@ -407,9 +426,9 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
         // Now execute the plan against the drivers.
         // We also record it into the real-time motionPlan to enable motion prediction and simulation. 
         double t = NanosecondTime.getRuntimeSeconds();
-        if (motionPlan.isEmpty() == false && motionPlan.lastKey() > t) {
+        if (motionPlan.getLastTime() > t) {
             // Append to a plan that is still running. 
-            t = motionPlan.lastKey();
+            t = motionPlan.getLastTime();
         }
         ReferenceMachine machine = (ReferenceMachine) Configuration.get().getMachine();
         List<Head> movedHeads = new ArrayList<>();
@@ -418,11 +437,11 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
             if (!plannedMotion.hasOption(MotionOption.Stillstand)) {
                 // Put into timed plan.
                 double dt = plannedMotion.getTime();
-                // Note, all-virtual moves can have dt == 0.0, so we take a nano-second, to make sure a new Map entry is created 
-                // in the motionPlan.
+                // Note, all-virtual moves can have dt == 0.0, so we take a nano-second, to make sure the motionPlan
+                // stays strictly ordered in time.
                 t += Math.max(dt, 1e-9);  
                 plannedMotion.setPlannedTime1(t);
-                motionPlan.put(t, plannedMotion);
+                motionPlan.add(plannedMotion, t);
                 // Execute across drivers.
                 ReferenceHeadMountable  hm = (ReferenceHeadMountable) plannedMotion.getHeadMountable();
                 if (hm != null) {
@@ -685,12 +704,12 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
     }
 
     @Override
-    public synchronized Motion getMomentaryMotion(double time) {
-        Map.Entry<Double, Motion> entry1 = motionPlan.higherEntry(time);
-        if (entry1 != null) {
+    public Motion getMomentaryMotion(double time) {
+        // Note, this is lock-free, so camera and simulation threads do not have to wait for the planner.
+        Motion motion1 = motionPlan.getMotionAfter(time);
+        if (motion1 != null) {
             // Return the motion.
-            Motion motion = entry1.getValue();
-            return motion;
+            return motion1;
         }
         else {
             // Plan empty or machine stopped before this time, just get the current axes location.
@@ -709,15 +728,9 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
     }
 
     @Override
-    public synchronized Motion getLastMotion() {
-        for (Map.Entry<Double, Motion> entry : motionPlan.descendingMap().entrySet()) {
-            Motion motion = entry.getValue();
-            if (!motion.getLocation0().matches(motion.getLocation1())) {
-                // Got a real move.
-                return motion;
-            }
-        }
-        return null;
+    public Motion getLastMotion() {
+        // Get the last real move.
+        return motionPlan.findLast((motion) -> !motion.getLocation0().matches(motion.getLocation1()));
     }
 
     @Override
@@ -831,9 +844,7 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
 
     @Override
     public synchronized void clearMotionPlanOlderThan(double time) {
-        while (motionPlan.isEmpty() == false && motionPlan.firstKey() < time) {
-            motionPlan.remove(motionPlan.firstKey());
-        }
+        motionPlan.removeOlderThan(time);
     }
 
     public boolean isInterpolationRetiming() {
@@ -1,6 +1,9 @@
 package org.openpnp.machine.reference.driver;
 
 import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.openpnp.gui.support.PropertySheetWizardAdapter;
 import org.openpnp.gui.support.Wizard;
@@ -79,6 +82,26 @@ public abstract class AbstractReferenceDriver extends AbstractDriver {
     @Attribute(required = false)
     protected Boolean setRts = false;
     
+    /**
+     * The latencies tracked per command type. 
+     */
+    public enum LatencyType {
+        /**
+         * From the command being issued by the caller, until it is written to the communications. 
+         */
+        Queue,
+        /**
+         * Writing the command to the communications. 
+         */
+        Wire,
+        /**
+         * From the command being written, until the matching confirmation is received. 
+         */
+        Confirmation
+    }
+
+    private final ConcurrentHashMap<String, LatencyHistogram[]> latencyHistograms = new ConcurrentHashMap<>();
+
     public AbstractReferenceDriver() {
     }
     
@@ -294,6 +317,76 @@ public abstract class AbstractReferenceDriver extends AbstractDriver {
         tcp.setPort(port);
     }
 
+    /**
+     * Record a command latency. Lock-free, can be called from any thread.
+     * 
+     * @param commandType The type of the command, as known by the driver. 
+     * @param latencyType
+     * @param nanoseconds
+     */
+    public void recordLatency(String commandType, LatencyType latencyType, long nanoseconds) {
+        LatencyHistogram[] histograms = latencyHistograms.get(commandType);
+        if (histograms == null) {
+            histograms = latencyHistograms.computeIfAbsent(commandType, (k) -> {
+                LatencyHistogram[] newHistograms = new LatencyHistogram[LatencyType.values().length];
+                for (int i = 0; i < newHistograms.length; i++) {
+                    newHistograms[i] = new LatencyHistogram();
+                }
+                return newHistograms;
+            });
+        }
+        histograms[latencyType.ordinal()].record(nanoseconds);
+    }
+
+    /**
+     * @param commandType
+     * @param latencyType
+     * @return The latency histogram of the command type, or null if no such command was recorded yet. 
+     */
+    public LatencyHistogram getLatencyHistogram(String commandType, LatencyType latencyType) {
+        LatencyHistogram[] histograms = latencyHistograms.get(commandType);
+        return histograms == null ? null : histograms[latencyType.ordinal()];
+    }
+
+    /**
+     * @return The latency histograms by command type (sorted) and latency type.
+     */
+    public Map<String, LatencyHistogram[]> getLatencyHistograms() {
+        return new TreeMap<>(latencyHistograms);
+    }
+
+    /**
+     * Reset the latency histograms, e.g. from a Job.Starting script to get per job statistics.
+     */
+    public void resetLatencyHistograms() {
+        for (LatencyHistogram[] histograms : latencyHistograms.values()) {
+            for (LatencyHistogram histogram : histograms) {
+                histogram.reset();
+            }
+        }
+    }
+
+    /**
+     * @return A human readable report of the latencies recorded.
+     */
+    public String getLatencyReport() {
+        StringBuilder report = new StringBuilder();
+        for (Map.Entry<String, LatencyHistogram[]> entry : getLatencyHistograms().entrySet()) {
+            for (LatencyType latencyType : LatencyType.values()) {
+                LatencyHistogram histogram = entry.getValue()[latencyType.ordinal()];
+                if (histogram.getCount() > 0) {
+                    report.append(entry.getKey());
+                    report.append(" ");
+                    report.append(latencyType);
+                    report.append(": ");
+                    report.append(histogram);
+                    report.append("\n");
+                }
+            }
+        }
+        return report.toString();
+    }
+
     @Override
     public void setEnabled(boolean enabled) throws Exception {
         if (enabled && isSyncInitialLocation()) {
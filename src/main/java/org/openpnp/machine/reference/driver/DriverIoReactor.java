@@ -0,0 +1,177 @@
+package org.openpnp.machine.reference.driver;
+
+import java.io.IOException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.pmw.tinylog.Logger;
+
+/**
+ * A single reactor thread shared by all the drivers, that waits for received data on all the
+ * registered channels with one NIO Selector, instead of each driver blocking its own reader thread.
+ *
+ * Only communications that provide a {@link SelectableChannel} (TCP, simulated) can be registered.
+ * The handlers are called on the reactor thread and must therefore never block.
+ */
+public class DriverIoReactor {
+    public interface Handler {
+        /**
+         * Called on the reactor thread, when data is available on the channel. Must consume the
+         * available data without blocking.
+         *
+         * @return False, if the channel has ended and the registration should be closed.
+         */
+        boolean readable();
+
+        /**
+         * Called on the reactor thread, when the registration is closed, for whatever reason.
+         */
+        void closed();
+    }
+
+    public class Registration {
+        private final SelectableChannel channel;
+        private final Handler handler;
+        private SelectionKey key;
+        private volatile boolean open = true;
+        private final CountDownLatch closedLatch = new CountDownLatch(1);
+
+        private Registration(SelectableChannel channel, Handler handler) {
+            this.channel = channel;
+            this.handler = handler;
+        }
+
+        public boolean isOpen() {
+            return open;
+        }
+
+        /**
+         * Cancel the registration. The handler is called one last time with closed().
+         */
+        public void cancel() {
+            submit(() -> close());
+        }
+
+        /**
+         * Wait for the registration to be closed, i.e. for the handler to not be called anymore.
+         *
+         * @param timeout
+         * @return True if closed within the timeout.
+         * @throws InterruptedException
+         */
+        public boolean awaitClosed(long timeout) throws InterruptedException {
+            return closedLatch.await(timeout, TimeUnit.MILLISECONDS);
+        }
+
+        private void close() {
+            if (!open) {
+                return;
+            }
+            open = false;
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                handler.closed();
+            }
+            catch (Exception e) {
+                Logger.error(e, "Driver I/O reactor handler error.");
+            }
+            closedLatch.countDown();
+        }
+    }
+
+    private static DriverIoReactor instance;
+
+    /**
+     * @return The shared reactor, started on first use.
+     * @throws IOException
+     */
+    public static synchronized DriverIoReactor get() throws IOException {
+        if (instance == null) {
+            instance = new DriverIoReactor();
+        }
+        return instance;
+    }
+
+    private final Selector selector;
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+
+    private DriverIoReactor() throws IOException {
+        selector = Selector.open();
+        thread = new Thread(() -> run(), "DriverIoReactor");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Register the channel with the reactor. The channel is switched to non-blocking mode.
+     *
+     * @param channel
+     * @param handler
+     * @return The registration, used to cancel it.
+     * @throws IOException
+     */
+    public Registration register(SelectableChannel channel, Handler handler) throws IOException {
+        channel.configureBlocking(false);
+        Registration registration = new Registration(channel, handler);
+        submit(() -> {
+            try {
+                registration.key = registration.channel.register(selector, SelectionKey.OP_READ, registration);
+            }
+            catch (Exception e) {
+                Logger.error(e, "Driver I/O reactor cannot register channel.");
+                registration.close();
+            }
+        });
+        return registration;
+    }
+
+    private void submit(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    private void run() {
+        while (true) {
+            try {
+                selector.select();
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+                Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    SelectionKey key = iterator.next();
+                    iterator.remove();
+                    Registration registration = (Registration) key.attachment();
+                    if (!key.isValid()) {
+                        registration.close();
+                    }
+                    else if (key.isReadable()) {
+                        boolean open;
+                        try {
+                            open = registration.handler.readable();
+                        }
+                        catch (Exception e) {
+                            Logger.error(e, "Driver I/O reactor handler error.");
+                            open = false;
+                        }
+                        if (!open) {
+                            registration.close();
+                        }
+                    }
+                }
+            }
+            catch (Exception e) {
+                Logger.error(e, "Driver I/O reactor error.");
+            }
+        }
+    }
+}
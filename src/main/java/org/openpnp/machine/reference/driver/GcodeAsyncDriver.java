@@ -22,6 +22,10 @@
 package org.openpnp.machine.reference.driver;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
@@ -33,6 +37,7 @@ import org.openpnp.spi.HeadMountable;
 import org.openpnp.spi.Machine;
 import org.openpnp.spi.MotionPlanner.CompletionType;
 import org.openpnp.util.Collect;
+import org.openpnp.util.NanosecondTime;
 import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
@@ -94,6 +99,12 @@ public class GcodeAsyncDriver extends GcodeDriver {
     @Attribute(required=false)
     private boolean confirmationFlowControl = true;
 
+    @Attribute(required=false)
+    private boolean characterCountingFlowControl = false;
+
+    @Attribute(required=false)
+    private int receiveBufferSize = 128;
+
     @Attribute(required=false)
     private boolean reportedLocationConfirmation = true;
 
@@ -112,6 +123,9 @@ public class GcodeAsyncDriver extends GcodeDriver {
     @Element(required = false)
     private Length junctionDeviation = new Length(0.02, LengthUnit.Millimeters);
 
+    @Element(required = false)
+    private Length interpolationTolerance = new Length(0, LengthUnit.Millimeters);
+
     @Override
     public void home(Machine machine) throws Exception {
         super.home(machine);
@@ -119,12 +133,34 @@ public class GcodeAsyncDriver extends GcodeDriver {
 
     private WriterThread writerThread;
 
+    /**
+     * Initial size of the writer thread's buffer, where command lines are coalesced into one write.
+     */
+    protected static final int WRITE_BUFFER_SIZE = 4096;
+
+    private volatile long writeCount;
+    private volatile long writtenLineCount;
+    private volatile int maxLinesPerWrite;
+
     static public class CommandLine extends Line {
         final long timeout;
+        final String latencyCommandType;
+        /**
+         * The line encoded as sent, one byte per character, so the byte count is also the character count in the 
+         * controller's receive buffer. 
+         */
+        final byte[] bytes;
+        long writtenNanoTime;
 
         public CommandLine(String line, long timeout) {
+            this(line, timeout, null);
+        }
+
+        public CommandLine(String line, long timeout, CommandType commandType) {
             super(line);
             this.timeout = timeout;
+            this.latencyCommandType = getLatencyCommandType(commandType);
+            this.bytes = (line == null ? null : line.getBytes(StandardCharsets.ISO_8859_1));
         }
 
         public long getTimeout() {
@@ -146,6 +182,41 @@ public class GcodeAsyncDriver extends GcodeDriver {
         firePropertyChange("confirmationFlowControl", oldValue, confirmationFlowControl);
     }
 
+    public boolean isCharacterCountingFlowControl() {
+        return characterCountingFlowControl;
+    }
+
+    /**
+     * Character counting flow control, as pioneered by GRBL. The writer thread keeps track of how many 
+     * characters of sent commands are still unconfirmed, i.e. presumably still occupying the controller's 
+     * serial receive buffer. It keeps sending as long as the next command still fits into the 
+     * {@link #getReceiveBufferSize()}, keeping the buffer full and the controller's planner fed at all 
+     * times. Every command must be answered with exactly one confirmation or error response.
+     * 
+     * If enabled, this supersedes confirmationFlowControl. 
+     * 
+     * @param characterCountingFlowControl
+     */
+    public void setCharacterCountingFlowControl(boolean characterCountingFlowControl) {
+        Object oldValue = this.characterCountingFlowControl;
+        this.characterCountingFlowControl = characterCountingFlowControl;
+        firePropertyChange("characterCountingFlowControl", oldValue, characterCountingFlowControl);
+    }
+
+    public int getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    /**
+     * @param receiveBufferSize The size of the controller's serial receive buffer in bytes, used for 
+     * character counting flow control. 
+     */
+    public void setReceiveBufferSize(int receiveBufferSize) {
+        Object oldValue = this.receiveBufferSize;
+        this.receiveBufferSize = receiveBufferSize;
+        firePropertyChange("receiveBufferSize", oldValue, receiveBufferSize);
+    }
+
     public boolean isReportedLocationConfirmation() {
         return reportedLocationConfirmation;
     }
@@ -201,9 +272,54 @@ public class GcodeAsyncDriver extends GcodeDriver {
         this.junctionDeviation = junctionDeviation;
     }
 
+    @Override
+    public Length getInterpolationTolerance() {
+        return interpolationTolerance;
+    }
+
+    public void setInterpolationTolerance(Length interpolationTolerance) {
+        this.interpolationTolerance = interpolationTolerance;
+    }
+
+    /**
+     * @return The number of writes issued by the writer thread since connecting.
+     */
+    public long getWriteCount() {
+        return writeCount;
+    }
+
+    /**
+     * @return The number of command lines written by the writer thread since connecting.
+     */
+    public long getWrittenLineCount() {
+        return writtenLineCount;
+    }
+
+    /**
+     * @return The average number of command lines coalesced into one write.
+     */
+    public double getLinesPerWrite() {
+        long writes = writeCount;
+        return writes == 0 ? 0 : (double)writtenLineCount/writes;
+    }
+
+    /**
+     * @return The largest number of command lines coalesced into one write.
+     */
+    public int getMaxLinesPerWrite() {
+        return maxLinesPerWrite;
+    }
+
+    public void resetWriteStatistics() {
+        writeCount = 0;
+        writtenLineCount = 0;
+        maxLinesPerWrite = 0;
+    }
+
     @Override
     protected void connectThreads() throws Exception {
         super.connectThreads();
+        resetWriteStatistics();
         commandQueue = new LinkedBlockingQueue<>(maxCommandsQueued);
         writerThread = new WriterThread();
         writerThread.setDaemon(true);
@@ -217,6 +333,11 @@ public class GcodeAsyncDriver extends GcodeDriver {
                 writerThread.join(3000);
             }
             commandQueue = null;
+            if (writeCount > 0) {
+                Logger.debug("{} wrote {} lines in {} writes, {} lines per write on average, {} max.", 
+                        getName(), writtenLineCount, writeCount, 
+                        String.format("%.2f", getLinesPerWrite()), maxLinesPerWrite);
+            }
         }
         catch (Exception e) {
             Logger.error(e, "disconnect()");
@@ -226,6 +347,17 @@ public class GcodeAsyncDriver extends GcodeDriver {
     }
 
     protected class WriterThread extends Thread {
+        /**
+         * Commands sent but not yet confirmed, when using character counting flow control.
+         */
+        private ArrayDeque<CommandLine> unconfirmedCommands = new ArrayDeque<>();
+        private int unconfirmedCharacters = 0;
+
+        /**
+         * Buffer to coalesce multiple command lines into one write.
+         */
+        private ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        private ArrayList<CommandLine> writeCommands = new ArrayList<>();
 
         @Override
         public void run() {
@@ -246,10 +378,34 @@ public class GcodeAsyncDriver extends GcodeDriver {
                     continue;
                 }
                 try {
-                    if (confirmationFlowControl && lastCommand != null) {
+                    if (characterCountingFlowControl) {
+                        lastCommand = null;
+                        if (command.line != null) {
+                            // Make room in the controller's receive buffer.
+                            int characters = getCharacterCount(command);
+                            while (!unconfirmedCommands.isEmpty() 
+                                    && unconfirmedCharacters + characters > receiveBufferSize) {
+                                waitForOldestConfirmation();
+                            }
+                            if (unconfirmedCommands.isEmpty()) {
+                                // Nothing is outstanding, so any confirmation still queued is unsolicited. 
+                                receivedConfirmationsQueue.clear();
+                            }
+                            unconfirmedCommands.add(command);
+                            unconfirmedCharacters += characters;
+                        }
+                        else {
+                            // Confirmation requested, all the commands must be through.
+                            while (!unconfirmedCommands.isEmpty()) {
+                                waitForOldestConfirmation();
+                            }
+                        }
+                    }
+                    else if (confirmationFlowControl && lastCommand != null) {
                         try {
                             // Before we can send the new command, make sure the wanted confirmation count of the last command was received.
-                            waitForConfirmation(lastCommand.toString(), lastCommand.getTimeout());
+                            recordConfirmation(lastCommand, 
+                                    waitForConfirmation(lastCommand.toString(), lastCommand.getTimeout()));
                         }
                         finally {
                             // Whatever happens, never wait for this one again.
@@ -257,11 +413,34 @@ public class GcodeAsyncDriver extends GcodeDriver {
                         }
                     }
                     if (command.line != null) {
-                        // Set up the wanted confirmations for next time.
-                        lastCommand = command;
-                        receivedConfirmationsQueue.clear();
-                        getCommunications().writeLine(command.line);
-                        Logger.trace("[{}] >> {}", getCommunications().getConnectionName(), command);
+                        if (!characterCountingFlowControl) {
+                            // Set up the wanted confirmations for next time.
+                            lastCommand = command;
+                            receivedConfirmationsQueue.clear();
+                        }
+                        writeCommands.clear();
+                        writeBuffer.clear();
+                        appendCommand(command);
+                        if (characterCountingFlowControl || !confirmationFlowControl) {
+                            // Coalesce any further queued commands that fit into the flow-control window. 
+                            coalesceCommands(commandQueue);
+                        }
+                        writeBuffer.flip();
+                        long writeTime = NanosecondTime.getRuntime();
+                        getCommunications().writeBuffer(writeBuffer);
+                        long writtenTime = NanosecondTime.getRuntime();
+                        writeCount++;
+                        writtenLineCount += writeCommands.size();
+                        maxLinesPerWrite = Math.max(maxLinesPerWrite, writeCommands.size());
+                        for (CommandLine writtenCommand : writeCommands) {
+                            // Coalesced commands share the wire time. 
+                            writtenCommand.writtenNanoTime = writtenTime;
+                            recordLatency(writtenCommand.latencyCommandType, LatencyType.Queue, 
+                                    writeTime - writtenCommand.getTransmissionNanoTime());
+                            recordLatency(writtenCommand.latencyCommandType, LatencyType.Wire, 
+                                    writtenTime - writeTime);
+                            Logger.trace("[{}] >> {}", getCommunications().getConnectionName(), writtenCommand);
+                        }
                     }
                     else {
                         confirmationComplete = true;
@@ -279,11 +458,88 @@ public class GcodeAsyncDriver extends GcodeDriver {
                     // We probably got a timeout exception. We can't throw from the writer thread. Therefore, set 
                     // the exception as an error response, it will be reported when the driver wants to do the next step. 
                     errorResponse = new Line(e.getMessage());
+                    // The character count is lost, start over.
+                    unconfirmedCommands.clear();
+                    unconfirmedCharacters = 0;
                     //Logger.error("[{}] {}", getCommunications().getConnectionName(), e);
                 }
             }
             Logger.trace("[{}] disconnectRequested, bye-bye.", getCommunications().getConnectionName());
         }
+
+        /**
+         * Take further commands from the queue, as long as they can be sent without waiting for a 
+         * confirmation, and as long as they fit into the write buffer. A null command (confirmation 
+         * request) ends the coalescing.  
+         * 
+         * @param commandQueue
+         */
+        private void coalesceCommands(LinkedBlockingQueue<CommandLine> commandQueue) {
+            while (true) {
+                // This is the only consumer, so the peeked command is also the one polled. 
+                CommandLine command = commandQueue.peek();
+                if (command == null || command.line == null) {
+                    return;
+                }
+                int characters = getCharacterCount(command);
+                if (characterCountingFlowControl 
+                        && unconfirmedCharacters + characters > receiveBufferSize) {
+                    return;
+                }
+                if (characters > writeBuffer.remaining()) {
+                    return;
+                }
+                commandQueue.poll();
+                if (characterCountingFlowControl) {
+                    unconfirmedCommands.add(command);
+                    unconfirmedCharacters += characters;
+                }
+                appendCommand(command);
+            }
+        }
+
+        private void appendCommand(CommandLine command) {
+            byte[] line = command.bytes;
+            byte[] lineEnding = getLineEndingBytes();
+            if (line.length + lineEnding.length > writeBuffer.remaining()) {
+                // Only ever happens for the first command. 
+                ByteBuffer buffer = ByteBuffer.allocateDirect(line.length + lineEnding.length + WRITE_BUFFER_SIZE);
+                writeBuffer.flip();
+                buffer.put(writeBuffer);
+                writeBuffer = buffer;
+            }
+            writeBuffer.put(line);
+            writeBuffer.put(lineEnding);
+            writeCommands.add(command);
+        }
+
+        private void waitForOldestConfirmation() throws Exception {
+            CommandLine oldestCommand = unconfirmedCommands.peek();
+            recordConfirmation(oldestCommand, 
+                    waitForConfirmation(oldestCommand.toString(), oldestCommand.getTimeout()));
+            unconfirmedCommands.poll();
+            unconfirmedCharacters -= getCharacterCount(oldestCommand);
+        }
+
+        private void recordConfirmation(CommandLine command, Line confirmation) {
+            if (confirmation != null) {
+                recordLatency(command.latencyCommandType, LatencyType.Confirmation, 
+                        confirmation.getTransmissionNanoTime() - command.writtenNanoTime);
+            }
+        }
+
+        /**
+         * @param command
+         * @return The number of characters the command occupies in the controller's receive buffer, 
+         * including the line ending, i.e. the number of bytes written.
+         */
+        private int getCharacterCount(CommandLine command) {
+            return command.bytes.length + getLineEndingBytes().length;
+        }
+
+        private byte[] getLineEndingBytes() {
+            return getCommunications().getLineEndingType().getLineEnding().getBytes(StandardCharsets.ISO_8859_1);
+        }
     }
 
     @Override
@@ -298,7 +554,7 @@ public class GcodeAsyncDriver extends GcodeDriver {
      * So it MUST NOT call super.sendCommand()
      */
     @Override
-    public void sendCommand(String command, long timeout) throws Exception {
+    protected void sendCommand(String command, long timeout, CommandType commandType) throws Exception {
         if (waitedForCommands) {
             // We had a wait for commands and caller had the last chance to receive responses.
             waitedForCommands = false;
@@ -319,7 +575,7 @@ public class GcodeAsyncDriver extends GcodeDriver {
         if (command.startsWith("$")) {
             waitForEmptyCommandQueue();
         }
-        CommandLine commandLine = new CommandLine(command, timeout);
+        CommandLine commandLine = new CommandLine(command, timeout, commandType);
         commandQueue.offer(commandLine, writerQueueTimeout, TimeUnit.MILLISECONDS);
         if (command.startsWith("$")) {
             waitForEmptyCommandQueue();
@@ -401,6 +657,12 @@ public class GcodeAsyncDriver extends GcodeDriver {
         }
     }
 
+    @Override
+    protected boolean isConfirmingErrorResponses() {
+        // With character counting, an error response also releases the command from the receive buffer.  
+        return characterCountingFlowControl;
+    }
+
     @Override
     public PropertySheet[] getPropertySheets() {
         return Collect.concat(super.getPropertySheets(), new PropertySheet[] { 
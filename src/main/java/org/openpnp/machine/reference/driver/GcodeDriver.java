@@ -23,12 +23,15 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.lang.reflect.Field;
+import java.nio.channels.SelectableChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -47,6 +50,7 @@ import org.openpnp.machine.reference.axis.ReferenceControllerAxis;
 import org.openpnp.machine.reference.axis.ReferenceControllerAxis.BacklashCompensationMethod;
 import org.openpnp.machine.reference.axis.ReferenceLinearTransformAxis;
 import org.openpnp.machine.reference.axis.ReferenceMappedAxis;
+import org.openpnp.machine.reference.driver.GcodeResponseClassifier.Classification;
 import org.openpnp.machine.reference.driver.wizards.GcodeDriverConsole;
 import org.openpnp.machine.reference.driver.wizards.GcodeDriverGcodes;
 import org.openpnp.machine.reference.driver.wizards.GcodeDriverSettings;
@@ -253,6 +257,9 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
     @Attribute(required = false)
     protected boolean loggingGcode;
 
+    @Attribute(required = false)
+    protected boolean sharedIoReactor = false;
+
     @Deprecated
     @Element(required = false)
     protected Location homingFiducialLocation = new Location(LengthUnit.Millimeters);
@@ -287,17 +294,25 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
     protected List<Axis> axes = null;
 
     private ReaderThread readerThread;
+    private DriverIoReactor.Registration readerRegistration;
+    private volatile GcodeResponseClassifier responseClassifier;
+    /**
+     * The precompiled command templates by HeadMountable. 
+     */
+    private final Map<Object, GcodeTemplate[]> commandTemplates = new ConcurrentHashMap<>();
+    private static final Object noHeadMountable = new Object();
+    private static final GcodeTemplate missingCommand = new GcodeTemplate("");
     volatile boolean disconnectRequested;
     protected boolean connected;
     
     static public class Line {
         final String line;
-        final double transmissionTime;
+        final long transmissionNanoTime;
 
         public Line(String line) {
             super();
             this.line = line;
-            this.transmissionTime = NanosecondTime.getRuntimeSeconds();
+            this.transmissionNanoTime = NanosecondTime.getRuntime();
         }
 
         public String getLine() {
@@ -308,7 +323,14 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
          * @return The real-time in seconds (since application start) when this Line was sent or received.
          */
         public double getTransmissionTime() {
-            return transmissionTime;
+            return transmissionNanoTime*1e-9;
+        }
+
+        /**
+         * @return The real-time in nanoseconds (since application start) when this Line was sent or received.
+         */
+        public long getTransmissionNanoTime() {
+            return transmissionNanoTime;
         }
 
         @Override
@@ -342,6 +364,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                 }
             }
         }
+        invalidateCommands();
     }
 
     @Override
@@ -353,6 +376,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
 
     public void createDefaultCommands() {
         commands = new ArrayList<>();
+        invalidateCommands();
         commands.add(new Command(null, CommandType.COMMAND_CONFIRM_REGEX, "^ok.*"));
         commands.add(new Command(null, CommandType.CONNECT_COMMAND, "G21 ; Set millimeters mode\nG90 ; Set absolute positioning mode\nM82 ; Set absolute mode for extruder"));
         commands.add(new Command(null, CommandType.HOME_COMMAND, "G28 ; Home all axes"));
@@ -385,7 +409,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         setEnabled(false);
 
         // Send startup Gcode
-        sendGcode(getCommand(null, CommandType.CONNECT_COMMAND));
+        sendGcode(getCommand(null, CommandType.CONNECT_COMMAND), CommandType.CONNECT_COMMAND);
 
         connected = true;
     }
@@ -396,9 +420,17 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
      * @throws Exception
      */
     protected void connectThreads() throws Exception {
-        readerThread = new ReaderThread();
-        readerThread.setDaemon(true);
-        readerThread.start();
+        SelectableChannel channel = (sharedIoReactor ? getCommunications().getSelectableChannel() : null);
+        if (channel != null) {
+            readerThread = null;
+            readerRegistration = DriverIoReactor.get().register(channel, new ReaderHandler());
+        }
+        else {
+            readerRegistration = null;
+            readerThread = new ReaderThread();
+            readerThread.setDaemon(true);
+            readerThread.start();
+        }
         errorResponse = null;
         receivedConfirmationsQueue = new LinkedBlockingQueue<>();
         reportedLocationsQueue = new LinkedBlockingQueue<>();
@@ -413,11 +445,11 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
             if (enabled) {
                 // Assume a freshly re-enabled machine has no pending moves anymore.
                 motionPending = false;
-                sendGcode(getCommand(null, CommandType.ENABLE_COMMAND));
+                sendGcode(getCommand(null, CommandType.ENABLE_COMMAND), CommandType.ENABLE_COMMAND);
             }
             else {
                 try {
-                    sendGcode(getCommand(null, CommandType.DISABLE_COMMAND));
+                    sendGcode(getCommand(null, CommandType.DISABLE_COMMAND), CommandType.DISABLE_COMMAND);
                     drainCommandQueue(getTimeoutAtMachineSpeed());
                 }
                 catch (Exception e) {
@@ -511,7 +543,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         }
 
         long timeout = -1;
-        sendGcode(command, timeout);
+        sendGcode(command, timeout, CommandType.HOME_COMMAND);
 
         // Check home complete response against user's regex
         String homeCompleteRegex = getCommand(null, CommandType.HOME_COMPLETE_REGEX);
@@ -587,7 +619,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
             if (!isEmpty) {
                 // If no axes are included, the G92 command must not be executed, because it would otherwise reset all
                 // axes to zero in some controllers! 
-                sendGcode(command, -1);
+                sendGcode(command, -1, CommandType.SET_GLOBAL_OFFSETS_COMMAND);
             }
         }
         else {
@@ -604,7 +636,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                 postVisionHomeCommand = substituteVariable(postVisionHomeCommand, "Y", 
                         axesLocation.getCoordinate(axisY, getUnits()));
                 // Execute the command
-                sendGcode(postVisionHomeCommand, -1);
+                sendGcode(postVisionHomeCommand, -1, CommandType.POST_VISION_HOME_COMMAND);
                 // Store the new current coordinate on the axis.
                 axisX.setDriverCoordinate(axesLocation.getCoordinate(axisX, getUnits()));
                 axisY.setDriverCoordinate(axesLocation.getCoordinate(axisY, getUnits()));
@@ -625,7 +657,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
 
         // TODO: true queued reporting. For now it is sufficient to poll one for one.
         reportedLocationsQueue.clear();
-        sendGcode(command, -1);
+        sendGcode(command, -1, CommandType.GET_POSITION_COMMAND);
         if (timeout == -1) {
             timeout = infinityTimeoutMilliseconds;
         }
@@ -706,6 +738,51 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                 c.setCommand(text);
             }
         }
+        invalidateCommands();
+    }
+
+    /**
+     * Discard anything precompiled from the commands. Must be called whenever the commands are changed.
+     */
+    public void invalidateCommands() {
+        responseClassifier = null;
+        commandTemplates.clear();
+    }
+
+    /**
+     * Get the precompiled template of the command for the HeadMountable. The templates are cached
+     * per HeadMountable and command type.
+     *
+     * @param hm
+     * @param type
+     * @return The template, or null if the command is not set.
+     */
+    public GcodeTemplate getCommandTemplate(HeadMountable hm, CommandType type) {
+        Object key = (hm == null ? noHeadMountable : hm);
+        GcodeTemplate[] templates = commandTemplates.get(key);
+        if (templates == null) {
+            templates = new GcodeTemplate[CommandType.values().length];
+            commandTemplates.put(key, templates);
+        }
+        GcodeTemplate template = templates[type.ordinal()];
+        if (template == null) {
+            String command = getCommand(hm, type);
+            template = (command == null ? missingCommand : new GcodeTemplate(command));
+            templates[type.ordinal()] = template;
+        }
+        return template == missingCommand ? null : template;
+    }
+
+    /**
+     * @return The classifier for received responses, compiled from the current commands.
+     */
+    public GcodeResponseClassifier getResponseClassifier() {
+        GcodeResponseClassifier classifier = responseClassifier;
+        if (classifier == null) {
+            classifier = new GcodeResponseClassifier(this);
+            responseClassifier = classifier;
+        }
+        return classifier;
     }
 
     @Override
@@ -725,8 +802,8 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
             movedAxesLocation.getLengthCoordinate(axis).convertToUnits(getUnits()).getValue() - axis.getDriverCoordinate()).third;
 
         // Start composing the command, will decide later, whether we actually send it.
-        String command = getCommand(hm, CommandType.MOVE_TO_COMMAND);
-        if (command == null) {
+        GcodeTemplate template = getCommandTemplate(hm, CommandType.MOVE_TO_COMMAND);
+        if (template == null) {
             if (movedAxesLocation.isEmpty()) {
                 return;
             }
@@ -738,7 +815,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                 throw new Exception(getName()+" MOVE_TO_COMMAND missing, please use Issues & Solutions to propose proper G-code commands.");
             }
         }
-        if (hasVariable(command, "BacklashFeedRate")) {
+        if (template.hasVariable("BacklashFeedRate")) {
             throw new Exception(getName()+" configuration upgrade needed: Please remove the extra backlash compensation move from your MOVE_TO_COMMAND. "
                     +"Backlash compensation is now done outside of the drivers and configured on the axes.");
         }
@@ -762,11 +839,12 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
             jerk = Math.max(jerk*driverUnitsFactor, jMin);
         }
 
-        command = substituteVariable(command, "Id", hm.getId());
-        command = substituteVariable(command, "Name", hm.getName());
-        command = substituteVariable(command, "FeedRate", feedRate);
-        command = substituteVariable(command, "Acceleration", acceleration);
-        command = substituteVariable(command, "Jerk", jerk);
+        GcodeTemplate.Substitution command = template.substitution();
+        command.set("Id", hm.getId());
+        command.set("Name", hm.getName());
+        command.set("FeedRate", feedRate);
+        command.set("Acceleration", acceleration);
+        command.set("Jerk", jerk);
 
         ReferenceMachine machine = (ReferenceMachine) hm.getHead().getMachine();
         // Get a map of the axes of ...
@@ -793,7 +871,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                 // position change after all. 
                 // Note, there is no need for separate backlash compensation variables, as these are always 
                 // substituted alongside. 
-                if (hasVariable(command, variable+"F")) {
+                if (command.hasVariable(variable+"F")) {
                     // Force it! Must get it from the mappedAxes. If the mappedAxes do not have it, it is 
                     // still suppressed (this never happens when using letter variables). 
                     axis = mappedAxes.getAxisByVariable(this, variable);
@@ -814,47 +892,47 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                 double previousCoordinate = axis.getDriverCoordinate(); 
                 int direction = ((Double)coordinate).compareTo(previousCoordinate);
                 // Substitute the axis variables.
-                command = substituteVariable(command, variable, coordinate);
-                command = substituteVariable(command, variable+"F", coordinate);
-                command = substituteVariable(command, variable+"L", axis.getLetter());
-                if (hasVariable(command, "BacklashOffset"+variable)) {
+                command.set(variable, coordinate);
+                command.set(variable+"F", coordinate);
+                command.set(variable+"L", axis.getLetter());
+                if (command.hasVariable("BacklashOffset"+variable)) {
                     throw new Exception(getName()+" configuration upgrade needed: Please remove the extra backlash compensation move from your MOVE_TO_COMMAND. "
                             +"Backlash compensation is now done outside of the drivers.");
                 }
-                command = substituteVariable(command, variable+"Decreasing", direction < 0 ? true : null);
-                command = substituteVariable(command, variable+"Increasing", direction > 0 ? true : null);
+                command.set(variable+"Decreasing", direction < 0 ? true : null);
+                command.set(variable+"Increasing", direction > 0 ? true : null);
                 if (isSupportingPreMove() && axis instanceof ReferenceControllerAxis) {
                     // Check for a pre-move command.
                     String preMoveCommand = ((ReferenceControllerAxis) axis).getPreMoveCommand();
                     if (preMoveCommand != null && !preMoveCommand.isEmpty()) {
                         preMoveCommand = substituteVariable(preMoveCommand, "Coordinate", previousCoordinate);
-                        sendGcode(preMoveCommand);
+                        sendGcode(preMoveCommand, CommandType.MOVE_TO_COMMAND);
                     }
                 }
                 // Axis specific jerk limits are needed on TinyG.
                 double axisDistance = coordinate - previousCoordinate;
                 double axisJerk = (jerk != null ? jerk : 0)*Math.abs(axisDistance)/driverDistance;
-                command = substituteVariable(command, variable+"Jerk", axisJerk > jMin ? axisJerk : null);
-                command = substituteVariable(command, variable+"JerkMupm3", axisJerk > jMin*4.63 ? axisJerk*1e-6*Math.pow(60, 3) : null); // TinyG: Megaunits/min^3 
+                command.set(variable+"Jerk", axisJerk > jMin ? axisJerk : null);
+                command.set(variable+"JerkMupm3", axisJerk > jMin*4.63 ? axisJerk*1e-6*Math.pow(60, 3) : null); // TinyG: Megaunits/min^3 
                 // Store the new driver coordinate on the axis.
                 axis.setDriverCoordinate(coordinate);
             }
             else {
                 // Delete the unused axis variables.
-                command = substituteVariable(command, variable, null);
-                command = substituteVariable(command, variable+"F", null);
-                command = substituteVariable(command, variable+"L", null); 
-                command = substituteVariable(command, "BacklashOffset"+variable, null);
-                command = substituteVariable(command, variable+"Decreasing", null);
-                command = substituteVariable(command, variable+"Increasing", null);
-                command = substituteVariable(command, variable+"Jerk", null);
-                command = substituteVariable(command, variable+"JerkMupm3", null);  
+                command.set(variable, null);
+                command.set(variable+"F", null);
+                command.set(variable+"L", null); 
+                command.set("BacklashOffset"+variable, null);
+                command.set(variable+"Decreasing", null);
+                command.set(variable+"Increasing", null);
+                command.set(variable+"Jerk", null);
+                command.set(variable+"JerkMupm3", null);  
             }
         }
         if (doesMove) {
             // We do actually send the command.
             motionPending = true;
-            sendGcode(command);
+            sendGcode(command.format(), CommandType.MOVE_TO_COMMAND);
         }
     }
 
@@ -877,7 +955,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         String command = getCommand(hm, CommandType.MOVE_TO_COMPLETE_COMMAND);
         if (command != null) {
             sendGcode(command, completionType == CompletionType.WaitForStillstandIndefinitely ?
-                    -1 : getTimeoutAtMachineSpeed());
+                    -1 : getTimeoutAtMachineSpeed(), CommandType.MOVE_TO_COMPLETE_COMMAND);
         }
 
         if (completionType.isEnforcingStillstand()) {
@@ -918,45 +996,55 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
 
     @Override
     public void actuate(Actuator actuator, boolean on) throws Exception {
-        String command = getCommand(actuator, CommandType.ACTUATE_BOOLEAN_COMMAND);
-        // This substitution must come first, as it may contain nested and escaped {variables}.
-        command = substituteVariable(command, "True", on ? on : null);
-        command = substituteVariable(command, "False", on ? null : on);
-
-        command = substituteVariable(command, "Id", actuator.getId());
-        command = substituteVariable(command, "Name", actuator.getName());
-        if (actuator instanceof ReferenceActuator) {
-            command = substituteVariable(command, "Index", ((ReferenceActuator)actuator).getIndex());
+        GcodeTemplate template = getCommandTemplate(actuator, CommandType.ACTUATE_BOOLEAN_COMMAND);
+        if (template != null) {
+            GcodeTemplate.Substitution command = template.substitution();
+            // This substitution must come first, as it may contain nested and escaped {variables}.
+            command.set("True", on ? on : null);
+            command.set("False", on ? null : on);
+
+            command.set("Id", actuator.getId());
+            command.set("Name", actuator.getName());
+            if (actuator instanceof ReferenceActuator) {
+                command.set("Index", ((ReferenceActuator)actuator).getIndex());
+            }
+            command.set("BooleanValue", on);
+            sendGcode(command.format(), CommandType.ACTUATE_BOOLEAN_COMMAND);
         }
-        command = substituteVariable(command, "BooleanValue", on);
-        sendGcode(command);
         SimulationModeMachine.simulateActuate(actuator, on, true);
     }
 
     @Override
     public void actuate(Actuator actuator, double value) throws Exception {
-        String command = getCommand(actuator, CommandType.ACTUATE_DOUBLE_COMMAND);
-        command = substituteVariable(command, "Id", actuator.getId());
-        command = substituteVariable(command, "Name", actuator.getName());
-        if (actuator instanceof ReferenceActuator) {
-            command = substituteVariable(command, "Index", ((ReferenceActuator)actuator).getIndex());
+        GcodeTemplate template = getCommandTemplate(actuator, CommandType.ACTUATE_DOUBLE_COMMAND);
+        if (template != null) {
+            GcodeTemplate.Substitution command = template.substitution();
+            command.set("Id", actuator.getId());
+            command.set("Name", actuator.getName());
+            if (actuator instanceof ReferenceActuator) {
+                command.set("Index", ((ReferenceActuator)actuator).getIndex());
+            }
+            command.set("DoubleValue", value);
+            command.set("IntegerValue", (int) value);
+            sendGcode(command.format(), CommandType.ACTUATE_DOUBLE_COMMAND);
         }
-        command = substituteVariable(command, "DoubleValue", value);
-        command = substituteVariable(command, "IntegerValue", (int) value);
-        sendGcode(command);
         SimulationModeMachine.simulateActuate(actuator, value, true);
     }
 
     @Override
     public void actuate(Actuator actuator, String value) throws Exception {
-        String command = getCommand(actuator, CommandType.ACTUATE_STRING_COMMAND);
-        command = substituteVariable(command, "Id", actuator.getId());
-        command = substituteVariable(command, "Name", actuator.getName());
+        GcodeTemplate template = getCommandTemplate(actuator, CommandType.ACTUATE_STRING_COMMAND);
+        if (template == null) {
+            return;
+        }
+        GcodeTemplate.Substitution command = template.substitution();
+        command.set("Id", actuator.getId());
+        command.set("Name", actuator.getName());
         if (actuator instanceof ReferenceActuator) {
-            command = substituteVariable(command, "Index", ((ReferenceActuator)actuator).getIndex());
+            command.set("Index", ((ReferenceActuator)actuator).getIndex());
         }
-        command = substituteVariable(command, "StringValue", value);
-        sendGcode(command);
+        command.set("StringValue", value);
+        sendGcode(command.format(), CommandType.ACTUATE_STRING_COMMAND);
     }
 
     @Override
@@ -983,7 +1071,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
 
                 command = substituteVariable(command, "Value", parameter);
             }
-            sendGcode(command);
+            sendGcode(command, CommandType.ACTUATOR_READ_COMMAND);
             List<Line> responses = receiveResponses(regex, timeoutMilliseconds, (r) -> {
                 throw new Exception(String.format("Actuator \"%s\" read error: No matching responses found.", actuator.getName()));
             });
@@ -1040,7 +1128,11 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
      */
     protected void disconnectThreads() {
         try {
-            if (readerThread != null && readerThread.isAlive()) {
+            if (readerRegistration != null) {
+                readerRegistration.cancel();
+                readerRegistration.awaitClosed(3000);
+            }
+            else if (readerThread != null && readerThread.isAlive()) {
                 readerThread.join(3000);
             }
         }
@@ -1058,6 +1150,10 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         sendGcode(gCode, timeoutMilliseconds);
     }
 
+    protected void sendGcode(String gCode, CommandType commandType) throws Exception {
+        sendGcode(gCode, timeoutMilliseconds, commandType);
+    }
+
     protected long getTimeoutAtMachineSpeed() {
         return timeoutMilliseconds == -1 ?
                 timeoutMilliseconds 
@@ -1065,6 +1161,18 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
     }
 
     protected void sendGcode(String gCode, long timeout) throws Exception {
+        sendGcode(gCode, timeout, null);
+    }
+
+    /**
+     * Send the Gcode, one command per line.
+     * 
+     * @param gCode
+     * @param timeout
+     * @param commandType The type of the command for latency statistics, or null if not a configured command. 
+     * @throws Exception
+     */
+    protected void sendGcode(String gCode, long timeout, CommandType commandType) throws Exception {
         if (gCode == null) {
             return;
         }
@@ -1073,7 +1181,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
             if (command.length() == 0) {
                 continue;
             }
-            sendCommand(command, timeout);
+            sendCommand(command, timeout, commandType);
         }
     }
 
@@ -1082,6 +1190,18 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
     }
 
     public void sendCommand(String command, long timeout) throws Exception {
+        sendCommand(command, timeout, null);
+    }
+
+    /**
+     * @param commandType
+     * @return The name under which the latencies of the command type are recorded. 
+     */
+    protected static String getLatencyCommandType(CommandType commandType) {
+        return commandType == null ? "OTHER" : commandType.name();
+    }
+
+    protected void sendCommand(String command, long timeout, CommandType commandType) throws Exception {
         // An error may have popped up in the meantime. Check and bail on it, before sending the next command. 
         bailOnError();
         if (command == null) {
@@ -1098,16 +1218,24 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         // After sending this, we want one more confirmation. 
         // TODO: true queued reporting. For now it is sufficient to poll one for one.
         receivedConfirmationsQueue.clear();
+        long writeTime = NanosecondTime.getRuntime();
+        long writtenTime = writeTime;
         try {
             // Send the command.
             getCommunications().writeLine(command);
+            writtenTime = NanosecondTime.getRuntime();
+            recordLatency(getLatencyCommandType(commandType), LatencyType.Wire, writtenTime - writeTime);
         }
         catch (IOException ex) {
             Logger.error(ex, "{} failed to write command {}", getCommunications().getConnectionName(), command);
             disconnect();
             Configuration.get().getMachine().setEnabled(false);
         }
-        waitForConfirmation(command, timeout);
+        Line confirmation = waitForConfirmation(command, timeout);
+        if (confirmation != null) {
+            recordLatency(getLatencyCommandType(commandType), LatencyType.Confirmation, 
+                    confirmation.getTransmissionNanoTime() - writtenTime);
+        }
         if (command.startsWith("$")) {
             Thread.sleep(dollarWaitTimeMilliseconds);
         }
@@ -1138,11 +1266,21 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
             errorResponse = null;
             throw new Exception(getCommunications().getConnectionName()+" error response from controller: " + error);
         }
-        if (readerThread == null || !readerThread.isAlive()) {
+        if (!isReaderAlive()) {
             throw new Exception(getCommunications().getConnectionName()+" IO Error on reading from the controller.");
         }
     }
 
+    /**
+     * @return True if the reader thread or the reader registration with the shared I/O reactor is alive. 
+     */
+    protected boolean isReaderAlive() {
+        if (readerRegistration != null) {
+            return readerRegistration.isOpen();
+        }
+        return readerThread != null && readerThread.isAlive();
+    }
+
     public List<Line> receiveResponses() throws Exception {
         bailOnError();
         List<Line> responses = new ArrayList<>();
@@ -1358,13 +1496,53 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                         return;
                     }
                 }
-                Line line = new Line(receivedLine);
-                Logger.trace("[{}] << {}", getCommunications().getConnectionName(), line);
-                // Process the response.
-                processResponse(line);
-                // Add to the responseQueue for further processing by the caller.
-                responseQueue.offer(line);
+                receiveLine(receivedLine);
+            }
+            Logger.trace("[{}] disconnectRequested, bye-bye.", getCommunications().getConnectionName());
+            if (connected) {
+                connected = false;
+            }
+        }
+    }
+
+    /**
+     * Reads the responses when the communications are driven by the shared {@link DriverIoReactor}. Same as 
+     * the ReaderThread, but called whenever data is available, and never blocking.
+     */
+    protected class ReaderHandler implements DriverIoReactor.Handler {
+        @Override
+        public boolean readable() {
+            while (!disconnectRequested) {
+                String receivedLine;
+                try {
+                    receivedLine = getCommunications().readLine();
+                    if (receivedLine == null) {
+                        // Line read failed eg. due to socket closure
+                        Logger.error("Failed to read gcode response");
+                        return false;
+                    }
+                    receivedLine = receivedLine.trim();
+                }
+                catch (TimeoutException ex) {
+                    // All the available data is consumed. 
+                    return true;
+                }
+                catch (IOException e) {
+                    if (disconnectRequested) {
+                        Logger.trace("Read error while disconnecting (normal)");
+                    }
+                    else {
+                        Logger.error(e, "Read error");
+                    }
+                    return false;
+                }
+                receiveLine(receivedLine);
             }
+            return false;
+        }
+
+        @Override
+        public void closed() {
             Logger.trace("[{}] disconnectRequested, bye-bye.", getCommunications().getConnectionName());
             if (connected) {
                 connected = false;
@@ -1372,60 +1550,56 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         }
     }
 
+    /**
+     * Handle a line received from the controller.
+     *  
+     * @param receivedLine
+     */
+    protected void receiveLine(String receivedLine) {
+        Line line = new Line(receivedLine);
+        Logger.trace("[{}] << {}", getCommunications().getConnectionName(), line);
+        // Process the response.
+        processResponse(line);
+        // Add to the responseQueue for further processing by the caller.
+        responseQueue.offer(line);
+    }
+
     /**
      * Process a received response immediately. 
      *  
      * @param line
      */
     protected void processResponse(Line line) {
-        String regex = getCommand(null, CommandType.COMMAND_CONFIRM_REGEX);
-        if (regex != null && line.getLine().matches(regex)) {
+        Classification classification = getResponseClassifier()
+                .classify(Configuration.get().getMachine(), line.getLine());
+        if (classification.isConfirmation() 
+                || (classification.isError() && isConfirmingErrorResponses())) {
             receivedConfirmationsQueue.add(line);
         }
-        regex = getCommand(null, CommandType.COMMAND_ERROR_REGEX);
-        if (regex != null && line.getLine().matches(regex)) {
+        if (classification.isError()) {
             errorResponse = line;
         }
-        processPositionReport(line);
+        processPositionReport(line, classification.getPositionReport());
+    }
+
+    /**
+     * @return True if error responses should also count as command confirmations. 
+     */
+    protected boolean isConfirmingErrorResponses() {
+        return false;
     }
 
     protected boolean processPositionReport(Line line) {
-        String regex = getCommand(null, CommandType.POSITION_REPORT_REGEX); 
-        if (regex == null) {
-            return false;
-        }
+        return processPositionReport(line, getResponseClassifier()
+                .classify(Configuration.get().getMachine(), line.getLine()).getPositionReport());
+    }
 
-        if (!line.getLine().matches(regex)) {
+    private boolean processPositionReport(Line line, AxesLocation position) {
+        if (position == null) {
             return false;
         }
 
         Logger.trace("Position report: {}", line);
-        ReferenceMachine machine = ((ReferenceMachine) Configuration.get().getMachine());
-        Matcher matcher =
-                Pattern.compile(regex).matcher(line.getLine());
-        matcher.matches();
-        AxesLocation position = AxesLocation.zero;
-        for (ControllerAxis axis : new AxesLocation(machine).getAxes(this)) {
-            try {
-                String variable = axis.getLetter(); 
-                String s = matcher.group(variable);
-                Double d = Double.valueOf(s);
-                if (axis.getType() == Type.Rotation) {
-                    // Rotation axis is not converted from driver units.
-                    position = position.put(new AxesLocation(axis, new Length(d, AxesLocation.getUnits())));
-                }
-                else {
-                    position = position.put(new AxesLocation(axis, new Length(d, getUnits())));
-                }
-            }
-            catch (IllegalArgumentException e) {
-                // Axis is not present in pattern. That's a warning, but might not be supported by controller, so we let it go. 
-                Logger.warn("Axis {} letter {} missing in POSITION_REPORT_REGEX groups.", axis.getName(), axis.getLetter());
-            }
-            catch (Exception e) {
-                Logger.warn("Error processing position report for axis {}: {}", axis.getName(), e);
-            }
-        }
         // Store the latest momentary position.
         reportedLocationsQueue.add(position);
 
@@ -1581,6 +1755,21 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         firePropertyChange("supportingPreMove", oldValue, supportingPreMove);
     }
 
+    public boolean isSharedIoReactor() {
+        return sharedIoReactor;
+    }
+
+    /**
+     * @param sharedIoReactor If true and the communications support it (TCP, simulated), the responses
+     * are read by one reactor thread shared by all the drivers, instead of a reader thread per driver.
+     * Takes effect on the next connect. 
+     */
+    public void setSharedIoReactor(boolean sharedIoReactor) {
+        Object oldValue = this.sharedIoReactor;
+        this.sharedIoReactor = sharedIoReactor;
+        firePropertyChange("sharedIoReactor", oldValue, sharedIoReactor);
+    }
+
     public boolean isLoggingGcode() {
         return loggingGcode;
     }
@@ -0,0 +1,236 @@
+package org.openpnp.machine.reference.driver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openpnp.machine.reference.driver.GcodeDriver.CommandType;
+import org.openpnp.model.AxesLocation;
+import org.openpnp.model.Length;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.spi.Axis;
+import org.openpnp.spi.Axis.Type;
+import org.openpnp.spi.ControllerAxis;
+import org.openpnp.spi.Machine;
+import org.pmw.tinylog.Logger;
+
+/**
+ * Classifies the response lines received by the {@link GcodeDriver}. The COMMAND_CONFIRM_REGEX,
+ * COMMAND_ERROR_REGEX and POSITION_REPORT_REGEX are compiled once, when the classifier is created.
+ * The GcodeDriver discards the classifier whenever one of its commands is changed.
+ *
+ * The mapping of the driver's axes to the named groups of the POSITION_REPORT_REGEX is also
+ * precomputed. It is checked against the driver's lettered axes on each position report and rebuilt if 
+ * stale.
+ */
+public class GcodeResponseClassifier {
+    private final GcodeDriver driver;
+    private final Pattern confirmPattern;
+    private final Pattern errorPattern;
+    private final Pattern positionReportPattern;
+    private final String positionReportRegex;
+
+    private static class AxisGroup {
+        final ControllerAxis axis;
+        final String letter;
+        final LengthUnit units;
+
+        AxisGroup(ControllerAxis axis, LengthUnit units) {
+            this.axis = axis;
+            this.letter = axis.getLetter();
+            this.units = units;
+        }
+    }
+
+    /**
+     * The axis groups, together with the driver's lettered axes, their letters and types they were created
+     * from, published as one immutable object.
+     */
+    private static class AxisMapping {
+        final AxisGroup[] groups;
+        final ControllerAxis[] axes;
+        final String[] letters;
+        final Type[] types;
+        final LengthUnit units;
+
+        AxisMapping(AxisGroup[] groups, List<ControllerAxis> axes, LengthUnit units) {
+            this.groups = groups;
+            this.axes = axes.toArray(new ControllerAxis[axes.size()]);
+            this.letters = new String[this.axes.length];
+            this.types = new Type[this.axes.length];
+            for (int i = 0; i < this.axes.length; i++) {
+                letters[i] = this.axes[i].getLetter();
+                types[i] = this.axes[i].getType();
+            }
+            this.units = units;
+        }
+    }
+
+    private volatile AxisMapping axisMapping;
+
+    public static class Classification {
+        private final boolean confirmation;
+        private final boolean error;
+        private final AxesLocation positionReport;
+
+        Classification(boolean confirmation, boolean error, AxesLocation positionReport) {
+            this.confirmation = confirmation;
+            this.error = error;
+            this.positionReport = positionReport;
+        }
+
+        /**
+         * @return True if the line matches the COMMAND_CONFIRM_REGEX.
+         */
+        public boolean isConfirmation() {
+            return confirmation;
+        }
+
+        /**
+         * @return True if the line matches the COMMAND_ERROR_REGEX.
+         */
+        public boolean isError() {
+            return error;
+        }
+
+        /**
+         * @return The reported axes location, if the line matches the POSITION_REPORT_REGEX, null otherwise.
+         */
+        public AxesLocation getPositionReport() {
+            return positionReport;
+        }
+    }
+
+    static final Classification none = new Classification(false, false, null);
+
+    public GcodeResponseClassifier(GcodeDriver driver) {
+        this.driver = driver;
+        confirmPattern = compile(CommandType.COMMAND_CONFIRM_REGEX);
+        errorPattern = compile(CommandType.COMMAND_ERROR_REGEX);
+        positionReportRegex = driver.getCommand(null, CommandType.POSITION_REPORT_REGEX);
+        positionReportPattern = compile(CommandType.POSITION_REPORT_REGEX);
+    }
+
+    private Pattern compile(CommandType type) {
+        String regex = driver.getCommand(null, type);
+        if (regex == null) {
+            return null;
+        }
+        try {
+            return Pattern.compile(regex);
+        }
+        catch (Exception e) {
+            Logger.error(e, "{} invalid {}: {}", driver.getName(), type, regex);
+            return null;
+        }
+    }
+
+    public boolean hasPositionReportRegex() {
+        return positionReportPattern != null;
+    }
+
+    /**
+     * Classify the received line in one pass over the precompiled patterns.
+     *
+     * @param machine
+     * @param line
+     * @return
+     */
+    public Classification classify(Machine machine, String line) {
+        boolean confirmation = confirmPattern != null && confirmPattern.matcher(line).matches();
+        boolean error = errorPattern != null && errorPattern.matcher(line).matches();
+        AxesLocation position = null;
+        if (positionReportPattern != null) {
+            Matcher matcher = positionReportPattern.matcher(line);
+            if (matcher.matches()) {
+                position = getPositionReport(machine, matcher);
+            }
+        }
+        if (!(confirmation || error || position != null)) {
+            return none;
+        }
+        return new Classification(confirmation, error, position);
+    }
+
+    private AxesLocation getPositionReport(Machine machine, Matcher matcher) {
+        AxisGroup[] groups = getAxisGroups(machine);
+        List<ControllerAxis> axes = new ArrayList<>(groups.length);
+        Length[] coordinates = new Length[groups.length];
+        for (AxisGroup group : groups) {
+            try {
+                String s = matcher.group(group.letter);
+                if (s != null) {
+                    coordinates[axes.size()] = new Length(Double.valueOf(s), group.units);
+                    axes.add(group.axis);
+                }
+            }
+            catch (Exception e) {
+                Logger.warn("Error processing position report for axis {}: {}", group.axis.getName(), e);
+            }
+        }
+        return new AxesLocation(axes, (axis) -> coordinates[axes.indexOf(axis)]);
+    }
+
+    private AxisGroup[] getAxisGroups(Machine machine) {
+        AxisMapping mapping = axisMapping;
+        List<ControllerAxis> axes = getLetteredAxes(machine);
+        if (mapping == null || isStale(mapping, axes)) {
+            mapping = createAxisMapping(axes);
+            axisMapping = mapping;
+        }
+        return mapping.groups;
+    }
+
+    /**
+     * @param machine
+     * @return The axes of the driver that have a letter.
+     */
+    private List<ControllerAxis> getLetteredAxes(Machine machine) {
+        List<ControllerAxis> axes = new ArrayList<>();
+        for (Axis axis : machine.getAxes()) {
+            if (axis instanceof ControllerAxis && ((ControllerAxis) axis).getDriver() == driver) {
+                String letter = ((ControllerAxis) axis).getLetter();
+                if (letter != null && !letter.isEmpty()) {
+                    axes.add((ControllerAxis) axis);
+                }
+            }
+        }
+        return axes;
+    }
+
+    /**
+     * The mapping is stale if axes were assigned to or removed from the driver, or if their letters, types or
+     * the driver units changed.
+     */
+    private boolean isStale(AxisMapping mapping, List<ControllerAxis> axes) {
+        if (axes.size() != mapping.axes.length || driver.getUnits() != mapping.units) {
+            return true;
+        }
+        for (int i = 0; i < mapping.axes.length; i++) {
+            ControllerAxis axis = axes.get(i);
+            if (axis != mapping.axes[i] 
+                    || !axis.getLetter().equals(mapping.letters[i])
+                    || axis.getType() != mapping.types[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private AxisMapping createAxisMapping(List<ControllerAxis> axes) {
+        List<AxisGroup> groups = new ArrayList<>();
+        for (ControllerAxis axis : axes) {
+            String letter = axis.getLetter();
+            if (!positionReportRegex.contains("(?<"+letter+">")) {
+                // Axis is not present in pattern. That's a warning, but might not be supported by controller, so we let it go.
+                Logger.warn("Axis {} letter {} missing in POSITION_REPORT_REGEX groups.", axis.getName(), letter);
+                continue;
+            }
+            // Rotation axis is not converted from driver units.
+            groups.add(new AxisGroup(axis,
+                    axis.getType() == Type.Rotation ? AxesLocation.getUnits() : driver.getUnits()));
+        }
+        return new AxisMapping(groups.toArray(new AxisGroup[groups.size()]), axes, driver.getUnits());
+    }
+}
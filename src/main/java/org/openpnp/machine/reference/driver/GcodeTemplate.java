@@ -0,0 +1,335 @@
+package org.openpnp.machine.reference.driver;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Formattable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+import org.openpnp.util.TextUtils;
+
+/**
+ * A Gcode command template, precompiled into its literal text and {Name:Format} variable slots.
+ * A {@link Substitution} obtained from the template collects the variable values and then formats the
+ * command in one pass with a single StringBuilder, without any regex work. The result is the same
+ * as applying {@link TextUtils#substituteVar(String, String, Object)} for each variable in turn:
+ *
+ * <ul>
+ * <li>Variables that are never set are left in the text as they are.</li>
+ * <li>Variables set to null are removed, including any text in their format, i.e. they act
+ * as conditional sections.</li>
+ * <li>Variables set more than once take the first value.</li>
+ * </ul>
+ *
+ * Templates with nested variables, i.e. using the <(( and ))> escapes in a format, depend on the
+ * order of the substitutions. These are not compiled, their Substitution falls back to the
+ * sequential substituteVar().
+ */
+public class GcodeTemplate {
+    private final String template;
+    private final boolean compiled;
+    private final String[] literals;
+    private final int[] slots;
+    private final String[] names;
+    private final ValueFormat[] formats;
+    private final String[] texts;
+    private final HashMap<String, Integer> slotsByName = new HashMap<>();
+
+    /**
+     * Precompiled format of one variable occurrence.
+     */
+    private static class ValueFormat {
+        static final int GENERIC = 0;
+        static final int LITERAL = 1;
+        static final int STRING = 2;
+        static final int FIXED = 3;
+        static final int INTEGER = 4;
+
+        final String format;
+        final int kind;
+        final String prefix;
+        final String suffix;
+        final int precision;
+
+        ValueFormat(String format) {
+            this.format = format;
+            int kind = GENERIC;
+            String prefix = null;
+            String suffix = null;
+            int precision = 0;
+            int percent = format.indexOf('%');
+            if (percent < 0) {
+                kind = LITERAL;
+            }
+            else if (format.indexOf('%', percent + 1) < 0) {
+                // Exactly one conversion, see if it is one of the simple ones.
+                int end = percent + 1;
+                if (end < format.length() && format.charAt(end) == '.') {
+                    end++;
+                    int digits = end;
+                    while (end < format.length() && Character.isDigit(format.charAt(end))) {
+                        end++;
+                    }
+                    if (end > digits && end - digits <= 2
+                            && end < format.length() && format.charAt(end) == 'f') {
+                        kind = FIXED;
+                        precision = Integer.parseInt(format.substring(digits, end));
+                    }
+                }
+                else if (end < format.length()) {
+                    char conversion = format.charAt(end);
+                    if (conversion == 'f') {
+                        kind = FIXED;
+                        precision = 6;
+                    }
+                    else if (conversion == 's') {
+                        kind = STRING;
+                    }
+                    else if (conversion == 'd') {
+                        kind = INTEGER;
+                    }
+                }
+                if (kind != GENERIC) {
+                    prefix = format.substring(0, percent);
+                    suffix = format.substring(end + 1);
+                }
+            }
+            this.kind = kind;
+            this.prefix = prefix;
+            this.suffix = suffix;
+            this.precision = precision;
+        }
+
+        void append(StringBuilder sb, Object value) {
+            switch (kind) {
+                case LITERAL:
+                    appendUnescaped(sb, format);
+                    return;
+                case STRING:
+                    if (!(value instanceof Formattable)) {
+                        appendAffixed(sb, String.valueOf(value));
+                        return;
+                    }
+                    break;
+                case FIXED:
+                    if (value instanceof Double
+                            && !((Double) value).isNaN() && !((Double) value).isInfinite()) {
+                        appendAffixed(sb, formatFixed((Double) value, precision));
+                        return;
+                    }
+                    break;
+                case INTEGER:
+                    if (value instanceof Integer || value instanceof Long) {
+                        appendAffixed(sb, value.toString());
+                        return;
+                    }
+                    break;
+            }
+            appendUnescaped(sb, String.format((Locale) null, format, value));
+        }
+
+        private void appendAffixed(StringBuilder sb, String value) {
+            appendUnescaped(sb, prefix);
+            appendUnescaped(sb, value);
+            appendUnescaped(sb, suffix);
+        }
+    }
+
+    /**
+     * Same as String.format((Locale) null, "%.<precision>f", value), i.e. the shortest decimal representation
+     * of the value, rounded half-up.
+     *
+     * @param value
+     * @param precision
+     * @return
+     */
+    static String formatFixed(double value, int precision) {
+        boolean negative = Double.compare(value, 0.0) < 0;
+        String digits = new BigDecimal(Double.toString(Math.abs(value)))
+                .setScale(precision, RoundingMode.HALF_UP)
+                .toPlainString();
+        return negative ? "-"+digits : digits;
+    }
+
+    private static void appendUnescaped(StringBuilder sb, String text) {
+        if (text.indexOf("<((") < 0 && text.indexOf("))>") < 0) {
+            sb.append(text);
+        }
+        else {
+            // Unescape nested curly brackets.
+            sb.append(text.replace("<((", "{").replace("))>", "}"));
+        }
+    }
+
+    public GcodeTemplate(String template) {
+        this.template = template;
+        List<String> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        List<ValueFormat> formats = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        int literalStart = 0;
+        int i = 0;
+        int length = template.length();
+        while (i < length) {
+            if (template.charAt(i) != '{') {
+                i++;
+                continue;
+            }
+            // Parse the same as the "\\{(\\w+)(?::(.+?))?\\}" regex used in substituteVar().
+            int nameStart = i + 1;
+            int nameEnd = nameStart;
+            while (nameEnd < length && isWordCharacter(template.charAt(nameEnd))) {
+                nameEnd++;
+            }
+            int end = -1;
+            String format = null;
+            if (nameEnd > nameStart && nameEnd < length) {
+                if (template.charAt(nameEnd) == '}') {
+                    end = nameEnd + 1;
+                }
+                else if (template.charAt(nameEnd) == ':') {
+                    // Reluctant match of at least one character up to the closing bracket, on the same line.
+                    for (int j = nameEnd + 2; j < length && !isLineTerminator(template.charAt(j - 1)); j++) {
+                        if (template.charAt(j) == '}') {
+                            end = j + 1;
+                            format = template.substring(nameEnd + 1, j);
+                            break;
+                        }
+                    }
+                }
+            }
+            if (end < 0) {
+                i++;
+                continue;
+            }
+            String name = template.substring(nameStart, nameEnd);
+            Integer slot = slotsByName.get(name);
+            if (slot == null) {
+                slot = names.size();
+                slotsByName.put(name, slot);
+                names.add(name);
+            }
+            literals.add(template.substring(literalStart, i));
+            slots.add(slot);
+            formats.add(new ValueFormat(format == null ? "%s" : format));
+            texts.add(template.substring(i, end));
+            literalStart = end;
+            i = end;
+        }
+        literals.add(template.substring(literalStart));
+        this.compiled = !(template.contains("<((") || template.contains("))>"));
+        this.literals = literals.toArray(new String[literals.size()]);
+        this.slots = new int[slots.size()];
+        for (int k = 0; k < this.slots.length; k++) {
+            this.slots[k] = slots.get(k);
+        }
+        this.formats = formats.toArray(new ValueFormat[formats.size()]);
+        this.texts = texts.toArray(new String[texts.size()]);
+        this.names = names.toArray(new String[names.size()]);
+    }
+
+    private static boolean isWordCharacter(char ch) {
+        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9') || ch == '_';
+    }
+
+    private static boolean isLineTerminator(char ch) {
+        return ch == '\n' || ch == '\r' || ch == '\u0085' || ch == 0x2028 || ch == 0x2029;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * @return False if the template has nested variables and is therefore substituted sequentially.
+     */
+    public boolean isCompiled() {
+        return compiled;
+    }
+
+    /**
+     * @param name
+     * @return True if the template contains the variable.
+     */
+    public boolean hasVariable(String name) {
+        return slotsByName.containsKey(name);
+    }
+
+    /**
+     * @return A new Substitution to collect the variable values for one command.
+     */
+    public Substitution substitution() {
+        return new Substitution();
+    }
+
+    public class Substitution {
+        private final Object[] values = new Object[names.length];
+        private final boolean[] assigned = new boolean[names.length];
+        private final List<Object[]> sequence = compiled ? null : new ArrayList<>();
+
+        /**
+         * Set the value of a variable. A null value removes the variable from the command.
+         *
+         * @param name
+         * @param value
+         * @return this, for chaining.
+         */
+        public Substitution set(String name, Object value) {
+            if (!compiled) {
+                sequence.add(new Object[] { name, value });
+                return this;
+            }
+            Integer slot = slotsByName.get(name);
+            if (slot != null && !assigned[slot]) {
+                values[slot] = value;
+                assigned[slot] = true;
+            }
+            return this;
+        }
+
+        /**
+         * @param name
+         * @return True if the command contains the variable.
+         */
+        public boolean hasVariable(String name) {
+            if (!compiled) {
+                return GcodeDriver.hasVariable(format(), name);
+            }
+            return GcodeTemplate.this.hasVariable(name);
+        }
+
+        /**
+         * @return The command with the variables substituted.
+         */
+        public String format() {
+            if (!compiled) {
+                String command = template;
+                for (Object [] substitution : sequence) {
+                    command = TextUtils.substituteVar(command, (String) substitution[0], substitution[1]);
+                }
+                return command;
+            }
+            StringBuilder sb = new StringBuilder(template.length() + 16*slots.length);
+            for (int k = 0; k < slots.length; k++) {
+                sb.append(literals[k]);
+                int slot = slots[k];
+                if (!assigned[slot]) {
+                    sb.append(texts[k]);
+                }
+                else if (values[slot] != null) {
+                    formats[k].append(sb, values[slot]);
+                }
+            }
+            sb.append(literals[slots.length]);
+            return sb.toString();
+        }
+
+        @Override
+        public String toString() {
+            return format();
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package org.openpnp.machine.reference.driver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openpnp.model.MotionProfile;
+
+/**
+ * Lookahead planning of the junction velocities between subsequent coordinated moves, as known from the
+ * planners in motion controller firmwares. Instead of coming to still-stand at each corner, the path velocity
+ * is allowed to pass through the junction with a velocity that is limited by the Junction Deviation and the
+ * acceleration limit, i.e. the largest velocity at which a virtual arc rounding the corner with the Junction
+ * Deviation distance to the corner can be passed.
+ *
+ * A backward pass makes sure the last move can always come to still-stand, and a forward pass limits the
+ * velocities to what can be reached by accelerating. Both passes respect jerk control where the profiles have
+ * it.
+ *
+ * Planning is incremental. Appending a move can only raise the velocities, so the passes stop at the
+ * last move whose entry velocity is already optimal. The entry velocity of the first move is never changed,
+ * i.e. once the moves before it are executed, it is locked.
+ *
+ * All velocities are path velocities along the Euclidean unit vector of the moves' axes profiles.
+ */
+public class JunctionLookahead {
+    protected static class Block {
+        final MotionProfile [] profiles;
+        final boolean junctionCapable;
+        final double junctionDeviation;
+        final double [] unitVector;
+        final double length;
+        final double vMax;
+        final double aMax;
+        final double jMax;
+        double maxEntry;
+        double entry;
+
+        Block(MotionProfile [] profiles, boolean junctionCapable, double junctionDeviation) {
+            this.profiles = profiles;
+            double length = 0;
+            for (MotionProfile profile : profiles) {
+                double d = profile.getLocation(MotionProfile.segments) - profile.getLocation(0);
+                length += d*d;
+            }
+            this.length = Math.sqrt(length);
+            this.unitVector = MotionProfile.getUnitVector(profiles);
+            int lead = MotionProfile.getLeadAxisIndex(unitVector);
+            double fraction = (profiles.length > 0 ? Math.abs(unitVector[lead]) : 0);
+            this.junctionCapable = junctionCapable && fraction > 0 && junctionDeviation > 0;
+            this.junctionDeviation = junctionDeviation;
+            if (this.junctionCapable) {
+                MotionProfile leadProfile = profiles[lead];
+                vMax = leadProfile.getVelocityMax()/fraction;
+                aMax = Math.min(leadProfile.getEntryAccelerationMax(), leadProfile.getExitAccelerationMax())/fraction;
+                jMax = leadProfile.isConstantAcceleration() ? 0 : leadProfile.getJerkMax()/fraction;
+            }
+            else {
+                vMax = 0;
+                aMax = 0;
+                jMax = 0;
+            }
+        }
+
+        /**
+         * @param v0
+         * @return The maximum velocity that can be reached from v0 (or decelerated from to v0) along the move.
+         */
+        double reachableVelocity(double v0) {
+            double vLimit = Math.sqrt(v0*v0 + 2*aMax*length);
+            if (jMax == 0 || !Double.isFinite(jMax)) {
+                return vLimit;
+            }
+            // Jerk controlled: the velocity change takes longer, bisect the velocity that still fits the length.
+            double vLow = v0;
+            double vHigh = vLimit;
+            for (int i = 0; i < 48 && vHigh - vLow > 1e-9*vHigh; i++) {
+                double v = (vLow + vHigh)*0.5;
+                if (transitionDistance(v0, v) <= length) {
+                    vLow = v;
+                }
+                else {
+                    vHigh = v;
+                }
+            }
+            return vLow;
+        }
+
+        /**
+         * @return The distance needed to change from v0 to v1 with zero acceleration at both ends. The jerk controlled
+         * acceleration profile is symmetric, so the average velocity is the mean of v0 and v1.
+         */
+        double transitionDistance(double v0, double v1) {
+            double dv = Math.abs(v1 - v0);
+            double time;
+            if (dv >= aMax*aMax/jMax) {
+                time = dv/aMax + aMax/jMax;
+            }
+            else {
+                time = 2*Math.sqrt(dv/jMax);
+            }
+            return (v0 + v1)*0.5*time;
+        }
+    }
+
+    private final List<Block> blocks = new ArrayList<>();
+    /**
+     * Index of the last block whose entry velocity is optimal and can not change by appending further moves.
+     */
+    private int planned = 0;
+
+    /**
+     * Append a move and incrementally re-plan the junction velocities.
+     *
+     * @param profiles The axes profiles of the move.
+     * @param junctionCapable True if the move is coordinated and may be entered/exited with non-zero velocity.
+     * @param junctionDeviation The Junction Deviation allowed by the drivers of the move, in the units of the
+     * profiles.
+     */
+    public void append(MotionProfile [] profiles, boolean junctionCapable, double junctionDeviation) {
+        Block block = new Block(profiles, junctionCapable, junctionDeviation);
+        if (!blocks.isEmpty()) {
+            Block prev = blocks.get(blocks.size() - 1);
+            block.maxEntry = getJunctionVelocityLimit(prev, block);
+        }
+        blocks.add(block);
+        recalculate();
+    }
+
+    /**
+     * Computes the maximum velocity through the junction of two moves, according to the Junction Deviation.
+     *
+     * @param prev
+     * @param next
+     * @return
+     */
+    protected static double getJunctionVelocityLimit(Block prev, Block next) {
+        if (!(prev.junctionCapable && next.junctionCapable)
+                || prev.unitVector.length != next.unitVector.length) {
+            return 0;
+        }
+        double vMax = Math.min(prev.vMax, next.vMax);
+        // Cosine of the angle between the reversed entry and the exit direction.
+        double cosTheta = -MotionProfile.dotProduct(prev.unitVector, next.unitVector);
+        if (cosTheta > 0.999999) {
+            // Reversal.
+            return 0;
+        }
+        if (cosTheta < -0.999999) {
+            // Straight.
+            return vMax;
+        }
+        double sinThetaHalf = Math.sqrt(0.5*(1.0 - cosTheta));
+        double acceleration = Math.min(prev.aMax, next.aMax);
+        double junctionDeviation = Math.min(prev.junctionDeviation, next.junctionDeviation);
+        double vJunction = Math.sqrt(acceleration*junctionDeviation*sinThetaHalf/(1.0 - sinThetaHalf));
+        return Math.min(vJunction, vMax);
+    }
+
+    private void recalculate() {
+        int last = blocks.size() - 1;
+        // Backward pass, the last move must be able to stop.
+        double exit = 0;
+        for (int i = last; i > planned; i--) {
+            Block block = blocks.get(i);
+            if (i == last || block.entry != block.maxEntry) {
+                block.entry = Math.min(block.maxEntry, block.reachableVelocity(exit));
+            }
+            exit = block.entry;
+        }
+        // Forward pass, limit to what can be reached by acceleration.
+        for (int i = planned; i < last; i++) {
+            Block block = blocks.get(i);
+            Block next = blocks.get(i + 1);
+            if (block.entry < next.entry) {
+                double reachable = block.reachableVelocity(block.entry);
+                if (reachable < next.entry) {
+                    next.entry = reachable;
+                    // Acceleration limited, this can not be improved anymore.
+                    planned = i + 1;
+                }
+            }
+            if (next.entry == next.maxEntry) {
+                // Junction limited, this can not be improved anymore.
+                planned = i + 1;
+            }
+        }
+    }
+
+    public int size() {
+        return blocks.size();
+    }
+
+    public MotionProfile [] getProfiles(int i) {
+        return blocks.get(i).profiles;
+    }
+
+    /**
+     * @param i
+     * @return The planned path velocity entering move i.
+     */
+    public double getEntryVelocity(int i) {
+        return blocks.get(i).entry;
+    }
+
+    /**
+     * @param i
+     * @return The planned path velocity exiting move i, i.e. entering the next move, if any, or zero.
+     */
+    public double getExitVelocity(int i) {
+        return i + 1 < blocks.size() ? blocks.get(i + 1).entry : 0;
+    }
+
+    /**
+     * @param i
+     * @return The unit vector of move i.
+     */
+    public double [] getUnitVector(int i) {
+        return blocks.get(i).unitVector;
+    }
+
+    /**
+     * Remove the first moves, after they have been executed. The entry velocity of the then first move
+     * is locked.
+     *
+     * @param count
+     */
+    public void removeFirst(int count) {
+        count = Math.min(count, blocks.size());
+        blocks.subList(0, count).clear();
+        planned = Math.max(0, planned - count);
+    }
+
+    /**
+     * @return The path velocity the executed moves leave off with, i.e. the locked entry velocity of the first
+     * pending move, or zero if there is none.
+     */
+    public double getPendingVelocity() {
+        return blocks.isEmpty() ? 0 : blocks.get(0).entry;
+    }
+
+    public void clear() {
+        blocks.clear();
+        planned = 0;
+    }
+}
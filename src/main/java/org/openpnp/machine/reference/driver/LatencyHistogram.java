@@ -0,0 +1,120 @@
+package org.openpnp.machine.reference.driver;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of latencies in nanoseconds. Values are counted in log-linear buckets, four per
+ * power of two, i.e. percentiles are resolved to within ~19%. Recording can safely be done from multiple
+ * threads, such as a writer and a reader thread, without blocking. Reading and resetting is not atomic across
+ * buckets, which is acceptable for statistics.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = SUB_BUCKETS*(64 - SUB_BUCKET_BITS + 1);
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record one latency.
+     *
+     * @param nanoseconds Negative values are counted as zero.
+     */
+    public void record(long nanoseconds) {
+        if (nanoseconds < 0) {
+            nanoseconds = 0;
+        }
+        counts.incrementAndGet(getBucket(nanoseconds));
+        count.increment();
+        sum.add(nanoseconds);
+        if (nanoseconds > max.get()) {
+            max.accumulateAndGet(nanoseconds, Math::max);
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return The mean latency in nanoseconds.
+     */
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double)sum.sum()/n;
+    }
+
+    /**
+     * @return The maximum latency in nanoseconds.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @param percentile Between 0 and 100.
+     * @return The latency in nanoseconds, below which the given percentile of the recorded latencies lie,
+     * resolved to the bucket's upper bound.
+     */
+    public long getPercentile(double percentile) {
+        long n = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            n += snapshot[i];
+        }
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long)Math.ceil(percentile/100*n));
+        long accumulated = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            accumulated += snapshot[i];
+            if (accumulated >= rank) {
+                return Math.min(getBucketLowerBound(i + 1) - 1, getMax());
+            }
+        }
+        return getMax();
+    }
+
+    static int getBucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        return SUB_BUCKETS*(exponent - SUB_BUCKET_BITS + 1)
+                + (int)((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+    }
+
+    static long getBucketLowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket/SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        if (exponent >= 63) {
+            return Long.MAX_VALUE;
+        }
+        return ((long)(SUB_BUCKETS + bucket%SUB_BUCKETS)) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d mean=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms max=%.3fms",
+                getCount(), getMean()*1e-6, getPercentile(50)*1e-6, getPercentile(90)*1e-6,
+                getPercentile(99)*1e-6, getMax()*1e-6);
+    }
+}
@@ -0,0 +1,169 @@
+package org.openpnp.machine.reference.driver;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+import org.openpnp.model.Motion;
+
+/**
+ * The real-time history of the planned and executed Motions, indexed by their planned completion time. Used to
+ * get the momentary motion at a certain time for simulation, camera settling prediction and diagnostics.
+ *
+ * The history is a fixed-capacity ring buffer, i.e. once full, the oldest motion is dropped for each new one, so
+ * memory stays bounded over long jobs, even if nobody ever clears it.
+ *
+ * There must only be one writer at a time, i.e. {@link #add(Motion, double)} and {@link #removeOlderThan(double)}
+ * must be called under the planner's lock. Readers are lock-free. They do a binary search over the published
+ * range of the ring and validate afterwards that none of the slots they read has been recycled in the meantime,
+ * otherwise they simply retry.
+ */
+public class MotionHistory {
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    protected static class Entry {
+        final double time;
+        final Motion motion;
+
+        Entry(double time, Motion motion) {
+            this.time = time;
+            this.motion = motion;
+        }
+    }
+
+    private final AtomicReferenceArray<Entry> entries;
+    private final int mask;
+    /**
+     * Sequence number of the oldest retained entry. Always advanced before its slot is recycled.
+     */
+    private volatile long head;
+    /**
+     * Sequence number of the next entry to be added. Advanced after its slot is written.
+     */
+    private volatile long tail;
+
+    public MotionHistory() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity The maximum number of motions retained, rounded up to the next power of two.
+     */
+    public MotionHistory(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        entries = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    public int size() {
+        return (int) (tail - head);
+    }
+
+    public boolean isEmpty() {
+        return tail == head;
+    }
+
+    /**
+     * Add the motion as the newest entry. The time must not be smaller than the time of the last entry.
+     * Only to be called by the single writer.
+     *
+     * @param motion
+     * @param time
+     */
+    public void add(Motion motion, double time) {
+        long tail = this.tail;
+        if (tail - head > mask) {
+            // Full, drop the oldest entry. The head must be advanced before the slot is recycled.
+            head = tail - mask;
+        }
+        entries.set((int) (tail & mask), new Entry(time, motion));
+        this.tail = tail + 1;
+    }
+
+    /**
+     * Remove the entries older than the given time. Only to be called by the single writer.
+     *
+     * @param time
+     */
+    public void removeOlderThan(double time) {
+        long head = this.head;
+        long tail = this.tail;
+        while (head < tail && entries.get((int) (head & mask)).time < time) {
+            head++;
+        }
+        this.head = head;
+    }
+
+    /**
+     * @return The time of the newest entry or Double.NEGATIVE_INFINITY if empty.
+     */
+    public double getLastTime() {
+        while (true) {
+            long head = this.head;
+            long tail = this.tail;
+            if (head == tail) {
+                return Double.NEGATIVE_INFINITY;
+            }
+            double time = entries.get((int) ((tail - 1) & mask)).time;
+            if (this.head == head) {
+                return time;
+            }
+        }
+    }
+
+    /**
+     * Get the motion that is active at the given time, i.e. the first one that completes strictly after it.
+     *
+     * @param time
+     * @return The motion or null if there is none.
+     */
+    public Motion getMotionAfter(double time) {
+        while (true) {
+            long head = this.head;
+            long tail = this.tail;
+            long lo = head;
+            long hi = tail;
+            while (lo < hi) {
+                long mid = (lo + hi) >>> 1;
+                if (entries.get((int) (mid & mask)).time <= time) {
+                    lo = mid + 1;
+                }
+                else {
+                    hi = mid;
+                }
+            }
+            Motion motion = (lo < tail ? entries.get((int) (lo & mask)).motion : null);
+            if (this.head == head) {
+                // None of the slots read were recycled.
+                return motion;
+            }
+        }
+    }
+
+    /**
+     * Search the history backwards for the newest motion that matches the predicate.
+     *
+     * @param predicate
+     * @return The motion or null if none matches.
+     */
+    public Motion findLast(Predicate<Motion> predicate) {
+        while (true) {
+            long head = this.head;
+            long tail = this.tail;
+            Motion found = null;
+            for (long i = tail - 1; i >= head; i--) {
+                Motion motion = entries.get((int) (i & mask)).motion;
+                if (predicate.test(motion)) {
+                    found = motion;
+                    break;
+                }
+            }
+            if (this.head == head) {
+                return found;
+            }
+        }
+    }
+}
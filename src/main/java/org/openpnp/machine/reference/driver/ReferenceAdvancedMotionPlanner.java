@@ -35,6 +35,7 @@ import org.openpnp.machine.reference.driver.wizards.ReferenceAdvancedMotionPlann
 import org.openpnp.machine.reference.driver.wizards.ReferenceAdvancedMotionPlannerDiagnosticsWizard;
 import org.openpnp.model.AbstractMotionPath;
 import org.openpnp.model.AxesLocation;
+import org.openpnp.model.Length;
 import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
 import org.openpnp.model.Motion;
@@ -50,6 +51,7 @@ import org.openpnp.spi.HeadMountable;
 import org.openpnp.util.MovableUtils;
 import org.openpnp.util.NanosecondTime;
 import org.openpnp.util.SimpleGraph;
+import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
 
@@ -67,6 +69,10 @@ public class ReferenceAdvancedMotionPlanner extends AbstractMotionPlanner {
     private boolean diagnosticsEnabled = false;
     @Attribute(required = false)
     private boolean interpolationRetiming = true;
+    @Attribute(required = false)
+    private boolean parallelSolving = false;
+    @Attribute(required = false)
+    private int lookaheadMoves = 0;
 
     @Attribute(required = false)
     protected double minimumSpeed = 0.05;
@@ -74,6 +80,8 @@ public class ReferenceAdvancedMotionPlanner extends AbstractMotionPlanner {
     @Attribute(required = false)
     private boolean showApproximation = true;
 
+    protected JunctionLookahead lookahead = new JunctionLookahead();
+
     @Element(required = false)
     Location startLocation = new Location(LengthUnit.Millimeters);
     @Element(required = false)
@@ -146,6 +154,30 @@ public class ReferenceAdvancedMotionPlanner extends AbstractMotionPlanner {
         this.interpolationRetiming = interpolationRetiming;
     }
 
+    public boolean isParallelSolving() {
+        return parallelSolving;
+    }
+
+    public void setParallelSolving(boolean parallelSolving) {
+        this.parallelSolving = parallelSolving;
+    }
+
+    public int getLookaheadMoves() {
+        return lookaheadMoves;
+    }
+
+    public void setLookaheadMoves(int lookaheadMoves) {
+        this.lookaheadMoves = Math.max(0, lookaheadMoves);
+    }
+
+    /**
+     * @return True if junction velocities are planned with lookahead, i.e. continuous motion is allowed and 
+     * the lookahead window is set.
+     */
+    public boolean isLookaheadActive() {
+        return allowContinuousMotion && lookaheadMoves > 0;
+    }
+
     @Override
     public double getMinimumSpeed() {
         return minimumSpeed;
@@ -334,14 +366,29 @@ public class ReferenceAdvancedMotionPlanner extends AbstractMotionPlanner {
                             CompletionType.CommandJog 
                             : CompletionType.WaitForStillstand);
         }
+        else if (isLookaheadActive() && motionCommands.size() > lookaheadMoves) {
+            // Execute the oldest moves, their junction velocities are now planned with enough lookahead.
+            executeMotionPlan(CompletionType.CommandJog, motionCommands.size() - lookaheadMoves);
+        }
     }
 
     protected class PlannerPath extends AbstractMotionPath {
         private final List<Motion> executionPlan;
+        private final int lookaheadCount;
 
         public PlannerPath(List<Motion> executionPlan) {
+            this(executionPlan, 0);
+        }
+
+        /**
+         * @param executionPlan
+         * @param lookaheadCount The number of moves at the start of the execution plan that have their junction 
+         * velocities planned by the lookahead. 
+         */
+        public PlannerPath(List<Motion> executionPlan, int lookaheadCount) {
             super();
             this.executionPlan = executionPlan;
+            this.lookaheadCount = lookaheadCount;
         }
 
         @Override
@@ -353,6 +400,53 @@ public class ReferenceAdvancedMotionPlanner extends AbstractMotionPlanner {
         public MotionProfile[] get(int i) {
             return executionPlan.get(i).getAxesProfiles();
         }
+
+        @Override
+        protected double getJunctionVelocity(int i) {
+            if (i < lookaheadCount) {
+                return lookahead.getEntryVelocity(i);
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * @param motion
+     * @return True if the motion can pass through junctions with non-zero velocity. 
+     */
+    protected boolean isJunctionCapable(Motion motion) {
+        if (motion.isEmpty()
+                || motion.hasOption(MotionOption.UncoordinatedMotion)
+                || motion.hasOption(MotionOption.JogMotion)
+                || motion.hasOption(MotionOption.Stillstand)) {
+            return false;
+        }
+        for (MotionProfile profile : motion.getAxesProfiles()) {
+            if (!(profile.isEmpty() || profile.isSupportingUncoordinated())) {
+                // Simplified S-Curves must start and end in still-stand.
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param motion
+     * @return The smallest Junction Deviation of the drivers of the moving axes, or 0 if not all drivers
+     * support it.
+     */
+    protected double getJunctionDeviation(Motion motion) {
+        double junctionDeviation = Double.POSITIVE_INFINITY;
+        for (Driver driver : motion.getLocation0().motionSegmentTo(motion.getLocation1())
+                .getAxesDrivers(getMachine())) {
+            Length driverJunctionDeviation = driver.getJunctionDeviation();
+            if (driverJunctionDeviation == null) {
+                return 0;
+            }
+            junctionDeviation = Math.min(junctionDeviation, 
+                    driverJunctionDeviation.convertToUnits(AxesLocation.getUnits()).getValue());
+        }
+        return Double.isFinite(junctionDeviation) ? junctionDeviation : 0;
     }
 
     @Override
@@ -370,14 +464,65 @@ public class ReferenceAdvancedMotionPlanner extends AbstractMotionPlanner {
                         ;
             }
         }
-        return super.addMotion(hm, speed, location0, location1, options);
+        Motion motion = super.addMotion(hm, speed, location0, location1, options);
+        if (isLookaheadActive()) {
+            lookahead.append(motion.getAxesProfiles(), isJunctionCapable(motion), getJunctionDeviation(motion));
+        }
+        return motion;
     }
 
     @Override
     protected void optimizeExecutionPlan(List<Motion> executionPlan,
             CompletionType completionType) throws Exception {
-        PlannerPath path = new PlannerPath(executionPlan);
+        // Count the moves that are planned by the lookahead. These are always a prefix of the execution plan, 
+        // unless the settings were changed in between.
+        int lookaheadCount = 0;
+        while (lookaheadCount < executionPlan.size() 
+                && lookaheadCount < lookahead.size()
+                && lookahead.getProfiles(lookaheadCount) == executionPlan.get(lookaheadCount).getAxesProfiles()) {
+            lookaheadCount++;
+        }
+        if (lookaheadCount < executionPlan.size() && lookaheadCount < lookahead.size()) {
+            // Out of sync, plan without junctions.
+            lookaheadCount = 0;
+            if (lookahead.getPendingVelocity() > 0) {
+                // The executed moves were planned to continue into the pending ones and left the machine 
+                // moving. The new plan starts from still-stand, so the machine must come to a stop first.
+                Logger.debug("Lookahead out of sync, waiting for still-stand.");
+                waitForDriverCompletion(null, CompletionType.WaitForStillstand);
+            }
+        }
+        if (lookaheadCount > 0) {
+            // Set the boundary velocities at the start and end of the execution plan.  
+            setPathVelocity(executionPlan.get(0), lookahead.getUnitVector(0), 
+                    lookahead.getEntryVelocity(0), true);
+            if (lookaheadCount == executionPlan.size()) {
+                setPathVelocity(executionPlan.get(lookaheadCount - 1), lookahead.getUnitVector(lookaheadCount - 1), 
+                        lookahead.getExitVelocity(lookaheadCount - 1), false);
+            }
+        }
+        PlannerPath path = new PlannerPath(executionPlan, lookaheadCount);
+        path.setParallelSolving(parallelSolving);
         path.solve();
+        if (lookaheadCount == executionPlan.size()) {
+            lookahead.removeFirst(lookaheadCount);
+        }
+        else {
+            lookahead.clear();
+        }
+    }
+
+    private static void setPathVelocity(Motion motion, double [] unitVector, double velocity, boolean entry) {
+        if (velocity > 0) {
+            MotionProfile [] profiles = motion.getAxesProfiles();
+            int lead = MotionProfile.getLeadAxisIndex(unitVector);
+            if (entry) {
+                profiles[lead].setEntryVelocity(velocity*unitVector[lead]);
+            }
+            else {
+                profiles[lead].setExitVelocity(velocity*unitVector[lead]);
+            }
+        }
     }
 
     protected void startNewMotionGraph() {
@@ -20,9 +20,15 @@
 package org.openpnp.machine.reference.driver;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.concurrent.TimeoutException;
 
-import org.jfree.chart.util.ArrayUtils;
 import org.openpnp.util.Collect;
 import org.openpnp.util.GcodeServer;
 import org.simpleframework.xml.Attribute;
@@ -53,6 +59,28 @@ public abstract class ReferenceDriverCommunications {
     @Attribute(required=false)
     protected LineEndingType lineEndingType = LineEndingType.LF;
 
+    /**
+     * Size of the receive buffer used for bulk reads.
+     */
+    protected static final int READ_BUFFER_SIZE = 4096;
+
+    /**
+     * Time to wait for a non-blocking channel to accept more bytes, before the write fails.
+     */
+    protected static final long WRITE_TIMEOUT_MILLISECONDS = 5000;
+
+    /**
+     * Receive buffer, filled by bulk {@link #readBytes(ByteBuffer)} calls. Kept in "get" mode i.e. 
+     * the bytes between position and limit are received but not yet consumed.
+     */
+    private ByteBuffer readBuffer = (ByteBuffer) ByteBuffer.allocate(READ_BUFFER_SIZE).flip();
+
+    /**
+     * Reusable line assembly buffer. A partial line survives a read timeout.
+     */
+    private byte[] lineBuffer = new byte[256];
+    private int lineLength = 0;
+
     abstract public void connect() throws Exception;
     abstract public void disconnect() throws Exception;
 
@@ -60,7 +88,31 @@ public abstract class ReferenceDriverCommunications {
 
     abstract protected void writeBytes(byte[] data) throws IOException;
 
-    abstract public int read() throws TimeoutException, IOException;
+    /**
+     * Bulk read whatever bytes are available into the buffer, from its position up to its limit. Blocks 
+     * until at least one byte is available. If the read times out a TimeoutException is thrown. Any other 
+     * failure to read results in an IOExeption.
+     * 
+     * @param buffer
+     * @return The number of bytes read, or -1 if the stream has ended.
+     * @throws TimeoutException
+     * @throws IOException
+     */
+    abstract protected int readBytes(ByteBuffer buffer) throws TimeoutException, IOException;
+
+    /**
+     * Read a single byte from the receive buffer, refilling it with a bulk read, if empty. 
+     * 
+     * @return The byte as an unsigned value, or -1 if the stream has ended.
+     * @throws TimeoutException
+     * @throws IOException
+     */
+    public int read() throws TimeoutException, IOException {
+        if (!fillReadBuffer()) {
+            return -1;
+        }
+        return readBuffer.get() & 0xFF;
+    }
 
     /**
      * Read a line from the input stream. Blocks for the default timeout. If the read times out a
@@ -74,11 +126,65 @@ public abstract class ReferenceDriverCommunications {
         return readUntil("\r\n");
     }
 
+    /**
+     * @return The channel of the communications, if they can be driven by the {@link DriverIoReactor}, 
+     * null otherwise. 
+     */
+    public SelectableChannel getSelectableChannel() {
+        return null;
+    }
+
     public void writeLine(String data) throws IOException {
         byte [] line = Collect.concat(data.getBytes(), getLineEndingType().getLineEnding().getBytes());
         writeBytes(line);
     }
 
+    /**
+     * Bulk write the bytes between the buffer's position and its limit, typically several coalesced lines, 
+     * with as few calls into the port as possible. The default implementation copies the bytes for 
+     * {@link #writeBytes(byte[])}, implementations that can write a (direct) ByteBuffer should override. 
+     * 
+     * @param buffer
+     * @throws IOException
+     */
+    public void writeBuffer(ByteBuffer buffer) throws IOException {
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        writeBytes(data);
+    }
+
+    /**
+     * Write the remaining bytes of the buffer to the socket channel. When the channel is non-blocking, i.e. 
+     * driven by the {@link DriverIoReactor}, and its send buffer is full, wait for it to become writable, rather 
+     * than spinning. 
+     * 
+     * @param channel
+     * @param buffer
+     * @throws IOException if the channel does not become writable within {@link #WRITE_TIMEOUT_MILLISECONDS}.
+     */
+    protected static void writeChannel(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        Selector writeSelector = null;
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.write(buffer) == 0) {
+                    if (writeSelector == null) {
+                        writeSelector = Selector.open();
+                        channel.register(writeSelector, SelectionKey.OP_WRITE);
+                    }
+                    if (writeSelector.select(WRITE_TIMEOUT_MILLISECONDS) == 0) {
+                        throw new IOException("Timeout writing to "+channel);
+                    }
+                    writeSelector.selectedKeys().clear();
+                }
+            }
+        }
+        finally {
+            if (writeSelector != null) {
+                writeSelector.close();
+            }
+        }
+    }
+
     /**
      * Read the input stream until one of the characters is found. Blocks for the default timeout. If the read times out
      * a TimeoutException is thrown. Any other failure to read results in an IOExeption;
@@ -89,21 +195,70 @@ public abstract class ReferenceDriverCommunications {
      * @throws IOException
      */
     protected String readUntil(String characters) throws TimeoutException, IOException {
-        StringBuffer line = new StringBuffer();
-        while (true) {
-            int ch = read();
-            if (ch == -1) {
-                return null;
-            }
-            else if (characters.indexOf((char)ch) >= 0) {
-                if (line.length() > 0) {
-                    return line.toString();
+        while (fillReadBuffer()) {
+            // Scan the bulk of received bytes directly in the buffer.
+            byte[] buffer = readBuffer.array();
+            byte[] line = lineBuffer;
+            int length = lineLength;
+            int position = readBuffer.position();
+            int limit = readBuffer.limit();
+            for (; position < limit; position++) {
+                byte ch = buffer[position];
+                if (characters.indexOf(ch & 0xFF) >= 0) {
+                    if (length > 0) {
+                        readBuffer.position(position + 1);
+                        lineLength = 0;
+                        return new String(line, 0, length, StandardCharsets.ISO_8859_1);
+                    }
+                }
+                else {
+                    if (length == line.length) {
+                        line = lineBuffer = Arrays.copyOf(line, length*2);
+                    }
+                    line[length++] = ch;
                 }
             }
-            else {
-                line.append((char) ch);
-            }
+            readBuffer.position(limit);
+            lineLength = length;
+        }
+        return null;
+    }
+
+    /**
+     * Make sure there are received bytes in the buffer. 
+     * 
+     * @return false if the stream has ended.
+     * @throws TimeoutException
+     * @throws IOException
+     */
+    private boolean fillReadBuffer() throws TimeoutException, IOException {
+        if (readBuffer.hasRemaining()) {
+            return true;
+        }
+        readBuffer.clear();
+        int count;
+        try {
+            count = readBytes(readBuffer);
         }
+        finally {
+            readBuffer.flip();
+        }
+        if (count < 0) {
+            return false;
+        }
+        if (!readBuffer.hasRemaining()) {
+            throw new TimeoutException("Read timeout.");
+        }
+        return true;
+    }
+
+    /**
+     * Discard any received but not yet consumed data. Must be called by implementations when (re-)connecting. 
+     */
+    protected void clearReadBuffer() {
+        readBuffer.clear();
+        readBuffer.flip();
+        lineLength = 0;
     }
 
     public void write(int d) throws IOException {
@@ -1,6 +1,7 @@
 package org.openpnp.machine.reference.driver;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.concurrent.TimeoutException;
 
@@ -94,8 +95,14 @@ public class SerialPortCommunications extends ReferenceDriverCommunications {
 
     private SerialPort serialPort;
 
+    /**
+     * Reusable array for bulk writes, the port does not take a ByteBuffer.
+     */
+    private byte[] writeArray = new byte[0];
+
     public synchronized void connect() throws Exception {
         disconnect();
+        clearReadBuffer();
         serialPort = SerialPort.getCommPort(portName);
         serialPort.openPort(0);
         serialPort.setComPortParameters(baud, dataBits.mask, stopBits.mask, parity.mask);
@@ -134,11 +141,10 @@ public class SerialPortCommunications extends ReferenceDriverCommunications {
     }
 
     @Override
-    public int read() throws TimeoutException, IOException {
-        byte[] b = new byte[1];
+    protected int readBytes(ByteBuffer buffer) throws TimeoutException, IOException {
         int l;
         try {
-            l = serialPort.readBytes(b, 1);
+            l = serialPort.readBytes(buffer.array(), buffer.remaining(), buffer.position());
         }
         catch (NullPointerException e) {
             throw new IOException("Trying to read from a unconnected serial.");
@@ -149,7 +155,8 @@ public class SerialPortCommunications extends ReferenceDriverCommunications {
         if (l == 0) {
             throw new TimeoutException("Read timeout.");
         }
-        return b[0];
+        buffer.position(buffer.position() + l);
+        return l;
     }
 
     @Override
@@ -160,6 +167,19 @@ public class SerialPortCommunications extends ReferenceDriverCommunications {
         }
     }
 
+    @Override
+    public void writeBuffer(ByteBuffer buffer) throws IOException {
+        int length = buffer.remaining();
+        if (writeArray.length < length) {
+            writeArray = new byte[length];
+        }
+        buffer.get(writeArray, 0, length);
+        int l = serialPort.writeBytes(writeArray, length);
+        if (l == -1) {
+            throw new IOException("Write error.");
+        }
+    }
+
 
     @Override
     public String getConnectionName() {
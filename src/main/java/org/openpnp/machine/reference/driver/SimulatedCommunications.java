@@ -1,11 +1,10 @@
 package org.openpnp.machine.reference.driver;
 
-import java.io.BufferedReader;
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.Socket;
-import java.net.SocketTimeoutException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SocketChannel;
 import java.util.concurrent.TimeoutException;
 
 import org.openpnp.spi.Driver;
@@ -17,9 +16,7 @@ import org.pmw.tinylog.Logger;
  * disconnecting, reading and sending lines.
  */
 public class SimulatedCommunications extends ReferenceDriverCommunications {
-    protected Socket clientSocket;
-    protected BufferedReader input;
-    protected DataOutputStream output;
+    protected SocketChannel clientChannel;
 
     protected GcodeServer gcodeServer;
     private Driver driver;
@@ -38,20 +35,15 @@ public class SimulatedCommunications extends ReferenceDriverCommunications {
         if (gcodeServer != null) {
             gcodeServer.setDriver(driver);
         }
-        clientSocket = new Socket("localhost", getGcodeServer().getListenerPort());
-        input = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-        output = new DataOutputStream(clientSocket.getOutputStream());
+        clearReadBuffer();
+        clientChannel = SocketChannel.open(new InetSocketAddress("localhost", getGcodeServer().getListenerPort()));
     }
 
     @Override
     public synchronized void disconnect() throws Exception {
-        if (clientSocket != null && clientSocket.isBound()) {
-            clientSocket.close();
-            input.close();
-            output.close();
-            input = null;
-            output = null;
-            clientSocket = null;
+        if (clientChannel != null) {
+            clientChannel.close();
+            clientChannel = null;
         }
         if (gcodeServer != null) {
             gcodeServer.shutdown();
@@ -71,24 +63,13 @@ public class SimulatedCommunications extends ReferenceDriverCommunications {
     }
 
     @Override
-    public int read() throws TimeoutException, IOException {
+    protected int readBytes(ByteBuffer buffer) throws TimeoutException, IOException {
         try {
-            return input.read();
+            return clientChannel.read(buffer);
         }
         catch (NullPointerException ex) {
             throw new IOException("Trying to read from a unconnected socket.");
         }
-        catch (IOException ex) {
-            if (ex.getCause() instanceof SocketTimeoutException) {
-                throw new TimeoutException(ex.getMessage());
-            }
-            throw ex;
-        }
-    }
-
-    @Override
-    public void write(int d) throws IOException {
-        output.write(d);
     }
 
     public void setDriver(Driver driver) {
@@ -97,7 +78,21 @@ public class SimulatedCommunications extends ReferenceDriverCommunications {
 
     @Override
     public void writeBytes(byte[] data) throws IOException {
-        output.write(data, 0, data.length);
+        writeBuffer(ByteBuffer.wrap(data));
+    }
+
+    @Override
+    public SelectableChannel getSelectableChannel() {
+        return clientChannel;
     }
-}
 
+    @Override
+    public void writeBuffer(ByteBuffer buffer) throws IOException {
+        try {
+            writeChannel(clientChannel, buffer);
+        }
+        catch (NullPointerException ex) {
+            throw new IOException("Trying to write to a unconnected socket.");
+        }
+    }
+}
@@ -1,11 +1,10 @@
 package org.openpnp.machine.reference.driver;
 
-import java.io.BufferedReader;
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.Socket;
-import java.net.SocketTimeoutException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SocketChannel;
 import java.util.concurrent.TimeoutException;
 
 import org.openpnp.util.GcodeServer;
@@ -26,35 +25,30 @@ public class TcpCommunications extends ReferenceDriverCommunications {
     protected String name = "TcpCommunications";
 
 
-    protected Socket clientSocket;
-    protected BufferedReader input;
-    protected DataOutputStream output;
+    protected SocketChannel clientChannel;
     protected GcodeServer gcodeServer;
     protected AbstractReferenceDriver driver;
 
     @Override
     public synchronized void connect() throws Exception {
         disconnect();
+        clearReadBuffer();
         if (ipAddress.equals("GcodeServer")) {
             gcodeServer = new GcodeServer();
             gcodeServer.setDriver(driver);
             port = gcodeServer.getListenerPort();
-            clientSocket = new Socket("localhost", port);
+            clientChannel = SocketChannel.open(new InetSocketAddress("localhost", port));
         }
         else {
-            clientSocket = new Socket(ipAddress,port);
+            clientChannel = SocketChannel.open(new InetSocketAddress(ipAddress, port));
         }
-        input = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-        output = new DataOutputStream(clientSocket.getOutputStream());
     }
 
     @Override
     public synchronized void disconnect() throws Exception {
-        if (clientSocket != null && clientSocket.isBound()) {
-            clientSocket.close();
-            input = null;
-            output = null;
-            clientSocket = null;
+        if (clientChannel != null) {
+            clientChannel.close();
+            clientChannel = null;
         }
         if (gcodeServer != null) {
             gcodeServer.shutdown();
@@ -68,29 +62,33 @@ public class TcpCommunications extends ReferenceDriverCommunications {
     }
 
     @Override
-    public int read() throws TimeoutException, IOException {
+    protected int readBytes(ByteBuffer buffer) throws TimeoutException, IOException {
         try {
-            return input.read();
+            return clientChannel.read(buffer);
         }
         catch (NullPointerException ex) {
             throw new IOException("Trying to read from a unconnected socket.");
         }
-        catch (IOException ex) {
-            if (ex.getCause() instanceof SocketTimeoutException) {
-                throw new TimeoutException(ex.getMessage());
-            }
-            throw ex;
-        }
     }
 
     @Override
-    public void write(int d) throws IOException {
-        output.write(d);
+    public void writeBytes(byte[] data) throws IOException {
+        writeBuffer(ByteBuffer.wrap(data));
     }
 
     @Override
-    public void writeBytes(byte[] data) throws IOException {
-        output.write(data);
+    public SelectableChannel getSelectableChannel() {
+        return clientChannel;
+    }
+
+    @Override
+    public void writeBuffer(ByteBuffer buffer) throws IOException {
+        try {
+            writeChannel(clientChannel, buffer);
+        }
+        catch (NullPointerException ex) {
+            throw new IOException("Trying to write to a unconnected socket.");
+        }
     }
 
     public String getIpAddress() {
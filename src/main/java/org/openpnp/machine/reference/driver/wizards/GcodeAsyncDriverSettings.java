@@ -32,7 +32,10 @@ public class GcodeAsyncDriverSettings extends AbstractConfigurationWizard {
     private JTextField interpolationMaxSteps;
     private JTextField junctionDeviation;
     private JTextField interpolationJerkSteps;
+    private JTextField interpolationTolerance;
     private JCheckBox reportedLocationConfirmation;
+    private JCheckBox characterCountingFlowControl;
+    private JTextField receiveBufferSize;
 
     public GcodeAsyncDriverSettings(GcodeAsyncDriver driver) {
         this.driver = driver;
@@ -50,6 +53,10 @@ public class GcodeAsyncDriverSettings extends AbstractConfigurationWizard {
                 FormSpecs.RELATED_GAP_COLSPEC,
                 FormSpecs.DEFAULT_COLSPEC,},
             new RowSpec[] {
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
                 FormSpecs.RELATED_GAP_ROWSPEC,
                 FormSpecs.DEFAULT_ROWSPEC,
                 FormSpecs.RELATED_GAP_ROWSPEC,
@@ -128,6 +135,14 @@ public class GcodeAsyncDriverSettings extends AbstractConfigurationWizard {
         interpolationPanel.add(junctionDeviation, "4, 10, fill, default");
         junctionDeviation.setColumns(10);
 
+        JLabel lblInterpolationTolerance = new JLabel("Adaptive Tolerance");
+        lblInterpolationTolerance.setToolTipText("<html>\r\n<p>Maximum deviation of the interpolated constant acceleration segments from the<br/>\r\ntrue jerk controlled motion.</p>\r\n<p>If set, interpolation steps are only placed where needed to stay within this tolerance,<br/>\r\ninstead of ramping the acceleration in Jerk Steps. This sends fewer commands to the<br/>\r\ncontroller. Set to zero to switch adaptive interpolation off.</p>\r\n</html>\r\n");
+        interpolationPanel.add(lblInterpolationTolerance, "2, 12, right, default");
+
+        interpolationTolerance = new JTextField();
+        interpolationPanel.add(interpolationTolerance, "4, 12, fill, default");
+        interpolationTolerance.setColumns(10);
+
         JLabel lblConfirmationFlowControl = new JLabel("Confimation Flow Control?");
         lblConfirmationFlowControl.setToolTipText("<html>\r\n<p>The communication with the controller is flow-controlled by awaiting the \"ok\"<br/>\r\nbefore sending the next command. </p>\r\n<p>This is slower than other types of flow control such as RTS/CTS on a serial connection, so <br/>\r\nthe latter should be preferred.</p>\r\n</html>");
         settingsPanel.add(lblConfirmationFlowControl, "2, 2, right, default");
@@ -156,6 +171,26 @@ public class GcodeAsyncDriverSettings extends AbstractConfigurationWizard {
         });
         settingsPanel.add(reportedLocationConfirmation, "4, 4");
 
+        JLabel lblCharacterCounting = new JLabel("Character Counting Flow Control?");
+        lblCharacterCounting.setToolTipText("<html>\r\n<p>The communication with the controller is flow-controlled by counting the characters<br/>\r\nof commands that were sent but not yet confirmed by an \"ok\" (or error).</p>\r\n<p>Commands are sent as long as they fit into the controller's receive buffer, keeping<br/>\r\nits motion planner fed. Supersedes Confirmation Flow Control.</p>\r\n<p>The controller must respond to each and every command with exactly one \"ok\" or error, <br/>\r\nlike GRBL does.</p>\r\n</html>");
+        settingsPanel.add(lblCharacterCounting, "2, 6, right, default");
+
+        characterCountingFlowControl = new JCheckBox("");
+        characterCountingFlowControl.addItemListener(new ItemListener() {
+            public void itemStateChanged(ItemEvent e) {
+                receiveBufferSize.setEnabled(characterCountingFlowControl.isSelected());
+            }
+        });
+        settingsPanel.add(characterCountingFlowControl, "4, 6");
+
+        JLabel lblReceiveBufferSize = new JLabel("Receive Buffer Size [Bytes]");
+        lblReceiveBufferSize.setToolTipText("<html>\r\nSize of the controller's serial receive buffer, used for Character Counting Flow Control.<br/>\r\nPlease consult the controller's documentation (GRBL: 128).\r\n</html>");
+        settingsPanel.add(lblReceiveBufferSize, "2, 8, right, default");
+
+        receiveBufferSize = new JTextField();
+        settingsPanel.add(receiveBufferSize, "4, 8, fill, default");
+        receiveBufferSize.setColumns(10);
+
     }
 
     @Override
@@ -167,16 +202,21 @@ public class GcodeAsyncDriverSettings extends AbstractConfigurationWizard {
 
         addWrappedBinding(driver, "confirmationFlowControl", confirmationFlowControl, "selected");
         addWrappedBinding(driver, "reportedLocationConfirmation", reportedLocationConfirmation, "selected");
+        addWrappedBinding(driver, "characterCountingFlowControl", characterCountingFlowControl, "selected");
+        addWrappedBinding(driver, "receiveBufferSize", receiveBufferSize, "text", intConverter);
         addWrappedBinding(driver, "interpolationMaxSteps", interpolationMaxSteps, "text", intConverter);
         addWrappedBinding(driver, "interpolationJerkSteps", interpolationJerkSteps, "text", intConverter);
         addWrappedBinding(driver, "interpolationTimeStep", interpolationTimeStep, "text", doubleConverterFine);
         addWrappedBinding(driver, "interpolationMinStep", interpolationMinStep, "text", intConverter);
         addWrappedBinding(driver, "junctionDeviation", junctionDeviation, "text", lengthConverter);
+        addWrappedBinding(driver, "interpolationTolerance", interpolationTolerance, "text", lengthConverter);
 
         ComponentDecorators.decorateWithAutoSelect(interpolationMaxSteps);
         ComponentDecorators.decorateWithAutoSelect(interpolationJerkSteps);
         ComponentDecorators.decorateWithAutoSelect(interpolationTimeStep);
         ComponentDecorators.decorateWithAutoSelect(interpolationMinStep);
         ComponentDecorators.decorateWithAutoSelect(junctionDeviation);
+        ComponentDecorators.decorateWithAutoSelect(interpolationTolerance);
+        ComponentDecorators.decorateWithAutoSelect(receiveBufferSize);
     }
 }
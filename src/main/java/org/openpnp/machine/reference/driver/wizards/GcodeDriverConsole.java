@@ -121,6 +121,12 @@ public class GcodeDriverConsole extends AbstractConfigurationWizard {
         forceUpperCaseChk.setSelected(true);
         gcodeConsole.add(forceUpperCaseChk, "2, 6");
 
+        JButton resetLatenciesBtn = new JButton(resetLatenciesAction);
+        gcodeConsole.add(resetLatenciesBtn, "4, 6, right, default");
+
+        JButton showLatenciesBtn = new JButton(showLatenciesAction);
+        gcodeConsole.add(showLatenciesBtn, "6, 6");
+
     }
 
     @Override
@@ -203,5 +209,26 @@ public class GcodeDriverConsole extends AbstractConfigurationWizard {
             sendGcodeConCmd();
         }
     };
+
+    private Action showLatenciesAction = new AbstractAction(Translations.getString(
+            "GcodeDriverConsole.GCodeConsolePanel.LatenciesButton.text")) { //$NON-NLS-1$
+        {
+            putValue(SHORT_DESCRIPTION, Translations.getString(
+                    "GcodeDriverConsole.GCodeConsolePanel.LatenciesButton.toolTipText"));
+        }
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            textAreaConsole.append(driver.getLatencyReport());
+        }
+    };
+
+    private Action resetLatenciesAction = new AbstractAction(Translations.getString(
+            "GcodeDriverConsole.GCodeConsolePanel.ResetLatenciesButton.text")) { //$NON-NLS-1$
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            driver.resetLatencyHistograms();
+        }
+    };
     private JCheckBox forceUpperCaseChk;
 }
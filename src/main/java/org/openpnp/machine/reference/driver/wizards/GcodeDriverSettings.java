@@ -228,6 +228,15 @@ public class GcodeDriverSettings extends AbstractConfigurationWizard {
 
         loggingGcode = new JCheckBox("");
         settingsPanel.add(loggingGcode, "4, 16");
+
+        JLabel lblSharedIoReactor = new JLabel(Translations.getString(
+                "GcodeDriverSettings.SettingsPanel.SharedIoReactorLabel.text")); //$NON-NLS-1$
+        lblSharedIoReactor.setToolTipText(Translations.getString(
+                "GcodeDriverSettings.SettingsPanel.SharedIoReactorLabel.toolTipText")); //$NON-NLS-1$
+        settingsPanel.add(lblSharedIoReactor, "6, 16, right, default");
+
+        sharedIoReactor = new JCheckBox("");
+        settingsPanel.add(sharedIoReactor, "8, 16");
         
         JLabel label_1 = new JLabel(" ");
         settingsPanel.add(label_1, "10, 18");
@@ -263,6 +272,7 @@ public class GcodeDriverSettings extends AbstractConfigurationWizard {
         addWrappedBinding(driver, "supportingPreMove", supportingPreMove, "selected");
         addWrappedBinding(driver, "usingLetterVariables", letterVariables, "selected");
         addWrappedBinding(driver, "loggingGcode", loggingGcode, "selected");
+        addWrappedBinding(driver, "sharedIoReactor", sharedIoReactor, "selected");
         addWrappedBinding(driver, "firmwareConfiguration", firmwareConfiguration, "text");
 
         ComponentDecorators.decorateWithAutoSelect(maxFeedRateTf);
@@ -419,6 +429,8 @@ public class GcodeDriverSettings extends AbstractConfigurationWizard {
 
     private JCheckBox loggingGcode;
 
+    private JCheckBox sharedIoReactor;
+
     private JTextArea firmwareConfiguration;
     private JTextField dollarWaitTimeMilliseconds;
     private JTextField compressionExcludes;
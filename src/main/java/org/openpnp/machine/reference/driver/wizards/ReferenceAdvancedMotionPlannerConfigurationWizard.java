@@ -38,6 +38,7 @@ import org.openpnp.gui.components.ComponentDecorators;
 import org.openpnp.gui.components.LocationButtonsPanel;
 import org.openpnp.gui.support.AbstractConfigurationWizard;
 import org.openpnp.gui.support.DoubleConverter;
+import org.openpnp.gui.support.IntegerConverter;
 import org.openpnp.gui.support.LengthConverter;
 import org.openpnp.gui.support.MutableLocationProxy;
 import org.openpnp.gui.support.PercentConverter;
@@ -115,6 +116,10 @@ public class ReferenceAdvancedMotionPlannerConfigurationWizard extends AbstractC
     private JLabel lblCaution3;
     private JLabel lblMinimumSpeed;
     private JTextField minimumSpeed;
+    private JLabel lblParallelSolving;
+    private JCheckBox parallelSolving;
+    private JLabel lblLookaheadMoves;
+    private JTextField lookaheadMoves;
 
 
     public ReferenceAdvancedMotionPlannerConfigurationWizard(ReferenceAdvancedMotionPlanner motionPlanner) {
@@ -152,6 +157,10 @@ public class ReferenceAdvancedMotionPlannerConfigurationWizard extends AbstractC
                 FormSpecs.RELATED_GAP_ROWSPEC,
                 FormSpecs.DEFAULT_ROWSPEC,
                 FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.RELATED_GAP_ROWSPEC,
                 FormSpecs.DEFAULT_ROWSPEC,}));
 
         JLabel lblContinuousMotion = new JLabel("Allow continous motion?");
@@ -183,6 +192,21 @@ public class ReferenceAdvancedMotionPlannerConfigurationWizard extends AbstractC
         panelSettings.add(minimumSpeed, "4, 8, fill, default");
         minimumSpeed.setColumns(10);
 
+        lblParallelSolving = new JLabel("Parallel solving?");
+        lblParallelSolving.setToolTipText("<html>\r\nSolve the independent motion profiles of the planned path in parallel, using all the<br/>\r\nprocessor cores. Moves are planned faster, especially with many axes and continuous<br/>\r\nmotion. The result is exactly the same as when solving one after another.\r\n</html>\r\n");
+        panelSettings.add(lblParallelSolving, "2, 10, right, default");
+
+        parallelSolving = new JCheckBox("");
+        panelSettings.add(parallelSolving, "4, 10");
+
+        lblLookaheadMoves = new JLabel("Lookahead Moves");
+        lblLookaheadMoves.setToolTipText("<html>\r\n<p>\r\nNumber of moves the planner looks ahead to let coordinated moves pass through corners<br/>\r\nwithout coming to still-stand. The corner velocity is limited by the Junction Deviation<br/>\r\nof the driver, and by the acceleration needed to still come to a stop at the end of the<br/>\r\nplanned moves.\r\n</p><p>\r\nRequires continuous motion. Set to 0 to switch lookahead off.\r\n</p>\r\n</html>\r\n");
+        panelSettings.add(lblLookaheadMoves, "2, 12, right, default");
+
+        lookaheadMoves = new JTextField();
+        panelSettings.add(lookaheadMoves, "4, 12, fill, default");
+        lookaheadMoves.setColumns(10);
+
         panel = new JPanel();
         panel.setBorder(new TitledBorder(UIManager.getBorder("TitledBorder.border"), "Test Motion", TitledBorder.LEADING, TitledBorder.TOP, null));
         contentPanel.add(panel);
@@ -431,11 +455,14 @@ public class ReferenceAdvancedMotionPlannerConfigurationWizard extends AbstractC
         LengthConverter lengthConverter = new LengthConverter();
         DoubleConverter doubleConverter = new DoubleConverter(Configuration.get().getLengthDisplayFormat());
         PercentConverter percentConverter = new PercentConverter();
+        IntegerConverter intConverter = new IntegerConverter();
 
         addWrappedBinding(motionPlanner, "allowContinuousMotion", allowContinuousMotion, "selected");
         addWrappedBinding(motionPlanner, "allowUncoordinated", allowUncoordinated, "selected");
         addWrappedBinding(motionPlanner, "interpolationRetiming", interpolationRetiming, "selected");
+        addWrappedBinding(motionPlanner, "parallelSolving", parallelSolving, "selected");
         addWrappedBinding(motionPlanner, "minimumSpeed", minimumSpeed, "text", percentConverter);
+        addWrappedBinding(motionPlanner, "lookaheadMoves", lookaheadMoves, "text", intConverter);
 
         addWrappedBinding(motionPlanner, "startLocationEnabled", startLocationEnabled, "selected");
         addWrappedBinding(motionPlanner, "mid1LocationEnabled", mid1LocationEnabled, "selected");
@@ -103,6 +103,12 @@ public class ReferenceAutoFeeder extends ReferenceFeeder {
         actuator.actuate((Object)actuatorValue);
     }
     
+    @Override
+    public boolean canFeedAhead() {
+        // The feed only actuates the feeder, unless the nozzle needs to be moved to the feeder first.
+        return !isMoveBeforeFeed();
+    }
+
     @Override
     public void postPick(Nozzle nozzle) throws Exception {
         if (postPickActuatorName == null || postPickActuatorName.equals("")) {
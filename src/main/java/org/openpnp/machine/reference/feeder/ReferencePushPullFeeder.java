@@ -260,6 +260,24 @@ public class ReferencePushPullFeeder extends ReferenceFeeder {
     private double calibrateToleranceMm = 0.3; 
     @Attribute(required = false)
     private int calibrateMinStatistic = 2; 
+    // with the Adaptive calibration trigger, the maximum number of tape feeds without calibration
+    @Attribute(required = false)
+    private int adaptiveMaxFeedsWithoutCalibration = 50; 
+
+    // The Adaptive calibration trigger statistics, i.e. the error of the vision offset found by each calibration 
+    // against the tape feeds since the previous one, as exponentially weighted moving averages of the moments.
+    @Attribute(required = false)
+    private int adaptiveDriftCount = 0;
+    @Attribute(required = false)
+    private double adaptiveFeedsMean = 0;
+    @Attribute(required = false)
+    private double adaptiveFeedsSquareMean = 0;
+    @Attribute(required = false)
+    private double adaptiveErrorMeanMm = 0;
+    @Attribute(required = false)
+    private double adaptiveErrorSquareMeanMm2 = 0;
+    @Attribute(required = false)
+    private double adaptiveFeedsErrorMeanMm = 0;
 
     // Some EIA 481 standard constants.
     static final double sprocketHoleDiameterMm = 1.5;
@@ -272,11 +290,17 @@ public class ReferencePushPullFeeder extends ReferenceFeeder {
      */
     protected Location visionOffset;
 
+    // The number of tape feeds since the last calibration.
+    private int feedsSinceCalibration = 0;
+    // A pick failed, calibrate again before the next pick.
+    private boolean calibrationDue = false;
+
     public enum CalibrationTrigger {
         None,
         OnFirstUse,
         UntilConfident,
-        OnEachTapeFeed
+        OnEachTapeFeed,
+        Adaptive
     }
 
     @Attribute(required = false)
@@ -343,9 +367,14 @@ public class ReferencePushPullFeeder extends ReferenceFeeder {
         if (getHole1Location().convertToUnits(LengthUnit.Millimeters).getLinearDistanceTo(getHole2Location()) < 3) {
             throw new Exception("Feeder "+getName()+" sprocket hole locations undefined/too close together.");
         }
+        if (tapeFeed) {
+            feedsSinceCalibration++;
+        }
         if ((visionOffset == null && calibrationTrigger != CalibrationTrigger.None)
                 || (tapeFeed && calibrationTrigger == CalibrationTrigger.UntilConfident && !isPrecisionSufficient())
-                || (tapeFeed && calibrationTrigger == CalibrationTrigger.OnEachTapeFeed)) {
+                || (tapeFeed && calibrationTrigger == CalibrationTrigger.OnEachTapeFeed)
+                || (calibrationTrigger == CalibrationTrigger.Adaptive 
+                    && (calibrationDue || (tapeFeed && !isAdaptivePrecisionSufficient())))) {
             // not yet calibrated (enough)
             obtainCalibratedVisionOffset();
             if (visionOffset == null) {
@@ -365,6 +394,99 @@ public class ReferencePushPullFeeder extends ReferenceFeeder {
         return true;
     }
 
+    /**
+     * @return True if the predicted error of the vision offset since the last calibration is still within the 
+     * precision wanted, with 95% confidence. 
+     */
+    public boolean isAdaptivePrecisionSufficient() {
+        if (adaptiveDriftCount < calibrateMinStatistic) {
+            return false;
+        }
+        else if (feedsSinceCalibration >= adaptiveMaxFeedsWithoutCalibration) {
+            return false;
+        }
+        else if (getAdaptivePredictedError(feedsSinceCalibration).divide(getPrecisionWanted()) > 1.0) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param feeds
+     * @return The predicted error of the vision offset after the given number of tape feeds since the last 
+     * calibration, as the upper 95% confidence limit of the fitted noise plus drift.
+     */
+    public Length getAdaptivePredictedError(int feeds) {
+        double [] fit = getAdaptiveFit();
+        double noiseMm = fit[0];
+        double driftMm = fit[1];
+        // Mean squared residual of the fit, expanded from the moments.
+        double residualMm2 = adaptiveErrorSquareMeanMm2 
+                - 2*noiseMm*adaptiveErrorMeanMm - 2*driftMm*adaptiveFeedsErrorMeanMm
+                + noiseMm*noiseMm + 2*noiseMm*driftMm*adaptiveFeedsMean + driftMm*driftMm*adaptiveFeedsSquareMean;
+        return new Length(noiseMm + feeds*driftMm + 1.64*Math.sqrt(Math.max(0, residualMm2)), 
+                LengthUnit.Millimeters);
+    }
+
+    /**
+     * Fit the error of the vision offset as a constant vision noise plus a drift per tape feed, by linear 
+     * regression against the tape feeds. Only when the calibrations were all done after the same number of feeds, 
+     * the two cannot be told apart, and the whole error is conservatively taken as drift.
+     *  
+     * @return The noise and the drift per feed in millimeters, both non-negative.
+     */
+    protected double [] getAdaptiveFit() {
+        double feedsVariance = adaptiveFeedsSquareMean - adaptiveFeedsMean*adaptiveFeedsMean;
+        if (feedsVariance > 1e-6) {
+            double driftMm = (adaptiveFeedsErrorMeanMm - adaptiveFeedsMean*adaptiveErrorMeanMm)/feedsVariance;
+            double noiseMm = adaptiveErrorMeanMm - driftMm*adaptiveFeedsMean;
+            if (driftMm >= 0 && noiseMm >= 0) {
+                return new double [] { noiseMm, driftMm };
+            }
+            else if (driftMm < 0) {
+                return new double [] { Math.max(0, adaptiveErrorMeanMm), 0 };
+            }
+            // Negative noise, fit the drift only.
+            return new double [] { 0, Math.max(0, adaptiveFeedsErrorMeanMm/adaptiveFeedsSquareMean) };
+        }
+        else if (adaptiveFeedsMean > 0) {
+            return new double [] { 0, Math.max(0, adaptiveErrorMeanMm/adaptiveFeedsMean) };
+        }
+        return new double [] { 0, 0 };
+    }
+
+    /**
+     * Add the error of the vision offset, as found by a calibration, to the Adaptive calibration trigger statistics. 
+     * The statistics are averaged over the first ten calibrations, then exponentially weighted, so they follow a 
+     * changing feeder.  
+     * 
+     * @param error The error of the previous vision offset. 
+     * @param feeds The tape feeds since the previous calibration.
+     */
+    public void addAdaptiveDrift(Length error, int feeds) {
+        double errorMm = error.convertToUnits(LengthUnit.Millimeters).getValue();
+        double x = Math.max(1, feeds);
+        adaptiveDriftCount++;
+        double alpha = Math.max(1.0/adaptiveDriftCount, 0.1);
+        adaptiveFeedsMean += alpha*(x - adaptiveFeedsMean);
+        adaptiveFeedsSquareMean += alpha*(x*x - adaptiveFeedsSquareMean);
+        adaptiveErrorMeanMm += alpha*(errorMm - adaptiveErrorMeanMm);
+        adaptiveErrorSquareMeanMm2 += alpha*(errorMm*errorMm - adaptiveErrorSquareMeanMm2);
+        adaptiveFeedsErrorMeanMm += alpha*(x*errorMm - adaptiveFeedsErrorMeanMm);
+    }
+
+    public int getAdaptiveDriftCount() {
+        return adaptiveDriftCount;
+    }
+
+    @Override
+    public void pickFailed(Nozzle nozzle) {
+        if (calibrationTrigger == CalibrationTrigger.Adaptive) {
+            Logger.debug("Feeder {} pick failed, calibrating before the next pick.", getName());
+            calibrationDue = true;
+        }
+    }
+
     public boolean isVisionEnabled() {
         return calibrationTrigger != CalibrationTrigger.None;
     }
@@ -532,7 +654,15 @@ public class ReferencePushPullFeeder extends ReferenceFeeder {
                 ocrAction = getOcrWrongPartAction();
                 ocrStop = isOcrStopAfterWrongPart();
             }
+            Location previousVisionOffset = visionOffset;
             performVisionOperations(camera, pipeline, false, false, true, ocrAction, ocrStop, null);
+            if (previousVisionOffset != null && visionOffset != null) {
+                Length error = getPickLocation(1, visionOffset)
+                        .getLinearLengthTo(getPickLocation(1, previousVisionOffset));
+                addAdaptiveDrift(error, feedsSinceCalibration);
+            }
+            feedsSinceCalibration = 0;
+            calibrationDue = false;
         }
     }
 
@@ -1114,6 +1244,12 @@ public class ReferencePushPullFeeder extends ReferenceFeeder {
     public void resetCalibrationStatistics() {
         sumOfErrors = new Length(0, LengthUnit.Millimeters);
         sumOfErrorSquares = new Length(0, LengthUnit.Millimeters);
+        adaptiveDriftCount = 0;
+        adaptiveFeedsMean = 0;
+        adaptiveFeedsSquareMean = 0;
+        adaptiveErrorMeanMm = 0;
+        adaptiveErrorSquareMeanMm2 = 0;
+        adaptiveFeedsErrorMeanMm = 0;
         setCalibrationCount(0);
         resetCalibration();
     }
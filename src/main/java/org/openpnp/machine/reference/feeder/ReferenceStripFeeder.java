@@ -21,7 +21,10 @@ package org.openpnp.machine.reference.feeder;
 
 
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.swing.Action;
 
@@ -41,6 +44,8 @@ import org.openpnp.util.MovableUtils;
 import org.openpnp.util.OpenCvUtils;
 import org.openpnp.util.Utils2D;
 import org.openpnp.util.VisionUtils;
+import org.openpnp.vision.FluentCv;
+import org.openpnp.vision.Ransac;
 import org.openpnp.vision.pipeline.CvPipeline;
 import org.openpnp.vision.pipeline.CvStage;
 import org.simpleframework.xml.Attribute;
@@ -115,6 +120,12 @@ public class ReferenceStripFeeder extends ReferenceFeeder {
 	@Attribute(required = false)
 	private int maxFeedCount = 0;
 
+    @Attribute(required = false)
+    private boolean multiPocketScan = false;
+
+    @Attribute(required = false)
+    private int multiPocketScanMinHoles = 3;
+
     private Length holeDiameter = new Length(1.5, LengthUnit.Millimeters);
 
     private Length holePitch = new Length(4, LengthUnit.Millimeters);
@@ -123,6 +134,11 @@ public class ReferenceStripFeeder extends ReferenceFeeder {
 
     private Location visionLocation;
 
+    /**
+     * The hole locations found by the last multi-pocket scan, by hole index along the strip.
+     */
+    private Map<Integer, Location> scannedHoleLocations = new HashMap<>();
+
     public Length getHoleDiameterMin() {
         return getHoleDiameter().multiply(0.9);
     }
@@ -273,9 +289,34 @@ public class ReferenceStripFeeder extends ReferenceFeeder {
             expectedLocation = Utils2D.getPointAlongLine(lineLocations[0], lineLocations[1],
                     partPitch.multiply(feedCount - 1));
         }
-        MovableUtils.moveToLocationAtSafeZ(camera, expectedLocation);
-        // and look for the hole
-        Location actualLocation = findClosestHole(camera);
+        int holeIndex = (int) Math.round(expectedLocation.getLinearDistanceTo(lineLocations[0])
+                / holePitch.convertToUnits(expectedLocation.getUnits()).getValue());
+        Location actualLocation = null;
+        if (multiPocketScan) {
+            actualLocation = scannedHoleLocations.get(holeIndex);
+            if (actualLocation != null && actualLocation.getLinearLengthTo(expectedLocation)
+                    .convertToUnits(LengthUnit.Millimeters).getValue() > 2) {
+                // Does not match anymore, scan again.
+                actualLocation = null;
+            }
+        }
+        if (actualLocation == null) {
+            MovableUtils.moveToLocationAtSafeZ(camera, expectedLocation);
+            // and look for the hole
+            if (multiPocketScan) {
+                scannedHoleLocations.clear();
+                Map<Integer, Location> holesInLine = getHolesInLine(findHoles(camera), expectedLocation, lineLocations,
+                        holePitch, getHoleLineDistanceMax(), new Length(2, LengthUnit.Millimeters), 
+                        multiPocketScanMinHoles);
+                for (Map.Entry<Integer, Location> entry : holesInLine.entrySet()) {
+                    scannedHoleLocations.put(holeIndex + entry.getKey(), entry.getValue());
+                }
+                actualLocation = holesInLine.get(0);
+            }
+            else {
+                actualLocation = findClosestHole(camera);
+            }
+        }
         if (actualLocation == null) {
             throw new Exception("Unable to locate reference hole. End of strip?");
         }
@@ -288,7 +329,99 @@ public class ReferenceStripFeeder extends ReferenceFeeder {
         visionLocation = actualLocation;
     }
 
+    /**
+     * Get the holes of the strip, as far as they are in line with the expected hole. The holes are solved to a 
+     * line using Ransac, which must run through the hole closest to the expected location and along the strip, 
+     * with the holes spaced at the hole pitch. If fewer than minHoles holes are found on the line, the line is 
+     * not trusted and only the closest hole is returned.
+     * 
+     * @param holes The holes found in the camera view.
+     * @param expectedLocation The expected location of the hole.
+     * @param lineLocations The ideal line of the strip, as in {@link #getIdealLineLocations()}.
+     * @param holePitch
+     * @param tolerance The maximum deviation of a hole from the line and from the hole pitch.
+     * @param maxDistance The maximum distance of the closest hole from the expected location.
+     * @param minHoles The minimum number of holes on the line for it to be trusted.
+     * @return The holes by index relative to the expected hole, for the expected hole and the holes ahead of it
+     * along the strip. Empty if no hole is found close to the expected location.
+     */
+    public static Map<Integer, Location> getHolesInLine(List<Location> holes, Location expectedLocation, 
+            Location[] lineLocations, Length holePitch, Length tolerance, Length maxDistance, int minHoles) {
+        Map<Integer, Location> holesInLine = new HashMap<>();
+        LengthUnit units = LengthUnit.Millimeters;
+        Location expected = expectedLocation.convertToUnits(units);
+        double pitch = holePitch.convertToUnits(units).getValue();
+        double tol = tolerance.convertToUnits(units).getValue();
+        Location closestHole = null;
+        double closestDistance = maxDistance.convertToUnits(units).getValue();
+        List<org.opencv.core.Point> points = new ArrayList<>();
+        for (Location hole : holes) {
+            hole = hole.convertToUnits(units);
+            points.add(new org.opencv.core.Point(hole.getX(), hole.getY()));
+            double distance = hole.getLinearDistanceTo(expected);
+            if (distance <= closestDistance) {
+                closestHole = hole;
+                closestDistance = distance;
+            }
+        }
+        if (closestHole == null) {
+            return holesInLine;
+        }
+        holesInLine.put(0, closestHole);
+
+        // The direction of the strip.
+        Location a = lineLocations[0].convertToUnits(units);
+        Location b = lineLocations[1].convertToUnits(units);
+        double length = a.getLinearDistanceTo(b);
+        if (length == 0) {
+            return holesInLine;
+        }
+        double ux = (b.getX() - a.getX())/length;
+        double uy = (b.getY() - a.getY())/length;
+
+        org.opencv.core.Point origin = new org.opencv.core.Point(closestHole.getX(), closestHole.getY());
+        for (Ransac.Line line : Ransac.ransac(points, 100, tol, pitch, tol, false)) {
+            // The line must run through the closest hole, along the strip.
+            double lineLength = Math.hypot(line.b.x - line.a.x, line.b.y - line.a.y);
+            if (FluentCv.pointToLineDistance(line.a, line.b, origin) > tol
+                    || Math.abs((line.b.x - line.a.x)*ux + (line.b.y - line.a.y)*uy) 
+                    < lineLength*Math.cos(Math.toRadians(10))) {
+                continue;
+            }
+            Map<Integer, Location> onLine = new HashMap<>();
+            for (int i = 0; i < points.size(); i++) {
+                org.opencv.core.Point p = points.get(i);
+                if (FluentCv.pointToLineDistance(line.a, line.b, p) > tol) {
+                    continue;
+                }
+                double along = (p.x - origin.x)*ux + (p.y - origin.y)*uy;
+                int index = (int) Math.round(along/pitch);
+                if (Math.abs(along - index*pitch) <= tol) {
+                    onLine.put(index, holes.get(i));
+                }
+            }
+            if (onLine.size() >= minHoles) {
+                for (Map.Entry<Integer, Location> entry : onLine.entrySet()) {
+                    if (entry.getKey() > 0) {
+                        holesInLine.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            break;
+        }
+        return holesInLine;
+    }
+
     private Location findClosestHole(Camera camera) throws Exception {
+        return findHoles(camera).get(0);
+    }
+
+    /**
+     * @param camera
+     * @return The holes in the camera view, closest first.
+     * @throws Exception
+     */
+    private List<Location> findHoles(Camera camera) throws Exception {
         try (CvPipeline pipeline = getPipeline()) {
             Integer pxMinDistance = (int) VisionUtils.toPixels(getHolePitchMin(), camera);
             Integer pxMinDiameter = (int) VisionUtils.toPixels(getHoleDiameterMin(), camera);
@@ -320,18 +453,17 @@ public class ReferenceStripFeeder extends ReferenceFeeder {
                     .getExpectedListModel(CvStage.Result.Circle.class, 
                             new Exception("Feeder " + getName() + ": No tape holes found."));            
 
-            // Find the closest result
-            results.sort((a, b) -> {
-                Double da = VisionUtils.getPixelLocation(camera, a.x, a.y)
-                        .getLinearDistanceTo(camera.getLocation());
-                Double db = VisionUtils.getPixelLocation(camera, b.x, b.y)
-                        .getLinearDistanceTo(camera.getLocation());
+            List<Location> holeLocations = new ArrayList<>();
+            for (CvStage.Result.Circle result : results) {
+                holeLocations.add(VisionUtils.getPixelLocation(camera, result.x, result.y));
+            }
+            // Sort by distance, closest first
+            holeLocations.sort((a, b) -> {
+                Double da = a.getLinearDistanceTo(camera.getLocation());
+                Double db = b.getLinearDistanceTo(camera.getLocation());
                 return da.compareTo(db);
             });
-    
-            CvStage.Result.Circle closestResult = results.get(0);
-            Location holeLocation = VisionUtils.getPixelLocation(camera, closestResult.x, closestResult.y);
-            return holeLocation;
+            return holeLocations;
         }
     }
    
@@ -404,6 +536,7 @@ public class ReferenceStripFeeder extends ReferenceFeeder {
         Object oldValue = this.referenceHoleLocation;
         this.referenceHoleLocation = referenceHoleLocation;
         visionLocation = null;
+        scannedHoleLocations.clear();
         firePropertyChange("referenceHoleLocation", oldValue, referenceHoleLocation);
     }
 
@@ -415,6 +548,7 @@ public class ReferenceStripFeeder extends ReferenceFeeder {
         Object oldValue = this.lastHoleLocation;
         this.lastHoleLocation = lastHoleLocation;
         visionLocation = null;
+        scannedHoleLocations.clear();
         firePropertyChange("lastHoleLocation", oldValue, lastHoleLocation);
     }
 
@@ -432,6 +566,7 @@ public class ReferenceStripFeeder extends ReferenceFeeder {
 
     public void setHolePitch(Length holePitch) {
         this.holePitch = holePitch;
+        scannedHoleLocations.clear();
     }
 
     public Length getPartPitch() {
@@ -440,6 +575,7 @@ public class ReferenceStripFeeder extends ReferenceFeeder {
 
     public void setPartPitch(Length partPitch) {
         this.partPitch = partPitch;
+        scannedHoleLocations.clear();
     }
 
     public Length getTapeWidth() {
@@ -457,9 +593,21 @@ public class ReferenceStripFeeder extends ReferenceFeeder {
     public void setFeedCount(int feedCount) {
         int oldValue = this.feedCount;
         this.feedCount = feedCount;
+        if (feedCount < oldValue) {
+            // The strip was probably replaced.
+            scannedHoleLocations.clear();
+        }
         firePropertyChange("feedCount", oldValue, feedCount);
     }
 
+    @Override
+    public int getRemainingPartCount() {
+        if (maxFeedCount > 0) {
+            return Math.max(0, maxFeedCount - feedCount);
+        }
+        return -1;
+    }
+
 	public int getMaxFeedCount() {
 		return maxFeedCount;
 	}
@@ -476,6 +624,23 @@ public class ReferenceStripFeeder extends ReferenceFeeder {
         this.referenceHoleToPartLinear = referenceHoleToPartLinear;
     }
 
+    public boolean isMultiPocketScan() {
+        return multiPocketScan;
+    }
+
+    public void setMultiPocketScan(boolean multiPocketScan) {
+        this.multiPocketScan = multiPocketScan;
+        scannedHoleLocations.clear();
+    }
+
+    public int getMultiPocketScanMinHoles() {
+        return multiPocketScanMinHoles;
+    }
+
+    public void setMultiPocketScanMinHoles(int multiPocketScanMinHoles) {
+        this.multiPocketScanMinHoles = multiPocketScanMinHoles;
+    }
+
     public boolean isVisionEnabled() {
         return visionEnabled;
     }
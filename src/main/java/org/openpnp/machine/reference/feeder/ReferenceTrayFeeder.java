@@ -172,6 +172,11 @@ public class ReferenceTrayFeeder extends ReferenceFeeder {
         firePropertyChange("feedCount", oldValue, feedCount);
     }
 
+    @Override
+    public int getRemainingPartCount() {
+        return Math.max(0, trayCountX * trayCountY - feedCount);
+    }
+
     @Override
     public String toString() {
         return getName();
@@ -1,5 +1,6 @@
 package org.openpnp.machine.reference.feeder;
 
+import java.beans.PropertyChangeListener;
 import java.util.List;
 
 import org.openpnp.ConfigurationListener;
@@ -32,6 +33,13 @@ public class SlotSchultzFeeder extends SchultzFeeder {
     private String feederId;
 
     private Bank bank;
+
+    private Feeder listenedFeeder;
+
+    private final PropertyChangeListener feederPartListener = e -> {
+        firePropertyChange("part", e.getOldValue(), e.getNewValue());
+        firePropertyChange("enabled", null, isEnabled());
+    };
     
     public SlotSchultzFeeder() {
         this.id = Configuration.createId("SLOT-");
@@ -119,7 +127,10 @@ public class SlotSchultzFeeder extends SchultzFeeder {
         if (bank == null) {
             throw new Exception("Bank is required.");
         }
+        Part oldPart = getPart();
+        boolean oldEnabled = isEnabled();
         this.bank = bank;
+        feederChanged(oldPart, oldEnabled);
     }
 
     public Feeder getFeeder() {
@@ -133,7 +144,36 @@ public class SlotSchultzFeeder extends SchultzFeeder {
               throw new Exception("Can't set feeder from another bank.");
           }
         }
+        // The feeder may move here from another slot, which is then empty.
+        SlotSchultzFeeder previousSlot = feeder == null ? null : getBank().assignments.get(feeder);
+        Part previousSlotOldPart = previousSlot == null ? null : previousSlot.getPart();
+        boolean previousSlotOldEnabled = previousSlot != null && previousSlot.isEnabled();
+        Part oldPart = getPart();
+        boolean oldEnabled = isEnabled();
         getBank().setFeeder(this, feeder);
+        feederChanged(oldPart, oldEnabled);
+        if (previousSlot != null && previousSlot != this) {
+            previousSlot.feederChanged(previousSlotOldPart, previousSlotOldEnabled);
+        }
+    }
+
+    /**
+     * The part and enabled state of the slot are those of the feeder in the slot, so changes of the feeder, or
+     * of its part, are fired as changes of the slot, for listeners such as the machine's feeder index.
+     */
+    private void feederChanged(Part oldPart, boolean oldEnabled) {
+        Feeder feeder = getFeeder();
+        if (feeder != listenedFeeder) {
+            if (listenedFeeder != null) {
+                listenedFeeder.removePropertyChangeListener("part", feederPartListener);
+            }
+            if (feeder != null) {
+                feeder.addPropertyChangeListener("part", feederPartListener);
+            }
+            listenedFeeder = feeder;
+        }
+        firePropertyChange("part", oldPart, getPart());
+        firePropertyChange("enabled", oldEnabled, isEnabled());
     }
     
     public static synchronized IdentifiableList<Bank> getBanks() {
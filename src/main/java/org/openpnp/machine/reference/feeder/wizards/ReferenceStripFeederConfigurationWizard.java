@@ -126,6 +126,8 @@ public class ReferenceStripFeederConfigurationWizard extends AbstractConfigurati
     private JTextField textFieldLocationRotation;
     private JButton btnAutoSetup;
     private JCheckBox chckbxUseVision;
+    private JCheckBox chckbxMultiPocketScan;
+    private JTextField textFieldMultiPocketScanMinHoles;
     private JLabel lblUseVision;
     private JLabel lblPart;
     private JLabel lblRetryCount;
@@ -310,6 +312,8 @@ public class ReferenceStripFeederConfigurationWizard extends AbstractConfigurati
                 new ColumnSpec[] {FormSpecs.RELATED_GAP_COLSPEC, FormSpecs.DEFAULT_COLSPEC,
                         FormSpecs.RELATED_GAP_COLSPEC, FormSpecs.DEFAULT_COLSPEC,},
                 new RowSpec[] {FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,
+                        FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,
+                        FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,
                         FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,}));
 
         lblUseVision = new JLabel(Translations.getString(
@@ -339,6 +343,25 @@ public class ReferenceStripFeederConfigurationWizard extends AbstractConfigurati
         });
         panelVision.add(btnResetPipeline, "4, 4");
 
+        JLabel lblMultiPocketScan = new JLabel(Translations.getString(
+                "ReferenceStripFeederConfigurationWizard.PanelVision.MultiPocketScanLabel.text")); //$NON-NLS-1$
+        panelVision.add(lblMultiPocketScan, "2, 6");
+
+        chckbxMultiPocketScan = new JCheckBox("");
+        chckbxMultiPocketScan.setToolTipText(Translations.getString(
+                "ReferenceStripFeederConfigurationWizard.PanelVision.MultiPocketScanCheckBox.toolTipText")); //$NON-NLS-1$
+        panelVision.add(chckbxMultiPocketScan, "4, 6");
+
+        JLabel lblMultiPocketScanMinHoles = new JLabel(Translations.getString(
+                "ReferenceStripFeederConfigurationWizard.PanelVision.MultiPocketScanMinHolesLabel.text")); //$NON-NLS-1$
+        panelVision.add(lblMultiPocketScanMinHoles, "2, 8");
+
+        textFieldMultiPocketScanMinHoles = new JTextField();
+        textFieldMultiPocketScanMinHoles.setToolTipText(Translations.getString(
+                "ReferenceStripFeederConfigurationWizard.PanelVision.MultiPocketScanMinHolesTextField.toolTipText")); //$NON-NLS-1$
+        panelVision.add(textFieldMultiPocketScanMinHoles, "4, 8");
+        textFieldMultiPocketScanMinHoles.setColumns(5);
+
         panelLocations = new JPanel();
         contentPanel.add(panelLocations);
         panelLocations.setBorder(new TitledBorder(null, Translations.getString(
@@ -447,6 +470,8 @@ public class ReferenceStripFeederConfigurationWizard extends AbstractConfigurati
 //        addWrappedBinding(feedEndLocation, "lengthZ", textFieldFeedEndZ, "text", lengthConverter);
 
         addWrappedBinding(feeder, "visionEnabled", chckbxUseVision, "selected");
+        addWrappedBinding(feeder, "multiPocketScan", chckbxMultiPocketScan, "selected");
+        addWrappedBinding(feeder, "multiPocketScanMinHoles", textFieldMultiPocketScanMinHoles, "text", intConverter);
 
         ComponentDecorators.decorateWithAutoSelect(textFieldLocationRotation);
         ComponentDecorators.decorateWithAutoSelectAndLengthConversion(textFieldTapeWidth);
@@ -455,6 +480,7 @@ public class ReferenceStripFeederConfigurationWizard extends AbstractConfigurati
         ComponentDecorators.decorateWithAutoSelectAndLengthConversion(textFieldPartPitch);
         ComponentDecorators.decorateWithAutoSelect(textFieldFeedCount);
         ComponentDecorators.decorateWithAutoSelect(textFieldMaxFeedCount);
+        ComponentDecorators.decorateWithAutoSelect(textFieldMultiPocketScanMinHoles);
         ComponentDecorators.decorateWithAutoSelectAndLengthConversion(textFieldFeedStartX);
         ComponentDecorators.decorateWithAutoSelectAndLengthConversion(textFieldFeedStartY);
         ComponentDecorators.decorateWithAutoSelectAndLengthConversion(textFieldFeedStartZ);
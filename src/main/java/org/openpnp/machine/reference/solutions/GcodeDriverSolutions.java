@@ -411,7 +411,9 @@ public class GcodeDriverSolutions implements Solutions.Subject {
             if (solutions.isTargeting(Milestone.Basics)) {
                 if (gcodeDriver instanceof GcodeAsyncDriver) {
                     boolean locationConfirmation = ((GcodeAsyncDriver)gcodeDriver).isReportedLocationConfirmation();
-                    boolean confirmationFlowControl = ((GcodeAsyncDriver)gcodeDriver).isConfirmationFlowControl();
+                    // Character counting flow control also confirms each command.
+                    boolean confirmationFlowControl = ((GcodeAsyncDriver)gcodeDriver).isConfirmationFlowControl()
+                            || ((GcodeAsyncDriver)gcodeDriver).isCharacterCountingFlowControl();
                     boolean locationConfirmationRecommended = hasAxes;
                     if (locationConfirmationRecommended != locationConfirmation) {
                         solutions.add(new Solutions.Issue(
@@ -438,7 +440,8 @@ public class GcodeDriverSolutions implements Solutions.Subject {
                         && gcodeDriver.getSerial() != null 
                         && gcodeDriver.getSerial().getFlowControl() == FlowControl.Off) || firmware.getFlowControl(gcodeDriver) == FlowControl.Off;
                     boolean confirmationFlowControlRecommended = serialFlowControlOff || ! hasAxes;
-                    if (confirmationFlowControlRecommended != confirmationFlowControl) {
+                    if (confirmationFlowControlRecommended != confirmationFlowControl
+                            && !((GcodeAsyncDriver)gcodeDriver).isCharacterCountingFlowControl()) {
                         solutions.add(new Solutions.Issue(
                                 gcodeDriver,
                                 (confirmationFlowControl ?
@@ -758,6 +761,7 @@ public class GcodeDriverSolutions implements Solutions.Subject {
                             } else if (state.equals(Solutions.State.Dismissed)) {
                                 gcodeDriver.commands.remove(command);
                             }
+                            gcodeDriver.invalidateCommands();
                         }
                     });
                 }
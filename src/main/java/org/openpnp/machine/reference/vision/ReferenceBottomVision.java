@@ -1,8 +1,11 @@
 package org.openpnp.machine.reference.vision;
 
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import org.apache.commons.io.IOUtils;
 import org.opencv.core.Point;
@@ -46,6 +49,7 @@ import org.openpnp.util.VisionUtils;
 import org.openpnp.vision.pipeline.CvPipeline;
 import org.openpnp.vision.pipeline.CvPipeline.PipelineShot;
 import org.openpnp.vision.pipeline.CvStage.Result;
+import org.openpnp.vision.pipeline.stages.ImageCapture;
 import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
@@ -120,8 +124,7 @@ public class ReferenceBottomVision extends AbstractPartAlignment {
 
         Camera camera = VisionUtils.getBottomVisionCamera();
         PartAlignmentOffset offsets;
-        if ((bottomVisionSettings.getPreRotateUsage() == PreRotateUsage.Default && preRotate)
-                || (bottomVisionSettings.getPreRotateUsage() == PreRotateUsage.AlwaysOn)) {
+        if (isPreRotate(bottomVisionSettings)) {
             offsets = findOffsetsPreRotate(part, boardLocation, placementLocation, nozzle, camera, bottomVisionSettings);
         }
         else {
@@ -139,6 +142,67 @@ public class ReferenceBottomVision extends AbstractPartAlignment {
         return offsets;
     }
 
+    /**
+     * Defers the processing of the pipeline in post-rotate alignment, where the images can all be captured
+     * up front. Pre-rotate alignment needs the result of each pass to position the next, and aligning the
+     * rotation mode adjusts the nozzle, so both are performed up front. 
+     */
+    @Override
+    public Callable<PartAlignmentOffset> findOffsetsDeferred(Part part, BoardLocation boardLocation,
+            Location placementLocation, Nozzle nozzle) throws Exception {
+        BottomVisionSettings bottomVisionSettings = getInheritedVisionSettings(part);
+        if (!isEnabled() || !bottomVisionSettings.isEnabled()
+                || isPreRotate(bottomVisionSettings) || nozzle.isAligningRotationMode()) {
+            PartAlignmentOffset offsets = findOffsets(part, boardLocation, placementLocation, nozzle);
+            return () -> offsets;
+        }
+
+        if (part == null || nozzle.getPart() == null) {
+            throw new Exception("No part on nozzle.");
+        }
+        if (part != nozzle.getPart()) {
+            throw new Exception("Part mismatch with part on nozzle.");
+        }
+
+        Camera camera = VisionUtils.getBottomVisionCamera();
+        Location wantedLocation = getCameraLocationAtPartHeight(part, camera, nozzle, 0.);
+        // Process a copy of the pipeline, as the next alignment may already use the pipeline, while this one 
+        // is still processing.
+        CvPipeline pipeline = bottomVisionSettings.getPipeline().clone();
+        List<Map<String, List<BufferedImage>>> shotImages = new ArrayList<>();
+        try {
+            preparePipeline(pipeline, bottomVisionSettings.getPipelineParameterAssignments(), camera, part.getPackage(), 
+                    nozzle, nozzle.getNozzleTip(), wantedLocation, wantedLocation, bottomVisionSettings);
+            for (PipelineShot pipelineShot : pipeline.getPipelineShots()) {
+                pipelineShot.apply();
+                shotImages.add(ImageCapture.captureImages(pipeline));
+            }
+        }
+        catch (Exception e) {
+            pipeline.release();
+            throw e;
+        }
+        return () -> {
+            try {
+                for (PipelineShot pipelineShot : pipeline.getPipelineShots()) {
+                    pipelineShot.applyProperties();
+                    pipeline.setProperty(ImageCapture.PRE_CAPTURED_IMAGES, shotImages.get(pipelineShot.getIndex()));
+                    processPipelineShot(pipeline, pipelineShot, camera, part, nozzle);
+                }
+                RotatedRect rect = (RotatedRect) pipeline.getCurrentPipelineShot().processCompositeResult().getModel();
+                return getPostRotateOffsets(pipeline, rect, camera, part, nozzle, bottomVisionSettings);
+            }
+            finally {
+                pipeline.release();
+            }
+        };
+    }
+
+    private boolean isPreRotate(BottomVisionSettings bottomVisionSettings) {
+        return (bottomVisionSettings.getPreRotateUsage() == PreRotateUsage.Default && preRotate)
+                || (bottomVisionSettings.getPreRotateUsage() == PreRotateUsage.AlwaysOn);
+    }
+
     public Location getCameraLocationAtPartHeight(Part part, Camera camera, Nozzle nozzle, double angle) throws Exception {
         if (part == null) {
             // No part height accounted for.
@@ -292,38 +356,42 @@ public class ReferenceBottomVision extends AbstractPartAlignment {
 
         try (CvPipeline pipeline = bottomVisionSettings.getPipeline()) {
             RotatedRect rect = processPipelineAndGetResult(pipeline, camera, part, nozzle, wantedLocation, wantedLocation, bottomVisionSettings);
+            return getPostRotateOffsets(pipeline, rect, camera, part, nozzle, bottomVisionSettings);
+        }
+    }
 
-            Logger.debug("Bottom vision part {} result rect {}", part.getId(), rect);
-
-            // Create the offsets object. This is the physical distance from
-            // the center of the camera to the located part.
-            Location offsets = VisionUtils.getPixelCenterOffsets(camera, rect.center.x, rect.center.y);
-
-            double angleOffset = VisionUtils.getPixelAngle(camera, rect.angle);
-            // Most OpenCV Pipelines can only tell us the angle of the recognized rectangle in a   
-            // wrapping-around range of 0° .. 90° as it has no notion of which rectangle side 
-            // is which. We can assume that the part is never picked more than +/-45º rotated.
-            // So we change the range wrapping-around to -45° .. +45°. See angleNorm():
-            if (bottomVisionSettings.getMaxRotation() == MaxRotation.Adjust ) {
-                angleOffset = Utils2D.angleNorm(angleOffset);
-            } else {
-                // turning more than 180° in one direction makes no sense
-                angleOffset = Utils2D.angleNorm(angleOffset, 180);
-            }
+    private PartAlignmentOffset getPostRotateOffsets(CvPipeline pipeline, RotatedRect rect, Camera camera,
+            Part part, Nozzle nozzle, BottomVisionSettings bottomVisionSettings) throws Exception {
+        Logger.debug("Bottom vision part {} result rect {}", part.getId(), rect);
+
+        // Create the offsets object. This is the physical distance from
+        // the center of the camera to the located part.
+        Location offsets = VisionUtils.getPixelCenterOffsets(camera, rect.center.x, rect.center.y);
+
+        double angleOffset = VisionUtils.getPixelAngle(camera, rect.angle);
+        // Most OpenCV Pipelines can only tell us the angle of the recognized rectangle in a   
+        // wrapping-around range of 0° .. 90° as it has no notion of which rectangle side 
+        // is which. We can assume that the part is never picked more than +/-45º rotated.
+        // So we change the range wrapping-around to -45° .. +45°. See angleNorm():
+        if (bottomVisionSettings.getMaxRotation() == MaxRotation.Adjust ) {
+            angleOffset = Utils2D.angleNorm(angleOffset);
+        } else {
+            // turning more than 180° in one direction makes no sense
+            angleOffset = Utils2D.angleNorm(angleOffset, 180);
+        }
 
-            partSizeCheck(part, bottomVisionSettings, rect, camera);
+        partSizeCheck(part, bottomVisionSettings, rect, camera);
 
-            // Set the angle on the offsets.
-            offsets = offsets.derive(null, null, null, angleOffset);
+        // Set the angle on the offsets.
+        offsets = offsets.derive(null, null, null, angleOffset);
 
-            // subtract visionCenterOffset
-            offsets = offsets.subtract(bottomVisionSettings.getVisionOffset().rotateXy(offsets.getRotation()));
+        // subtract visionCenterOffset
+        offsets = offsets.subtract(bottomVisionSettings.getVisionOffset().rotateXy(offsets.getRotation()));
 
-            displayResult(pipeline, part, offsets, camera, nozzle);
-            offsetsCheck(part, nozzle, offsets);
+        displayResult(pipeline, part, offsets, camera, nozzle);
+        offsetsCheck(part, nozzle, offsets);
 
-            return new PartAlignmentOffset(offsets, false);
-        }
+        return new PartAlignmentOffset(offsets, false);
     }
 
     protected void offsetsCheck(Part part, Nozzle nozzle, Location offsets) throws Exception {
@@ -549,38 +617,42 @@ public class ReferenceBottomVision extends AbstractPartAlignment {
                 nozzle, nozzle.getNozzleTip(), wantedLocation, adjustedNozzleLocation, bottomVisionSettings);
         for (PipelineShot pipelineShot : pipeline.getPipelineShots()) {
             pipelineShot.apply();
+            processPipelineShot(pipeline, pipelineShot, camera, part, nozzle);
+        }
+        return (RotatedRect) pipeline.getCurrentPipelineShot().processCompositeResult().getModel();
+    }
 
-            pipeline.process();
-            Result result = pipeline.getResult(VisionUtils.PIPELINE_RESULTS_NAME);
+    private void processPipelineShot(CvPipeline pipeline, PipelineShot pipelineShot, Camera camera,
+            Part part, Nozzle nozzle) throws Exception {
+        pipeline.process();
+        Result result = pipeline.getResult(VisionUtils.PIPELINE_RESULTS_NAME);
 
-            // Fall back to the old name of "result" instead of "results" for backwards
-            // compatibility.
-            if (result == null) {
-                result = pipeline.getResult("result");
-            }
+        // Fall back to the old name of "result" instead of "results" for backwards
+        // compatibility.
+        if (result == null) {
+            result = pipeline.getResult("result");
+        }
 
-            if (result == null) {
-                throw new Exception(String.format(
-                        "ReferenceBottomVision (%s): Pipeline error. Pipeline must contain a result named '%s'.",
-                        part.getId(), VisionUtils.PIPELINE_RESULTS_NAME));
-            }
+        if (result == null) {
+            throw new Exception(String.format(
+                    "ReferenceBottomVision (%s): Pipeline error. Pipeline must contain a result named '%s'.",
+                    part.getId(), VisionUtils.PIPELINE_RESULTS_NAME));
+        }
 
-            if (result.model == null) {
-                throw new Exception(String.format(
-                        "ReferenceBottomVision (%s): No result found.",
-                        part.getId()));
-            }
+        if (result.model == null) {
+            throw new Exception(String.format(
+                    "ReferenceBottomVision (%s): No result found.",
+                    part.getId()));
+        }
 
-            if (!(result.model instanceof RotatedRect)) {
-                throw new Exception(String.format(
-                        "ReferenceBottomVision (%s): Incorrect pipeline result type (%s). Expected RotatedRect.",
-                        part.getId(), result.model.getClass().getSimpleName()));
-            }
-            pipelineShot.processResult(result);
-            // Display the shot result.   
-            displayResult(pipeline, part, null, camera, nozzle);
+        if (!(result.model instanceof RotatedRect)) {
+            throw new Exception(String.format(
+                    "ReferenceBottomVision (%s): Incorrect pipeline result type (%s). Expected RotatedRect.",
+                    part.getId(), result.model.getClass().getSimpleName()));
         }
-        return (RotatedRect) pipeline.getCurrentPipelineShot().processCompositeResult().getModel();
+        pipelineShot.processResult(result);
+        // Display the shot result.   
+        displayResult(pipeline, part, null, camera, nozzle);
     }
 
     @Override
@@ -32,6 +32,7 @@ import org.openpnp.gui.components.ComponentDecorators;
 import org.openpnp.gui.support.AbstractConfigurationWizard;
 import org.openpnp.gui.support.IntegerConverter;
 import org.openpnp.machine.reference.ReferencePnpJobProcessor;
+import org.openpnp.machine.reference.ReferencePnpJobProcessor.FeederSelection;
 import org.openpnp.machine.reference.ReferencePnpJobProcessor.JobOrderHint;
 
 import com.jgoodies.forms.layout.ColumnSpec;
@@ -45,6 +46,9 @@ public class ReferencePnpJobProcessorConfigurationWizard extends AbstractConfigu
     private JComboBox comboBoxJobOrder;
     private JTextField maxVisionRetriesTextField;
     private JCheckBox steppingToNextMotion;
+    private JComboBox comboBoxFeederSelection;
+    private JCheckBox pipelinedAlignment;
+    private JCheckBox pickAhead;
 
     public ReferencePnpJobProcessorConfigurationWizard(ReferencePnpJobProcessor jobProcessor) {
         this.jobProcessor = jobProcessor;
@@ -60,6 +64,12 @@ public class ReferencePnpJobProcessorConfigurationWizard extends AbstractConfigu
                 FormSpecs.RELATED_GAP_COLSPEC,
                 FormSpecs.DEFAULT_COLSPEC,},
                 new RowSpec[] {
+                        FormSpecs.RELATED_GAP_ROWSPEC,
+                        FormSpecs.DEFAULT_ROWSPEC,
+                        FormSpecs.RELATED_GAP_ROWSPEC,
+                        FormSpecs.DEFAULT_ROWSPEC,
+                        FormSpecs.RELATED_GAP_ROWSPEC,
+                        FormSpecs.DEFAULT_ROWSPEC,
                         FormSpecs.RELATED_GAP_ROWSPEC,
                         FormSpecs.DEFAULT_ROWSPEC,
                         FormSpecs.RELATED_GAP_ROWSPEC,
@@ -88,6 +98,27 @@ public class ReferencePnpJobProcessorConfigurationWizard extends AbstractConfigu
 
         steppingToNextMotion = new JCheckBox(); 
         panelGeneral.add(steppingToNextMotion, "4, 6");
+
+        JLabel lblFeederSelection = new JLabel(Translations.getString("MachineSetup.JobProcessors.ReferencePnpJobProcessor.Label.FeederSelection")); //$NON-NLS-1$
+        lblFeederSelection.setToolTipText(Translations.getString("MachineSetup.JobProcessors.ReferencePnpJobProcessor.Label.FeederSelection.toolTipText")); //$NON-NLS-1$
+        panelGeneral.add(lblFeederSelection, "2, 8, right, default");
+
+        comboBoxFeederSelection = new JComboBox(FeederSelection.values());
+        panelGeneral.add(comboBoxFeederSelection, "4, 8");
+
+        JLabel lblPipelinedAlignment = new JLabel(Translations.getString("MachineSetup.JobProcessors.ReferencePnpJobProcessor.Label.PipelinedAlignment")); //$NON-NLS-1$
+        lblPipelinedAlignment.setToolTipText(Translations.getString("MachineSetup.JobProcessors.ReferencePnpJobProcessor.Label.PipelinedAlignment.toolTipText")); //$NON-NLS-1$
+        panelGeneral.add(lblPipelinedAlignment, "2, 10, right, default");
+
+        pipelinedAlignment = new JCheckBox();
+        panelGeneral.add(pipelinedAlignment, "4, 10");
+
+        JLabel lblPickAhead = new JLabel(Translations.getString("MachineSetup.JobProcessors.ReferencePnpJobProcessor.Label.PickAhead")); //$NON-NLS-1$
+        lblPickAhead.setToolTipText(Translations.getString("MachineSetup.JobProcessors.ReferencePnpJobProcessor.Label.PickAhead.toolTipText")); //$NON-NLS-1$
+        panelGeneral.add(lblPickAhead, "2, 12, right, default");
+
+        pickAhead = new JCheckBox();
+        panelGeneral.add(pickAhead, "4, 12");
     }
 
     @Override
@@ -97,6 +128,9 @@ public class ReferencePnpJobProcessorConfigurationWizard extends AbstractConfigu
         addWrappedBinding(jobProcessor, "jobOrder", comboBoxJobOrder, "selectedItem");
         addWrappedBinding(jobProcessor, "maxVisionRetries", maxVisionRetriesTextField, "text", intConverter);
         addWrappedBinding(jobProcessor, "steppingToNextMotion", steppingToNextMotion, "selected");
+        addWrappedBinding(jobProcessor, "feederSelection", comboBoxFeederSelection, "selectedItem");
+        addWrappedBinding(jobProcessor, "pipelinedAlignment", pipelinedAlignment, "selected");
+        addWrappedBinding(jobProcessor, "pickAhead", pickAhead, "selected");
         
         ComponentDecorators.decorateWithAutoSelect(maxVisionRetriesTextField);
     }
@@ -4,8 +4,12 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 import org.openpnp.model.MotionProfile.ProfileOption;
 import org.openpnp.util.XmlSerialize;
@@ -16,6 +20,8 @@ public abstract class AbstractMotionPath implements Iterable<MotionProfile []> {
 
     protected final static int segments = MotionProfile.segments; 
 
+    private boolean parallelSolving = false;
+
     public abstract int size();
     public abstract MotionProfile [] get(int i);
 
@@ -46,6 +52,28 @@ public abstract class AbstractMotionPath implements Iterable<MotionProfile []> {
         }
     }
 
+    public boolean isParallelSolving() {
+        return parallelSolving;
+    }
+
+    /**
+     * @param parallelSolving If true, the independent motion profiles of the path are solved in parallel. 
+     * The result is the same as when solved sequentially.
+     */
+    public void setParallelSolving(boolean parallelSolving) {
+        this.parallelSolving = parallelSolving;
+    }
+
+    /**
+     * Sub-classes with lookahead planning can override this to let coordinated moves pass through corners.
+     * 
+     * @param i
+     * @return The path velocity (along the unit vector of move i) through the junction from move i-1 into move i. 
+     */
+    protected double getJunctionVelocity(int i) {
+        return 0;
+    }
+
     public void solve() throws Exception {
         solve(approximation, iterations);
     }
@@ -103,13 +131,13 @@ public abstract class AbstractMotionPath implements Iterable<MotionProfile []> {
         double [] junctionCosineFromPrev = new double[size];
         int [] colinearWithPrev = new int[size];
         boolean[] simplified = new boolean[size];
-        MotionProfile [] prevProfiles0 = null;
-        for (int i = 0; i <= last; i++) {
+        // Motions are only prepared up to one with zero dimensions.
+        int prepared = 0;
+        while (prepared <= last && get(prepared).length > 0) {
+            prepared++;
+        }
+        forEachIndependent(prepared, i -> {
             MotionProfile [] profiles = get(i);
-            if (profiles.length == 0) {
-                // Zero dimensions?
-                return;
-            }
             unitVector[i] = MotionProfile.getUnitVector(profiles);
             leadAxis[i] = MotionProfile.getLeadAxisIndex(unitVector[i]);
             simplified[i] = false;
@@ -118,20 +146,6 @@ public abstract class AbstractMotionPath implements Iterable<MotionProfile []> {
                     simplified[i] |= !profiles[axis].isSupportingUncoordinated();
                 }
             }
-            if (i > 0) {
-                junctionCosineFromPrev[i] = MotionProfile.dotProduct(unitVector[i-1], unitVector[i]);
-                colinearWithPrev[i] = 0;
-                int lead = leadAxis[i];
-                if (lead == leadAxis[i-1]
-                        && simplified[i] == simplified[i-1]
-                                && (Math.abs(profiles[lead].getVelocityMax() - prevProfiles0[lead].getVelocityMax()) < MotionProfile.vtol) 
-                                && (Math.abs(profiles[lead].getEntryAccelerationMax() - prevProfiles0[lead].getEntryAccelerationMax()) < MotionProfile.atol) 
-                                && (Math.abs(profiles[lead].getExitAccelerationMax() - prevProfiles0[lead].getExitAccelerationMax()) < MotionProfile.atol) ) {
-                    colinearWithPrev[i] = ((junctionCosineFromPrev[i] >= 1.0 - MotionProfile.eps) ? 1 
-                            : (junctionCosineFromPrev[i] <= -1.0 + MotionProfile.eps) ? -1 
-                                    : 0);
-                }
-            }
             // Solve all and store initial times.
             if (MotionProfile.isCoordinated(profiles)) {
                 int lead = leadAxis[i];
@@ -140,153 +154,60 @@ public abstract class AbstractMotionPath implements Iterable<MotionProfile []> {
                 }
             }
             else {
-                boolean sync = false;
-                for (int axis = 0; axis < profiles.length; axis++) {
-                    sync = profiles[axis].assertSolved() 
-                            || sync;
-                }
-                if (sync) {
+                if (assertProfilesSolved(profiles)) {
                     MotionProfile.synchronizeProfiles(profiles);
                 }
             }
             for (int axis = 0; axis < profiles.length; axis++) {
-                profiles[axis].initialTime = profiles[axis].time; 
+                profiles[axis].initialTime = profiles[axis].time;
+            }
+        });
+        if (prepared <= last) {
+            // Zero dimensions?
+            return;
+        }
+        for (int i = 1; i <= last; i++) {
+            MotionProfile [] profiles = get(i);
+            MotionProfile [] prevProfiles0 = get(i-1);
+            junctionCosineFromPrev[i] = MotionProfile.dotProduct(unitVector[i-1], unitVector[i]);
+            colinearWithPrev[i] = 0;
+            int lead = leadAxis[i];
+            if (lead == leadAxis[i-1]
+                    && simplified[i] == simplified[i-1]
+                            && (Math.abs(profiles[lead].getVelocityMax() - prevProfiles0[lead].getVelocityMax()) < MotionProfile.vtol)
+                            && (Math.abs(profiles[lead].getEntryAccelerationMax() - prevProfiles0[lead].getEntryAccelerationMax()) < MotionProfile.atol)
+                            && (Math.abs(profiles[lead].getExitAccelerationMax() - prevProfiles0[lead].getExitAccelerationMax()) < MotionProfile.atol) ) {
+                colinearWithPrev[i] = ((junctionCosineFromPrev[i] >= 1.0 - MotionProfile.eps) ? 1
+                        : (junctionCosineFromPrev[i] <= -1.0 + MotionProfile.eps) ? -1
+                                : 0);
             }
-            prevProfiles0 = profiles;
         }
         int dimensions = unitVector[0].length;
 
         for (int iteration = 0; iteration < iterations; iteration++) {
+            // Find the coordinated sequences first. These only read the limits and the last iteration's
+            // timing of their neighbors, so they can be solved independently of each other.
+            List<int []> sequences = new ArrayList<>();
             int iNext;
             boolean hasUncoordinated = false;
             for (int i = 0; i <= last; i = iNext) {
                 iNext = i+1;
                 MotionProfile [] profiles = get(i);
-                MotionProfile [] prevProfiles = (i > 0 ? get(i-1) : null);
                 if (simplified[i]) {
-                    // We can only handle them as single coordinated moves for now, because they don't support acceleration != 0 in junctions. 
-                    int lead = leadAxis[i];
-                    if (profiles[lead].assertSolved()) {
-                        MotionProfile.coordinateProfiles(profiles);
-                    }
+                    sequences.add(new int[] { i, iNext });
                 }
                 else if (MotionProfile.isCoordinated(profiles)) {
-                    int lead = leadAxis[i];
-                    // This may be a sequence of multiple co-linear moves: try create a spanning profile.
-                    MotionProfile solverProfile = new MotionProfile(profiles[lead]);
-                    MotionProfile [] exitProfiles = profiles;
+                    // This may be a sequence of multiple co-linear moves.
                     for (int j = i+1; j <= last; j++) {
                         MotionProfile [] seqProfiles = get(j);
                         if (!(MotionProfile.isCoordinated(seqProfiles) && colinearWithPrev[j] == 1)) {
                             // Sequence ended.
                             break;
                         }
-                        // Extend to include this move.
-                        solverProfile.s[segments] = seqProfiles[lead].s[segments];
-                        // Also take the exit constraints (in case it's the's path exit condition). 
-                        solverProfile.v[segments] = seqProfiles[lead].v[segments];
-                        solverProfile.a[segments] = seqProfiles[lead].a[segments];
                         // Remember how far this sequence reaches.
                         iNext = j+1;
-                        exitProfiles = seqProfiles;
-                    }
-                    MotionProfile [] nextProfiles = (iNext <= last ? get(iNext) : null);
-                    if (iteration > 0) {
-                        // This is a further refinement.
-                        controlOvershoot(prevProfiles, profiles, exitProfiles, nextProfiles, lead,
-                                solverProfile, approximation, iteration);
-                    }
-                    else {
-                        boolean expandEntry = false;
-                        boolean expandExit = false;
-                        if (prevProfiles != null) {
-                            if (MotionProfile.isCoordinated(prevProfiles)) { 
-                                // If the previous profiles are coordinated they cannot be positively co-linear/same speed, otherwise they would be in the sequence.
-                                // This means we have a corner. Start from zero velocity/acceleration. 
-                            }
-                            else { // Uncoordinated previous.
-                                if (unitVector[i][lead] > 0) {
-                                    // Going positive, take sMin into consideration 
-                                    if (Double.isFinite(prevProfiles[lead].sMin)) {
-                                        solverProfile.s[0] = prevProfiles[lead].sMin;
-                                    }
-                                    else {
-                                        expandEntry = true;
-                                    }
-                                }
-                                else {
-                                    // Going negative, take sMax into consideration 
-                                    if (Double.isFinite(prevProfiles[lead].sMax)) {
-                                        solverProfile.s[0] = prevProfiles[lead].sMax;
-                                    }
-                                    else {
-                                        expandEntry = true;
-                                    }
-                                }
-                            }
-                            solverProfile.v[0] = 0;
-                            solverProfile.a[0] = 0;
-                        }
-                        if (nextProfiles != null) {
-                            if (MotionProfile.isCoordinated(nextProfiles)) { 
-                                // If the next profiles are coordinated they cannot be positively co-linear/same speed, otherwise they would be in the sequence.
-                                // This means we have a corner. Stop to zero velocity/acceleration. 
-                            }
-                            else { // Uncoordinated next.
-                                if (unitVector[i][lead] < 0) {
-                                    // Going negative, take sMin into consideration 
-                                    if (Double.isFinite(nextProfiles[lead].sMin)) {
-                                        solverProfile.s[segments] = nextProfiles[lead].sMin;
-                                    }
-                                    else {
-                                        expandExit = true;
-                                    }
-                                }
-                                else {
-                                    // Going positive, take sMax into consideration 
-                                    if (Double.isFinite(nextProfiles[lead].sMax)) {
-                                        solverProfile.s[segments] = nextProfiles[lead].sMax;
-                                    }
-                                    else {
-                                        expandExit = true;
-                                    }
-                                }
-                            }
-                            solverProfile.v[segments] = 0;
-                            solverProfile.a[segments] = 0;
-                        }
-                        if (iNext > last) { 
-                            if (solverProfile.hasOption(ProfileOption.Jog)) {    
-                                // This is the last move and a Jog, set the option to have open velocity/acceleration.
-                                expandExit = true;
-                                solverProfile.v[segments] = 0;
-                                solverProfile.a[segments] = 0;
-                            }
-                        }
-                        if (expandEntry || expandExit) {
-                            // Entry and/or exit is expanded. .
-                            solverProfile.solveByExpansion(Math.signum(unitVector[i][lead]), expandEntry, expandExit);
-                        }
-                        else {
-                            // Solve to boundary conditions.
-                            solverProfile.solve();
-                        }
-                    }
-                    //validate("["+i+"]["+lead+"]", solverProfile);
-
-                    // Cut this along the sequence.
-                    double t0 = solverProfile.getForwardCrossingTime(profiles[lead].s[0], false);
-                    for (int j = i; j < iNext; j++) {
-                        MotionProfile [] seqProfiles = get(j);
-                        // Note, we can always use forward crossing time, because in coordinated moves there is no sign reversal.
-                        double t1 = solverProfile.getForwardCrossingTime(seqProfiles[lead].s[segments], false);
-                        seqProfiles[lead].extractProfileSectionFrom(solverProfile, t0, t1);
-                        // TODO: if the extracted move has reached solverProfile.vMax on entry/exit it may be re-optimized using its higher
-                        // vMax i.e. while pinching down entry/exit velocity and acceleration, we can re-solve it.
-                        MotionProfile.coordinateProfilesToLead(seqProfiles, seqProfiles[lead]);
-                        //MotionProfile.validateProfiles(seqProfiles);
-                        t0 = t1;
                     }
+                    sequences.add(new int[] { i, iNext });
                 }
                 else {
                     // Clear all solved flags.
@@ -297,6 +218,22 @@ public abstract class AbstractMotionPath implements Iterable<MotionProfile []> {
                     hasUncoordinated = true;
                 }
             }
+            final int currentIteration = iteration;
+            forEachIndependent(sequences.size(), k -> {
+                int i = sequences.get(k)[0];
+                if (simplified[i]) {
+                    // We can only handle them as single coordinated moves for now, because they don't support acceleration != 0 in junctions.
+                    MotionProfile [] profiles = get(i);
+                    int lead = leadAxis[i];
+                    if (profiles[lead].assertSolved()) {
+                        MotionProfile.coordinateProfiles(profiles);
+                    }
+                }
+                else {
+                    solveCoordinatedSequence(i, sequences.get(k)[1], leadAxis[i], unitVector[i],
+                            approximation, currentIteration);
+                }
+            });
 
             while (hasUncoordinated) {
                 hasUncoordinated = false;
@@ -305,124 +242,22 @@ public abstract class AbstractMotionPath implements Iterable<MotionProfile []> {
                     MotionProfile [] prevProfiles = (i > 0 ? get(i-1) : null);
                     MotionProfile [] nextProfiles = (i < last ? get(i+1) : null);
                     if (! MotionProfile.isCoordinated(profiles)) {
+                        // Each axis only depends on the same axis of the neighboring moves.
+                        int [] axisResult = new int[dimensions];
+                        forEachIndependent(dimensions, axis -> {
+                            if (!profiles[axis].hasOption(ProfileOption.Solved)) {
+                                axisResult[axis] = solveUncoordinatedAxis(prevProfiles, profiles, nextProfiles, axis) ?
+                                        AXIS_SOLVED : AXIS_PENDING;
+                            }
+                        });
                         boolean hasSolved = false;
                         for (int axis = 0; axis < dimensions; axis++) {
-                            if (!profiles[axis].hasOption(ProfileOption.Solved)) {
-                                boolean solve = false;
-                                boolean expandEntry = false;
-                                boolean expandExit = false;
-                                double vEffEntry = 0;
-                                double vEffExit = 0;
-                                if (prevProfiles == null) {
-                                    // Take path entry conditions as is.
-                                    solve = true;
-                                }
-                                else if (prevProfiles[axis].hasOption(ProfileOption.Solved)) {
-                                    profiles[axis].v[0] = prevProfiles[axis].v[segments];
-                                    profiles[axis].a[0] = prevProfiles[axis].a[segments];
-                                    vEffEntry = profiles[axis].getEffectiveEntryVelocity(profiles[axis].jMax);
-                                    solve = true; 
-                                }
-                                else {
-                                    expandEntry = true;
-                                }
-                                if (nextProfiles == null) {
-                                    // Take path exit conditions as is.
-                                    solve = true;
-                                }
-                                else if (nextProfiles[axis].hasOption(ProfileOption.Solved)) {
-                                    profiles[axis].v[segments] = nextProfiles[axis].v[0];
-                                    profiles[axis].a[segments] = nextProfiles[axis].a[0];
-                                    vEffExit = profiles[axis].getEffectiveExitVelocity(profiles[axis].jMax);
-                                    solve = true; 
-                                }
-                                else {
-                                    expandExit = true;
-                                }
-                                //                                if (solve && (expandEntry || expandExit)) {
-                                //                                    // Entry and/or exit expansion, solve using an overreaching profile.
-                                //                                    MotionProfile solverProfile = new MotionProfile(profiles[axis]);
-                                //                                    double signum = solverProfile.profileSignum(vEffEntry, vEffExit);
-                                //                                    if (iteration > 0) {
-                                //                                        // This is a further refinement.
-                                //                                        double timeWastedEntry = prevProfiles == null ? 0 : (prevProfiles[axis].time - straightLineCoordinatedTime[i-1]);
-                                //                                        double timeWastedExit = nextProfiles == null ? 0 : (nextProfiles[axis].time - straightLineCoordinatedTime[i+1]);
-                                //                                        controlOvershoot(prevProfiles, profiles, profiles, nextProfiles, axis,
-                                //                                                timeWastedEntry, timeWastedExit, solverProfile, approximation);
-                                //                                        //expandEntry = profiles[axis].hasOption(ProfileOption.CroppedEntry);
-                                //                                        //expandExit = profiles[axis].hasOption(ProfileOption.CroppedExit);
-                                //                                    }
-                                //                                    else {
-                                //                                        if (expandEntry) {
-                                //                                            if (signum > 0) {
-                                //                                                // Going positive, take sMin into consideration 
-                                //                                                if (prevProfiles != null && Double.isFinite(prevProfiles[axis].sMin)) {
-                                //                                                    solverProfile.s[0] = prevProfiles[axis].sMin;
-                                //                                                    // We got a limit, do not expand after all.
-                                //                                                    expandEntry = false;
-                                //                                                }
-                                //                                            }
-                                //                                            else if (signum < 0) {
-                                //                                                // Going negative, take sMax into consideration 
-                                //                                                if (prevProfiles != null && Double.isFinite(prevProfiles[axis].sMax)) {
-                                //                                                    solverProfile.s[0] = prevProfiles[axis].sMax;
-                                //                                                    // We got a limit, do not expand after all.
-                                //                                                    expandEntry = false;
-                                //                                                }
-                                //                                            }
-                                //                                            solverProfile.v[0] = 0;
-                                //                                            solverProfile.a[0] = 0;
-                                //                                        }
-                                //                                        if (expandExit) {
-                                //                                            if (signum < 0) {
-                                //                                                // Going negative, take sMin into consideration 
-                                //                                                if (nextProfiles != null && Double.isFinite(nextProfiles[axis].sMin)) {
-                                //                                                    solverProfile.s[segments] = nextProfiles[axis].sMin;
-                                //                                                    // We got a limit, do not expand after all.
-                                //                                                    expandExit = false;
-                                //                                                }
-                                //                                            }
-                                //                                            else if (signum > 0) {
-                                //                                                // Going positive, take sMax into consideration 
-                                //                                                if (nextProfiles != null && Double.isFinite(nextProfiles[axis].sMax)) {
-                                //                                                    solverProfile.s[segments] = nextProfiles[axis].sMax;
-                                //                                                    // We got a limit, do not expand after all.
-                                //                                                    expandExit = false;
-                                //                                                }
-                                //                                            }
-                                //                                            solverProfile.v[segments] = 0;
-                                //                                            solverProfile.a[segments] = 0;
-                                //                                        }
-                                //                                    }
-                                //                                    if  (signum != 0 && (expandEntry || expandExit)) {
-                                //                                        // Still expanding, do it.
-                                //                                        solverProfile.solveByExpansion(signum, expandEntry, expandExit);
-                                //                                        double t0 = solverProfile.getForwardCrossingTime(profiles[axis].s[0], false);
-                                //                                        double t1 = solverProfile.getBackwardCrossingTime(profiles[axis].s[segments], false);
-                                //                                        profiles[axis].extractProfileSectionFrom(solverProfile, t0, t1);
-                                //                                        profiles[axis].validate("extracted from expansion, move "+i);                                    
-                                //                                    }
-                                //                                    else {
-                                //                                        // Solve and extract.
-                                //                                        solverProfile.assertSolved();
-                                //                                        double t0 = solverProfile.getForwardCrossingTime(profiles[axis].s[0], false);
-                                //                                        double t1 = solverProfile.getBackwardCrossingTime(profiles[axis].s[segments], false);
-                                //                                        profiles[axis].extractProfileSectionFrom(solverProfile, t0, t1);
-                                //                                        profiles[axis].validate("extracted, move "+i);                                    
-                                //                                    }
-                                //                                    hasSolved = true;
-                                //                                }
-                                //                                else 
-                                if (solve) {
-                                    // Solve with given entry/exit conditions.
-                                    profiles[axis].solve();
-                                    //profiles[axis].validate("simply solved, move "+i);             
-                                    hasSolved = true;
-                                }
-                                else {
-                                    // Remember for another pass.
-                                    hasUncoordinated = true;
-                                }
+                            if (axisResult[axis] == AXIS_SOLVED) {
+                                hasSolved = true;
+                            }
+                            else if (axisResult[axis] == AXIS_PENDING) {
+                                // Remember for another pass.
+                                hasUncoordinated = true;
                             }
                         }
                         if (hasSolved) {
@@ -435,6 +270,291 @@ public abstract class AbstractMotionPath implements Iterable<MotionProfile []> {
         }
     }
 
+    private static final int AXIS_SOLVED = 1;
+    private static final int AXIS_PENDING = 2;
+
+    /**
+     * Solve a sequence of co-linear coordinated moves as one spanning profile and cut the moves out of it.
+     * Only writes to the moves of the sequence.
+     */
+    private void solveCoordinatedSequence(int i, int iNext, int lead, double [] unitVector,
+            double approximation, int iteration) {
+        int last = size() - 1;
+        MotionProfile [] profiles = get(i);
+        MotionProfile [] prevProfiles = (i > 0 ? get(i-1) : null);
+        // Create a spanning profile.
+        MotionProfile solverProfile = new MotionProfile(profiles[lead]);
+        MotionProfile [] exitProfiles = profiles;
+        for (int j = i+1; j < iNext; j++) {
+            MotionProfile [] seqProfiles = get(j);
+            // Extend to include this move.
+            solverProfile.s[segments] = seqProfiles[lead].s[segments];
+            // Also take the exit constraints (in case it's the's path exit condition).
+            solverProfile.v[segments] = seqProfiles[lead].v[segments];
+            solverProfile.a[segments] = seqProfiles[lead].a[segments];
+            exitProfiles = seqProfiles;
+        }
+        MotionProfile [] nextProfiles = (iNext <= last ? get(iNext) : null);
+        if (iteration > 0) {
+            // This is a further refinement.
+            controlOvershoot(prevProfiles, profiles, exitProfiles, nextProfiles, lead,
+                    solverProfile, approximation, iteration);
+        }
+        else {
+            boolean expandEntry = false;
+            boolean expandExit = false;
+            if (prevProfiles != null) {
+                double vEntry = 0;
+                if (MotionProfile.isCoordinated(prevProfiles)) { 
+                    // If the previous profiles are coordinated they cannot be positively co-linear/same speed, otherwise they would be in the sequence.
+                    // This means we have a corner. Start from the junction velocity (usually zero) and zero acceleration. 
+                    double vJunction = getJunctionVelocity(i);
+                    if (vJunction > 0) {
+                        vEntry = vJunction*unitVector[lead];
+                    }
+                }
+                else { // Uncoordinated previous.
+                    if (unitVector[lead] > 0) {
+                        // Going positive, take sMin into consideration 
+                        if (Double.isFinite(prevProfiles[lead].sMin)) {
+                            solverProfile.s[0] = prevProfiles[lead].sMin;
+                        }
+                        else {
+                            expandEntry = true;
+                        }
+                    }
+                    else {
+                        // Going negative, take sMax into consideration 
+                        if (Double.isFinite(prevProfiles[lead].sMax)) {
+                            solverProfile.s[0] = prevProfiles[lead].sMax;
+                        }
+                        else {
+                            expandEntry = true;
+                        }
+                    }
+                }
+                solverProfile.v[0] = vEntry;
+                solverProfile.a[0] = 0;
+            }
+            if (nextProfiles != null) {
+                double vExit = 0;
+                if (MotionProfile.isCoordinated(nextProfiles)) { 
+                    // If the next profiles are coordinated they cannot be positively co-linear/same speed, otherwise they would be in the sequence.
+                    // This means we have a corner. Stop to the junction velocity (usually zero) and zero acceleration. 
+                    double vJunction = getJunctionVelocity(iNext);
+                    if (vJunction > 0) {
+                        vExit = vJunction*unitVector[lead];
+                    }
+                }
+                else { // Uncoordinated next.
+                    if (unitVector[lead] < 0) {
+                        // Going negative, take sMin into consideration 
+                        if (Double.isFinite(nextProfiles[lead].sMin)) {
+                            solverProfile.s[segments] = nextProfiles[lead].sMin;
+                        }
+                        else {
+                            expandExit = true;
+                        }
+                    }
+                    else {
+                        // Going positive, take sMax into consideration 
+                        if (Double.isFinite(nextProfiles[lead].sMax)) {
+                            solverProfile.s[segments] = nextProfiles[lead].sMax;
+                        }
+                        else {
+                            expandExit = true;
+                        }
+                    }
+                }
+                solverProfile.v[segments] = vExit;
+                solverProfile.a[segments] = 0;
+            }
+            if (iNext > last) { 
+                if (solverProfile.hasOption(ProfileOption.Jog)) {    
+                    // This is the last move and a Jog, set the option to have open velocity/acceleration.
+                    expandExit = true;
+                    solverProfile.v[segments] = 0;
+                    solverProfile.a[segments] = 0;
+                }
+            }
+            if (expandEntry || expandExit) {
+                // Entry and/or exit is expanded. .
+                solverProfile.solveByExpansion(Math.signum(unitVector[lead]), expandEntry, expandExit);
+            }
+            else {
+                // Solve to boundary conditions.
+                solverProfile.solve();
+            }
+        }
+        //validate("["+i+"]["+lead+"]", solverProfile);
+
+        // Cut this along the sequence.
+        double t0 = solverProfile.getForwardCrossingTime(profiles[lead].s[0], false);
+        for (int j = i; j < iNext; j++) {
+            MotionProfile [] seqProfiles = get(j);
+            // Note, we can always use forward crossing time, because in coordinated moves there is no sign reversal.
+            double t1 = solverProfile.getForwardCrossingTime(seqProfiles[lead].s[segments], false);
+            seqProfiles[lead].extractProfileSectionFrom(solverProfile, t0, t1);
+            // TODO: if the extracted move has reached solverProfile.vMax on entry/exit it may be re-optimized using its higher
+            // vMax i.e. while pinching down entry/exit velocity and acceleration, we can re-solve it.
+            MotionProfile.coordinateProfilesToLead(seqProfiles, seqProfiles[lead]);
+            //MotionProfile.validateProfiles(seqProfiles);
+            t0 = t1;
+        }
+    }
+
+    /**
+     * Solve one axis of an uncoordinated move, if its entry/exit conditions are known. Only writes to
+     * the given axis, so the axes can be solved independently.
+     *
+     * @return true if solved, false if it must be remembered for another pass.
+     */
+    private boolean solveUncoordinatedAxis(MotionProfile [] prevProfiles, MotionProfile [] profiles,
+            MotionProfile [] nextProfiles, int axis) {
+        boolean solve = false;
+        boolean expandEntry = false;
+        boolean expandExit = false;
+        double vEffEntry = 0;
+        double vEffExit = 0;
+        if (prevProfiles == null) {
+            // Take path entry conditions as is.
+            solve = true;
+        }
+        else if (prevProfiles[axis].hasOption(ProfileOption.Solved)) {
+            profiles[axis].v[0] = prevProfiles[axis].v[segments];
+            profiles[axis].a[0] = prevProfiles[axis].a[segments];
+            vEffEntry = profiles[axis].getEffectiveEntryVelocity(profiles[axis].jMax);
+            solve = true; 
+        }
+        else {
+            expandEntry = true;
+        }
+        if (nextProfiles == null) {
+            // Take path exit conditions as is.
+            solve = true;
+        }
+        else if (nextProfiles[axis].hasOption(ProfileOption.Solved)) {
+            profiles[axis].v[segments] = nextProfiles[axis].v[0];
+            profiles[axis].a[segments] = nextProfiles[axis].a[0];
+            vEffExit = profiles[axis].getEffectiveExitVelocity(profiles[axis].jMax);
+            solve = true; 
+        }
+        else {
+            expandExit = true;
+        }
+        //                                if (solve && (expandEntry || expandExit)) {
+        //                                    // Entry and/or exit expansion, solve using an overreaching profile.
+        //                                    MotionProfile solverProfile = new MotionProfile(profiles[axis]);
+        //                                    double signum = solverProfile.profileSignum(vEffEntry, vEffExit);
+        //                                    if (iteration > 0) {
+        //                                        // This is a further refinement.
+        //                                        double timeWastedEntry = prevProfiles == null ? 0 : (prevProfiles[axis].time - straightLineCoordinatedTime[i-1]);
+        //                                        double timeWastedExit = nextProfiles == null ? 0 : (nextProfiles[axis].time - straightLineCoordinatedTime[i+1]);
+        //                                        controlOvershoot(prevProfiles, profiles, profiles, nextProfiles, axis,
+        //                                                timeWastedEntry, timeWastedExit, solverProfile, approximation);
+        //                                        //expandEntry = profiles[axis].hasOption(ProfileOption.CroppedEntry);
+        //                                        //expandExit = profiles[axis].hasOption(ProfileOption.CroppedExit);
+        //                                    }
+        //                                    else {
+        //                                        if (expandEntry) {
+        //                                            if (signum > 0) {
+        //                                                // Going positive, take sMin into consideration 
+        //                                                if (prevProfiles != null && Double.isFinite(prevProfiles[axis].sMin)) {
+        //                                                    solverProfile.s[0] = prevProfiles[axis].sMin;
+        //                                                    // We got a limit, do not expand after all.
+        //                                                    expandEntry = false;
+        //                                                }
+        //                                            }
+        //                                            else if (signum < 0) {
+        //                                                // Going negative, take sMax into consideration 
+        //                                                if (prevProfiles != null && Double.isFinite(prevProfiles[axis].sMax)) {
+        //                                                    solverProfile.s[0] = prevProfiles[axis].sMax;
+        //                                                    // We got a limit, do not expand after all.
+        //                                                    expandEntry = false;
+        //                                                }
+        //                                            }
+        //                                            solverProfile.v[0] = 0;
+        //                                            solverProfile.a[0] = 0;
+        //                                        }
+        //                                        if (expandExit) {
+        //                                            if (signum < 0) {
+        //                                                // Going negative, take sMin into consideration 
+        //                                                if (nextProfiles != null && Double.isFinite(nextProfiles[axis].sMin)) {
+        //                                                    solverProfile.s[segments] = nextProfiles[axis].sMin;
+        //                                                    // We got a limit, do not expand after all.
+        //                                                    expandExit = false;
+        //                                                }
+        //                                            }
+        //                                            else if (signum > 0) {
+        //                                                // Going positive, take sMax into consideration 
+        //                                                if (nextProfiles != null && Double.isFinite(nextProfiles[axis].sMax)) {
+        //                                                    solverProfile.s[segments] = nextProfiles[axis].sMax;
+        //                                                    // We got a limit, do not expand after all.
+        //                                                    expandExit = false;
+        //                                                }
+        //                                            }
+        //                                            solverProfile.v[segments] = 0;
+        //                                            solverProfile.a[segments] = 0;
+        //                                        }
+        //                                    }
+        //                                    if  (signum != 0 && (expandEntry || expandExit)) {
+        //                                        // Still expanding, do it.
+        //                                        solverProfile.solveByExpansion(signum, expandEntry, expandExit);
+        //                                        double t0 = solverProfile.getForwardCrossingTime(profiles[axis].s[0], false);
+        //                                        double t1 = solverProfile.getBackwardCrossingTime(profiles[axis].s[segments], false);
+        //                                        profiles[axis].extractProfileSectionFrom(solverProfile, t0, t1);
+        //                                        profiles[axis].validate("extracted from expansion, move "+i);                                    
+        //                                    }
+        //                                    else {
+        //                                        // Solve and extract.
+        //                                        solverProfile.assertSolved();
+        //                                        double t0 = solverProfile.getForwardCrossingTime(profiles[axis].s[0], false);
+        //                                        double t1 = solverProfile.getBackwardCrossingTime(profiles[axis].s[segments], false);
+        //                                        profiles[axis].extractProfileSectionFrom(solverProfile, t0, t1);
+        //                                        profiles[axis].validate("extracted, move "+i);                                    
+        //                                    }
+        //                                    hasSolved = true;
+        //                                }
+        //                                else 
+        if (solve) {
+            // Solve with given entry/exit conditions.
+            profiles[axis].solve();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Run the tasks for the indices 0 ... n-1. With parallel solving enabled, they are run on the
+     * common fork-join pool, so the tasks must be independent of each other.
+     */
+    protected void forEachIndependent(int n, IntConsumer task) {
+        if (parallelSolving && n > 1) {
+            IntStream.range(0, n).parallel().forEach(task);
+        }
+        else {
+            for (int i = 0; i < n; i++) {
+                task.accept(i);
+            }
+        }
+    }
+
+    /**
+     * Assert all the profiles are solved, independently of each other.
+     *
+     * @return true if any profile had to be solved.
+     */
+    private boolean assertProfilesSolved(MotionProfile [] profiles) {
+        boolean [] solved = new boolean[profiles.length];
+        forEachIndependent(profiles.length, axis -> solved[axis] = profiles[axis].assertSolved());
+        for (boolean s : solved) {
+            if (s) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Helper for the optimizer: reduces excess overshoot into uncoordinated moves. This is a simple
      * heuristic controlled by excess time detected in the uncoordinated move. Excess time is assumed
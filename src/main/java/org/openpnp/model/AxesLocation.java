@@ -21,14 +21,16 @@
 
 package org.openpnp.model;
 
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedHashMap;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
@@ -59,10 +61,123 @@ import org.openpnp.util.Triplet;
  * AxesLocations preserve the order of the axes. In particular the Configuration order of axis definitions is 
  * sometimes used to treat axes in their "natural" order, where it may matter.  
  * 
+ * AxesLocations are immutable and created many times per move, so they are stored as plain arrays of axes and 
+ * coordinates, in axis order. Each axis has a dense ordinal (see {@link Axis#getOrdinal()}), a bitmask of the 
+ * ordinals allows testing for contained axes without searching, or hashing. The few axes are then found by 
+ * identity. 
+ * 
  */
 public class AxesLocation {
-    final private LinkedHashMap<Axis, Double> location;
+    final private Axis [] axes;
+    final private double [] coordinates;
+    final private long mask;
+
+    private static final Axis [] noAxes = new Axis[0];
+    private static final double [] noCoordinates = new double[0];
     final public static AxesLocation zero = new AxesLocation();
+    private static final AtomicInteger axisOrdinals = new AtomicInteger();
+
+    /**
+     * @return The next free global axis ordinal, for axes that were not assigned one by their machine.
+     */
+    public static int nextAxisOrdinal() {
+        return axisOrdinals.getAndIncrement();
+    }
+
+    private static long ordinalBit(Axis axis) {
+        return 1L << (axis.getOrdinal() & 63);
+    }
+
+    /**
+     * Growing array of axes and coordinates, used to construct the AxesLocation.  
+     */
+    private static class Builder {
+        Axis [] axes;
+        double [] coordinates;
+        int size;
+        long mask;
+
+        Builder(int capacity) {
+            axes = (capacity == 0 ? noAxes : new Axis[capacity]);
+            coordinates = (capacity == 0 ? noCoordinates : new double[capacity]);
+        }
+
+        Builder(AxesLocation axesLocation, int extraCapacity) {
+            int capacity = axesLocation.axes.length + extraCapacity;
+            axes = Arrays.copyOf(axesLocation.axes, capacity);
+            coordinates = Arrays.copyOf(axesLocation.coordinates, capacity);
+            size = axesLocation.axes.length;
+            mask = axesLocation.mask;
+        }
+
+        int indexOf(Axis axis) {
+            if ((mask & ordinalBit(axis)) != 0) {
+                for (int i = 0; i < size; i++) {
+                    if (axes[i] == axis) {
+                        return i;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Put the coordinate, replacing any existing one for the axis. 
+         */
+        void put(Axis axis, double coordinate) {
+            int i = indexOf(axis);
+            if (i >= 0) {
+                coordinates[i] = coordinate;
+            }
+            else {
+                append(axis, coordinate);
+            }
+        }
+
+        /**
+         * Append the coordinate, the axis must not yet be contained.
+         */
+        void append(Axis axis, double coordinate) {
+            if (size == axes.length) {
+                int capacity = Math.max(4, size*2);
+                axes = Arrays.copyOf(axes, capacity);
+                coordinates = Arrays.copyOf(coordinates, capacity);
+            }
+            axes[size] = axis;
+            coordinates[size] = coordinate;
+            size++;
+            mask |= ordinalBit(axis);
+        }
+    }
+
+    private AxesLocation(Builder builder) {
+        if (builder.size == builder.axes.length) {
+            axes = builder.axes;
+            coordinates = builder.coordinates;
+        }
+        else {
+            axes = Arrays.copyOf(builder.axes, builder.size);
+            coordinates = Arrays.copyOf(builder.coordinates, builder.size);
+        }
+        mask = builder.mask;
+    }
+
+    private AxesLocation(Axis [] axes, double [] coordinates, long mask) {
+        this.axes = axes;
+        this.coordinates = coordinates;
+        this.mask = mask;
+    }
+
+    private int indexOf(Axis axis) {
+        if (axis != null && (mask & ordinalBit(axis)) != 0) {
+            for (int i = 0; i < axes.length; i++) {
+                if (axes[i] == axis) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
 
     /**
      * All coordinates of AxesLoactions are handled as Millimeters to speed up calculations and allow for 
@@ -83,7 +198,7 @@ public class AxesLocation {
      */
     public AxesLocation() {
         // Empty.
-        location = new LinkedHashMap<>(0);
+        this(noAxes, noCoordinates, 0);
     }
     /**
      * Create a single Axis/coordinate pair AxesLocation.  
@@ -92,10 +207,9 @@ public class AxesLocation {
      * @param coordinate
      */
     public AxesLocation(Axis axis, double coordinate) {
-        location = new LinkedHashMap<>(1);
-        if (axis != null) {
-            location.put(axis, coordinate);
-        }
+        this(axis == null ? noAxes : new Axis[] { axis }, 
+                axis == null ? noCoordinates : new double[] { coordinate },
+                axis == null ? 0 : ordinalBit(axis));
     }
     /**
      * Create a single Axis/Length coordinate pair AxesLocation.  
@@ -114,10 +228,7 @@ public class AxesLocation {
      * @param axes
      */
     public AxesLocation(CoordinateAxis... axis) {
-        location = new LinkedHashMap<>(axis.length);
-        for (CoordinateAxis oneAxis : axis) {
-            location.put(oneAxis, oneAxis.getLengthCoordinate().convertToUnits(getUnits()).getValue());
-        }
+        this(build(Arrays.asList(axis), (oneAxis) -> oneAxis.getLengthCoordinate(), axis.length));
     }
     /**
      * Create an AxesLocation with the given Axis List and initialize to the current 
@@ -136,13 +247,18 @@ public class AxesLocation {
      * @param initializer
      */
     public <T extends Axis> AxesLocation(Iterable<T> axes, Function<T, Length> initializer) {
-        location = new LinkedHashMap<>();
+        this(build(axes, initializer, 4));
+    }
+
+    private static <T extends Axis> Builder build(Iterable<T> axes, Function<T, Length> initializer, int capacity) {
+        Builder builder = new Builder(capacity);
         for (T axis : axes) {
-            Length coordinate = initializer.apply(axis);
+            Length coordinate = (axis == null ? null : initializer.apply(axis));
             if (coordinate != null) {
-                location.put(axis, coordinate.convertToUnits(getUnits()).getValue());
+                builder.put(axis, coordinate.convertToUnits(getUnits()).getValue());
             }
         }
+        return builder;
     }
     /**
      * Create an AxesLoaction over all the ControllerAxes of the machine and initialize to the current 
@@ -161,15 +277,9 @@ public class AxesLocation {
      * @param initializer
      */
     public AxesLocation(Machine machine, Function<CoordinateAxis, Length> initializer) {
-        location = new LinkedHashMap<>();
-        for (Axis axis : machine.getAxes()) {
-            if (axis instanceof CoordinateAxis) {
-                Length coordinate = initializer.apply((CoordinateAxis) axis);
-                if (coordinate != null) {
-                    location.put(axis, coordinate.convertToUnits(getUnits()).getValue());
-                }
-            }
-        }
+        this(build(machine.getAxes(), 
+                (axis) -> (axis instanceof CoordinateAxis ? initializer.apply((CoordinateAxis) axis) : null),
+                machine.getAxes().size()));
     }
     /**
      * Create an AxesLoaction over all the ControllerAxes of the machine (in Machine Setup order) and with the given driver.
@@ -180,17 +290,10 @@ public class AxesLocation {
      * @param initializer
      */
     public AxesLocation(Machine machine, Driver driver, Function<ControllerAxis, Length> initializer) {
-        location = new LinkedHashMap<>();
-        for (Axis axis : machine.getAxes()) {
-            if (axis instanceof ControllerAxis) {
-                if (((ControllerAxis) axis).getDriver() == driver) {
-                    Length coordinate = initializer.apply((ControllerAxis) axis);
-                    if (coordinate != null) {
-                        location.put(axis, coordinate.convertToUnits(getUnits()).getValue());
-                    }
-                }
-            }
-        }
+        this(build(machine.getAxes(), 
+                (axis) -> (axis instanceof ControllerAxis && ((ControllerAxis) axis).getDriver() == driver ? 
+                        initializer.apply((ControllerAxis) axis) : null),
+                machine.getAxes().size()));
     }
     /**
      * Using the given binary function, aggregate the given axesLocation argument list.  
@@ -199,14 +302,26 @@ public class AxesLocation {
      * @param axesLocation
      */
     public AxesLocation(BiFunction<Double, Double, Double> function, AxesLocation... axesLocation) {
-        location = new LinkedHashMap<>();
+        this(build(function, axesLocation));
+    }
+
+    private static Builder build(BiFunction<Double, Double, Double> function, AxesLocation... axesLocation) {
+        Builder builder = new Builder(4);
         for (AxesLocation oneAxesLocation : axesLocation) {
             if (oneAxesLocation != null) {
-                for (Axis axis : oneAxesLocation.getAxes()) {
-                    location.merge(axis, oneAxesLocation.getCoordinate(axis), function);
+                for (int j = 0; j < oneAxesLocation.axes.length; j++) {
+                    Axis axis = oneAxesLocation.axes[j];
+                    int i = builder.indexOf(axis);
+                    if (i >= 0) {
+                        builder.coordinates[i] = function.apply(builder.coordinates[i], oneAxesLocation.coordinates[j]);
+                    }
+                    else {
+                        builder.append(axis, oneAxesLocation.coordinates[j]);
+                    }
                 }
             }
         }
+        return builder;
     }
     /**
      * Create a new AxesLocation with the given function applied to the coordinates of axesLocation.
@@ -215,26 +330,76 @@ public class AxesLocation {
      * @param axesLocation
      */
     public AxesLocation(Function<Double, Double> function, AxesLocation axesLocation) {
-        location = new LinkedHashMap<>();
-        for (Axis axis : axesLocation.getAxes()) {
-            location.put(axis, function.apply(axesLocation.getCoordinate(axis)));
+        this(axesLocation.axes, new double[axesLocation.axes.length], axesLocation.mask);
+        for (int i = 0; i < axes.length; i++) {
+            coordinates[i] = function.apply(axesLocation.coordinates[i]);
+        }
+    }
+
+    private static final int MERGE_ADD = 0;
+    private static final int MERGE_SUBTRACT = 1;
+    private static final int MERGE_PUT = 2;
+
+    /**
+     * Merge the other AxesLocation into this one, with the same semantics as the 
+     * {@link #AxesLocation(BiFunction, AxesLocation...)} constructor i.e. axes that are only contained in other
+     * take the other's coordinate as is. Works on the arrays directly, without boxing. 
+     */
+    private AxesLocation merge(AxesLocation other, int operation) {
+        if (other.axes.length == 0) {
+            return this;
+        }
+        if ((other.mask & ~mask) == 0 && Arrays.equals(axes, other.axes)) {
+            // Same axes, the common case.
+            double [] result = new double[axes.length];
+            for (int i = 0; i < axes.length; i++) {
+                result[i] = mergeCoordinate(coordinates[i], other.coordinates[i], operation);
+            }
+            return new AxesLocation(axes, result, mask);
+        }
+        Builder builder = new Builder(this, other.axes.length);
+        for (int j = 0; j < other.axes.length; j++) {
+            Axis axis = other.axes[j];
+            int i = builder.indexOf(axis);
+            if (i >= 0) {
+                builder.coordinates[i] = mergeCoordinate(builder.coordinates[i], other.coordinates[j], operation);
+            }
+            else {
+                builder.append(axis, other.coordinates[j]);
+            }
+        }
+        return new AxesLocation(builder);
+    }
+
+    private static double mergeCoordinate(double a, double b, int operation) {
+        switch (operation) {
+            case MERGE_ADD:
+                return a + b;
+            case MERGE_SUBTRACT:
+                return a - b;
+            default:
+                return b;
         }
     }
 
     public AxesLocation add(AxesLocation other) {
-        return new AxesLocation((a, b) -> (a + b), this, other);
+        return merge(other, MERGE_ADD);
     }
 
     public AxesLocation subtract(AxesLocation other) {
-        return new AxesLocation((a, b) -> (a - b), this, other);
+        return merge(other, MERGE_SUBTRACT);
     }
 
     public AxesLocation multiply(double factor) {
-        return new AxesLocation((a) -> (a*factor), this);
+        double [] result = new double[axes.length];
+        for (int i = 0; i < axes.length; i++) {
+            result[i] = coordinates[i]*factor;
+        }
+        return new AxesLocation(axes, result, mask);
     }
 
     public AxesLocation put(AxesLocation other) {
-        return new AxesLocation((a, b) -> (b), this, other);
+        return merge(other, MERGE_PUT);
     }
 
     /**
@@ -245,8 +410,15 @@ public class AxesLocation {
      */
     public double dotProduct(AxesLocation other) {
         double dot = 0;
-        for (Entry<Axis, Double> entry : this.location.entrySet()) {
-            dot += entry.getValue()*other.getCoordinate(entry.getKey());
+        if (axes == other.axes) {
+            for (int i = 0; i < axes.length; i++) {
+                dot += coordinates[i]*other.coordinates[i];
+            }
+        }
+        else {
+            for (int i = 0; i < axes.length; i++) {
+                dot += coordinates[i]*other.getCoordinate(axes[i]);
+            }
         }
         return dot;
     }
@@ -280,7 +452,14 @@ public class AxesLocation {
      * @return
      */
     public AxesLocation drivenBy(Driver driver) {
-        return new AxesLocation(getAxes(driver), (axis) -> (getLengthCoordinate(axis)));
+        Builder builder = new Builder(axes.length);
+        for (int i = 0; i < axes.length; i++) {
+            if (axes[i] instanceof ControllerAxis 
+                    && (driver == null || ((ControllerAxis) axes[i]).getDriver() == driver)) {
+                builder.append(axes[i], coordinates[i]);
+            }
+        }
+        return new AxesLocation(builder);
     }
 
     /**
@@ -302,7 +481,37 @@ public class AxesLocation {
      * @return
      */
     public Set<Axis> getAxes() {
-        return location.keySet();
+        return new AbstractSet<Axis>() {
+            @Override
+            public Iterator<Axis> iterator() {
+                return new Iterator<Axis>() {
+                    private int i = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return i < axes.length;
+                    }
+
+                    @Override
+                    public Axis next() {
+                        if (i >= axes.length) {
+                            throw new NoSuchElementException();
+                        }
+                        return axes[i++];
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return axes.length;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof Axis && indexOf((Axis) o) >= 0;
+            }
+        };
     }
 
     /**
@@ -312,13 +521,14 @@ public class AxesLocation {
      * @return
      */
     public LinkedHashSet<ControllerAxis> getAxes(Driver driver) {
-        LinkedHashSet<ControllerAxis> axes = new LinkedHashSet<>();
-        for (ControllerAxis axis : getAxes(ControllerAxis.class)) {
-            if (driver == null || ((ControllerAxis) axis).getDriver() == driver) {
-                axes.add((ControllerAxis) axis);
+        LinkedHashSet<ControllerAxis> driverAxes = new LinkedHashSet<>();
+        for (Axis axis : axes) {
+            if (axis instanceof ControllerAxis 
+                    && (driver == null || ((ControllerAxis) axis).getDriver() == driver)) {
+                driverAxes.add((ControllerAxis) axis);
             }
         }
-        return axes;
+        return driverAxes;
     }
 
     /**
@@ -329,13 +539,13 @@ public class AxesLocation {
      */
     @SuppressWarnings("unchecked")
     public <T extends Axis> LinkedHashSet<T> getAxes(Class<T> axisClass) {
-        LinkedHashSet<T> axes = new LinkedHashSet<>();
-        for (Axis axis : getAxes()) {
+        LinkedHashSet<T> classAxes = new LinkedHashSet<>();
+        for (Axis axis : axes) {
             if (axisClass.isInstance(axis)) {
-                axes.add((T) axis);
+                classAxes.add((T) axis);
             }
         }
-        return axes;
+        return classAxes;
     }
 
     /**
@@ -352,7 +562,7 @@ public class AxesLocation {
         if (axis == null) {
             return true;
         }
-        return (location.containsKey(axis));
+        return indexOf(axis) >= 0;
     }
 
     /**
@@ -380,11 +590,11 @@ public class AxesLocation {
     }
 
     public int size() {
-        return getAxes().size();
+        return axes.length;
     }
 
     public boolean isEmpty() {
-        return getAxes().isEmpty();
+        return axes.length == 0;
     }
 
     /**
@@ -414,11 +624,9 @@ public class AxesLocation {
      * @return
      */
     public double getCoordinate(Axis axis) {
-        if (axis != null) {
-            Double coordinate = location.get(axis);
-            if (coordinate != null) {
-                return coordinate;
-            }
+        int i = indexOf(axis);
+        if (i >= 0) {
+            return coordinates[i];
         }
         return 0.0;
     }
@@ -452,14 +660,13 @@ public class AxesLocation {
     public String toString() {
         StringBuilder str = new StringBuilder();
         str.append("(");
-        int i = 0;
-        for (Entry<Axis, Double> entry : location.entrySet()) {
-            if (i++ > 0) {
+        for (int i = 0; i < axes.length; i++) {
+            if (i > 0) {
                 str.append(", ");
             }
-            str.append(entry.getKey().getName());
+            str.append(axes[i].getName());
             str.append(":");
-            str.append(String.format(Locale.US, "%f", entry.getValue())); 
+            str.append(String.format(Locale.US, "%f", coordinates[i])); 
         }
         str.append(")");
         return str.toString();
@@ -608,9 +815,9 @@ public class AxesLocation {
      */
     public double getEuclideanMetric() {
         double sumSq = 0;
-        for (Entry<Axis, Double> entry : location.entrySet()) {
-            if (entry.getKey() instanceof ControllerAxis) {
-                sumSq += Math.pow(entry.getValue(), 2);
+        for (int i = 0; i < axes.length; i++) {
+            if (axes[i] instanceof ControllerAxis) {
+                sumSq += coordinates[i]*coordinates[i];
             }
         }
         return Math.sqrt(sumSq);
@@ -20,11 +20,13 @@
 package org.openpnp.model;
 
 import java.awt.geom.AffineTransform;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.openpnp.model.Board.Side;
 import org.openpnp.model.Placement.Type;
+import org.openpnp.util.Utils2D;
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
 import org.simpleframework.xml.ElementMap;
@@ -60,6 +62,12 @@ public class BoardLocation extends AbstractModelObject {
      */
     private AffineTransform placementTransform;
 
+    /**
+     * The precomputed transform from placement to machine coordinates, derived from the location,
+     * side, board and placement transform. Created on demand and cleared when any of these change.
+     */
+    private BoardPlacementTransform boardPlacementTransform;
+
     BoardLocation() {
         setLocation(new Location(LengthUnit.Millimeters));
     }
@@ -95,6 +103,7 @@ public class BoardLocation extends AbstractModelObject {
     public void setLocation(Location location) {
         Location oldValue = this.location;
         this.location = location;
+        this.boardPlacementTransform = null;
         firePropertyChange("location", oldValue, location);
         // If the location is changing it is not possible the placement transform is
         // still valid, so clear it.
@@ -141,6 +150,7 @@ public class BoardLocation extends AbstractModelObject {
     public void setSide(Side side) {
         Object oldValue = this.side;
         this.side = side;
+        this.boardPlacementTransform = null;
         firePropertyChange("side", oldValue, side);
     }
 
@@ -151,6 +161,7 @@ public class BoardLocation extends AbstractModelObject {
     public void setBoard(Board board) {
         Board oldValue = this.board;
         this.board = board;
+        this.boardPlacementTransform = null;
         firePropertyChange("board", oldValue, board);
     }
 
@@ -197,6 +208,19 @@ public class BoardLocation extends AbstractModelObject {
         firePropertyChange("placed", null, this.placed);
     }
 
+    /**
+     * Set the placed flag of many placements at once, with a single property change.
+     * 
+     * @param placementIds
+     * @param placed
+     */
+    public void setPlaced(Collection<String> placementIds, boolean placed) {
+        for (String placementId : placementIds) {
+            this.placed.put(placementId, placed);
+        }
+        firePropertyChange("placed", null, this.placed);
+    }
+
     public boolean getPlaced(String placementId) {
         if (placed.containsKey(placementId)) {
             return placed.get(placementId);
@@ -218,9 +242,23 @@ public class BoardLocation extends AbstractModelObject {
     public void setPlacementTransform(AffineTransform placementTransform) {
         Object oldValue = this.placementTransform;
         this.placementTransform = placementTransform;
+        this.boardPlacementTransform = null;
         firePropertyChange("placementTransform", oldValue, placementTransform);
     }
 
+    /**
+     * @return The transform from placement to machine coordinates, precomputed and cached
+     * until the location, side, board or placement transform change.
+     */
+    public BoardPlacementTransform getBoardPlacementTransform() {
+        BoardPlacementTransform transform = boardPlacementTransform;
+        if (transform == null || !transform.isValidFor(this)) {
+            transform = Utils2D.createBoardPlacementTransform(this);
+            boardPlacementTransform = transform;
+        }
+        return transform;
+    }
+
     @Override
     public String toString() {
         return String.format("board (%s), location (%s), side (%s)", boardFile, location, side);
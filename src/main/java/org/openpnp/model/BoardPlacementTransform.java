@@ -0,0 +1,132 @@
+package org.openpnp.model;
+
+import java.awt.geom.AffineTransform;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The precomputed transform of a {@link BoardLocation}, mapping placement coordinates on the board to
+ * machine coordinates. It is cached per BoardLocation, see {@link BoardLocation#getBoardPlacementTransform()},
+ * so placements can be mapped without recomputing the transform, its angle and the unit conversions each time.
+ *
+ * Like the placement transform, the calculations are done in Millimeters.
+ */
+public class BoardPlacementTransform {
+    private final double m00;
+    private final double m10;
+    private final double m01;
+    private final double m11;
+    private final double m02;
+    private final double m12;
+    private final double angle;
+    private final double z;
+    private final boolean bottom;
+
+    // The inputs of the transform, to check if it is still valid.
+    private final Location location;
+    private final Board.Side side;
+    private final AffineTransform placementTransform;
+    private final Location boardDimensions;
+
+    /**
+     * @param boardLocation The BoardLocation to take the inputs from.
+     * @param tx The affine transform, in Millimeters.
+     * @param angle The apparent rotation angle of the transform.
+     */
+    public BoardPlacementTransform(BoardLocation boardLocation, AffineTransform tx, double angle) {
+        double [] m = new double[6];
+        tx.getMatrix(m); //m00 m10 m01 m11 m02 m12
+        m00 = m[0];
+        m10 = m[1];
+        m01 = m[2];
+        m11 = m[3];
+        m02 = m[4];
+        m12 = m[5];
+        this.angle = angle;
+        this.location = boardLocation.getLocation();
+        this.z = location.convertToUnits(LengthUnit.Millimeters).getZ();
+        this.side = boardLocation.getSide();
+        this.bottom = (side == Board.Side.Bottom);
+        this.placementTransform = boardLocation.getPlacementTransform();
+        this.boardDimensions = getBoardDimensions(boardLocation);
+    }
+
+    private static Location getBoardDimensions(BoardLocation boardLocation) {
+        Board board = boardLocation.getBoard();
+        return (board == null ? null : board.getDimensions());
+    }
+
+    /**
+     * @param boardLocation
+     * @return True if the transform was computed with the current inputs of the BoardLocation.
+     */
+    public boolean isValidFor(BoardLocation boardLocation) {
+        return location == boardLocation.getLocation()
+                && side == boardLocation.getSide()
+                && placementTransform == boardLocation.getPlacementTransform()
+                && boardDimensions == getBoardDimensions(boardLocation);
+    }
+
+    /**
+     * @return The apparent rotation angle of the board, in degrees.
+     */
+    public double getAngle() {
+        return angle;
+    }
+
+    /**
+     * Transform the placement location on the board to the machine location. The Z coordinate is taken from the
+     * BoardLocation.
+     *
+     * @param placementLocation
+     * @return The machine location, in the units of the placementLocation.
+     */
+    public Location transform(Location placementLocation) {
+        LengthUnit placementUnits = placementLocation.getUnits();
+        if (placementUnits != LengthUnit.Millimeters) {
+            placementLocation = placementLocation.convertToUnits(LengthUnit.Millimeters);
+        }
+        double x = bottom ? -placementLocation.getX() : placementLocation.getX();
+        double y = placementLocation.getY();
+        Location l = new Location(LengthUnit.Millimeters,
+                m00*x + m01*y + m02,
+                m10*x + m11*y + m12,
+                z,
+                angle + placementLocation.getRotation());
+        if (placementUnits != LengthUnit.Millimeters) {
+            l = l.convertToUnits(placementUnits);
+        }
+        return l;
+    }
+
+    /**
+     * Transform the placement locations in one pass.
+     *
+     * @param placements
+     * @return The machine locations, in the same order.
+     */
+    public List<Location> transform(List<Placement> placements) {
+        List<Location> locations = new ArrayList<>(placements.size());
+        for (Placement placement : placements) {
+            locations.add(transform(placement.getLocation()));
+        }
+        return locations;
+    }
+
+    /**
+     * Transform packed placement coordinates in place, without creating any Locations.
+     *
+     * @param xyr The X, Y coordinates in Millimeters and the rotation in degrees of each placement,
+     * packed one after another.
+     * @param count The number of placements.
+     */
+    public void transform(double [] xyr, int count) {
+        for (int i = 0, k = 0; i < count; i++, k += 3) {
+            double x = bottom ? -xyr[k] : xyr[k];
+            double y = xyr[k + 1];
+            xyr[k] = m00*x + m01*y + m02;
+            xyr[k + 1] = m10*x + m11*y + m12;
+            xyr[k + 2] += angle;
+        }
+    }
+}
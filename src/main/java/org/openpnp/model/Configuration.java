@@ -705,6 +705,18 @@ public class Configuration extends AbstractModelObject {
 
         job.setDirty(false);
 
+        // Restore the progress made since the job was last saved, i.e. before a crash.
+        try {
+            int placed = JobProgressJournal.replay(job);
+            if (placed > 0) {
+                Logger.info("Restored {} placed placements from the journal of job {}.", placed, file);
+                job.setDirty(true);
+            }
+        }
+        catch (IOException e) {
+            Logger.warn(e, "Cannot replay the journal of job {}.", file);
+        }
+
         return job;
     }
 
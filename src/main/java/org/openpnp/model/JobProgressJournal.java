@@ -0,0 +1,301 @@
+package org.openpnp.model;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.pmw.tinylog.Logger;
+
+/**
+ * An append-only journal of the placements completed on a Job, so the job progress survives a crash or power
+ * failure without saving the whole Job after each placement.
+ *
+ * The journal is a text file next to the job file, with the extension {@link #EXTENSION} appended. It starts with
+ * the board files of the job and the placements that are already placed, followed by one line for each placement
+ * completed. Each line is written through to the operating system immediately, so it survives a crash of the
+ * process. The file is synced to the disk at most once per sync interval, without slowing down the job with a sync
+ * on each placement. Placements recorded within the interval are synced by a timer at its end, also when the job
+ * pauses or stops in between, so a power failure loses at most the placements of the last sync interval.
+ *
+ * When the job is loaded, {@link #replay(Job)} restores the progress, if the journal is newer than the job file,
+ * i.e. if the job was not saved since.
+ */
+public class JobProgressJournal implements Closeable {
+    public static final String EXTENSION = ".journal";
+    private static final String HEADER = "OpenPnP job journal 1";
+
+    private final File file;
+    private final FileOutputStream out;
+    private final FileChannel channel;
+    private final Map<BoardLocation, Integer> boardIndices = new IdentityHashMap<>();
+    private final long syncInterval;
+    private long lastSync;
+    private boolean unsynced;
+    private ScheduledFuture<?> scheduledSync;
+    private boolean closed;
+
+    private static final ScheduledExecutorService syncExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "JobProgressJournal sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Start a new journal for the job, replacing any existing journal. The journal starts with the placements
+     * that are already placed.
+     *
+     * @param job
+     * @param syncInterval The maximum time in milliseconds between syncs to the disk.
+     * @throws IOException
+     */
+    public JobProgressJournal(Job job, long syncInterval) throws IOException {
+        this.file = getFile(job.getFile());
+        this.syncInterval = syncInterval;
+        this.out = new FileOutputStream(file, false);
+        this.channel = out.getChannel();
+        StringBuilder sb = new StringBuilder();
+        sb.append(HEADER).append('\n');
+        List<BoardLocation> boardLocations = job.getBoardLocations();
+        for (int i = 0; i < boardLocations.size(); i++) {
+            BoardLocation boardLocation = boardLocations.get(i);
+            boardIndices.put(boardLocation, i);
+            sb.append("B ").append(i).append(' ').append(escape(boardLocation.getBoardFile())).append('\n');
+        }
+        for (int i = 0; i < boardLocations.size(); i++) {
+            BoardLocation boardLocation = boardLocations.get(i);
+            if (boardLocation.getBoard() == null) {
+                continue;
+            }
+            for (Placement placement : boardLocation.getBoard().getPlacements()) {
+                if (boardLocation.getPlaced(placement.getId())) {
+                    appendPlaced(sb, i, placement.getId());
+                }
+            }
+        }
+        write(sb);
+        sync();
+    }
+
+    /**
+     * @param jobFile
+     * @return The journal file of the job file.
+     */
+    public static File getFile(File jobFile) {
+        return new File(jobFile.getPath() + EXTENSION);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Record the placement as placed.
+     *
+     * @param boardLocation
+     * @param placement
+     * @throws IOException
+     */
+    public synchronized void recordPlaced(BoardLocation boardLocation, Placement placement) throws IOException {
+        Integer index = boardIndices.get(boardLocation);
+        if (index == null) {
+            throw new IOException("Board location is not part of the journaled job.");
+        }
+        StringBuilder sb = new StringBuilder();
+        appendPlaced(sb, index, placement.getId());
+        write(sb);
+        long elapsed = System.currentTimeMillis() - lastSync;
+        if (elapsed >= syncInterval) {
+            sync();
+        }
+        else if (scheduledSync == null) {
+            // Sync at the end of the interval, even if no further placement is recorded.
+            scheduledSync = syncExecutor.schedule(this::scheduledSync, syncInterval - elapsed, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void scheduledSync() {
+        scheduledSync = null;
+        if (closed) {
+            return;
+        }
+        try {
+            sync();
+        }
+        catch (IOException e) {
+            Logger.warn(e, "Cannot sync the job journal {}.", file);
+        }
+    }
+
+    /**
+     * Sync the journal to the disk, if anything was written since the last sync.
+     *
+     * @throws IOException
+     */
+    public synchronized void sync() throws IOException {
+        if (unsynced) {
+            channel.force(false);
+            unsynced = false;
+        }
+        lastSync = System.currentTimeMillis();
+    }
+
+    /**
+     * @return True if placements were recorded that are not yet synced to the disk.
+     */
+    public synchronized boolean isUnsynced() {
+        return unsynced;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        if (scheduledSync != null) {
+            scheduledSync.cancel(false);
+            scheduledSync = null;
+        }
+        try {
+            sync();
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    private void write(StringBuilder sb) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        unsynced = true;
+    }
+
+    private static void appendPlaced(StringBuilder sb, int boardIndex, String placementId) {
+        sb.append("P ").append(boardIndex).append(' ').append(escape(placementId)).append('\n');
+    }
+
+    /**
+     * Restore the progress of the job from its journal, if there is one and it is newer than the job file.
+     *
+     * Only complete lines are replayed, so a line torn by a power failure is ignored. If the journal does not
+     * match the boards of the job it is ignored as a whole.
+     *
+     * @param job
+     * @return The number of placements restored as placed.
+     * @throws IOException
+     */
+    public static int replay(Job job) throws IOException {
+        if (job.getFile() == null) {
+            return 0;
+        }
+        File file = getFile(job.getFile());
+        if (!file.exists() || file.lastModified() <= job.getFile().lastModified()) {
+            return 0;
+        }
+        List<BoardLocation> boardLocations = job.getBoardLocations();
+        List<Set<String>> placed = new ArrayList<>();
+        for (int i = 0; i < boardLocations.size(); i++) {
+            placed.add(new LinkedHashSet<>());
+        }
+        byte [] bytes = Files.readAllBytes(file.toPath());
+        // Ignore a torn last line.
+        int length = bytes.length;
+        while (length > 0 && bytes[length - 1] != '\n') {
+            length--;
+        }
+        int boards = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(bytes, 0, length), StandardCharsets.UTF_8))) {
+            if (!HEADER.equals(reader.readLine())) {
+                Logger.warn("Job journal {} has an unknown format, ignored.", file);
+                return 0;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String [] fields = line.split(" ", 3);
+                if (fields.length != 3) {
+                    continue;
+                }
+                int index;
+                try {
+                    index = Integer.parseInt(fields[1]);
+                }
+                catch (NumberFormatException e) {
+                    continue;
+                }
+                if (index < 0 || index >= boardLocations.size()) {
+                    Logger.warn("Job journal {} does not match the boards of the job, ignored.", file);
+                    return 0;
+                }
+                if (fields[0].equals("B")) {
+                    if (!fields[2].equals(escape(boardLocations.get(index).getBoardFile()))) {
+                        Logger.warn("Job journal {} does not match the boards of the job, ignored.", file);
+                        return 0;
+                    }
+                    boards++;
+                }
+                else if (fields[0].equals("P")) {
+                    placed.get(index).add(unescape(fields[2]));
+                }
+            }
+        }
+        if (boards != boardLocations.size()) {
+            Logger.warn("Job journal {} does not match the boards of the job, ignored.", file);
+            return 0;
+        }
+        int count = 0;
+        for (int i = 0; i < boardLocations.size(); i++) {
+            BoardLocation boardLocation = boardLocations.get(i);
+            List<String> placementIds = new ArrayList<>();
+            for (String placementId : placed.get(i)) {
+                if (!boardLocation.getPlaced(placementId)) {
+                    placementIds.add(placementId);
+                }
+            }
+            if (!placementIds.isEmpty()) {
+                boardLocation.setPlaced(placementIds, true);
+                count += placementIds.size();
+            }
+        }
+        return count;
+    }
+
+    private static String escape(String s) {
+        if (s == null) {
+            return "";
+        }
+        return s.replace("\\", "\\\\").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                char e = s.charAt(++i);
+                sb.append(e == 'n' ? '\n' : e == 'r' ? '\r' : e);
+            }
+            else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
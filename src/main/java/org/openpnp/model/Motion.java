@@ -813,6 +813,7 @@ public class Motion {
         Double timeStep = driver.getInterpolationTimeStep();
         Integer distStep = driver.getInterpolationMinStep();
         Length junctionDeviationLength = driver.getJunctionDeviation();
+        Length toleranceLength = driver.getInterpolationTolerance();
         double minVelocity = driver.getMinimumRate(1).convertToUnits(AxesLocation.getUnits()).getValue();
         double minAcceleration = driver.getMinimumRate(2).convertToUnits(AxesLocation.getUnits()).getValue();
 
@@ -829,6 +830,9 @@ public class Motion {
         }
         // Sanity.
         distStep = Math.max(3, distStep);
+        // With a tolerance given, segments are placed adaptively, only where the approximation error requires it. 
+        double tolerance = (toleranceLength == null ? 0 : toleranceLength.convertToUnits(AxesLocation.getUnits()).getValue());
+        boolean adaptive = (tolerance > 0);
 
         // Determine per axis maximum delta a for Jerk Control simulation.
         AxesLocation maxDeltaA = new AxesLocation(location0.getAxes(driver),
@@ -842,7 +846,7 @@ public class Motion {
                 && getMomentaryAcceleration(time).matches(AxesLocation.zero)
                 && getMomentaryAcceleration(time).matches(AxesLocation.zero)
                 && getMomentaryJerk(0).matches(getMomentaryJerk(time-MotionProfile.ttol)));
-        if (simpleSymmetricMove) {
+        if (simpleSymmetricMove && !adaptive) {
             AxesLocation jerk = getMomentaryJerk(0);
             double wantedTimeStep = Double.POSITIVE_INFINITY;
             for (ControllerAxis axis : maxDeltaA.getControllerAxes()) {
@@ -902,8 +906,12 @@ public class Motion {
          * not yet violated these constraints. If there is no previous valid time step, we are forced to take this one anyway. 
          * In this case, time resolution was simply too coarse. Due to the nature of 3rd order motion control, i.e. due to the 
          * limits in jerk, acceleration etc., it is expected this will only occur in very tight curves, where speed is 
-         * already very low and further degradation can be tolerated.    
-         * 
+         * already very low and further degradation can be tolerated.
+         *
+         * In adaptive mode (driver Interpolation Tolerance set), 3. and 4. are replaced by a tolerance check: a new
+         * segment is only created, when the constant acceleration segment would deviate from the true motion by more
+         * than the tolerance. Constant velocity phases are never split.
+         *
          */
 
         // Perform the interpolation. 
@@ -1117,7 +1125,10 @@ public class Motion {
 
                     // Are we making a new segment?
                     boolean newSegment = false;
-                    if (special) {
+                    if (special 
+                            && (!adaptive || i == numSteps || intervalsExtremes.contains(t2))) {
+                        // Note, in adaptive mode, plateau boundaries are only snapped to, the tolerance decides 
+                        // whether a new segment is needed there.
                         newSegment = true;
                         command1 = null;
                     }
@@ -1145,7 +1156,14 @@ public class Motion {
                                     }
                                 }
                             }
-                            if (!newSegment) {
+                            if (!newSegment && adaptive) {
+                                // Check the deviation of the constant acceleration segment from the true motion. 
+                                if (getApproximationDeviation(segment, location0, t0, t2, distance, v0, v2) > tolerance) {
+                                    newSegment = true;
+                                    interpolationNeeded = true;
+                                }
+                            }
+                            else if (!newSegment) {
                                 // Check acceleration / simulate jerk control. 
                                 AxesLocation deltaA20 = acceleration2.subtract(acceleration0);
                                 for (ControllerAxis axis : segment.getControllerAxes()) {
@@ -1224,7 +1242,7 @@ public class Motion {
             list.add(command1);
         }
 
-        if (list.size() < 2 || !interpolationNeeded) {
+        if (list.size() < 2 || (!interpolationNeeded && !adaptive)) {
             // Interpolation collapsed.
             return moderatedMoveTo(driver);
         }
@@ -1262,6 +1280,41 @@ public class Motion {
         return list;
     }
 
+    /**
+     * Compute the largest deviation of a constant acceleration segment from the true motion, as executed 
+     * by the controller. The segment is probed at quarter times, normalized to the segment time, so 
+     * deviations in timing are also taken into account. 
+     *  
+     * @param segment The segment vector, as driven by the driver. 
+     * @param location0 Start location of the segment.
+     * @param t0 Start time of the segment in the motion.
+     * @param t2 End time of the segment in the motion.
+     * @param distance The tool-path distance of the segment.
+     * @param v0 The tool-path entry velocity. 
+     * @param v2 The tool-path exit velocity.
+     * @return The maximum deviation on any axis. 
+     */
+    private double getApproximationDeviation(AxesLocation segment, AxesLocation location0, 
+            double t0, double t2, double distance, double v0, double v2) {
+        double dtNominal = distance/((v0 + v2)*0.5);
+        double acceleration = (v2 - v0)/dtNominal;
+        double deviation = 0;
+        for (int k = 1; k < 4; k++) {
+            double f = k*0.25;
+            double fraction = f;
+            if (Double.isFinite(dtNominal) && dtNominal > 0) {
+                double tau = f*dtNominal;
+                fraction = (v0*tau + 0.5*acceleration*tau*tau)/distance;
+            }
+            AxesLocation location = getMomentaryLocation(t0 + f*(t2 - t0));
+            for (ControllerAxis axis : segment.getControllerAxes()) {
+                double approximated = location0.getCoordinate(axis) + segment.getCoordinate(axis)*fraction;
+                deviation = Math.max(deviation, Math.abs(approximated - location.getCoordinate(axis)));
+            }
+        }
+        return deviation;
+    }
+
     private double computeMaxDeltaA(Integer maxJerkSteps, ControllerAxis axis) {
         MotionProfile profile = axesProfiles[getAxisIndex(axis)]; 
         if (profile.isConstantAcceleration() || maxJerkSteps < 2) {
@@ -39,6 +39,8 @@ public class MotionProfile {
 
     public final static int segments = 7;
 
+    private static final MotionProfileSolutionCache solutionCache = new MotionProfileSolutionCache();
+
     double [] s = new double[segments+1];
     double [] a = new double[segments+1];
     double [] v = new double[segments+1];
@@ -177,6 +179,26 @@ public class MotionProfile {
     }
 
 
+    /**
+     * Set the entry velocity as a boundary condition. The profile must be solved again.
+     *
+     * @param v0
+     */
+    public void setEntryVelocity(double v0) {
+        v[0] = v0;
+        clearOption(ProfileOption.Solved);
+    }
+
+    /**
+     * Set the exit velocity as a boundary condition. The profile must be solved again.
+     *
+     * @param v1
+     */
+    public void setExitVelocity(double v1) {
+        v[segments] = v1;
+        clearOption(ProfileOption.Solved);
+    }
+
     public double getLocationMin() {
         return sMin;
     }
@@ -564,6 +586,13 @@ public class MotionProfile {
         return str.toString();
     }
 
+    /**
+     * @return The cache of solved profiles, shared by all the motion profiles.
+     */
+    public static MotionProfileSolutionCache getSolutionCache() {
+        return solutionCache;
+    }
+
     public void solve() {
         // scale down tolerances for tiny moves
         double magnitude = Math.max(eps,  Math.min(1.0, 
@@ -574,7 +603,17 @@ public class MotionProfile {
     }
     public void solve(final int iterations, final double vtol, final double ttol) {
         double tStart = NanosecondTime.getRuntimeSeconds();
-        solveForVelocity(iterations, vtol, ttol);
+        // Null moves are fast, they are not cached.
+        if (!solveIfNullMove()) {
+            MotionProfileSolutionCache.Key key = (solutionCache.isEnabled() ? 
+                    new MotionProfileSolutionCache.Key(this, iterations, vtol, ttol) : null);
+            if (key == null || !solutionCache.copyCachedSolution(key, this)) {
+                solveForVelocity(iterations, vtol, ttol);
+                if (key != null) {
+                    solutionCache.putSolution(key, this, NanosecondTime.getRuntimeSeconds() - tStart);
+                }
+            }
+        }
         // Result is now stored in the profile i.e. you can get v[4], a[2], a[6] to get the (signed) solution.
         solvingTime = NanosecondTime.getRuntimeSeconds() - tStart;
         setOption(ProfileOption.Solved);
@@ -0,0 +1,178 @@
+package org.openpnp.model;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of {@link MotionProfile} solutions. Pick and place motion is very repetitive, the same moves
+ * between feeders, cameras and the board are solved again and again. The cache is keyed on all the inputs of the
+ * solver, i.e. the entry/exit conditions, the limits, the options and the solver tolerances, so a cache hit gives
+ * exactly the same solution as solving it.
+ *
+ * The cache is thread-safe, it may be used by parallel solving.
+ */
+public class MotionProfileSolutionCache {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private int capacity = DEFAULT_CAPACITY;
+    private long hits;
+    private long misses;
+    private double savedSolvingTime;
+
+    private final LinkedHashMap<Key, MotionProfile> solutions = new LinkedHashMap<Key, MotionProfile>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, MotionProfile> eldest) {
+            return size() > capacity;
+        }
+    };
+
+    /**
+     * The solver inputs. Locations and limits are taken as exact values, rounding them would give
+     * solutions that do not exactly meet the entry/exit conditions.
+     */
+    static class Key {
+        private final double [] values;
+        private final int options;
+        private final int iterations;
+        private final int hashCode;
+
+        Key(MotionProfile profile, int iterations, double vtol, double ttol) {
+            final int segments = MotionProfile.segments;
+            values = new double[] {
+                    profile.s[0], profile.s[segments],
+                    profile.v[0], profile.v[segments],
+                    profile.a[0], profile.a[segments],
+                    profile.sMin, profile.sMax,
+                    profile.vMax, profile.aMaxEntry, profile.aMaxExit, profile.jMax,
+                    profile.tMin, profile.tMax,
+                    vtol, ttol
+            };
+            this.options = profile.getOptions() & ~MotionProfile.ProfileOption.Solved.flag();
+            this.iterations = iterations;
+            this.hashCode = (Arrays.hashCode(values)*31 + options)*31 + iterations;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hashCode == other.hashCode
+                    && options == other.options
+                    && iterations == other.iterations
+                    && Arrays.equals(values, other.values);
+        }
+    }
+
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @param capacity The maximum number of cached solutions, 0 disables the cache.
+     */
+    public synchronized void setCapacity(int capacity) {
+        this.capacity = Math.max(0, capacity);
+        if (solutions.size() > this.capacity) {
+            solutions.clear();
+        }
+    }
+
+    public synchronized boolean isEnabled() {
+        return capacity > 0;
+    }
+
+    /**
+     * Get the cached solution for the key and copy it to the profile.
+     *
+     * @param key
+     * @param profile
+     * @return True if the solution was cached.
+     */
+    synchronized boolean copyCachedSolution(Key key, MotionProfile profile) {
+        MotionProfile solution = solutions.get(key);
+        if (solution == null) {
+            misses++;
+            return false;
+        }
+        hits++;
+        savedSolvingTime += solution.solvingTime;
+        copySolution(solution, profile);
+        return true;
+    }
+
+    /**
+     * Store a copy of the solved profile for the key.
+     *
+     * @param key
+     * @param profile
+     * @param solvingTime
+     */
+    synchronized void putSolution(Key key, MotionProfile profile, double solvingTime) {
+        if (capacity > 0) {
+            MotionProfile solution = new MotionProfile(profile);
+            copySolution(profile, solution);
+            solution.solvingTime = solvingTime;
+            solutions.put(key, solution);
+        }
+    }
+
+    private static void copySolution(MotionProfile from, MotionProfile to) {
+        to.copyProfileSolution(from);
+        to.t[MotionProfile.segments+1] = from.t[MotionProfile.segments+1];
+        to.eval = from.eval;
+    }
+
+    public synchronized int size() {
+        return solutions.size();
+    }
+
+    public synchronized void clear() {
+        solutions.clear();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return The ratio of cache hits to lookups, between 0 and 1.
+     */
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double)hits/lookups;
+    }
+
+    /**
+     * @return The solving time in seconds that was saved by cache hits.
+     */
+    public synchronized double getSavedSolvingTime() {
+        return savedSolvingTime;
+    }
+
+    public synchronized void resetStatistics() {
+        hits = 0;
+        misses = 0;
+        savedSolvingTime = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d hits, %d misses, hit rate %.1f%%, saved %.3fs solving time, %d of %d cached",
+                hits, misses, getHitRate()*100, savedSolvingTime, solutions.size(), capacity);
+    }
+}
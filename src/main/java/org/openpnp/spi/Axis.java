@@ -49,4 +49,12 @@ public interface Axis extends Identifiable, Named, WizardConfigurable, PropertyS
     public Type getType();
 
     public void setType(Type type);
+
+    /**
+     * @return The dense ordinal of the axis, used by AxesLocation for fast axis sets. Ordinals only speed up the 
+     * search for axes, axes with the same ordinal are still told apart by identity. The default is 0. 
+     */
+    public default int getOrdinal() {
+        return 0;
+    }
 }
@@ -296,6 +296,15 @@ import org.openpnp.spi.MotionPlanner.CompletionType;
         return null;
     }
 
+    /**
+     * @return The tolerance for adaptive interpolation, i.e. the maximum deviation of the interpolated constant 
+     * acceleration segments from the true motion. Interpolation steps are only placed where needed to stay within 
+     * this tolerance, instead of simulating jerk control by Jerk Steps. Null or zero disables adaptive interpolation.
+     */
+    public default Length getInterpolationTolerance() {
+        return null;
+    }
+
     /**
      * @return The minimum velocity, acceleration, jerk the driver supports. 
      * Used to prevent "rounded to zero" errors in decimal formatting and interpolation.
@@ -118,6 +118,26 @@ public interface Feeder extends Identifiable, Named, WizardConfigurable, Propert
      * Asks the feeder to take back the part currently on the nozzle.
      */
     public void takeBackPart(Nozzle nozzle) throws Exception;
+
+    /**
+     * If the feeder can be fed ahead, i.e. some time before the pick, while the head does other work. This is the
+     * case for feeders that feed without moving the head, and that keep the fed part presented until picked.
+     * The job processor may then feed for the next cycle, while the current cycle is still aligned and placed.
+     * 
+     * @return
+     */
+    default boolean canFeedAhead() {
+        return false;
+    }
+
+    /**
+     * Tells the feeder that a pick from it failed, e.g. because no part was vacuum-detected on the nozzle. The 
+     * feeder may then recalibrate its pick location before the next pick.  
+     * 
+     * @param nozzle
+     */
+    default void pickFailed(Nozzle nozzle) {
+    }
     
     /**
      * If feed() throws an Exception during job processing, the job processor will retry the
@@ -133,4 +153,14 @@ public interface Feeder extends Identifiable, Named, WizardConfigurable, Propert
      * @return
      */
     public int getPickRetryCount();
+
+    /**
+     * Get the number of parts remaining in the Feeder, as far as it can tell. Used to rank duplicate feeders for
+     * the same part.
+     * 
+     * @return The number of parts remaining or -1 if unknown.
+     */
+    default int getRemainingPartCount() {
+        return -1;
+    }
 }
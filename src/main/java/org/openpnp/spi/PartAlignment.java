@@ -1,5 +1,7 @@
 package org.openpnp.spi;
 
+import java.util.concurrent.Callable;
+
 import org.openpnp.gui.support.Wizard;
 import org.openpnp.model.BoardLocation;
 import org.openpnp.model.Location;
@@ -53,6 +55,26 @@ public interface PartAlignment extends PartSettingsHolder, Named, Solutions.Subj
      * @throws Exception if the alignment fails for any reason. The caller may retry.
      */
     PartAlignmentOffset findOffsets(Part part, BoardLocation boardLocation, Location placementLocation, Nozzle nozzle) throws Exception;
+
+    /**
+     * Perform the part of the alignment operation that needs the machine, i.e. moving the part over the camera
+     * and capturing the images, and defer the rest. The returned Callable completes the alignment like
+     * {@link #findOffsets(Part, BoardLocation, Location, Nozzle)} and may be called on another thread, while
+     * the machine already moves on with the next nozzle.
+     * 
+     * The default implementation performs the whole alignment up front.
+     * @param part
+     * @param boardLocation
+     * @param placementLocation
+     * @param nozzle
+     * @return
+     * @throws Exception if the alignment fails for any reason. The caller may retry.
+     */
+    default Callable<PartAlignmentOffset> findOffsetsDeferred(Part part, BoardLocation boardLocation,
+            Location placementLocation, Nozzle nozzle) throws Exception {
+        PartAlignmentOffset offsets = findOffsets(part, boardLocation, placementLocation, nozzle);
+        return () -> offsets;
+    }
     
     /**
      * Get a Wizard for configuring the PartAlignment instance properties for a specific
@@ -57,11 +57,38 @@ public abstract class AbstractAxis extends AbstractModelObject implements Axis {
     @Attribute(required = false)
     protected Axis.Type type;
 
+    private volatile int ordinal = -1;
+
     public AbstractAxis() {
         this.id = Configuration.createId("AXS");
         this.name = getClass().getSimpleName();
     }
 
+    @Override
+    public int getOrdinal() {
+        if (ordinal < 0) {
+            synchronized (this) {
+                if (ordinal < 0) {
+                    // Not assigned by a machine, take a global one. 
+                    ordinal = AxesLocation.nextAxisOrdinal();
+                }
+            }
+        }
+        return ordinal;
+    }
+
+    /**
+     * Assign the ordinal of the axis on the machine, unless it was already used, as it must never change 
+     * while AxesLocations of the axis exist.  
+     * 
+     * @param ordinal
+     */
+    synchronized void assignOrdinal(int ordinal) {
+        if (this.ordinal < 0) {
+            this.ordinal = ordinal;
+        }
+    }
+
     @Override
     public String getId() {
         return id;
@@ -67,6 +67,8 @@ public abstract class AbstractMachine extends AbstractModelObject implements Mac
     @ElementList(required = false)
     protected IdentifiableList<Axis> axes = new IdentifiableList<>();
 
+    private int nextAxisOrdinal;
+
     @ElementList
     protected IdentifiableList<Head> heads = new IdentifiableList<>();
 
@@ -100,6 +102,8 @@ public abstract class AbstractMachine extends AbstractModelObject implements Mac
     @ElementList(required = false)
     protected IdentifiableList<NozzleTip> nozzleTips = new IdentifiableList<>();
 
+    protected FeederIndex feederIndex = new FeederIndex(feeders);
+
     protected Set<MachineListener> listeners = Collections.synchronizedSet(new HashSet<>());
 
     protected ThreadPoolExecutor executor;
@@ -114,6 +118,11 @@ public abstract class AbstractMachine extends AbstractModelObject implements Mac
         for (Head head : heads) {
             head.setMachine(this);
         }
+        // The axes are newly loaded, assign their ordinals densely. 
+        for (Axis axis : axes) {
+            assignAxisOrdinal(axis);
+        }
+        feederIndex = new FeederIndex(feeders);
     }
 
     public void addHead(Head head) {
@@ -220,6 +229,13 @@ public abstract class AbstractMachine extends AbstractModelObject implements Mac
         return feeders.get(id);
     }
 
+    /**
+     * @return The index of the enabled feeders by part.
+     */
+    public FeederIndex getFeederIndex() {
+        return feederIndex;
+    }
+
     @Override
     public List<Camera> getCameras() {
         return Collections.unmodifiableList(cameras);
@@ -322,10 +338,23 @@ public abstract class AbstractMachine extends AbstractModelObject implements Mac
 
     @Override
     public void addAxis(Axis axis) throws Exception {
+        assignAxisOrdinal(axis);
         axes.add(axis);
         fireIndexedPropertyChange("axes", axes.size() - 1, null, axis);
     }
 
+    /**
+     * Assign the next ordinal of the machine to the axis. Ordinals are not reused, so they are dense, 
+     * unless axes are removed, until the machine is loaded again.  
+     * 
+     * @param axis
+     */
+    private void assignAxisOrdinal(Axis axis) {
+        if (axis instanceof AbstractAxis) {
+            ((AbstractAxis) axis).assignOrdinal(nextAxisOrdinal++);
+        }
+    }
+
     @Override
     public void removeAxis(Axis axis) {
         int index = axes.indexOf(axis);
@@ -357,6 +386,7 @@ public abstract class AbstractMachine extends AbstractModelObject implements Mac
     @Override
     public void addFeeder(Feeder feeder) throws Exception {
         feeders.add(feeder);
+        feederIndex.invalidate();
         fireIndexedPropertyChange("feeders", feeders.size() - 1, null, feeder);
     }
 
@@ -364,6 +394,7 @@ public abstract class AbstractMachine extends AbstractModelObject implements Mac
     public void removeFeeder(Feeder feeder) {
         int index = feeders.indexOf(feeder);
         if (feeders.remove(feeder)) {
+            feederIndex.invalidate();
             fireIndexedPropertyChange("feeders", index, feeder, null);
         }
     }
@@ -1,5 +1,9 @@
 package org.openpnp.spi.base;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openpnp.model.Location;
 import org.openpnp.model.Part;
 import org.openpnp.spi.Feeder;
 import org.openpnp.spi.Head;
@@ -41,12 +45,47 @@ public abstract class AbstractPnpJobProcessor extends AbstractJobProcessor
      * @throws Exception If no Feeder is found that is both enabled and is serving the Part.
      */
     public static Feeder findFeeder(Machine machine, Part part) throws JobProcessorException {
+        List<Feeder> feeders = getFeeders(machine, part);
+        if (feeders.isEmpty()) {
+            throw new JobProcessorException(part, "No compatible, enabled feeder found for part " + part.getId());
+        }
+        return feeders.get(0);
+    }
+
+    /**
+     * Find the best enabled Feeder that is able to feed the given Part, i.e. the one with the most parts
+     * remaining, then the nearest to the given location. See {@link FeederIndex#getRankedFeeders(Part, Location)}.
+     * 
+     * @param machine
+     * @param part
+     * @param location The current head location.
+     * @return
+     * @throws JobProcessorException If no Feeder is found that is both enabled and is serving the Part.
+     */
+    public static Feeder findFeeder(Machine machine, Part part, Location location) throws JobProcessorException {
+        List<Feeder> feeders;
+        if (machine instanceof AbstractMachine) {
+            feeders = ((AbstractMachine) machine).getFeederIndex().getRankedFeeders(part, location);
+        }
+        else {
+            feeders = getFeeders(machine, part);
+        }
+        if (feeders.isEmpty()) {
+            throw new JobProcessorException(part, "No compatible, enabled feeder found for part " + part.getId());
+        }
+        return feeders.get(0);
+    }
+
+    private static List<Feeder> getFeeders(Machine machine, Part part) {
+        if (machine instanceof AbstractMachine) {
+            return ((AbstractMachine) machine).getFeederIndex().getFeeders(part);
+        }
+        List<Feeder> feeders = new ArrayList<>();
         for (Feeder feeder : machine.getFeeders()) {
             if (feeder.getPart() == part && feeder.isEnabled()) {
-                return feeder;
+                feeders.add(feeder);
             }
         }
-        throw new JobProcessorException(part, "No compatible, enabled feeder found for part " + part.getId());
+        return feeders;
     }
-
 }
@@ -0,0 +1,155 @@
+package org.openpnp.spi.base;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openpnp.model.Location;
+import org.openpnp.model.Part;
+import org.openpnp.spi.Feeder;
+
+/**
+ * Index from each {@link Part} to the Feeders serving it, in machine order. Used by the job processor to find the
+ * feeder for a pick without scanning all the machine feeders, which can run into the hundreds.
+ *
+ * The index is kept by the {@link AbstractMachine}. It listens to the "part" property changes of the feeders and is
+ * told about added and removed feeders. Any change just invalidates it, it is then rebuilt on the next lookup. As
+ * these changes are rare compared to picks, lookups are O(1) on average, plus the few feeders of the part.
+ *
+ * The enabled state is checked at lookup time rather than indexed, as some feeders derive it from other state
+ * without firing an "enabled" change, i.e. the IndexFeeder from the slot address it gets when hot-plugged.
+ */
+public class FeederIndex implements PropertyChangeListener {
+    private final List<Feeder> feeders;
+    private Map<Part, List<Feeder>> index;
+    private final Map<Feeder, Boolean> listening = new IdentityHashMap<>();
+
+    /**
+     * @param feeders The live list of machine feeders.
+     */
+    public FeederIndex(List<Feeder> feeders) {
+        this.feeders = feeders;
+    }
+
+    /**
+     * Get the enabled feeders serving the part.
+     *
+     * @param part
+     * @return The unmodifiable list of feeders in machine order, empty if there are none.
+     */
+    public synchronized List<Feeder> getFeeders(Part part) {
+        if (index == null) {
+            rebuild();
+        }
+        List<Feeder> partFeeders = index.get(part);
+        if (partFeeders == null) {
+            return Collections.emptyList();
+        }
+        List<Feeder> enabledFeeders = null;
+        for (int i = 0; i < partFeeders.size(); i++) {
+            Feeder feeder = partFeeders.get(i);
+            if (!feeder.isEnabled()) {
+                if (enabledFeeders == null) {
+                    enabledFeeders = new ArrayList<>(partFeeders.subList(0, i));
+                }
+            }
+            else if (enabledFeeders != null) {
+                enabledFeeders.add(feeder);
+            }
+        }
+        // Mostly all are enabled, and the indexed list is returned as is.
+        return enabledFeeders == null ? partFeeders : Collections.unmodifiableList(enabledFeeders);
+    }
+
+    /**
+     * Get the enabled feeders serving the part, best first. Feeders with more parts remaining are ranked higher,
+     * so load is spread across duplicate feeders. Feeders that cannot tell their remaining parts count as full.
+     * Among equals, the feeder nearest to the given location wins, then the machine order.
+     *
+     * @param part
+     * @param location The current head location, or null to rank by remaining parts only.
+     * @return The ranked list of feeders, empty if there are none.
+     */
+    public List<Feeder> getRankedFeeders(Part part, Location location) {
+        List<Feeder> partFeeders = getFeeders(part);
+        if (partFeeders.size() < 2) {
+            return partFeeders;
+        }
+        Map<Feeder, Double> distances = new IdentityHashMap<>();
+        if (location != null) {
+            for (Feeder feeder : partFeeders) {
+                distances.put(feeder, getDistance(feeder, location));
+            }
+        }
+        List<Feeder> ranked = new ArrayList<>(partFeeders);
+        // List.sort() is stable, so the machine order is kept among equals.
+        ranked.sort(Comparator
+                .comparingInt(FeederIndex::getRankedPartCount).reversed()
+                .thenComparingDouble((feeder) -> distances.getOrDefault(feeder, 0.0)));
+        return ranked;
+    }
+
+    private static int getRankedPartCount(Feeder feeder) {
+        int count = feeder.getRemainingPartCount();
+        return count < 0 ? Integer.MAX_VALUE : count;
+    }
+
+    private static double getDistance(Feeder feeder, Location location) {
+        try {
+            return location.getLinearDistanceTo(feeder.getPickLocation());
+        }
+        catch (Exception e) {
+            return Double.POSITIVE_INFINITY;
+        }
+    }
+
+    /**
+     * Invalidate the index, i.e. after feeders were added or removed.
+     */
+    public synchronized void invalidate() {
+        index = null;
+    }
+
+    @Override
+    public void propertyChange(PropertyChangeEvent evt) {
+        if ("part".equals(evt.getPropertyName())) {
+            invalidate();
+        }
+    }
+
+    private void rebuild() {
+        Map<Part, List<Feeder>> index = new HashMap<>();
+        Map<Feeder, Boolean> present = new IdentityHashMap<>();
+        for (Feeder feeder : feeders) {
+            present.put(feeder, Boolean.TRUE);
+            listen(feeder);
+            if (feeder.getPart() != null) {
+                index.computeIfAbsent(feeder.getPart(), (part) -> new ArrayList<>()).add(feeder);
+            }
+        }
+        for (Map.Entry<Part, List<Feeder>> entry : index.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        // Stop listening to feeders that were removed.
+        listening.keySet().removeIf((feeder) -> {
+            if (!present.containsKey(feeder)) {
+                ((AbstractFeeder) feeder).removePropertyChangeListener(this);
+                return true;
+            }
+            return false;
+        });
+        this.index = index;
+    }
+
+    private void listen(Feeder feeder) {
+        if (feeder instanceof AbstractFeeder && listening.put(feeder, Boolean.TRUE) == null) {
+            ((AbstractFeeder) feeder).addPropertyChangeListener(this);
+        }
+    }
+}
@@ -19,9 +19,12 @@
 
 package org.openpnp.util;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.stream.IntStream;
 
 import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
@@ -36,7 +39,8 @@ import org.openpnp.model.Location;
  * and/or a Location for the next task after that, as the end Location. These Locations can also be the same, to form 
  * a loop. If left open (null) the solver will choose the best start and/or end Location for the route freely.
  * 
- * The solver uses Simulated Annealing.
+ * The solver uses Simulated Annealing or, for larger problems, a local search with 2-opt and Or-opt moves 
+ * towards the nearest neighbors, see {@link #solveLocalSearch(long, int)}.
  * 
  * The implementation is a bit extended from the typical school book examples to not only use "swaps" of two Locations 
  * but also "twists", that reverse the travel direction between the swapped out Locations. The latter really improves the 
@@ -284,12 +288,463 @@ public class TravellingSalesman<T> {
         return bestDistance;
     }
 
+    /**
+     * Solves the problem using the local search for larger problems, where the iterations of the simulated 
+     * annealing no longer suffice, and the simulated annealing otherwise.
+     * 
+     * @return The travelling distance of the solution.
+     */
     public double solve() {
+        if (this.travelSize > localSearchThreshold) {
+            return solveLocalSearch(0, defaultRestarts);
+        }
         // heuristic for the simulated annealing params
         int size = Math.max(1, this.travelSize);
         return simulateAnnealing(getTravellingDistance()/size*2.0, 1.0-0.001/size, size*1000+10000000);
     }
 
+    /**
+     * Problem size above which solve() switches to the local search.
+     */
+    private static final int localSearchThreshold = 1000;
+
+    /**
+     * Default number of restarts for the local search. This is deliberately not derived from the number of 
+     * processors, so the solution is the same on any machine.
+     */
+    public static final int defaultRestarts = 8;
+
+    /**
+     * Number of nearest neighbors considered as candidates for the local search moves. 
+     */
+    private static final int neighborCount = 8;
+
+    /**
+     * Solves the problem using a local search with 2-opt and Or-opt moves. Instead of trying arbitrary pairs
+     * of Locations, the moves are only tried towards the nearest neighbors of a Location, taken from a spatial 
+     * grid, which makes it scale to large problems. 
+     * 
+     * The search is restarted from different randomized nearest neighbor tours, running in parallel on the 
+     * fork-join pool. The best solution is taken, with ties going to the lowest restart, so the result is 
+     * deterministic for a given seed, regardless of the number of processors or the thread scheduling. 
+     * 
+     * @param seed The seed for the randomized restarts.
+     * @param restarts The number of restarts. 
+     * @return The travelling distance of the solution.
+     */
+    public double solveLocalSearch(long seed, int restarts) {
+        long startTime = System.currentTimeMillis();
+        if (this.travelSize > 1) {
+            LocalSearch search = new LocalSearch();
+            int [][] tours = new int[Math.max(1, restarts)][];
+            double [] distances = new double[tours.length];
+            IntStream.range(0, tours.length).parallel().forEach(r -> {
+                int [] tour = search.createTour(new Random(seed*31 + r), r);
+                search.optimize(tour);
+                tours[r] = tour;
+                distances[r] = search.getTourDistance(tour);
+            });
+            int best = 0;
+            for (int r = 1; r < tours.length; r++) {
+                if (distances[r] < distances[best]) {
+                    best = r;
+                }
+            }
+            List<TravelLocation> travel = new ArrayList<>(this.travelSize);
+            for (int index : tours[best]) {
+                travel.add(this.travel.get(index));
+            }
+            this.travel.clear();
+            this.travel.addAll(travel);
+        }
+        double bestDistance = getTravellingDistance();
+        this.solverDuration = System.currentTimeMillis() - startTime;
+        return bestDistance;
+    }
+
+    /**
+     * The local search working on primitive arrays. Nodes 0..n-1 are indices into the current travel, node -1 is 
+     * the start and node n is the end Location. The arrays are only read after construction, so one instance can 
+     * serve all the parallel restarts, each working on its own tour.  
+     */
+    private class LocalSearch {
+        final int n = travelSize;
+        final double [] x = new double[n];
+        final double [] y = new double[n];
+        final double [] z = new double[n];
+        final int [][] neighbors = new int[n][];
+        // The spatial grid.
+        final double minX;
+        final double minY;
+        final double cellSize;
+        final int columns;
+        final int rows;
+        final int [] cellStart;
+        final int [] cellNodes;
+
+        LocalSearch() {
+            double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                TravelLocation l = travel.get(i);
+                x[i] = l.x;
+                y[i] = l.y;
+                z[i] = l.z;
+                minX = Math.min(minX, l.x);
+                minY = Math.min(minY, l.y);
+                maxX = Math.max(maxX, l.x);
+                maxY = Math.max(maxY, l.y);
+            }
+            // Aim for about two nodes per cell.
+            double area = Math.max((maxX - minX)*(maxY - minY), 1e-6);
+            double cellSize = Math.sqrt(2.0*area/n);
+            cellSize = Math.max(cellSize, Math.max(maxX - minX, maxY - minY)/1000.0);
+            cellSize = Math.max(cellSize, 1e-6);
+            this.minX = minX;
+            this.minY = minY;
+            this.cellSize = cellSize;
+            this.columns = (int) ((maxX - minX)/cellSize) + 1;
+            this.rows = (int) ((maxY - minY)/cellSize) + 1;
+            // Counting sort of the nodes into the cells.
+            cellStart = new int[columns*rows + 1];
+            cellNodes = new int[n];
+            for (int i = 0; i < n; i++) {
+                cellStart[cell(i) + 1]++;
+            }
+            for (int c = 0; c < columns*rows; c++) {
+                cellStart[c + 1] += cellStart[c];
+            }
+            int [] fill = cellStart.clone();
+            for (int i = 0; i < n; i++) {
+                cellNodes[fill[cell(i)]++] = i;
+            }
+            int k = Math.min(neighborCount, n - 1);
+            for (int i = 0; i < n; i++) {
+                neighbors[i] = nearestNeighbors(i, k);
+            }
+        }
+
+        int column(double x) {
+            // Clamped, as the start and end Locations may be outside the grid.
+            return Math.max(0, Math.min(columns - 1, (int) Math.floor((x - minX)/cellSize)));
+        }
+
+        int row(double y) {
+            return Math.max(0, Math.min(rows - 1, (int) Math.floor((y - minY)/cellSize)));
+        }
+
+        int cell(int i) {
+            return row(y[i])*columns + column(x[i]);
+        }
+
+        double distance(int a, int b) {
+            if (a < 0 || a >= n || b < 0 || b >= n) {
+                return TravellingSalesman.this.getDistance(a, b);
+            }
+            double dx = x[a] - x[b];
+            double dy = y[a] - y[b];
+            double dz = z[a] - z[b];
+            return Math.sqrt(dx*dx + dy*dy + dz*dz);
+        }
+
+        /**
+         * Search the grid in growing rings, until no closer nodes than the k-th found can be in the next ring. 
+         * The grid is in X, Y only, which can only underestimate the distance.  
+         */
+        int [] nearestNeighbors(int i, int k) {
+            int [] found = new int[k];
+            double [] foundDistance = new double[k];
+            int count = 0;
+            int c0 = column(x[i]);
+            int r0 = row(y[i]);
+            for (int ring = 0; ; ring++) {
+                if (count == k && (ring - 1)*cellSize > foundDistance[k - 1]) {
+                    break;
+                }
+                if (ring > columns && ring > rows) {
+                    break;
+                }
+                for (int r = r0 - ring; r <= r0 + ring; r++) {
+                    if (r < 0 || r >= rows) {
+                        continue;
+                    }
+                    boolean edgeRow = (r == r0 - ring || r == r0 + ring);
+                    for (int c = c0 - ring; c <= c0 + ring; c += (edgeRow ? 1 : 2*ring)) {
+                        if (c >= 0 && c < columns) {
+                            int cell = r*columns + c;
+                            for (int p = cellStart[cell]; p < cellStart[cell + 1]; p++) {
+                                int j = cellNodes[p];
+                                if (j == i) {
+                                    continue;
+                                }
+                                double d = distance(i, j);
+                                if (count < k || d < foundDistance[count - 1]) {
+                                    // Insertion sort into the found list.
+                                    int q = (count < k ? count++ : k - 1);
+                                    while (q > 0 && foundDistance[q - 1] > d) {
+                                        found[q] = found[q - 1];
+                                        foundDistance[q] = foundDistance[q - 1];
+                                        q--;
+                                    }
+                                    found[q] = j;
+                                    foundDistance[q] = d;
+                                }
+                            }
+                        }
+                        if (ring == 0) {
+                            break;
+                        }
+                    }
+                }
+            }
+            return Arrays.copyOf(found, count);
+        }
+
+        /**
+         * Create a randomized nearest neighbor tour. The first restart is the plain nearest neighbor tour from
+         * the start Location, the others randomly start anywhere and sometimes take the second nearest. 
+         */
+        int [] createTour(Random random, int restart) {
+            int [] tour = new int[n];
+            boolean [] visited = new boolean[n];
+            int current = (restart == 0 && startLocation != null) ? -1 : random.nextInt(n);
+            int count = 0;
+            if (current >= 0) {
+                tour[count++] = current;
+                visited[current] = true;
+            }
+            while (count < n) {
+                int best = -1;
+                int second = -1;
+                if (current >= 0) {
+                    for (int j : neighbors[current]) {
+                        if (!visited[j]) {
+                            if (best < 0) {
+                                best = j;
+                            }
+                            else {
+                                second = j;
+                                break;
+                            }
+                        }
+                    }
+                }
+                if (best < 0) {
+                    // All the neighbors are visited, search the grid.
+                    best = nearestUnvisited(current, visited);
+                }
+                else if (second >= 0 && restart > 0 && random.nextDouble() < 0.1) {
+                    best = second;
+                }
+                tour[count++] = best;
+                visited[best] = true;
+                current = best;
+            }
+            return tour;
+        }
+
+        int nearestUnvisited(int i, boolean [] visited) {
+            double px = (i < 0 ? startLocation.x : x[i]);
+            double py = (i < 0 ? startLocation.y : y[i]);
+            int c0 = column(px);
+            int r0 = row(py);
+            int best = -1;
+            double bestDistance = Double.POSITIVE_INFINITY;
+            for (int ring = 0; ring <= columns || ring <= rows; ring++) {
+                if (best >= 0 && (ring - 1)*cellSize > bestDistance) {
+                    break;
+                }
+                for (int r = Math.max(0, r0 - ring); r <= Math.min(rows - 1, r0 + ring); r++) {
+                    boolean edgeRow = (r == r0 - ring || r == r0 + ring);
+                    for (int c = c0 - ring; c <= c0 + ring; c += (edgeRow || ring == 0 ? 1 : 2*ring)) {
+                        if (c >= 0 && c < columns) {
+                            int cell = r*columns + c;
+                            for (int p = cellStart[cell]; p < cellStart[cell + 1]; p++) {
+                                int j = cellNodes[p];
+                                if (!visited[j]) {
+                                    double d = distance(i, j);
+                                    if (i < 0) {
+                                        double dx = px - x[j];
+                                        double dy = py - y[j];
+                                        double dz = startLocation.z - z[j];
+                                        d = Math.sqrt(dx*dx + dy*dy + dz*dz);
+                                    }
+                                    if (d < bestDistance) {
+                                        bestDistance = d;
+                                        best = j;
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            return best;
+        }
+
+        double getTourDistance(int [] tour) {
+            double distance = distance(-1, tour[0]) + distance(tour[n - 1], n);
+            for (int i = 1; i < n; i++) {
+                distance += distance(tour[i - 1], tour[i]);
+            }
+            return distance;
+        }
+
+        int at(int [] tour, int p) {
+            // Positions outside the tour are the start and end Locations.
+            return p < 0 ? -1 : (p >= n ? n : tour[p]);
+        }
+
+        /**
+         * Run 2-opt and Or-opt moves towards the nearest neighbors until no improvement is found. Nodes are 
+         * processed from a queue, with nodes touched by a move queued again ("don't look bits"). 
+         */
+        void optimize(int [] tour) {
+            int [] position = new int[n];
+            for (int p = 0; p < n; p++) {
+                position[tour[p]] = p;
+            }
+            boolean [] queued = new boolean[n];
+            ArrayDeque<Integer> queue = new ArrayDeque<>(n);
+            for (int p = 0; p < n; p++) {
+                queue.add(tour[p]);
+                queued[tour[p]] = true;
+            }
+            while (!queue.isEmpty()) {
+                int a = queue.poll();
+                queued[a] = false;
+                int [] touched = improve(tour, position, a);
+                if (touched != null) {
+                    for (int t : touched) {
+                        if (t >= 0 && t < n && !queued[t]) {
+                            queue.add(t);
+                            queued[t] = true;
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Try to find an improving move for node a. 
+         * 
+         * @return The nodes touched by the applied move or null if none was found.
+         */
+        int [] improve(int [] tour, int [] position, int a) {
+            int i = position[a];
+            for (int b : neighbors[a]) {
+                int j = position[b];
+                // 2-opt: reverse a section, so that a and b become adjacent. 
+                int p = Math.min(i, j);
+                int q = Math.max(i, j);
+                for (int variant = 0; variant < 2; variant++) {
+                    int from = (variant == 0 ? p + 1 : p);
+                    int to = (variant == 0 ? q : q - 1);
+                    if (from < to && reverseGain(tour, from, to) < -1e-9) {
+                        int [] touched = new int[] { at(tour, from - 1), at(tour, from), at(tour, to), at(tour, to + 1) };
+                        reverse(tour, position, from, to);
+                        return touched;
+                    }
+                }
+            }
+            // Or-opt: move a segment starting or ending at a, next to one of the neighbors of its ends.
+            for (int length = 1; length <= 3; length++) {
+                for (int s = i - length + 1; s <= i; s += Math.max(1, length - 1)) {
+                    int e = s + length - 1;
+                    if (s < 0 || e >= n) {
+                        continue;
+                    }
+                    int first = tour[s];
+                    int last = tour[e];
+                    int before = at(tour, s - 1);
+                    int after = at(tour, e + 1);
+                    double removeGain = distance(before, after) - distance(before, first) - distance(last, after);
+                    for (int end = 0; end < 2; end++) {
+                        int node = (end == 0 ? first : last);
+                        for (int b : neighbors[node]) {
+                            int j = position[b];
+                            if (j >= s && j <= e) {
+                                continue;
+                            }
+                            // Insert between b and its successor, or its predecessor and b.
+                            for (int side = 0; side < 2; side++) {
+                                int k = (side == 0 ? j : j - 1);
+                                if (k >= s - 1 && k <= e) {
+                                    // Not a move.
+                                    continue;
+                                }
+                                int c = at(tour, k);
+                                int d = at(tour, k + 1);
+                                double base = distance(c, d);
+                                double forward = distance(c, first) + distance(last, d) - base;
+                                double backward = distance(c, last) + distance(first, d) - base;
+                                boolean reversed = backward < forward;
+                                if (removeGain + Math.min(forward, backward) < -1e-9) {
+                                    int [] touched = new int[] { before, after, first, last, c, d };
+                                    move(tour, position, s, e, k, reversed);
+                                    return touched;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            return null;
+        }
+
+        double reverseGain(int [] tour, int from, int to) {
+            int a = at(tour, from - 1);
+            int b = tour[from];
+            int c = tour[to];
+            int d = at(tour, to + 1);
+            return distance(a, c) + distance(b, d) - distance(a, b) - distance(c, d);
+        }
+
+        void reverse(int [] tour, int [] position, int from, int to) {
+            for (; from < to; from++, to--) {
+                int t = tour[from];
+                tour[from] = tour[to];
+                tour[to] = t;
+                position[tour[from]] = from;
+                position[tour[to]] = to;
+            }
+        }
+
+        /**
+         * Move the segment s..e to between the positions k and k + 1.
+         */
+        void move(int [] tour, int [] position, int s, int e, int k, boolean reversed) {
+            int length = e - s + 1;
+            int [] segment = Arrays.copyOfRange(tour, s, e + 1);
+            if (reversed) {
+                for (int l = 0; l < length/2; l++) {
+                    int t = segment[l];
+                    segment[l] = segment[length - 1 - l];
+                    segment[length - 1 - l] = t;
+                }
+            }
+            int start;
+            if (k < s) {
+                // Shift k + 1..s - 1 to the right.
+                System.arraycopy(tour, k + 1, tour, k + 1 + length, s - k - 1);
+                start = k + 1;
+                System.arraycopy(segment, 0, tour, start, length);
+                for (int p = start; p <= e; p++) {
+                    position[tour[p]] = p;
+                }
+            }
+            else {
+                // Shift e + 1..k to the left.
+                System.arraycopy(tour, e + 1, tour, s, k - e);
+                start = k - length + 1;
+                System.arraycopy(segment, 0, tour, start, length);
+                for (int p = s; p <= k; p++) {
+                    position[tour[p]] = p;
+                }
+            }
+        }
+    }
+
     public List<T> getTravel() {
         // convert the working list back to a list of the input objects using the now rearranged t.index order. 
         List<T> travelOutput = new ArrayList<>();
@@ -34,6 +34,7 @@ import org.opencv.core.RotatedRect;
 import org.opencv.core.Size;
 import org.openpnp.model.Board.Side;
 import org.openpnp.model.BoardLocation;
+import org.openpnp.model.BoardPlacementTransform;
 import org.openpnp.model.Length;
 import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
@@ -202,38 +203,32 @@ public class Utils2D {
         return ret;
     }
 
-    public static Location calculateBoardPlacementLocation(BoardLocation bl,
-            Location placementLocation) {
-        AffineTransform tx = bl.getPlacementTransform();        
+    /**
+     * Creates the precomputed transform of a BoardLocation, using its placement transform if
+     * present, or the default transform from its location and side.
+     * 
+     * @param bl
+     * @return
+     */
+    public static BoardPlacementTransform createBoardPlacementTransform(BoardLocation bl) {
+        AffineTransform tx = bl.getPlacementTransform();
         if (tx == null) {
             tx = getDefaultBoardPlacementLocationTransform(bl);
         }
-        
-        // The affine calculations are always done in millimeters, so we convert everything
-        // before we start calculating and then we'll convert it back to the original
-        // units at the end.
-        LengthUnit placementUnits = placementLocation.getUnits();
-        Location boardLocation = bl.getLocation().convertToUnits(LengthUnit.Millimeters);
-        placementLocation = placementLocation.convertToUnits(LengthUnit.Millimeters);
-
-        if (bl.getSide() == Side.Bottom) {
-        	placementLocation = placementLocation.invert(true, false, false, false);
-        }
+        return new BoardPlacementTransform(bl, tx, getTransformAngle(tx));
+    }
 
-        double angle = getTransformAngle(tx);
-        
-        Point2D p = new Point2D.Double(placementLocation.getX(), placementLocation.getY());
-        p = tx.transform(p, null);
-        
-        // The final result is the transformed X,Y, the BoardLocation's Z, and the
-        // transform angle + placement angle.
-        Location l = new Location(LengthUnit.Millimeters, 
-                p.getX(), 
-                p.getY(), 
-                boardLocation.getZ(), 
-                angle + placementLocation.getRotation());
-        l = l.convertToUnits(placementUnits);
-        return l;
+    /**
+     * Calculates the machine location of a placement on the board. The transform is cached in
+     * the BoardLocation, see {@link BoardLocation#getBoardPlacementTransform()}.
+     * 
+     * @param bl
+     * @param placementLocation
+     * @return
+     */
+    public static Location calculateBoardPlacementLocation(BoardLocation bl,
+            Location placementLocation) {
+        return bl.getBoardPlacementTransform().transform(placementLocation);
     }
 
     public static Location calculateBoardPlacementLocationInverse(BoardLocation bl,
@@ -8,6 +8,9 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.IOUtils;
 import org.openpnp.machine.reference.vision.ReferenceBottomVision;
@@ -280,6 +283,58 @@ public class VisionUtils {
         }
     }
 
+    /**
+     * Like {@link #findPartAlignmentOffsets(PartAlignment, Part, BoardLocation, Location, Nozzle)}, but only 
+     * performs the part of the alignment that needs the machine and submits the rest to the executor, see 
+     * {@link PartAlignment#findOffsetsDeferred(Part, BoardLocation, Location, Nozzle)}. The alignment must be 
+     * completed using {@link #joinPartAlignmentOffsets(Future, Part, Nozzle)}.
+     */
+    public static Future<PartAlignmentOffset> submitPartAlignmentOffsets(PartAlignment p, Part part, BoardLocation boardLocation, Location placementLocation, Nozzle nozzle, ExecutorService executor) throws Exception {
+        Map<String, Object> globals = new HashMap<>();
+        globals.put("part", part);
+        globals.put("nozzle", nozzle);
+        Configuration.get().getScripting().on("Vision.PartAlignment.Before", globals);
+
+        try {
+            return executor.submit(p.findOffsetsDeferred(part, boardLocation, placementLocation, nozzle));
+        }
+        catch (Exception e) {
+            globals.put("offsets", null);
+            Configuration.get().getScripting().on("Vision.PartAlignment.After", globals);
+            throw e;
+        }
+    }
+
+    /**
+     * Wait for an alignment submitted using 
+     * {@link #submitPartAlignmentOffsets(PartAlignment, Part, BoardLocation, Location, Nozzle, ExecutorService)}
+     * to complete.
+     * 
+     * @return The offsets.
+     * @throws Exception if the alignment failed.
+     */
+    public static PartAlignmentOffset joinPartAlignmentOffsets(Future<PartAlignmentOffset> future, Part part, Nozzle nozzle) throws Exception {
+        Map<String, Object> globals = new HashMap<>();
+        globals.put("part", part);
+        globals.put("nozzle", nozzle);
+
+        PartAlignmentOffset offsets = null;
+        try {
+            offsets = future.get();
+            return offsets;
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+        finally {
+            globals.put("offsets", offsets);
+            Configuration.get().getScripting().on("Vision.PartAlignment.After", globals);
+        }
+    }
+
     /**
      * Compute an RGB histogram over the provided image.
      * 
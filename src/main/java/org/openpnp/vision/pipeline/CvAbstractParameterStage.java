@@ -25,6 +25,7 @@ import java.beans.IntrospectionException;
 import java.beans.PropertyDescriptor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Set;
 
 import org.simpleframework.xml.Attribute;
 
@@ -86,6 +87,14 @@ public abstract class CvAbstractParameterStage extends CvStage {
         this.propertyName = propertyName;
     }
 
+    @Override
+    public Set<String> getReferencedStageNames() {
+        // The effect stage is only shown in the parameter preview. 
+        Set<String> stageNames = super.getReferencedStageNames();
+        stageNames.remove(effectStageName);
+        return stageNames;
+    }
+
     public String getEffectStageName() {
         return effectStageName;
     }
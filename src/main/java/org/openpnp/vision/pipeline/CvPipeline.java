@@ -7,8 +7,11 @@ import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.opencv.core.CvType;
@@ -69,6 +72,10 @@ public class CvPipeline implements AutoCloseable {
 
     private long totalProcessingTimeNs;
 
+    private Set<Mat> leasedMats = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private long peakNativeBytes;
+
     private BufferedImage lastCapturedImage;
 
     private int currentShot;
@@ -256,12 +263,112 @@ public class CvPipeline implements AutoCloseable {
       this.totalProcessingTimeNs = totalProcessingTimeNs;
     }
 
+    /**
+     * @return The peak native memory in bytes of the images held by the pipeline during the last run, i.e. the 
+     * working image, the result images and the Mats leased by the stages.
+     */
+    public long getPeakNativeBytes() {
+        return peakNativeBytes;
+    }
+
+    /**
+     * Lease a Mat of the given size and type from the {@link MatPool}. The content of the Mat is undefined. 
+     * The Mat is given back to the pool, when it is replaced as the working image or when the pipeline is 
+     * released. A stage may also give it back early with {@link #releaseMat(Mat)}. 
+     * 
+     * @param rows
+     * @param cols
+     * @param type
+     * @return
+     */
+    public Mat leaseMat(int rows, int cols, int type) {
+        Mat mat = MatPool.get().lease(rows, cols, type);
+        leasedMats.add(mat);
+        return mat;
+    }
+
+    /**
+     * Release the Mat. If it was leased from the {@link MatPool}, it is given back, otherwise it is released. 
+     * 
+     * @param mat
+     */
+    public void releaseMat(Mat mat) {
+        if (leasedMats.remove(mat)) {
+            MatPool.get().giveBack(mat);
+        }
+        else {
+            mat.release();
+        }
+    }
+
+    private Mat cloneMat(Mat mat) {
+        Mat clone = leaseMat(mat.rows(), mat.cols(), mat.type());
+        mat.copyTo(clone);
+        return clone;
+    }
+
+    private boolean isResultImage(Mat mat) {
+        for (Result result : results.values()) {
+            if (result.image == mat) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long getNativeBytes() {
+        Set<Mat> mats = Collections.newSetFromMap(new IdentityHashMap<>());
+        mats.addAll(leasedMats);
+        if (workingImage != null) {
+            mats.add(workingImage);
+        }
+        for (Result result : results.values()) {
+            if (result.image != null) {
+                mats.add(result.image);
+            }
+        }
+        long bytes = 0;
+        for (Mat mat : mats) {
+            bytes += MatPool.getBytes(mat);
+        }
+        return bytes;
+    }
+
+    /**
+     * Process the pipeline, retaining only the result images that are referenced by other stages. The results 
+     * of the other stages still have their models, but no image. 
+     * 
+     * @throws Exception
+     */
     public void process() throws Exception {
+        process(false);
+    }
+
+    /**
+     * Process the pipeline.
+     * 
+     * @param retainResultImages If true, a copy of the image of each stage is retained in its result, so all the 
+     * results can be shown, as in the pipeline editor. Otherwise, only the result images that are referenced by 
+     * other stages are retained.
+     * @throws Exception
+     */
+    public void process(boolean retainResultImages) throws Exception {
         terminalException = null;
         totalProcessingTimeNs = 0;
         release();
+        peakNativeBytes = getNativeBytes();
+        Set<String> referencedStageNames = new HashSet<>();
         for (CvStage stage : stages) {
             stage.processPrepare(this);
+            if (!retainResultImages && stage.isEnabled()) {
+                Set<String> stageNames = stage.getReferencedStageNames();
+                if (stageNames == null) {
+                    retainResultImages = true;
+                }
+                else {
+                    referencedStageNames.addAll(stageNames);
+                }
+            }
         }
         for (CvStage stage : stages) {
             // Process and time the stage and get the result.
@@ -301,11 +408,12 @@ public class CvPipeline implements AutoCloseable {
             if(stage.isEnabled() && colorSpace != null) {
                 workingColorSpace = colorSpace;
             }
+            boolean retainResultImage = retainResultImages || referencedStageNames.contains(stage.getName());
             // If the result image is null and there is a working image,
             // replace the result image with a clone of the working image.
             if (image == null) {
-                if (workingImage != null) {
-                    image = workingImage.clone();
+                if (workingImage != null && retainResultImage) {
+                    image = cloneMat(workingImage);
                 }
             }
             // If the result image is not null:
@@ -313,11 +421,11 @@ public class CvPipeline implements AutoCloseable {
             // Replace the working image with the result image.
             // Clone the result image for storage.
             else {
-                if (workingImage != null && workingImage != image) {
-                    workingImage.release();
+                if (workingImage != null && workingImage != image && !isResultImage(workingImage)) {
+                    releaseMat(workingImage);
                 }
                 workingImage = image;
-                image = image.clone();
+                image = retainResultImage ? cloneMat(image) : null;
             }
 
             // If the result colorSpace is null and there is a working colorSpace,
@@ -329,7 +437,10 @@ public class CvPipeline implements AutoCloseable {
             }
 
             results.put(stage, new Result(image, colorSpace, model, processingTimeNs, stage));
+            peakNativeBytes = Math.max(peakNativeBytes, getNativeBytes());
         }
+        Logger.trace("Pipeline processed in {}ms, peak native memory {} bytes.", 
+                totalProcessingTimeNs/1e6, peakNativeBytes);
         if (terminalException != null) {
             throw (terminalException);
         }
@@ -351,15 +462,22 @@ public class CvPipeline implements AutoCloseable {
      * resources from OpenCV.
      */
     public void release() {
+        // The working image may also be a result image, e.g. after ComposeResult, and leased, so each distinct
+        // Mat must be released exactly once.
+        Set<Mat> mats = Collections.newSetFromMap(new IdentityHashMap<>());
         if (workingImage != null) {
-            workingImage.release();
+            mats.add(workingImage);
             workingImage = null;
         }
         for (Result result : results.values()) {
             if (result.image != null) {
-                result.image.release();
+                mats.add(result.image);
             }
         }
+        mats.addAll(leasedMats);
+        for (Mat mat : mats) {
+            releaseMat(mat);
+        }
         workingModel = null;
         results.clear();
     }
@@ -508,6 +626,15 @@ public class CvPipeline implements AutoCloseable {
          * @throws Exception
          */
         public void apply() throws Exception {
+            applyProperties();
+        }
+
+        /**
+         * Apply only the recorded pipeline properties for this shot to the pipeline, without the custom 
+         * actions of an overridden {@link #apply()}. Used to process a shot, when its image was already 
+         * captured. 
+         */
+        public final void applyProperties() {
             CvPipeline.this.properties = new HashMap<>();
             CvPipeline.this.properties.putAll(properties);
             CvPipeline.this.currentShot = index;
@@ -12,8 +12,10 @@ import java.lang.reflect.Field;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.opencv.core.Mat;
 import org.openpnp.model.Area;
@@ -148,6 +150,35 @@ public abstract class CvStage {
         return 0;
     }
 
+    /**
+     * @return The names of the stages whose results this stage uses, i.e. the values of its String fields named 
+     * like "...StageName". The pipeline retains the result images of these stages, even when it does not retain 
+     * the others. Stages that reference results in another way should override this, and return null if they 
+     * may use the results of any stage.
+     */
+    public Set<String> getReferencedStageNames() {
+        Set<String> stageNames = new HashSet<>();
+        Class<?> cls = getClass();
+        while (cls != null) {
+            for (Field field : cls.getDeclaredFields()) {
+                if (field.getType() == String.class && field.getName().endsWith("StageName")) {
+                    try {
+                        field.setAccessible(true);
+                        String stageName = (String) field.get(this);
+                        if (stageName != null && !stageName.isEmpty()) {
+                            stageNames.add(stageName);
+                        }
+                    }
+                    catch (Exception e) {
+                    }
+                }
+            }
+            // Also look in super classes.
+            cls = cls.getSuperclass();
+        }
+        return stageNames;
+    }
+
     // a stage may optionally define a length unit which is handled in the pipeline editor's 
     // ResultsPanel.matView
     public LengthUnit getLengthUnit() {
@@ -0,0 +1,158 @@
+package org.openpnp.vision.pipeline;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+/**
+ * A pool of native OpenCV Mat buffers, keyed by size and type, shared by all the pipelines. Pipelines lease Mats
+ * from the pool with {@link CvPipeline#leaseMat(int, int, int)} and give them back when they are released, so
+ * the big buffers of camera images are reused rather than allocated and freed for each stage and each run.
+ *
+ * The pool retains at most {@link #getMaxFreeBytes()} of free buffers, any Mats given back beyond that are
+ * released.
+ */
+public class MatPool {
+    private static final MatPool instance = new MatPool(256L*1024*1024);
+
+    private static class Key {
+        final int rows;
+        final int cols;
+        final int type;
+
+        Key(int rows, int cols, int type) {
+            this.rows = rows;
+            this.cols = cols;
+            this.type = type;
+        }
+
+        long getBytes() {
+            return (long) rows*cols*CvType.ELEM_SIZE(type);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return rows == other.rows && cols == other.cols && type == other.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(rows, cols, type);
+        }
+    }
+
+    private final Map<Key, Deque<Mat>> freeMats = new HashMap<>();
+    private long freeBytes;
+    private long maxFreeBytes;
+
+    public MatPool(long maxFreeBytes) {
+        this.maxFreeBytes = maxFreeBytes;
+    }
+
+    public static MatPool get() {
+        return instance;
+    }
+
+    /**
+     * Lease a Mat of the given size and type. The content of the Mat is undefined.
+     *
+     * @param rows
+     * @param cols
+     * @param type
+     * @return
+     */
+    public synchronized Mat lease(int rows, int cols, int type) {
+        Key key = new Key(rows, cols, type);
+        Deque<Mat> mats = freeMats.get(key);
+        while (mats != null && !mats.isEmpty()) {
+            Mat mat = mats.pop();
+            freeBytes -= key.getBytes();
+            // A Mat that was released or reallocated while in the pool is discarded.
+            if (!mat.empty() && mat.rows() == rows && mat.cols() == cols && mat.type() == type) {
+                return mat;
+            }
+            mat.release();
+        }
+        return new Mat(rows, cols, type);
+    }
+
+    /**
+     * Give the Mat back to the pool. It must no longer be used by the caller. The Mat is keyed by its current size
+     * and type, so OpenCV operations may well have reallocated it.
+     *
+     * @param mat
+     */
+    public synchronized void giveBack(Mat mat) {
+        long bytes = getBytes(mat);
+        if (bytes == 0 || freeBytes + bytes > maxFreeBytes || !mat.isContinuous() || mat.isSubmatrix()) {
+            mat.release();
+            return;
+        }
+        if (containsMat(mat)) {
+            return;
+        }
+        freeMats.computeIfAbsent(new Key(mat.rows(), mat.cols(), mat.type()), k -> new ArrayDeque<>())
+            .push(mat);
+        freeBytes += bytes;
+    }
+
+    private boolean containsMat(Mat mat) {
+        Deque<Mat> mats = freeMats.get(new Key(mat.rows(), mat.cols(), mat.type()));
+        if (mats != null) {
+            for (Mat free : mats) {
+                if (free == mat) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Release all the free Mats.
+     */
+    public synchronized void clear() {
+        for (Deque<Mat> mats : freeMats.values()) {
+            for (Mat mat : mats) {
+                mat.release();
+            }
+        }
+        freeMats.clear();
+        freeBytes = 0;
+    }
+
+    public synchronized long getFreeBytes() {
+        return freeBytes;
+    }
+
+    public synchronized long getMaxFreeBytes() {
+        return maxFreeBytes;
+    }
+
+    public synchronized void setMaxFreeBytes(long maxFreeBytes) {
+        this.maxFreeBytes = maxFreeBytes;
+        if (freeBytes > maxFreeBytes) {
+            clear();
+        }
+    }
+
+    /**
+     * @param mat
+     * @return The number of bytes of native memory of the Mat's image data.
+     */
+    public static long getBytes(Mat mat) {
+        if (mat == null || mat.empty()) {
+            return 0;
+        }
+        return mat.total()*mat.elemSize();
+    }
+}
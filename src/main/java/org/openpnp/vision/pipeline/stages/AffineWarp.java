@@ -274,8 +274,9 @@ public class AffineWarp extends CvStage {
         Size size = new Size(wPx, hPx);
 
         // Perform the warpAffine
-        Mat transformed = new Mat();
+        Mat transformed = pipeline.leaseMat((int) size.height, (int) size.width, mat.type());
         Imgproc.warpAffine(mat, transformed, transformMatrix, size);
+        transformMatrix.release();
 
 
         return new Result(transformed, affineTransform);
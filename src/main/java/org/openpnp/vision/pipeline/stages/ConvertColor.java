@@ -1,5 +1,6 @@
 package org.openpnp.vision.pipeline.stages;
 
+import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.imgproc.Imgproc;
 import org.openpnp.vision.FluentCv;
@@ -32,8 +33,29 @@ public class ConvertColor extends CvStage {
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         Mat mat = pipeline.getWorkingImage();
-        Imgproc.cvtColor(mat, mat, conversion.getCode());
+        Mat converted = pipeline.leaseMat(mat.rows(), mat.cols(), getResultType(conversion, mat));
+        Imgproc.cvtColor(mat, converted, conversion.getCode());
         pipeline.setWorkingColorSpace(conversion.getResultingColorSpace());
-        return null;
+        return new Result(converted);
+    }
+
+    /**
+     * @param conversion
+     * @param mat
+     * @return The Mat type the conversion results in for the given input Mat, so the right Mat can be leased from
+     * the pool. The depth is kept, the channels are those of the resulting color space.
+     */
+    public static int getResultType(FluentCv.ColorCode conversion, Mat mat) {
+        int channels;
+        switch (conversion.getResultingColorSpace()) {
+            case Gray:
+                channels = 1;
+                break;
+            default:
+                // Three channel color spaces, any alpha channel of the input is dropped.
+                channels = 3;
+                break;
+        }
+        return CvType.makeType(mat.depth(), channels);
     }
 }
@@ -1,6 +1,10 @@
 package org.openpnp.vision.pipeline.stages;
 
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.opencv.core.Core;
 import org.opencv.core.CvType;
@@ -26,6 +30,11 @@ import org.simpleframework.xml.core.Commit;
         description="Capture an image from the pipeline camera.")
 
 public class ImageCapture extends CvStage {
+    /**
+     * Pipeline property with the images captured ahead of processing, see {@link #captureImages(CvPipeline)}.
+     */
+    public static final String PRE_CAPTURED_IMAGES = "ImageCapture.preCapturedImages";
+
     @Attribute(required=false)
     @Property(description="Use the default camera lighting.")
     private boolean defaultLight = true;
@@ -89,50 +98,94 @@ public class ImageCapture extends CvStage {
             this.count = 1;
         }
     }
-    @Override
-    public Result process(CvPipeline pipeline) throws Exception {
+    /**
+     * Light, settle and capture the images to be averaged. 
+     * 
+     * @param camera
+     * @return
+     * @throws Exception
+     */
+    public List<BufferedImage> capture(Camera camera) throws Exception {
+        List<BufferedImage> images = new ArrayList<>(count);
+        // Keep the lights on for possible averaging.
+        camera.actuateLightBeforeCapture((defaultLight ? null : getLight()));
+        try {
+            images.add(camera.settleAndCapture(settleOption));
+            for (int i = 1; i < count; i++) {
+                images.add(camera.capture());
+            }
+        }
+        finally {
+            // Always switch off the light. 
+            camera.actuateLightAfterCapture();
+        }
+        return images;
+    }
+
+    /**
+     * Capture the images of all the enabled ImageCapture stages of the pipeline, so the pipeline can be 
+     * processed later without the camera, e.g. on another thread, while the machine already moves on. 
+     * Set the returned images as the {@link #PRE_CAPTURED_IMAGES} property of the pipeline, to have the 
+     * stages use them instead of capturing.
+     * 
+     * @param pipeline
+     * @return The captured images by stage name.
+     * @throws Exception
+     */
+    public static Map<String, List<BufferedImage>> captureImages(CvPipeline pipeline) throws Exception {
         Camera camera = (Camera) pipeline.getProperty("camera");
         if (camera == null) {
             throw new Exception("No Camera set on pipeline.");
         }
-        try {
-            // Light, settle and capture the image. Keep the lights on for possible averaging.
-            camera.actuateLightBeforeCapture((defaultLight ? null : getLight()));
+        Map<String, List<BufferedImage>> images = new HashMap<>();
+        for (CvStage stage : pipeline.getStages()) {
+            if (stage instanceof ImageCapture && stage.isEnabled()) {
+                images.put(stage.getName(), ((ImageCapture) stage).capture(camera));
+            }
+        }
+        return images;
+    }
+
+    @Override
+    public Result process(CvPipeline pipeline) throws Exception {
+        @SuppressWarnings("unchecked")
+        Map<String, List<BufferedImage>> preCapturedImages = 
+                (Map<String, List<BufferedImage>>) pipeline.getProperty(PRE_CAPTURED_IMAGES);
+        List<BufferedImage> images = (preCapturedImages != null ? preCapturedImages.get(getName()) : null);
+        if (images == null) {
+            Camera camera = (Camera) pipeline.getProperty("camera");
+            if (camera == null) {
+                throw new Exception("No Camera set on pipeline.");
+            }
             try {
-                BufferedImage bufferedImage = camera.settleAndCapture(settleOption); 
-                // Remember the last captured image. This specifically records the native camera image, 
-                // i.e. it does not apply averaging (we want an unaltered raw image for analysis purposes).
-                pipeline.setLastCapturedImage(bufferedImage);
-                Mat image = OpenCvUtils.toMat(bufferedImage);
-                if (count <= 1) { 
-                    return new Result(image, ColorSpace.Bgr);
-                }
-                else {
-                    // Perform averaging in channel type double.
-                    image.convertTo(image, CvType.CV_64F);
-                    Mat avgImage = image;
-                    double beta = 1.0 / count;
-                    Core.addWeighted(avgImage, 0, image, beta, 0, avgImage); // avgImage = image/count
-                    for (int i = 1; i < count; i++) {
-                        image = OpenCvUtils.toMat(camera.capture());
-                        image.convertTo(image, CvType.CV_64F);
-                        Core.addWeighted(avgImage, 1, image, beta, 0, avgImage); // avgImage = avgImag + image/count
-                        // Release the additional image.
-                        image.release();
-                    }
-                    avgImage.convertTo(avgImage, CvType.CV_8U);
-                    return new Result(avgImage, ColorSpace.Bgr);
-                }
+                images = capture(camera);
             }
-            finally {
-                // Always switch off the light. 
-                camera.actuateLightAfterCapture();
+            catch (Exception e) {
+                // These machine exceptions are terminal to the pipeline.
+                throw new TerminalException(e);
             }
         }
-        catch (Exception e) {
-            // These machine exceptions are terminal to the pipeline.
-            throw new TerminalException(e);
+        // Remember the last captured image. This specifically records the native camera image, 
+        // i.e. it does not apply averaging (we want an unaltered raw image for analysis purposes).
+        pipeline.setLastCapturedImage(images.get(0));
+        Mat image = OpenCvUtils.toMat(images.get(0));
+        if (images.size() <= 1) { 
+            return new Result(image, ColorSpace.Bgr);
+        }
+        // Perform averaging in channel type double.
+        image.convertTo(image, CvType.CV_64F);
+        Mat avgImage = image;
+        double beta = 1.0 / images.size();
+        Core.addWeighted(avgImage, 0, image, beta, 0, avgImage); // avgImage = image/count
+        for (int i = 1; i < images.size(); i++) {
+            image = OpenCvUtils.toMat(images.get(i));
+            image.convertTo(image, CvType.CV_64F);
+            Core.addWeighted(avgImage, 1, image, beta, 0, avgImage); // avgImage = avgImag + image/count
+            // Release the additional image.
+            image.release();
         }
+        avgImage.convertTo(avgImage, CvType.CV_8U);
+        return new Result(avgImage, ColorSpace.Bgr);
     }
 
     @Override
@@ -3,6 +3,7 @@ package org.openpnp.vision.pipeline.stages;
 import java.awt.Color;
 
 import org.opencv.core.Core;
+import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.Point;
 import org.opencv.core.Scalar;
@@ -55,8 +56,8 @@ public class MaskCircle extends CvStage {
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         Mat mat = pipeline.getWorkingImage();
-        Mat mask = mat.clone();
-        Mat masked = mat.clone();
+        Mat mask = pipeline.leaseMat(mat.rows(), mat.cols(), CvType.CV_8UC1);
+        Mat masked = pipeline.leaseMat(mat.rows(), mat.cols(), mat.type());
         Scalar color = FluentCv.colorToScalar(Color.black);
         mask.setTo(color);
         masked.setTo(color);
@@ -77,7 +78,7 @@ public class MaskCircle extends CvStage {
             Core.bitwise_not(mask,mask);
         }
         mat.copyTo(masked, mask);
-        mask.release();
+        pipeline.releaseMat(mask);
         return new Result(masked);
     }
 }
@@ -222,7 +222,7 @@ public class CvPipelineEditor extends JPanel {
     }
 
     public void process() {
-        UiUtils.messageBoxOnException(() -> getPipeline().process());
+        UiUtils.messageBoxOnException(() -> getPipeline().process(true));
         resultsPanel.refresh();
     }
 
@@ -256,7 +256,8 @@ public class ResultsPanel extends JPanel {
         }
         resultStageNameLabel.setText(result == null || displayStage == null ? ""
                 : (displayStage.getName() + " ( " + (result.processingTimeNs / 1000000.0)
-                        + " ms / " + (editor.getPipeline().getTotalProcessingTimeNs() / 1000000.0) + " ms)"));
+                        + " ms / " + (editor.getPipeline().getTotalProcessingTimeNs() / 1000000.0) + " ms, "
+                        + String.format("%.1f", editor.getPipeline().getPeakNativeBytes() / 1048576.0) + " MB peak)"));
 
         if (selectedStage == null) {
             firstResultAction.setEnabled(false);
@@ -0,0 +1,157 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openpnp.machine.reference.ReferenceMachine;
+import org.openpnp.machine.reference.axis.ReferenceControllerAxis;
+import org.openpnp.machine.reference.driver.GcodeAsyncDriver;
+import org.openpnp.model.AxesLocation;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Length;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Motion;
+import org.openpnp.model.Motion.MoveToCommand;
+import org.openpnp.model.MotionProfile;
+import org.openpnp.spi.Axis;
+import org.openpnp.spi.Driver.MotionControlType;
+
+import com.google.common.io.Files;
+
+public class AdaptiveInterpolationTest {
+    GcodeAsyncDriver driver;
+    ReferenceControllerAxis xAxis;
+    ReferenceControllerAxis yAxis;
+
+    @BeforeEach
+    public void before() throws Exception {
+        File workingDirectory = Files.createTempDir();
+        workingDirectory = new File(workingDirectory, ".openpnp");
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+
+        driver = new GcodeAsyncDriver();
+        driver.createDefaults();
+        driver.setMotionControlType(MotionControlType.Simulated3rdOrderControl);
+        driver.setInterpolationMaxSteps(1000);
+        driver.setInterpolationJerkSteps(8);
+
+        ReferenceMachine machine = (ReferenceMachine) Configuration.get().getMachine();
+        for (Axis axis : machine.getAxes()) {
+            if (axis instanceof ReferenceControllerAxis) {
+                ReferenceControllerAxis controllerAxis = (ReferenceControllerAxis) axis;
+                controllerAxis.setDriver(driver);
+                controllerAxis.setFeedratePerSecond(new Length(500, LengthUnit.Millimeters));
+                controllerAxis.setAccelerationPerSecond2(new Length(2000, LengthUnit.Millimeters));
+                controllerAxis.setJerkPerSecond3(new Length(20000, LengthUnit.Millimeters));
+                if (axis.getType() == Axis.Type.X) {
+                    xAxis = controllerAxis;
+                }
+                else if (axis.getType() == Axis.Type.Y) {
+                    yAxis = controllerAxis;
+                }
+            }
+        }
+    }
+
+    private List<MoveToCommand> interpolate(double x, double y, double tolerance) throws Exception {
+        driver.setInterpolationTolerance(new Length(tolerance, LengthUnit.Millimeters));
+        AxesLocation location0 = new AxesLocation(xAxis, 0).put(new AxesLocation(yAxis, 0));
+        AxesLocation location1 = new AxesLocation(xAxis, x).put(new AxesLocation(yAxis, y));
+        Motion motion = new Motion(null, location0, location1, 1.0);
+        MotionProfile [] profiles = motion.getAxesProfiles();
+        int leadAxis = MotionProfile.getLeadAxisIndex(MotionProfile.getUnitVector(profiles));
+        profiles[leadAxis].solve();
+        MotionProfile.coordinateProfiles(profiles);
+        List<MoveToCommand> commands = motion.interpolatedMoveToCommands(driver, false);
+        // Whatever the segmentation, the commands must arrive at the target.
+        MoveToCommand last = commands.get(commands.size() - 1);
+        assertEquals(x, last.getLocation1().getCoordinate(xAxis), 1e-6);
+        assertEquals(y, last.getLocation1().getCoordinate(yAxis), 1e-6);
+        return commands;
+    }
+
+    /**
+     * @return The time at which the motion passes the X coordinate, the test moves are monotonic in X.
+     */
+    private double getTimeAt(Motion motion, double x) {
+        double t0 = 0;
+        double t1 = motion.getTime();
+        for (int i = 0; i < 60; i++) {
+            double t = (t0 + t1)*0.5;
+            if (motion.getMomentaryLocation(t).getCoordinate(xAxis) < x) {
+                t0 = t;
+            }
+            else {
+                t1 = t;
+            }
+        }
+        return (t0 + t1)*0.5;
+    }
+
+    /**
+     * Sample the constant acceleration segments of the commands and return the largest deviation from the true
+     * jerk controlled motion, over the time the motion takes for the segment.
+     */
+    private double getMaxDeviation(List<MoveToCommand> commands) {
+        Motion motion = commands.get(0).getMotion();
+        double deviation = 0;
+        for (MoveToCommand command : commands) {
+            AxesLocation location0 = command.getLocation0();
+            AxesLocation segment = location0.motionSegmentTo(command.getLocation1());
+            double t0 = getTimeAt(motion, location0.getCoordinate(xAxis));
+            double t1 = getTimeAt(motion, command.getLocation1().getCoordinate(xAxis));
+            double distance = segment.getEuclideanMetric();
+            double v0 = command.getV0();
+            double v1 = command.getV1();
+            double dtNominal = distance/((v0 + v1)*0.5);
+            double acceleration = (v1 - v0)/dtNominal;
+            for (int k = 1; k < 64; k++) {
+                double f = k/64.0;
+                double tau = f*dtNominal;
+                double fraction = (v0*tau + 0.5*acceleration*tau*tau)/distance;
+                AxesLocation location = motion.getMomentaryLocation(t0 + f*(t1 - t0));
+                for (Axis axis : new Axis[] { xAxis, yAxis }) {
+                    double approximated = location0.getCoordinate(axis) + segment.getCoordinate(axis)*fraction;
+                    deviation = Math.max(deviation, Math.abs(approximated - location.getCoordinate(axis)));
+                }
+            }
+        }
+        return deviation;
+    }
+
+    /**
+     * The approximated path stays within the tolerance of the true motion.
+     */
+    @Test
+    public void testDeviationWithinTolerance() throws Exception {
+        for (double distance : new double[] { 20, 100, 300 }) {
+            for (double tolerance : new double[] { 0.001, 0.01, 0.05 }) {
+                double deviation = getMaxDeviation(interpolate(distance, distance*0.5, tolerance));
+                // The interpolation probes the deviation at a few points per segment, the maximum between them
+                // may slightly exceed the tolerance.
+                assertTrue(deviation <= tolerance*1.25,
+                        "distance "+distance+" tolerance "+tolerance+" deviation "+deviation);
+            }
+        }
+    }
+
+    @Test
+    public void testFewerSegments() throws Exception {
+        for (double distance : new double[] { 20, 100, 300 }) {
+            int jerkSteps = interpolate(distance, distance*0.5, 0).size();
+            int fine = interpolate(distance, distance*0.5, 0.0001).size();
+            int medium = interpolate(distance, distance*0.5, 0.01).size();
+            int coarse = interpolate(distance, distance*0.5, 0.05).size();
+            // Segments are only added where the tolerance requires it.
+            assertTrue(coarse < jerkSteps, "distance "+distance+": "+coarse+" < "+jerkSteps);
+            assertTrue(coarse <= medium, "distance "+distance+": "+coarse+" <= "+medium);
+            assertTrue(medium < fine, "distance "+distance+": "+medium+" < "+fine);
+        }
+        // A tolerance that is never exceeded collapses the interpolation into a single moderated move.
+        assertEquals(1, interpolate(100, 50, 1000).size());
+    }
+}
@@ -0,0 +1,237 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.openpnp.machine.reference.ReferenceMachine;
+import org.openpnp.machine.reference.axis.ReferenceControllerAxis;
+import org.openpnp.model.AxesLocation;
+import org.openpnp.model.Configuration;
+import org.openpnp.spi.Axis;
+
+import com.google.common.io.Files;
+
+public class AxesLocationTest {
+
+    private static List<Axis> createAxes(int n) {
+        List<Axis> axes = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            ReferenceControllerAxis axis = new ReferenceControllerAxis();
+            axis.setName("A"+i);
+            axes.add(axis);
+        }
+        return axes;
+    }
+
+    private static Axis [] axesOf(AxesLocation location) {
+        return location.getAxes().toArray(new Axis[0]);
+    }
+
+    @Test
+    public void testOperations() {
+        List<Axis> axes = createAxes(4);
+        Axis a0 = axes.get(0);
+        Axis a1 = axes.get(1);
+        Axis a2 = axes.get(2);
+        Axis a3 = axes.get(3);
+        AxesLocation l01 = new AxesLocation(a0, 1).put(new AxesLocation(a1, 2));
+        AxesLocation l21 = new AxesLocation(a2, 10).put(new AxesLocation(a1, 20));
+
+        // Axis order is preserved, first come first.
+        assertArrayEquals(new Axis[] { a0, a1, a2 }, axesOf(l01.add(l21)));
+        assertArrayEquals(new Axis[] { a2, a1, a0 }, axesOf(l21.add(l01)));
+
+        AxesLocation sum = l01.add(l21);
+        assertEquals(1, sum.getCoordinate(a0));
+        assertEquals(22, sum.getCoordinate(a1));
+        assertEquals(10, sum.getCoordinate(a2));
+        assertEquals(0, sum.getCoordinate(a3));
+        assertEquals(0, sum.getCoordinate(null));
+
+        // Axes only contained in the other are taken as is, like in the merging constructor.
+        AxesLocation difference = l01.subtract(l21);
+        assertEquals(1, difference.getCoordinate(a0));
+        assertEquals(-18, difference.getCoordinate(a1));
+        assertEquals(10, difference.getCoordinate(a2));
+
+        AxesLocation put = l01.put(l21);
+        assertEquals(1, put.getCoordinate(a0));
+        assertEquals(20, put.getCoordinate(a1));
+        assertEquals(10, put.getCoordinate(a2));
+
+        AxesLocation scaled = sum.multiply(0.5);
+        assertArrayEquals(axesOf(sum), axesOf(scaled));
+        assertEquals(11, scaled.getCoordinate(a1));
+
+        assertEquals(1*0 + 2*20, l01.dotProduct(l21));
+        assertEquals(Math.sqrt(1 + 4), l01.getEuclideanMetric());
+
+        assertTrue(sum.contains(a2));
+        assertFalse(sum.contains(a3));
+        assertTrue(sum.contains(null));
+        assertTrue(sum.getAxes().contains(a1));
+        assertFalse(sum.getAxes().contains(a3));
+        assertEquals(3, sum.size());
+        assertEquals(3, sum.getAxes().size());
+        assertTrue(AxesLocation.zero.isEmpty());
+        assertTrue(new AxesLocation(null, 1.0).isEmpty());
+        assertEquals(l01.toString(), new AxesLocation((a, b) -> (a + b), l01, AxesLocation.zero).toString());
+    }
+
+    @Test
+    public void testManyAxes() {
+        // More axes than ordinal bits, they must still be found.
+        List<Axis> axes = createAxes(100);
+        AxesLocation location = AxesLocation.zero;
+        for (int i = 0; i < axes.size(); i++) {
+            location = location.put(new AxesLocation(axes.get(i), i));
+        }
+        assertEquals(axes.size(), location.size());
+        for (int i = 0; i < axes.size(); i++) {
+            assertEquals(i, location.getCoordinate(axes.get(i)));
+        }
+    }
+
+    /**
+     * The previous, LinkedHashMap based implementation of the vector operations, for comparison.
+     */
+    private static class MapAxesLocation {
+        final LinkedHashMap<Axis, Double> location = new LinkedHashMap<>();
+
+        MapAxesLocation(Axis axis, double coordinate) {
+            location.put(axis, coordinate);
+        }
+
+        MapAxesLocation(java.util.function.BiFunction<Double, Double, Double> function, MapAxesLocation... axesLocation) {
+            for (MapAxesLocation oneAxesLocation : axesLocation) {
+                for (Axis axis : oneAxesLocation.location.keySet()) {
+                    location.merge(axis, oneAxesLocation.getCoordinate(axis), function);
+                }
+            }
+        }
+
+        MapAxesLocation(java.util.function.Function<Double, Double> function, MapAxesLocation axesLocation) {
+            for (Axis axis : axesLocation.location.keySet()) {
+                location.put(axis, function.apply(axesLocation.getCoordinate(axis)));
+            }
+        }
+
+        MapAxesLocation add(MapAxesLocation other) {
+            return new MapAxesLocation((a, b) -> (a + b), this, other);
+        }
+
+        MapAxesLocation subtract(MapAxesLocation other) {
+            return new MapAxesLocation((a, b) -> (a - b), this, other);
+        }
+
+        MapAxesLocation multiply(double factor) {
+            return new MapAxesLocation((a) -> (a*factor), this);
+        }
+
+        MapAxesLocation put(MapAxesLocation other) {
+            return new MapAxesLocation((a, b) -> (b), this, other);
+        }
+
+        double getCoordinate(Axis axis) {
+            Double coordinate = location.get(axis);
+            return coordinate != null ? coordinate : 0.0;
+        }
+
+        double dotProduct(MapAxesLocation other) {
+            double dot = 0;
+            for (Entry<Axis, Double> entry : this.location.entrySet()) {
+                dot += entry.getValue()*other.getCoordinate(entry.getKey());
+            }
+            return dot;
+        }
+
+        double getEuclideanMetric() {
+            return Math.sqrt(dotProduct(this));
+        }
+    }
+
+    /**
+     * The vector operations, as used per move by the motion planning, give the same results as with the former 
+     * map based AxesLocation.
+     */
+    @Test
+    public void testVectorOperationsSameAsMap() {
+        List<Axis> axes = createAxes(6);
+        Random random = new Random(1);
+        int n = 200;
+        AxesLocation [] locations = new AxesLocation[n];
+        MapAxesLocation [] mapLocations = new MapAxesLocation[n];
+        for (int i = 0; i < n; i++) {
+            locations[i] = AxesLocation.zero;
+            mapLocations[i] = new MapAxesLocation(axes.get(0), 0);
+            for (Axis axis : axes) {
+                double coordinate = random.nextDouble()*100;
+                locations[i] = locations[i].put(new AxesLocation(axis, coordinate));
+                mapLocations[i] = mapLocations[i].put(new MapAxesLocation(axis, coordinate));
+            }
+        }
+        for (int i = 1; i < n; i++) {
+            AxesLocation segment = locations[i].subtract(locations[i - 1]);
+            AxesLocation midPoint = locations[i - 1].add(segment.multiply(0.5));
+            double distance = segment.getEuclideanMetric();
+            double value = midPoint.put(new AxesLocation(axes.get(2), 0)).dotProduct(segment)/distance
+                    + midPoint.getCoordinate(axes.get(i % axes.size()));
+
+            MapAxesLocation mapSegment = mapLocations[i].subtract(mapLocations[i - 1]);
+            MapAxesLocation mapMidPoint = mapLocations[i - 1].add(mapSegment.multiply(0.5));
+            double mapDistance = mapSegment.getEuclideanMetric();
+            double mapValue = mapMidPoint.put(new MapAxesLocation(axes.get(2), 0)).dotProduct(mapSegment)/mapDistance
+                    + mapMidPoint.getCoordinate(axes.get(i % axes.size()));
+
+            assertEquals(mapDistance, distance, 1e-9);
+            assertEquals(mapValue, value, 1e-9*Math.abs(mapValue));
+        }
+    }
+
+    /**
+     * The axes of a machine get dense ordinals, counted per machine and anew when the machine is loaded.
+     */
+    @Test
+    public void testMachineOrdinals() throws Exception {
+        File workingDirectory = new File(Files.createTempDir(), ".openpnp");
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+        List<Axis> machineAxes = Configuration.get().getMachine().getAxes();
+        assertTrue(machineAxes.size() > 0);
+        for (int i = 0; i < machineAxes.size(); i++) {
+            assertEquals(i, machineAxes.get(i).getOrdinal());
+        }
+
+        ReferenceMachine machine = new ReferenceMachine();
+        List<Axis> axes = createAxes(3);
+        for (Axis axis : axes) {
+            machine.addAxis(axis);
+        }
+        for (int i = 0; i < axes.size(); i++) {
+            assertEquals(i, axes.get(i).getOrdinal());
+        }
+        // Ordinals are not reused, an axis keeps its ordinal.
+        machine.removeAxis(axes.get(1));
+        Axis axis = createAxes(1).get(0);
+        machine.addAxis(axis);
+        assertEquals(3, axis.getOrdinal());
+        assertEquals(2, axes.get(2).getOrdinal());
+
+        // Ordinals only speed up the search, axes of different machines with the same ordinal are told apart 
+        // by identity.
+        Axis other = machineAxes.get(0);
+        assertEquals(other.getOrdinal(), axes.get(0).getOrdinal());
+        AxesLocation location = new AxesLocation(other, 1).put(new AxesLocation(axes.get(0), 2));
+        assertEquals(1, location.getCoordinate(other), 0);
+        assertEquals(2, location.getCoordinate(axes.get(0)), 0);
+        assertFalse(new AxesLocation(other, 1).contains(axes.get(0)));
+    }
+}
@@ -0,0 +1,266 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.openpnp.machine.reference.CostBasedPnpJobPlanner;
+import org.openpnp.machine.reference.ReferenceNozzle;
+import org.openpnp.machine.reference.ReferenceNozzleTip;
+import org.openpnp.machine.reference.ReferencePnpJobProcessor;
+import org.openpnp.machine.reference.ReferencePnpJobProcessor.SimplePnpJobPlanner;
+import org.openpnp.model.BoardLocation;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Job;
+import org.openpnp.model.Length;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Location;
+import org.openpnp.model.Placement;
+import org.openpnp.spi.Feeder;
+import org.openpnp.spi.Head;
+import org.openpnp.spi.Machine;
+import org.openpnp.spi.Nozzle;
+import org.openpnp.spi.NozzleTip;
+import org.openpnp.spi.PnpJobPlanner;
+import org.openpnp.spi.PnpJobPlanner.PlannedPlacement;
+import org.openpnp.spi.PnpJobProcessor.JobPlacement;
+import org.openpnp.util.Utils2D;
+
+public class CostBasedPnpJobPlannerTest {
+
+    private static Machine createMachine() throws Exception {
+        Configuration.initialize();
+        return new ReferenceJobProcessorRetryTests.MachineBuilder()
+                .head("H1")
+                .nozzleTip("NT1")
+                .nozzleTip("NT2")
+                .nozzleTip("NT3")
+                .nozzleTip("NT4")
+                .nozzle("N1", "NT1", "NT2", "NT3", "NT4")
+                .nozzle("N2", "NT1", "NT2", "NT3", "NT4")
+                .nozzle("N3", "NT1", "NT2", "NT3", "NT4")
+                .nozzle("N4", "NT1", "NT2", "NT3", "NT4")
+                .topCamera("TOP")
+                .bottomCamera("BOTTOM")
+                .build();
+    }
+
+    private static Job createJob(long seed) throws Exception {
+        Random random = new Random(seed);
+        ReferenceJobProcessorRetryTests.JobBuilder builder = new ReferenceJobProcessorRetryTests.JobBuilder()
+                .board("B1", 50, 50, 0, 0)
+                .packag("R0402", "NT1", "NT2", "NT3")
+                .packag("C0603", "NT1", "NT2")
+                .packag("SOIC8", "NT4")
+                .part("R0402-1k", "R0402")
+                .part("C0603-100n", "C0603")
+                .part("SOIC8-U", "SOIC8")
+                .feeder("F1", "R0402-1k", 20, 10, -5, 0)
+                .feeder("F2", "C0603-100n", 100, 10, -5, 0)
+                .feeder("F3", "SOIC8-U", 250, 10, -5, 0);
+        for (int i = 0; i < 24; i++) {
+            builder.placement("R"+i, "R0402-1k", random.nextDouble()*200, random.nextDouble()*150, 0);
+        }
+        for (int i = 0; i < 12; i++) {
+            builder.placement("C"+i, "C0603-100n", random.nextDouble()*200, random.nextDouble()*150, 0);
+        }
+        for (int i = 0; i < 5; i++) {
+            builder.placement("U"+i, "SOIC8-U", random.nextDouble()*200, random.nextDouble()*150, 90);
+        }
+        return builder.build();
+    }
+
+    /**
+     * The pending job placements, ordered like the job processor does by default.
+     */
+    private static List<JobPlacement> getPendingJobPlacements(Job job, Set<Placement> done) {
+        List<JobPlacement> jobPlacements = new ArrayList<>();
+        for (BoardLocation boardLocation : job.getBoardLocations()) {
+            for (Placement placement : boardLocation.getBoard().getPlacements()) {
+                if (!done.contains(placement)) {
+                    jobPlacements.add(new JobPlacement(boardLocation, placement));
+                }
+            }
+        }
+        return jobPlacements.stream()
+                .sorted(Comparator
+                        .comparing(JobPlacement::getPartHeight)
+                        .thenComparing(JobPlacement::getPartId))
+                .collect(Collectors.toList());
+    }
+
+    private static class Result {
+        int cycles;
+        int placements;
+        int nozzleTipChanges;
+        double distance;
+
+        double getTime() {
+            // Same weights as the default cost model.
+            return cycles*1.5 + nozzleTipChanges*10 + distance/250;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d placements in %d cycles, %d nozzle tip changes, %.0fmm travel, %.1fs",
+                    placements, cycles, nozzleTipChanges, distance, getTime());
+        }
+    }
+
+    private static Location getPickLocation(Machine machine, Placement placement) throws Exception {
+        for (Feeder feeder : machine.getFeeders()) {
+            if (feeder.getPart() == placement.getPart()) {
+                return feeder.getPickLocation();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Simulate the job with the planner and check every planned cycle for consistency.
+     */
+    private static Result simulate(Machine machine, Job job, PnpJobPlanner planner) throws Exception {
+        Head head = machine.getDefaultHead();
+        List<Nozzle> nozzles = head.getNozzles();
+        // Initial nozzle tips, N4 is empty.
+        ((ReferenceNozzle) nozzles.get(0)).setNozzleTip((ReferenceNozzleTip) machine.getNozzleTipByName("NT1"));
+        ((ReferenceNozzle) nozzles.get(1)).setNozzleTip((ReferenceNozzleTip) machine.getNozzleTipByName("NT4"));
+        ((ReferenceNozzle) nozzles.get(2)).setNozzleTip((ReferenceNozzleTip) machine.getNozzleTipByName("NT2"));
+        ((ReferenceNozzle) nozzles.get(3)).setNozzleTip(null);
+
+        Result result = new Result();
+        Set<Placement> done = new HashSet<>();
+        Location location = null;
+        while (true) {
+            List<JobPlacement> jobPlacements = getPendingJobPlacements(job, done);
+            if (jobPlacements.isEmpty()) {
+                break;
+            }
+            List<PlannedPlacement> plannedPlacements = planner.plan(head, new ArrayList<>(jobPlacements));
+            assertFalse(plannedPlacements.isEmpty());
+            assertTrue(result.cycles < 100);
+            Set<Nozzle> usedNozzles = new HashSet<>();
+            Set<NozzleTip> usedNozzleTips = new HashSet<>();
+            for (PlannedPlacement plannedPlacement : plannedPlacements) {
+                assertTrue(usedNozzles.add(plannedPlacement.nozzle));
+                assertTrue(usedNozzleTips.add(plannedPlacement.nozzleTip));
+                assertTrue(plannedPlacement.jobPlacement.getPlacement().getPart().getPackage()
+                        .getCompatibleNozzleTips().contains(plannedPlacement.nozzleTip));
+                assertTrue(done.add(plannedPlacement.jobPlacement.getPlacement()));
+                // Never placed before lower parts.
+                assertEquals(jobPlacements.get(0).getPartHeight(), plannedPlacement.jobPlacement.getPartHeight());
+                // Change the nozzle tip, taking it from another nozzle if needed.
+                if (plannedPlacement.nozzle.getNozzleTip() != plannedPlacement.nozzleTip) {
+                    assertTrue(plannedPlacement.nozzle.getCompatibleNozzleTips().contains(plannedPlacement.nozzleTip));
+                    for (Nozzle nozzle : nozzles) {
+                        if (nozzle.getNozzleTip() == plannedPlacement.nozzleTip) {
+                            ((ReferenceNozzle) nozzle).setNozzleTip(null);
+                        }
+                    }
+                    ((ReferenceNozzle) plannedPlacement.nozzle).setNozzleTip((ReferenceNozzleTip) plannedPlacement.nozzleTip);
+                    result.nozzleTipChanges++;
+                }
+            }
+            // Pick all, then place all, in the planned order.
+            for (PlannedPlacement plannedPlacement : plannedPlacements) {
+                Location pickLocation = getPickLocation(machine, plannedPlacement.jobPlacement.getPlacement());
+                if (location != null) {
+                    result.distance += location.getLinearDistanceTo(pickLocation);
+                }
+                location = pickLocation;
+            }
+            for (PlannedPlacement plannedPlacement : plannedPlacements) {
+                Location placementLocation = Utils2D.calculateBoardPlacementLocation(
+                        plannedPlacement.jobPlacement.getBoardLocation(),
+                        plannedPlacement.jobPlacement.getPlacement().getLocation());
+                result.distance += location.getLinearDistanceTo(placementLocation);
+                location = placementLocation;
+            }
+            result.cycles++;
+            result.placements += plannedPlacements.size();
+        }
+        return result;
+    }
+
+    @Test
+    public void testPlanner() throws Exception {
+        for (long seed = 1; seed <= 5; seed++) {
+            Machine machine = createMachine();
+            Job job = createJob(seed);
+            Result simple = simulate(machine, job, new SimplePnpJobPlanner());
+            Result costBased = simulate(machine, job, new CostBasedPnpJobPlanner());
+            assertEquals(41, simple.placements);
+            assertEquals(41, costBased.placements);
+            assertTrue(costBased.getTime() < simple.getTime());
+            assertTrue(costBased.cycles <= simple.cycles);
+        }
+    }
+
+    /**
+     * Taller parts are only planned when all the lower parts are placed, even when they would fit the cycles.
+     */
+    @Test
+    public void testPartHeightOrder() throws Exception {
+        Machine machine = createMachine();
+        Job job = createJob(1);
+        Configuration.get().getPart("SOIC8-U").setHeight(new Length(3, LengthUnit.Millimeters));
+        Configuration.get().getPart("C0603-100n").setHeight(new Length(2, LengthUnit.Millimeters));
+        Result result = simulate(machine, job, new CostBasedPnpJobPlanner());
+        assertEquals(41, result.placements);
+    }
+
+    /**
+     * The planning time stays bounded, even with many nozzles and placements.
+     */
+    @Test
+    public void testBoundedPlanningTime() throws Exception {
+        Machine machine = createMachine();
+        Job job = createJob(1);
+        BoardLocation boardLocation = job.getBoardLocations().get(0);
+        Random random = new Random(1);
+        for (int i = 0; i < 2000; i++) {
+            Placement placement = new Placement("X"+i);
+            placement.setPart(Configuration.get().getPart(i % 2 == 0 ? "R0402-1k" : "C0603-100n"));
+            placement.setLocation(new Location(LengthUnit.Millimeters,
+                    random.nextDouble()*200, random.nextDouble()*150, 0, 0));
+            boardLocation.getBoard().addPlacement(placement);
+        }
+        CostBasedPnpJobPlanner planner = new CostBasedPnpJobPlanner();
+        planner.setMaxPlanningMilliseconds(100);
+        List<JobPlacement> jobPlacements = getPendingJobPlacements(job, new HashSet<>());
+        long t0 = System.currentTimeMillis();
+        List<PlannedPlacement> plannedPlacements = planner.plan(machine.getDefaultHead(), jobPlacements);
+        long t = System.currentTimeMillis() - t0;
+        // The window only holds C0603 parts, which only two of the nozzle tips can handle.
+        assertEquals(2, plannedPlacements.size());
+        // Generous, to allow for slow build machines, the point is it does not grow with the job.
+        assertTrue(t < 2000);
+    }
+
+    /**
+     * Run a job with the planner through the job processor.
+     */
+    @Test
+    public void testJob() throws Exception {
+        Machine machine = createMachine();
+        Job job = createJob(1);
+        for (Feeder feeder : machine.getFeeders()) {
+            ((ReferenceJobProcessorRetryTests.TestFeeder) feeder).setPartCount(100);
+        }
+        ((ReferencePnpJobProcessor) machine.getPnpJobProcessor()).planner = new CostBasedPnpJobPlanner();
+        ReferenceJobProcessorRetryTests.runJob(machine, job);
+        BoardLocation boardLocation = job.getBoardLocations().get(0);
+        for (Placement placement : boardLocation.getBoard().getPlacements()) {
+            assertNotNull(placement.getPart());
+            assertTrue(boardLocation.getPlaced(placement.getId()), placement.getId());
+        }
+    }
+}
@@ -0,0 +1,75 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.openpnp.vision.pipeline.CvPipeline;
+import org.openpnp.vision.pipeline.CvStage;
+import org.openpnp.vision.pipeline.stages.BlurGaussian;
+import org.openpnp.vision.pipeline.stages.ImageRecall;
+import org.openpnp.vision.pipeline.stages.ScriptRun;
+import org.openpnp.vision.pipeline.stages.Threshold;
+
+public class CvPipelineResultImagesTest {
+    public static class CreateImage extends CvStage {
+        @Override
+        public Result process(CvPipeline pipeline) throws Exception {
+            return new Result(new Mat(480, 640, CvType.CV_8UC1, new Scalar(100)), "created");
+        }
+    }
+
+    private static CvPipeline createPipeline() {
+        CvPipeline pipeline = new CvPipeline();
+        pipeline.add("create", new CreateImage());
+        pipeline.add("blur", new BlurGaussian());
+        Threshold threshold = new Threshold();
+        threshold.setThreshold(50);
+        pipeline.add("threshold", threshold);
+        ImageRecall recall = new ImageRecall();
+        recall.setImageStageName("create");
+        pipeline.add("recall", recall);
+        return pipeline;
+    }
+
+    /**
+     * By default, only the result images that are referenced by other stages are retained, while the editor
+     * retains all of them. The outcome of the pipeline is the same.
+     */
+    @Test
+    public void testRetainedResultImages() throws Exception {
+        try (CvPipeline pipeline = createPipeline()) {
+            pipeline.process();
+            assertNotNull(pipeline.getResult("create").image);
+            assertEquals("created", pipeline.getExpectedResult("create").model);
+            assertNull(pipeline.getResult("blur").image);
+            assertNull(pipeline.getResult("threshold").image);
+            assertNull(pipeline.getResult("recall").image);
+            // The working image is the recalled image.
+            assertEquals(100, Core.mean(pipeline.getWorkingImage()).val[0], 0.01);
+
+            pipeline.process(true);
+            assertNotNull(pipeline.getResult("create").image);
+            assertNotNull(pipeline.getResult("blur").image);
+            assertEquals(255, Core.mean(pipeline.getResult("threshold").image).val[0], 0.01);
+            assertNotNull(pipeline.getResult("recall").image);
+            assertEquals(100, Core.mean(pipeline.getWorkingImage()).val[0], 0.01);
+        }
+    }
+
+    /**
+     * A script may use any result, so all the result images are retained.
+     */
+    @Test
+    public void testScriptRetainsResultImages() throws Exception {
+        try (CvPipeline pipeline = createPipeline()) {
+            pipeline.add("script", new ScriptRun());
+            pipeline.process();
+            assertNotNull(pipeline.getResult("blur").image);
+            assertNotNull(pipeline.getResult("threshold").image);
+        }
+    }
+}
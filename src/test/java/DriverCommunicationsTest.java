@@ -0,0 +1,191 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Test;
+import org.openpnp.machine.reference.driver.ReferenceDriverCommunications;
+import org.openpnp.machine.reference.driver.TcpCommunications;
+
+public class DriverCommunicationsTest {
+    /**
+     * In-memory communications, that deliver the given data in chunks of chunkSize bytes,
+     * simulating the partial reads of a real port.
+     */
+    static class MemoryCommunications extends ReferenceDriverCommunications {
+        private final byte[] data;
+        private final int chunkSize;
+        private int position;
+
+        MemoryCommunications(String data, int chunkSize) {
+            this.data = data.getBytes(StandardCharsets.ISO_8859_1);
+            this.chunkSize = chunkSize;
+        }
+
+        void rewind() {
+            position = 0;
+            clearReadBuffer();
+        }
+
+        @Override
+        public void connect() throws Exception {
+            rewind();
+        }
+
+        @Override
+        public void disconnect() throws Exception {
+        }
+
+        @Override
+        public String getConnectionName() {
+            return "memory";
+        }
+
+        @Override
+        protected void writeBytes(byte[] data) throws IOException {
+        }
+
+        @Override
+        protected int readBytes(ByteBuffer buffer) throws TimeoutException, IOException {
+            if (position >= data.length) {
+                return -1;
+            }
+            int length = Math.min(Math.min(chunkSize, buffer.remaining()), data.length - position);
+            buffer.put(data, position, length);
+            position += length;
+            return length;
+        }
+
+        /**
+         * The former per-byte line reader, for comparison.
+         */
+        String readLineLegacy() throws TimeoutException, IOException {
+            StringBuffer line = new StringBuffer();
+            while (true) {
+                int ch = read();
+                if (ch == -1) {
+                    return null;
+                }
+                else if ("\r\n".indexOf((char)ch) >= 0) {
+                    if (line.length() > 0) {
+                        return line.toString();
+                    }
+                }
+                else {
+                    line.append((char) ch);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLineFraming() throws Exception {
+        for (int chunkSize : new int[] { 1, 3, 7, 4096 }) {
+            MemoryCommunications comms = new MemoryCommunications(
+                    "ok\nX:1.0000 Y:2.0000 Z:0.0000\r\n\r\nok\r\n\n"
+                            + "\u00FFbinary\n"
+                            + "unterminated", chunkSize);
+            comms.connect();
+            assertEquals("ok", comms.readLine());
+            assertEquals("X:1.0000 Y:2.0000 Z:0.0000", comms.readLine());
+            assertEquals("ok", comms.readLine());
+            assertEquals("\u00FFbinary", comms.readLine());
+            // Stream ends without line ending.
+            assertNull(comms.readLine());
+        }
+    }
+
+    @Test
+    public void testMixedByteAndLineReads() throws Exception {
+        MemoryCommunications comms = new MemoryCommunications("\u00A5\u0001ok\nok\n", 4096);
+        comms.connect();
+        assertEquals(0xA5, comms.read());
+        assertEquals(0x01, comms.read());
+        assertEquals("ok", comms.readLine());
+        assertEquals('o', comms.read());
+        assertEquals("k", comms.readLine());
+        assertEquals(-1, comms.read());
+    }
+
+    /**
+     * A non-blocking channel, as driven by the DriverIoReactor, waits for the slow receiver when its send buffer
+     * is full, and all the bytes arrive.
+     */
+    @Test
+    public void testNonBlockingWrite() throws Exception {
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress("127.0.0.1", 0));
+            TcpCommunications comms = new TcpCommunications();
+            comms.setIpAddress("127.0.0.1");
+            comms.setPort(((InetSocketAddress) server.getLocalAddress()).getPort());
+            comms.connect();
+            try (SocketChannel peer = server.accept()) {
+                comms.getSelectableChannel().configureBlocking(false);
+                byte[] data = new byte[8*1024*1024];
+                for (int i = 0; i < data.length; i++) {
+                    data[i] = (byte) i;
+                }
+                ByteArrayOutputStream received = new ByteArrayOutputStream();
+                Thread reader = new Thread(() -> {
+                    try {
+                        Thread.sleep(200);
+                        ByteBuffer buffer = ByteBuffer.allocate(65536);
+                        while (received.size() < data.length && peer.read(buffer) >= 0) {
+                            received.write(buffer.array(), 0, buffer.position());
+                            buffer.clear();
+                        }
+                    }
+                    catch (Exception e) {
+                    }
+                });
+                reader.start();
+                comms.writeBuffer(ByteBuffer.wrap(data));
+                reader.join(10000);
+                assertArrayEquals(data, received.toByteArray());
+            }
+            finally {
+                comms.disconnect();
+            }
+        }
+    }
+
+    /**
+     * The buffered line framing reads the same lines as the former per-byte reading, whatever the chunks the port
+     * delivers.
+     */
+    @Test
+    public void testLineFramingSameAsPerByte() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            sb.append(i % 2 == 0 ? "ok\n" : "X:123.4567 Y:-45.6789 Z:-12.3400 A:90.0000 B:0.0000 Count X:0 Y:0 Z:0\r\n");
+            if (i % 7 == 0) {
+                sb.append("\r\n\n");
+            }
+        }
+        sb.append("unterminated");
+        MemoryCommunications perByte = new MemoryCommunications(sb.toString(), 1);
+        perByte.connect();
+        for (int chunkSize : new int[] { 1, 4096 }) {
+            perByte.rewind();
+            MemoryCommunications buffered = new MemoryCommunications(sb.toString(), chunkSize);
+            buffered.connect();
+            int count = 0;
+            String line;
+            do {
+                line = perByte.readLineLegacy();
+                assertEquals(line, buffered.readLine(), "line "+count+" chunk size "+chunkSize);
+                count++;
+            }
+            while (line != null);
+            assertEquals(2001, count);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.openpnp.machine.index.IndexFeeder;
+import org.openpnp.machine.index.IndexProperties;
+import org.openpnp.machine.reference.ReferencePnpJobProcessor;
+import org.openpnp.machine.reference.ReferencePnpJobProcessor.FeederSelection;
+import org.openpnp.machine.reference.feeder.ReferenceSlotAutoFeeder;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Job;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Location;
+import org.openpnp.model.Part;
+import org.openpnp.spi.JobProcessor.JobProcessorException;
+import org.openpnp.spi.Machine;
+import org.openpnp.spi.base.AbstractMachine;
+import org.openpnp.spi.base.AbstractPnpJobProcessor;
+import org.openpnp.spi.base.FeederIndex;
+
+public class FeederIndexTest {
+
+    /**
+     * A feeder that knows its remaining parts and picks at its location.
+     */
+    public static class CountingFeeder extends ReferenceJobProcessorRetryTests.TestFeeder {
+        @Override
+        public Location getPickLocation() throws Exception {
+            return getLocation();
+        }
+
+        @Override
+        public int getRemainingPartCount() {
+            return Math.max(0, partCount - feedCount);
+        }
+    }
+
+    private static Machine createMachine() throws Exception {
+        Configuration.initialize();
+        return new ReferenceJobProcessorRetryTests.MachineBuilder()
+                .head("H1")
+                .nozzleTip("NT1")
+                .nozzle("N1", "NT1")
+                .topCamera("TOP")
+                .bottomCamera("BOTTOM")
+                .build();
+    }
+
+    private static CountingFeeder addFeeder(Machine machine, String name, Part part, double x, int partCount)
+            throws Exception {
+        CountingFeeder feeder = new CountingFeeder();
+        feeder.setName(name);
+        feeder.setPart(part);
+        feeder.setLocation(new Location(LengthUnit.Millimeters, x, 0, 0, 0));
+        feeder.setEnabled(true);
+        feeder.setPartCount(partCount);
+        machine.addFeeder(feeder);
+        return feeder;
+    }
+
+    @Test
+    public void testIndex() throws Exception {
+        Machine machine = createMachine();
+        new ReferenceJobProcessorRetryTests.JobBuilder()
+                .packag("R0402", "NT1")
+                .part("R1", "R0402")
+                .part("R2", "R0402");
+        Part r1 = Configuration.get().getPart("R1");
+        Part r2 = Configuration.get().getPart("R2");
+        FeederIndex index = ((AbstractMachine) machine).getFeederIndex();
+        assertTrue(index.getFeeders(r1).isEmpty());
+        assertThrows(JobProcessorException.class, () -> AbstractPnpJobProcessor.findFeeder(machine, r1));
+
+        CountingFeeder f1 = addFeeder(machine, "F1", r1, 10, 10);
+        CountingFeeder f2 = addFeeder(machine, "F2", r1, 20, 10);
+        CountingFeeder f3 = addFeeder(machine, "F3", r2, 30, 10);
+        assertEquals(Arrays.asList(f1, f2), index.getFeeders(r1));
+        assertEquals(Collections.singletonList(f3), index.getFeeders(r2));
+        assertSame(f1, AbstractPnpJobProcessor.findFeeder(machine, r1));
+
+        // Property changes are tracked.
+        f1.setEnabled(false);
+        assertEquals(Collections.singletonList(f2), index.getFeeders(r1));
+        assertSame(f2, AbstractPnpJobProcessor.findFeeder(machine, r1));
+        f1.setEnabled(true);
+        f2.setPart(r2);
+        assertEquals(Collections.singletonList(f1), index.getFeeders(r1));
+        assertEquals(Arrays.asList(f2, f3), index.getFeeders(r2));
+
+        // Removed feeders are dropped and no longer tracked.
+        machine.removeFeeder(f2);
+        assertEquals(Collections.singletonList(f3), index.getFeeders(r2));
+        f2.setPart(r1);
+        assertEquals(Collections.singletonList(f1), index.getFeeders(r1));
+    }
+
+    /**
+     * Slot feeders take their part and enabled state from the feeder in the slot, which the index must follow.
+     */
+    @Test
+    public void testSlotFeeders() throws Exception {
+        Machine machine = createMachine();
+        new ReferenceJobProcessorRetryTests.JobBuilder()
+                .packag("R0402", "NT1")
+                .part("R1", "R0402")
+                .part("R2", "R0402");
+        Part r1 = Configuration.get().getPart("R1");
+        Part r2 = Configuration.get().getPart("R2");
+        FeederIndex index = ((AbstractMachine) machine).getFeederIndex();
+        ReferenceSlotAutoFeeder.Bank bank = ReferenceSlotAutoFeeder.getBanks().get(0);
+        ReferenceSlotAutoFeeder.Feeder bankFeeder = new ReferenceSlotAutoFeeder.Feeder();
+        bankFeeder.setPart(r1);
+        bank.getFeeders().add(bankFeeder);
+        ReferenceSlotAutoFeeder slot1 = new ReferenceSlotAutoFeeder();
+        slot1.setEnabled(true);
+        machine.addFeeder(slot1);
+        ReferenceSlotAutoFeeder slot2 = new ReferenceSlotAutoFeeder();
+        slot2.setEnabled(true);
+        machine.addFeeder(slot2);
+        assertTrue(index.getFeeders(r1).isEmpty());
+
+        slot1.setFeeder(bankFeeder);
+        assertEquals(Collections.singletonList(slot1), index.getFeeders(r1));
+        bankFeeder.setPart(r2);
+        assertTrue(index.getFeeders(r1).isEmpty());
+        assertEquals(Collections.singletonList(slot1), index.getFeeders(r2));
+        // Moving the feeder to another slot empties the first one.
+        slot2.setFeeder(bankFeeder);
+        assertEquals(Collections.singletonList(slot2), index.getFeeders(r2));
+        slot2.setFeeder(null);
+        assertTrue(index.getFeeders(r2).isEmpty());
+        bankFeeder.setPart(r1);
+        assertTrue(index.getFeeders(r1).isEmpty());
+    }
+
+    /**
+     * An IndexFeeder is only enabled once it is hot-plugged and gets its slot address, and no longer when another
+     * feeder takes its slot, which changes no "enabled" property.
+     */
+    @Test
+    public void testIndexFeederHotPlug() throws Exception {
+        Machine machine = createMachine();
+        new ReferenceJobProcessorRetryTests.JobBuilder()
+                .packag("R0402", "NT1")
+                .part("R1", "R0402");
+        Part r1 = Configuration.get().getPart("R1");
+        FeederIndex index = ((AbstractMachine) machine).getFeederIndex();
+        new IndexProperties(machine).getFeederSlots().getSlot(1)
+                .setLocation(new Location(LengthUnit.Millimeters, 100, 0, 0, 0));
+        IndexFeeder feeder = new IndexFeeder();
+        feeder.setHardwareId("00112233445566778899AABB");
+        feeder.setPart(r1);
+        feeder.setOffset(new Location(LengthUnit.Millimeters, 1, 2, 0, 0));
+        feeder.setEnabled(true);
+        machine.addFeeder(feeder);
+        assertTrue(index.getFeeders(r1).isEmpty());
+        assertThrows(JobProcessorException.class, () -> AbstractPnpJobProcessor.findFeeder(machine, r1));
+
+        // Plugged in.
+        feeder.setSlotAddress(1);
+        assertEquals(Collections.singletonList(feeder), index.getFeeders(r1));
+        assertSame(feeder, AbstractPnpJobProcessor.findFeeder(machine, r1));
+
+        // Another feeder plugged into the same slot.
+        IndexFeeder otherFeeder = new IndexFeeder();
+        otherFeeder.setHardwareId("FFEEDDCCBBAA998877665544");
+        machine.addFeeder(otherFeeder);
+        otherFeeder.setSlotAddress(1);
+        assertTrue(index.getFeeders(r1).isEmpty());
+        assertThrows(JobProcessorException.class, () -> AbstractPnpJobProcessor.findFeeder(machine, r1));
+    }
+
+    @Test
+    public void testRanking() throws Exception {
+        Machine machine = createMachine();
+        new ReferenceJobProcessorRetryTests.JobBuilder()
+                .packag("R0402", "NT1")
+                .part("R1", "R0402");
+        Part r1 = Configuration.get().getPart("R1");
+        FeederIndex index = ((AbstractMachine) machine).getFeederIndex();
+        CountingFeeder f1 = addFeeder(machine, "F1", r1, 100, 5);
+        CountingFeeder f2 = addFeeder(machine, "F2", r1, 200, 10);
+        CountingFeeder f3 = addFeeder(machine, "F3", r1, 300, 10);
+        Location location = new Location(LengthUnit.Millimeters, 400, 0, 0, 0);
+
+        // Most parts first, then nearest.
+        assertEquals(Arrays.asList(f3, f2, f1), index.getRankedFeeders(r1, location));
+        assertEquals(Arrays.asList(f2, f3, f1), index.getRankedFeeders(r1, null));
+        f3.feedCount = 6;
+        assertEquals(Arrays.asList(f2, f1, f3), index.getRankedFeeders(r1, location));
+        assertSame(f2, AbstractPnpJobProcessor.findFeeder(machine, r1, location));
+        // The machine order is unaffected.
+        assertSame(f1, AbstractPnpJobProcessor.findFeeder(machine, r1));
+    }
+
+    /**
+     * With ranked feeder selection, a job draws from the duplicate feeders evenly.
+     */
+    @Test
+    public void testRankedSelection() throws Exception {
+        Machine machine = createMachine();
+        ReferenceJobProcessorRetryTests.JobBuilder builder = new ReferenceJobProcessorRetryTests.JobBuilder()
+                .board("B1", 10, 10, 0, 0)
+                .packag("R0402", "NT1")
+                .part("R1", "R0402");
+        for (int i = 0; i < 8; i++) {
+            builder.placement("R"+i, "R1", i*2, 5, 0);
+        }
+        Job job = builder.build();
+        Part r1 = Configuration.get().getPart("R1");
+        CountingFeeder f1 = addFeeder(machine, "F1", r1, 100, 10);
+        CountingFeeder f2 = addFeeder(machine, "F2", r1, 200, 10);
+        ((ReferencePnpJobProcessor) machine.getPnpJobProcessor()).setFeederSelection(FeederSelection.Ranked);
+        ReferenceJobProcessorRetryTests.runJob(machine, job);
+        assertEquals(4, f1.feedCount);
+        assertEquals(4, f2.feedCount);
+    }
+}
@@ -0,0 +1,106 @@
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openpnp.machine.reference.ReferenceMachine;
+import org.openpnp.machine.reference.driver.AbstractReferenceDriver.CommunicationsType;
+import org.openpnp.machine.reference.driver.AbstractReferenceDriver.LatencyType;
+import org.openpnp.machine.reference.driver.GcodeAsyncDriver;
+import org.openpnp.machine.reference.driver.GcodeDriver.CommandType;
+import org.openpnp.machine.reference.driver.TcpCommunications;
+import org.openpnp.model.Configuration;
+import org.openpnp.spi.Machine;
+import org.openpnp.spi.MotionPlanner.CompletionType;
+import org.openpnp.util.GcodeServer;
+
+import com.google.common.io.Files;
+
+public class GcodeAsyncDriverTest {
+    GcodeServer server;
+    GcodeAsyncDriver driver;
+
+    @BeforeEach
+    public void before() throws Exception {
+        server = new GcodeServer();
+        server.addCommandResponse("G21 ; Set millimeters mode", "ok");
+        server.addCommandResponse("G90 ; Set absolute positioning mode", "ok");
+        server.addCommandResponse("M82 ; Set absolute mode for extruder", "ok");
+        server.addCommandResponse("G28 ; Home all axes", "ok");
+        server.addCommandResponse("M400 ; Wait for moves to complete before returning", "ok");
+        server.addCommandResponse("G4 P0", "ok");
+        server.addCommandResponse("M999", "error:20");
+
+        File workingDirectory = Files.createTempDir();
+        workingDirectory = new File(workingDirectory, ".openpnp");
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+
+        /**
+         * Create a GcodeAsyncDriver using character counting flow control with a tiny receive
+         * buffer, so it must constantly wait for confirmations to make room.
+         */
+        driver = new GcodeAsyncDriver();
+        driver.createDefaults();
+        driver.setCommand(null, CommandType.COMMAND_ERROR_REGEX, "^error.*");
+        driver.setConnectionKeepAlive(false);
+        driver.setCommunicationsType(CommunicationsType.tcp);
+        TcpCommunications tcp = (TcpCommunications) driver.getCommunications();
+        tcp.setIpAddress("localhost");
+        tcp.setPort(server.getListenerPort());
+        driver.setConnectWaitTimeMilliseconds(0);
+        driver.setTimeoutMilliseconds(500);
+        driver.setReportedLocationConfirmation(false);
+        driver.setCharacterCountingFlowControl(true);
+        driver.setReceiveBufferSize(20);
+
+        ReferenceMachine referenceMachine = (ReferenceMachine) Configuration.get().getMachine();
+        while (referenceMachine.getDrivers().size() > 0) {
+            referenceMachine.removeDriver(referenceMachine.getDrivers().get(0));
+        }
+        referenceMachine.addDriver(driver);
+
+        Machine machine = Configuration.get().getMachine();
+        machine.setEnabled(true);
+        machine.home();
+    }
+
+    @Test
+    public void testCharacterCountingFlowControl() throws Exception {
+        Machine machine = Configuration.get().getMachine();
+        machine.execute(() -> {
+            for (int i = 0; i < 100; i++) {
+                driver.sendCommand("G4 P0");
+            }
+            // Times out, if the confirmations are not counted properly.
+            driver.waitForCompletion(null, CompletionType.WaitForUnconditionalCoordination);
+            return null;
+        });
+        // Writes may coalesce lines, but never exceed the receive buffer of 20 bytes, i.e. 3 "G4 P0\n" lines. 
+        assertTrue(driver.getWrittenLineCount() >= 100);
+        assertTrue(driver.getWriteCount() <= driver.getWrittenLineCount());
+        assertTrue(driver.getMaxLinesPerWrite() <= 3);
+        // Each command was confirmed, raw commands are recorded as OTHER.
+        assertTrue(driver.getLatencyHistogram("OTHER", LatencyType.Confirmation).getCount() >= 100);
+        assertTrue(driver.getLatencyHistogram("HOME_COMMAND", LatencyType.Wire).getCount() == 1);
+
+        /**
+         * An error response confirms the command, but it must still be reported, on whichever command
+         * comes next.
+         */
+        assertThrows(Exception.class, () -> machine.execute(() -> {
+            driver.sendCommand("M999");
+            driver.waitForCompletion(null, CompletionType.WaitForUnconditionalCoordination);
+            driver.sendCommand("G4 P0");
+            return null;
+        }));
+    }
+
+    @AfterEach
+    public void after() throws Exception {
+        server.shutdown();
+    }
+}
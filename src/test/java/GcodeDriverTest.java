@@ -1,4 +1,5 @@
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 
 import java.io.File;
 
@@ -11,8 +12,11 @@ import org.openpnp.machine.reference.driver.AbstractReferenceDriver.Communicatio
 import org.openpnp.machine.reference.driver.GcodeDriver;
 import org.openpnp.machine.reference.driver.GcodeDriver.CommandType;
 import org.openpnp.machine.reference.driver.TcpCommunications;
+import org.openpnp.model.AxesLocation;
 import org.openpnp.model.Configuration;
 import org.openpnp.spi.Actuator;
+import org.openpnp.spi.Camera;
+import org.openpnp.spi.ControllerAxis;
 import org.openpnp.spi.Machine;
 import org.openpnp.util.GcodeServer;
 
@@ -171,6 +175,72 @@ public class GcodeDriverTest {
         }
     }
     
+    @Test
+    public void testPositionReport() throws Exception {
+        Machine machine = Configuration.get().getMachine();
+        GcodeDriver driver = (GcodeDriver) ((ReferenceMachine) machine).getDefaultDriver();
+        Camera camera = machine.getDefaultHead().getDefaultCamera();
+        ControllerAxis axisX = (ControllerAxis) camera.getAxisX();
+        ControllerAxis axisY = (ControllerAxis) camera.getAxisY();
+        axisX.setDriver(driver);
+        axisX.setLetter("X");
+        axisY.setDriver(driver);
+        axisY.setLetter("Y");
+        driver.setCommand(null, CommandType.GET_POSITION_COMMAND, "M114");
+        driver.setCommand(null, CommandType.POSITION_REPORT_REGEX, "^X:(?<X>-?\\d+\\.\\d+) Y:(?<Y>-?\\d+\\.\\d+).*");
+
+        server.addCommandResponse("M114", "X:12.5000 Y:-3.2500 Z:0.0000\nok");
+        AxesLocation location = machine.execute(() -> driver.getReportedLocation(-1));
+        assertEquals(12.5, location.getCoordinate(axisX), 1e-9);
+        assertEquals(-3.25, location.getCoordinate(axisY), 1e-9);
+
+        /**
+         * Changing the regex must take effect immediately. 
+         */
+        driver.setCommand(null, CommandType.POSITION_REPORT_REGEX, "^Y:(?<Y>-?\\d+\\.\\d+) X:(?<X>-?\\d+\\.\\d+).*");
+        server.addCommandResponse("M114", "Y:1.0000 X:2.0000\nok");
+        location = machine.execute(() -> driver.getReportedLocation(-1));
+        assertEquals(2.0, location.getCoordinate(axisX), 1e-9);
+        assertEquals(1.0, location.getCoordinate(axisY), 1e-9);
+
+        /**
+         * Changing the axis letters must take effect immediately, including letters set from empty. 
+         */
+        axisY.setLetter("");
+        server.addCommandResponse("M114", "Y:3.0000 X:4.0000\nok");
+        location = machine.execute(() -> driver.getReportedLocation(-1));
+        assertEquals(4.0, location.getCoordinate(axisX), 1e-9);
+        assertFalse(location.contains(axisY));
+        axisY.setLetter("Y");
+        server.addCommandResponse("M114", "Y:5.0000 X:6.0000\nok");
+        location = machine.execute(() -> driver.getReportedLocation(-1));
+        assertEquals(6.0, location.getCoordinate(axisX), 1e-9);
+        assertEquals(5.0, location.getCoordinate(axisY), 1e-9);
+    }
+
+    @Test
+    public void testSharedIoReactor() throws Exception {
+        Machine machine = Configuration.get().getMachine();
+        Actuator actuator = new ReferenceActuator();
+        actuator.setName("A1");
+        machine.addActuator(actuator);
+        GcodeDriver driver = (GcodeDriver) ((ReferenceMachine) machine).getDefaultDriver();
+        driver.setCommand(actuator, CommandType.ACTUATOR_READ_COMMAND, "READ A1");
+        driver.setCommand(actuator, CommandType.ACTUATOR_READ_REGEX, "read:a1:(?<Value>-?\\d+)");
+        server.addCommandResponse("READ A1", "read:a1:497\nok");
+
+        /**
+         * Reconnect with the responses read by the shared reactor, twice, to make sure it 
+         * survives disconnecting.
+         */
+        driver.setSharedIoReactor(true);
+        for (int i = 0; i < 2; i++) {
+            machine.setEnabled(false);
+            machine.setEnabled(true);
+            assertEquals(machine.execute(() -> actuator.read()), "497");
+        }
+    }
+
     @AfterEach
     public void after() throws Exception {
         /**
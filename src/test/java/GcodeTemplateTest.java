@@ -0,0 +1,92 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.openpnp.machine.reference.driver.GcodeTemplate;
+import org.openpnp.util.TextUtils;
+
+public class GcodeTemplateTest {
+    static final String[] templates = new String[] {
+            "G1 {X:X%.4f} {Y:Y%.4f} {Z:Z%.4f} {Rotation:A%.4f} {FeedRate:F%.2f} ; Move",
+            "{Acceleration:M204 S%.2f} G1 {X:X%.4f} {Y:Y%.4f} {FeedRate:F%.0f}\nM400",
+            "{XDecreasing:M203 X-} {XIncreasing:M203 X+} G0 {XF:X%.3f} {Id} {Name:%s} {Unknown} {Unknown:U%d}",
+            "{X:%f} {X:%.1f} {Y:%e} {Y:%10.3f} {Z:%5s} {X:100%%} {XJerk:J%.2f} {XJerkMupm3:M%.1f}",
+            "{} {:X} {X:} {X:}} {X:a\nb} {X:a{b} {9X} {X_1:%.4f} {Index:%d}",
+            "M42 {True:P<((Index))> S1}{False:P<((Index))> S0} {X}",
+            "",
+            "no variables at all",
+    };
+
+    static final String[] names = new String[] {
+            "X", "Y", "Z", "Rotation", "FeedRate", "Acceleration", "XDecreasing", "XIncreasing", "XF",
+            "Id", "Name", "XJerk", "XJerkMupm3", "X_1", "Index", "True", "False"
+    };
+
+    private static Object randomValue(Random random, String name) {
+        switch (random.nextInt(8)) {
+            case 0:
+                return null;
+            case 1:
+                return random.nextInt(2000) - 1000;
+            case 2:
+                return -0.0;
+            case 3:
+                // Ties in rounding.
+                return (random.nextInt(200000) - 100000)*0.00005;
+            case 4:
+                return name.equals("Index") ? (Object) random.nextInt(10) : (Object) random.nextBoolean();
+            case 5:
+                return "N"+random.nextInt(10);
+            default:
+                return (random.nextDouble() - 0.5)*random.nextInt(1000);
+        }
+    }
+
+    @Test
+    public void testSameAsSubstituteVar() throws Exception {
+        Random random = new Random(1);
+        for (String template : templates) {
+            GcodeTemplate gcodeTemplate = new GcodeTemplate(template);
+            for (int i = 0; i < 2000; i++) {
+                GcodeTemplate.Substitution substitution = gcodeTemplate.substitution();
+                String expected = template;
+                for (String name : names) {
+                    if (random.nextInt(5) == 0) {
+                        // Leave it unassigned.
+                        continue;
+                    }
+                    Object value = randomValue(random, name);
+                    try {
+                        expected = TextUtils.substituteVar(expected, name, value);
+                    }
+                    catch (Exception e) {
+                        // Illegal format for the value, not interesting.
+                        value = null;
+                        expected = TextUtils.substituteVar(expected, name, value);
+                    }
+                    substitution.set(name, value);
+                }
+                assertEquals(expected, substitution.format(), "Template "+template);
+            }
+        }
+    }
+
+    @Test
+    public void testVariables() throws Exception {
+        GcodeTemplate template = new GcodeTemplate(templates[0]);
+        assertTrue(template.isCompiled());
+        assertTrue(template.hasVariable("Rotation"));
+        assertFalse(template.hasVariable("BacklashOffsetX"));
+        assertEquals("G1 X1.0000  Z-0.5000  F1000.00 ; Move", template.substitution()
+                .set("X", 1.0)
+                .set("Y", null)
+                .set("Z", -0.5)
+                .set("Rotation", null)
+                .set("FeedRate", 1000.0)
+                .format());
+        assertFalse(new GcodeTemplate(templates[5]).isCompiled());
+    }
+}
@@ -0,0 +1,220 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.openpnp.machine.reference.JobPlacementTracker;
+import org.openpnp.machine.reference.ReferencePnpJobProcessor.SimplePnpJobPlanner;
+import org.openpnp.model.BoardLocation;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Job;
+import org.openpnp.model.Package;
+import org.openpnp.model.Placement;
+import org.openpnp.spi.Machine;
+import org.openpnp.spi.NozzleTip;
+import org.openpnp.spi.PnpJobPlanner.PlannedPlacement;
+import org.openpnp.spi.PnpJobProcessor.JobPlacement;
+import org.openpnp.spi.PnpJobProcessor.JobPlacement.Status;
+
+public class JobPlacementTrackerTest {
+    private static final Comparator<JobPlacement> order = Comparator
+            .comparing(JobPlacement::getPartHeight)
+            .thenComparing(JobPlacement::getPartId);
+
+    private static Machine createMachine() throws Exception {
+        Configuration.initialize();
+        return new ReferenceJobProcessorRetryTests.MachineBuilder()
+                .head("H1")
+                .nozzleTip("NT1")
+                .nozzleTip("NT2")
+                .nozzleTip("NT3")
+                .nozzle("N1", "NT1", "NT2", "NT3")
+                .nozzle("N2", "NT1", "NT2", "NT3")
+                .topCamera("TOP")
+                .bottomCamera("BOTTOM")
+                .build();
+    }
+
+    private static List<JobPlacement> createJobPlacements(int count, long seed) throws Exception {
+        Random random = new Random(seed);
+        ReferenceJobProcessorRetryTests.JobBuilder builder = new ReferenceJobProcessorRetryTests.JobBuilder()
+                .board("B1", 0, 0, 0, 0)
+                .packag("R0402", "NT1", "NT2")
+                .packag("C0603", "NT2")
+                .packag("SOIC8", "NT3")
+                .part("R0402-1k", "R0402")
+                .part("C0603-100n", "C0603")
+                .part("SOIC8-U", "SOIC8");
+        String [] parts = { "R0402-1k", "R0402-1k", "R0402-1k", "C0603-100n", "SOIC8-U" };
+        for (int i = 0; i < count; i++) {
+            builder.placement("P"+i, parts[random.nextInt(parts.length)],
+                    random.nextDouble()*100, random.nextDouble()*100, 0);
+        }
+        Job job = builder.build();
+        List<JobPlacement> jobPlacements = new ArrayList<>();
+        for (BoardLocation boardLocation : job.getBoardLocations()) {
+            for (Placement placement : boardLocation.getBoard().getPlacements()) {
+                jobPlacements.add(new JobPlacement(boardLocation, placement));
+            }
+        }
+        return jobPlacements;
+    }
+
+    /**
+     * The pending placements in job order, the way the job processor used to get them.
+     */
+    private static List<JobPlacement> getPending(List<JobPlacement> jobPlacements) {
+        return jobPlacements.stream()
+                .filter(jobPlacement -> jobPlacement.getStatus() == Status.Pending)
+                .sorted(order)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testStatusTracking() throws Exception {
+        createMachine();
+        List<JobPlacement> jobPlacements = createJobPlacements(200, 1);
+        JobPlacementTracker tracker = new JobPlacementTracker(jobPlacements, order);
+        assertEquals(200, tracker.getCount(Status.Pending));
+        Random random = new Random(1);
+        for (int i = 0; i < 500; i++) {
+            JobPlacement jobPlacement = jobPlacements.get(random.nextInt(jobPlacements.size()));
+            if (random.nextInt(10) == 0) {
+                jobPlacement.setError(new Exception());
+            }
+            else {
+                jobPlacement.setStatus(Status.values()[random.nextInt(Status.values().length)]);
+            }
+            if (i % 50 == 0) {
+                for (Status status : Status.values()) {
+                    List<JobPlacement> expected = jobPlacements.stream()
+                            .filter(jp -> jp.getStatus() == status)
+                            .sorted(order)
+                            .collect(Collectors.toList());
+                    assertEquals(expected.size(), tracker.getCount(status));
+                    assertEquals(expected, tracker.getJobPlacements(status));
+                }
+            }
+        }
+        // Disposed trackers no longer follow the status.
+        tracker.dispose();
+        int pending = tracker.getCount(Status.Pending);
+        for (JobPlacement jobPlacement : jobPlacements) {
+            jobPlacement.setStatus(Status.Complete);
+        }
+        assertEquals(pending, tracker.getCount(Status.Pending));
+    }
+
+    /**
+     * The pending list behaves like a plain list of the pending placements, also while the planner removes
+     * placements from it.
+     */
+    @Test
+    public void testPendingList() throws Exception {
+        createMachine();
+        List<JobPlacement> jobPlacements = createJobPlacements(300, 2);
+        JobPlacementTracker tracker = new JobPlacementTracker(jobPlacements, order);
+        Random random = new Random(2);
+        for (JobPlacement jobPlacement : jobPlacements) {
+            if (random.nextInt(3) == 0) {
+                jobPlacement.setStatus(Status.Complete);
+            }
+        }
+        NozzleTip nt1 = Configuration.get().getMachine().getNozzleTipByName("NT1");
+        NozzleTip nt2 = Configuration.get().getMachine().getNozzleTipByName("NT2");
+        NozzleTip nt3 = Configuration.get().getMachine().getNozzleTipByName("NT3");
+        for (int round = 0; round < 20; round++) {
+            List<JobPlacement> expected = getPending(jobPlacements);
+            JobPlacementTracker.PendingList pending = tracker.getPendingList();
+            assertEquals(expected, pending);
+            for (int i = 0; i < 30 && !expected.isEmpty(); i++) {
+                switch (random.nextInt(4)) {
+                    case 0: {
+                        int index = random.nextInt(expected.size());
+                        assertSame(expected.remove(index), pending.remove(index));
+                        break;
+                    }
+                    case 1: {
+                        JobPlacement jobPlacement = jobPlacements.get(random.nextInt(jobPlacements.size()));
+                        assertEquals(expected.remove(jobPlacement), pending.remove(jobPlacement));
+                        break;
+                    }
+                    case 2: {
+                        int skip = random.nextInt(expected.size());
+                        Iterator<JobPlacement> e = expected.iterator();
+                        Iterator<JobPlacement> p = pending.iterator();
+                        for (int k = 0; k <= skip; k++) {
+                            assertSame(e.next(), p.next());
+                        }
+                        e.remove();
+                        p.remove();
+                        break;
+                    }
+                    default: {
+                        int index = random.nextInt(expected.size());
+                        assertSame(expected.get(index), pending.get(index));
+                    }
+                }
+                assertEquals(expected.size(), pending.size());
+                for (NozzleTip nozzleTip : new NozzleTip [] { nt1, nt2, nt3 }) {
+                    JobPlacement first = expected.stream()
+                            .filter(jp -> jp.getPlacement().getPart().getPackage()
+                                    .getCompatibleNozzleTips().contains(nozzleTip))
+                            .findFirst()
+                            .orElse(null);
+                    assertSame(first, pending.getFirst((Package pkg) -> pkg.getCompatibleNozzleTips().contains(nozzleTip)));
+                }
+            }
+            assertEquals(expected, pending);
+            // Progress the job, which invalidates the list.
+            for (JobPlacement jobPlacement : getPending(jobPlacements).subList(0, Math.min(10, expected.size()))) {
+                jobPlacement.setStatus(Status.Complete);
+            }
+        }
+    }
+
+    /**
+     * The simple planner plans the same on the pending list as on a plain list, while it only looks at a few
+     * placements per cycle.
+     */
+    @Test
+    public void testSimplePlanner() throws Exception {
+        Machine machine = createMachine();
+        for (int count : new int [] { 500, 20000 }) {
+            List<JobPlacement> jobPlacements = createJobPlacements(count, count);
+            JobPlacementTracker tracker = new JobPlacementTracker(jobPlacements, order);
+            SimplePnpJobPlanner planner = new SimplePnpJobPlanner();
+            int cycles = 0;
+            while (tracker.getCount(Status.Pending) > 0) {
+                List<PlannedPlacement> expected = null;
+                if (count <= 500 || cycles % 100 == 0) {
+                    expected = planner.plan(machine.getDefaultHead(), getPending(jobPlacements));
+                }
+                List<PlannedPlacement> planned = planner.plan(machine.getDefaultHead(), tracker.getPendingList());
+                assertFalse(planned.isEmpty());
+                if (expected != null) {
+                    assertEquals(expected.size(), planned.size());
+                    for (int i = 0; i < planned.size(); i++) {
+                        assertSame(expected.get(i).jobPlacement, planned.get(i).jobPlacement);
+                        assertSame(expected.get(i).nozzleTip, planned.get(i).nozzleTip);
+                    }
+                }
+                for (PlannedPlacement plannedPlacement : planned) {
+                    assertSame(Status.Pending, plannedPlacement.jobPlacement.getStatus());
+                    plannedPlacement.jobPlacement.setStatus(Status.Processing);
+                    plannedPlacement.jobPlacement.setStatus(Status.Complete);
+                }
+                cycles++;
+            }
+            assertTrue(jobPlacements.stream().allMatch(jp -> jp.getStatus() == Status.Complete));
+        }
+    }
+}
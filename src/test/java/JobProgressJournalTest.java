@@ -0,0 +1,204 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.openpnp.model.Board;
+import org.openpnp.model.BoardLocation;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Job;
+import org.openpnp.model.JobProgressJournal;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Location;
+import org.openpnp.model.Placement;
+import org.openpnp.spi.Feeder;
+import org.openpnp.spi.Machine;
+import org.openpnp.spi.PnpJobProcessor;
+
+import com.google.common.io.Files;
+
+public class JobProgressJournalTest {
+
+    private static Machine createMachine() throws Exception {
+        Configuration.initialize();
+        Machine machine = new ReferenceJobProcessorRetryTests.MachineBuilder()
+                .head("H1")
+                .nozzleTip("NT1")
+                .nozzle("N1", "NT1")
+                .topCamera("TOP")
+                .bottomCamera("BOTTOM")
+                .build();
+        new ReferenceJobProcessorRetryTests.JobBuilder()
+                .packag("R0402", "NT1")
+                .part("R0402-1k", "R0402")
+                .feeder("F1", "R0402-1k", 100, 20, -5, 0);
+        return machine;
+    }
+
+    /**
+     * Create and save a job with a board of the given number of placements.
+     */
+    private static Job createJob(File directory, int count) throws Exception {
+        Board board = Configuration.get().getBoard(new File(directory, "test.board.xml"));
+        for (int i = 0; i < count; i++) {
+            Placement placement = new Placement("R"+i);
+            placement.setPart(Configuration.get().getPart("R0402-1k"));
+            placement.setLocation(new Location(LengthUnit.Millimeters, i % 100, i / 100, 0, 0));
+            board.addPlacement(placement);
+        }
+        Job job = new Job();
+        BoardLocation boardLocation = new BoardLocation(board);
+        boardLocation.setLocation(new Location(LengthUnit.Millimeters, 10, 10, 0, 0));
+        job.addBoardLocation(boardLocation);
+        Configuration.get().saveJob(job, new File(directory, "test.job.xml"));
+        return job;
+    }
+
+    private static int countPlaced(Job job) {
+        int count = 0;
+        for (BoardLocation boardLocation : job.getBoardLocations()) {
+            for (Placement placement : boardLocation.getBoard().getPlacements()) {
+                if (boardLocation.getPlaced(placement.getId())) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Make the job file older than its journal, like when the job was not saved since the journal was written.
+     */
+    private static void makeJobOlder(Job job) {
+        File journalFile = JobProgressJournal.getFile(job.getFile());
+        job.getFile().setLastModified(journalFile.lastModified() - 10000);
+    }
+
+    @Test
+    public void testReplay() throws Exception {
+        createMachine();
+        File directory = Files.createTempDir();
+        Job job = createJob(directory, 20000);
+        BoardLocation boardLocation = job.getBoardLocations().get(0);
+        List<Placement> placements = boardLocation.getBoard().getPlacements();
+        boardLocation.setPlaced(placements.get(0).getId(), true);
+
+        try (JobProgressJournal journal = new JobProgressJournal(job, 1000)) {
+            for (int i = 1; i < 15000; i++) {
+                boardLocation.setPlaced(placements.get(i).getId(), true);
+                journal.recordPlaced(boardLocation, placements.get(i));
+            }
+        }
+        makeJobOlder(job);
+
+        // Loading the job replays the journal.
+        Job loaded = Configuration.get().loadJob(job.getFile());
+        assertEquals(15000, countPlaced(loaded));
+        assertTrue(loaded.isDirty());
+        BoardLocation loadedBoardLocation = loaded.getBoardLocations().get(0);
+        assertTrue(loadedBoardLocation.getPlaced("R14999"));
+        assertFalse(loadedBoardLocation.getPlaced("R15000"));
+
+        // Replaying again gives the same.
+        loadedBoardLocation.clearAllPlaced();
+        assertEquals(15000, JobProgressJournal.replay(loaded));
+        assertEquals(15000, countPlaced(loaded));
+
+        // A torn line is ignored.
+        loadedBoardLocation.clearAllPlaced();
+        try (FileOutputStream out = new FileOutputStream(JobProgressJournal.getFile(job.getFile()), true)) {
+            out.write("P 0 R15000\nP 0 R15001".getBytes(StandardCharsets.UTF_8));
+        }
+        makeJobOlder(job);
+        assertEquals(15001, JobProgressJournal.replay(loaded));
+        assertTrue(loadedBoardLocation.getPlaced("R15000"));
+        assertFalse(loadedBoardLocation.getPlaced("R15001"));
+
+        // The journal is ignored once the job is saved.
+        loadedBoardLocation.clearAllPlaced();
+        Configuration.get().saveJob(loaded, job.getFile());
+        job.getFile().setLastModified(JobProgressJournal.getFile(job.getFile()).lastModified() + 10000);
+        assertEquals(0, JobProgressJournal.replay(loaded));
+        assertEquals(0, countPlaced(Configuration.get().loadJob(job.getFile())));
+    }
+
+    /**
+     * Placements recorded within the sync interval are synced by the timer, even if no further placement follows,
+     * like when the job pauses.
+     */
+    @Test
+    public void testTimedSync() throws Exception {
+        createMachine();
+        File directory = Files.createTempDir();
+        Job job = createJob(directory, 10);
+        BoardLocation boardLocation = job.getBoardLocations().get(0);
+        List<Placement> placements = boardLocation.getBoard().getPlacements();
+        try (JobProgressJournal journal = new JobProgressJournal(job, 200)) {
+            assertFalse(journal.isUnsynced());
+            journal.recordPlaced(boardLocation, placements.get(0));
+            assertTrue(journal.isUnsynced());
+            long t0 = System.currentTimeMillis();
+            while (journal.isUnsynced() && System.currentTimeMillis() - t0 < 5000) {
+                Thread.sleep(10);
+            }
+            assertFalse(journal.isUnsynced());
+        }
+    }
+
+    @Test
+    public void testMismatchedBoards() throws Exception {
+        createMachine();
+        File directory = Files.createTempDir();
+        Job job = createJob(directory, 10);
+        BoardLocation boardLocation = job.getBoardLocations().get(0);
+        try (JobProgressJournal journal = new JobProgressJournal(job, 1000)) {
+            journal.recordPlaced(boardLocation, boardLocation.getBoard().getPlacements().get(0));
+        }
+        makeJobOlder(job);
+        Job loaded = Configuration.get().loadJob(job.getFile());
+        assertEquals(1, countPlaced(loaded));
+
+        // A second board that the journal does not know.
+        loaded.getBoardLocations().get(0).clearAllPlaced();
+        loaded.addBoardLocation(new BoardLocation(loaded.getBoardLocations().get(0).getBoard()));
+        assertEquals(0, JobProgressJournal.replay(loaded));
+    }
+
+    /**
+     * The job processor journals the progress, which can be restored after an abort, and removes the journal
+     * once the job is through.
+     */
+    @Test
+    public void testJobProcessor() throws Exception {
+        Machine machine = createMachine();
+        for (Feeder feeder : machine.getFeeders()) {
+            ((ReferenceJobProcessorRetryTests.TestFeeder) feeder).setPartCount(100);
+        }
+        File directory = Files.createTempDir();
+        Job job = createJob(directory, 5);
+        File journalFile = JobProgressJournal.getFile(job.getFile());
+
+        machine.setEnabled(true);
+        machine.home();
+        PnpJobProcessor jobProcessor = machine.getPnpJobProcessor();
+        jobProcessor.initialize(job);
+        while (countPlaced(job) < 2) {
+            assertTrue(jobProcessor.next());
+        }
+        jobProcessor.abort();
+        assertTrue(journalFile.exists());
+        makeJobOlder(job);
+        assertEquals(2, countPlaced(Configuration.get().loadJob(job.getFile())));
+
+        jobProcessor.initialize(job);
+        while (jobProcessor.next()) {
+        }
+        assertEquals(5, countPlaced(job));
+        assertFalse(journalFile.exists());
+    }
+}
@@ -0,0 +1,228 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.openpnp.machine.reference.driver.JunctionLookahead;
+import org.openpnp.model.AbstractMotionPath;
+import org.openpnp.model.MotionProfile;
+import org.openpnp.model.MotionProfile.ProfileOption;
+
+public class JunctionLookaheadTest {
+    static final double vMax = 500;
+    static final double aMax = 2000;
+    static final double junctionDeviation = 0.05;
+
+    private static class Path extends AbstractMotionPath {
+        private final List<MotionProfile []> path = new ArrayList<>();
+        private final double [] junctionVelocities;
+
+        Path(List<MotionProfile []> path, double [] junctionVelocities) {
+            this.path.addAll(path);
+            this.junctionVelocities = junctionVelocities;
+        }
+
+        @Override
+        public int size() {
+            return path.size();
+        }
+
+        @Override
+        public MotionProfile[] get(int i) {
+            return path.get(i);
+        }
+
+        @Override
+        protected double getJunctionVelocity(int i) {
+            return junctionVelocities[i];
+        }
+    }
+
+    /**
+     * Creates a random zig-zag path of coordinated XY moves.
+     */
+    private static List<MotionProfile []> createMoves(long seed, double jerk) {
+        Random random = new Random(seed);
+        List<MotionProfile []> moves = new ArrayList<>();
+        double [] location = new double[2];
+        for (int move = 0; move < 30; move++) {
+            double [] location1 = new double[] {
+                    location[0] + 1 + random.nextInt(40),
+                    location[1] + random.nextInt(40) - 20 };
+            MotionProfile [] profiles = new MotionProfile[2];
+            for (int axis = 0; axis < 2; axis++) {
+                profiles[axis] = new MotionProfile(
+                        location[axis], location1[axis], 0, 0, 0, 0,
+                        Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY,
+                        vMax, aMax, aMax, jerk, 0, Double.POSITIVE_INFINITY,
+                        ProfileOption.Coordinated.flag());
+            }
+            int leadAxis = MotionProfile.getLeadAxisIndex(MotionProfile.getUnitVector(profiles));
+            profiles[leadAxis].solve();
+            MotionProfile.coordinateProfiles(profiles);
+            moves.add(profiles);
+            location = location1;
+        }
+        return moves;
+    }
+
+    private static double length(MotionProfile [] profiles) {
+        double dx = profiles[0].getLocation(MotionProfile.segments) - profiles[0].getLocation(0);
+        double dy = profiles[1].getLocation(MotionProfile.segments) - profiles[1].getLocation(0);
+        return Math.sqrt(dx*dx + dy*dy);
+    }
+
+    /**
+     * Straight-forward, non-incremental constant acceleration reference planning.
+     */
+    private static double [] referencePlan(List<MotionProfile []> moves) {
+        int n = moves.size();
+        double [] entry = new double[n];
+        double [] aPath = new double[n];
+        for (int i = 0; i < n; i++) {
+            double [] unitVector = MotionProfile.getUnitVector(moves.get(i));
+            aPath[i] = aMax/Math.abs(unitVector[MotionProfile.getLeadAxisIndex(unitVector)]);
+            if (i > 0) {
+                double [] prevUnitVector = MotionProfile.getUnitVector(moves.get(i - 1));
+                double prevFraction = Math.abs(prevUnitVector[MotionProfile.getLeadAxisIndex(prevUnitVector)]);
+                double fraction = Math.abs(unitVector[MotionProfile.getLeadAxisIndex(unitVector)]);
+                double cosTheta = -MotionProfile.dotProduct(prevUnitVector, unitVector);
+                double sinThetaHalf = Math.sqrt(0.5*(1.0 - cosTheta));
+                double vJunction = Math.sqrt(Math.min(aPath[i - 1], aPath[i])*junctionDeviation
+                        *sinThetaHalf/(1.0 - sinThetaHalf));
+                entry[i] = Math.min(vJunction, Math.min(vMax/prevFraction, vMax/fraction));
+            }
+        }
+        double exit = 0;
+        for (int i = n - 1; i > 0; i--) {
+            entry[i] = Math.min(entry[i], Math.sqrt(exit*exit + 2*aPath[i]*length(moves.get(i))));
+            exit = entry[i];
+        }
+        for (int i = 0; i < n - 1; i++) {
+            entry[i + 1] = Math.min(entry[i + 1],
+                    Math.sqrt(entry[i]*entry[i] + 2*aPath[i]*length(moves.get(i))));
+        }
+        return entry;
+    }
+
+    @Test
+    public void testIncrementalSameAsReference() {
+        for (long seed = 1; seed <= 10; seed++) {
+            List<MotionProfile []> moves = createMoves(seed, 0);
+            JunctionLookahead lookahead = new JunctionLookahead();
+            for (MotionProfile [] profiles : moves) {
+                lookahead.append(profiles, true, junctionDeviation);
+            }
+            double [] reference = referencePlan(moves);
+            assertEquals(0, lookahead.getEntryVelocity(0));
+            assertEquals(0, lookahead.getExitVelocity(moves.size() - 1));
+            for (int i = 0; i < moves.size(); i++) {
+                assertEquals(reference[i], lookahead.getEntryVelocity(i), 1e-9*vMax, "seed "+seed+", move "+i);
+            }
+        }
+    }
+
+    @Test
+    public void testNotCapable() {
+        List<MotionProfile []> moves = createMoves(1, 0);
+        JunctionLookahead lookahead = new JunctionLookahead();
+        for (int i = 0; i < moves.size(); i++) {
+            lookahead.append(moves.get(i), i % 2 == 0, junctionDeviation);
+        }
+        for (int i = 0; i < moves.size(); i++) {
+            assertEquals(0, lookahead.getEntryVelocity(i));
+        }
+    }
+
+    @Test
+    public void testWindowed() {
+        for (long seed = 1; seed <= 10; seed++) {
+            List<MotionProfile []> moves = createMoves(seed, 0);
+            double [] reference = referencePlan(moves);
+            JunctionLookahead lookahead = new JunctionLookahead();
+            int window = 4;
+            int executed = 0;
+            double lastExit = 0;
+            for (MotionProfile [] profiles : moves) {
+                lookahead.append(profiles, true, junctionDeviation);
+                int count = lookahead.size() - window;
+                if (count > 0) {
+                    // Executed moves continue exactly where the previous ones left off.
+                    assertEquals(lastExit, lookahead.getEntryVelocity(0));
+                    for (int i = 0; i < count; i++) {
+                        assertTrue(lookahead.getEntryVelocity(i) <= reference[executed + i] + 1e-9*vMax);
+                    }
+                    lastExit = lookahead.getExitVelocity(count - 1);
+                    lookahead.removeFirst(count);
+                    executed += count;
+                }
+            }
+            assertEquals(lastExit, lookahead.getEntryVelocity(0));
+            assertEquals(lastExit, lookahead.getPendingVelocity());
+        }
+    }
+
+    /**
+     * Moves executed with a non-zero exit velocity leave a pending velocity behind, which the planner must
+     * honor or stop from, a fresh lookahead has none.
+     */
+    @Test
+    public void testPendingVelocity() {
+        List<MotionProfile []> moves = createMoves(1, 0);
+        JunctionLookahead lookahead = new JunctionLookahead();
+        assertEquals(0, lookahead.getPendingVelocity());
+        for (MotionProfile [] profiles : moves) {
+            lookahead.append(profiles, true, junctionDeviation);
+        }
+        assertEquals(0, lookahead.getPendingVelocity());
+        int executed = 0;
+        while (executed < moves.size() - 1 && lookahead.getExitVelocity(executed) == 0) {
+            executed++;
+        }
+        assertTrue(executed < moves.size() - 1);
+        double exit = lookahead.getExitVelocity(executed);
+        lookahead.removeFirst(executed + 1);
+        assertEquals(exit, lookahead.getPendingVelocity());
+        lookahead.clear();
+        assertEquals(0, lookahead.getPendingVelocity());
+    }
+
+    @Test
+    public void testSolvePath() throws Exception {
+        for (double jerk : new double[] { 0, 30000, 90000 }) {
+            for (long seed = 1; seed <= 5; seed++) {
+                String title = "jerk "+jerk+", seed "+seed;
+                List<MotionProfile []> moves = createMoves(seed, jerk);
+                JunctionLookahead lookahead = new JunctionLookahead();
+                for (MotionProfile [] profiles : moves) {
+                    lookahead.append(profiles, true, junctionDeviation);
+                }
+                double [] junctionVelocities = new double[moves.size()];
+                for (int i = 0; i < moves.size(); i++) {
+                    junctionVelocities[i] = lookahead.getEntryVelocity(i);
+                }
+                Path stillstandPath = new Path(createMoves(seed, jerk), new double[moves.size()]);
+                stillstandPath.solve();
+                Path path = new Path(moves, junctionVelocities);
+                path.solve();
+                double stillstandTime = 0;
+                double time = 0;
+                for (int i = 0; i < moves.size(); i++) {
+                    stillstandTime += stillstandPath.get(i)[0].getTime();
+                    time += path.get(i)[0].getTime();
+                    double [] unitVector = lookahead.getUnitVector(i);
+                    int lead = MotionProfile.getLeadAxisIndex(unitVector);
+                    MotionProfile leadProfile = path.get(i)[lead];
+                    assertNull(leadProfile.checkValidity(), title+", move "+i);
+                    assertEquals(junctionVelocities[i]*unitVector[lead], leadProfile.getVelocity(0), 1e-6,
+                            title+", move "+i);
+                }
+                assertTrue(time < stillstandTime, title);
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.openpnp.vision.FluentCv;
+import org.openpnp.vision.pipeline.CvPipeline;
+import org.openpnp.vision.pipeline.CvStage;
+import org.openpnp.vision.pipeline.MatPool;
+import org.openpnp.vision.pipeline.stages.BlurGaussian;
+import org.openpnp.vision.pipeline.stages.ComposeResult;
+import org.openpnp.vision.pipeline.stages.ConvertColor;
+import org.openpnp.vision.pipeline.stages.DetectEdgesCanny;
+import org.openpnp.vision.pipeline.stages.MaskCircle;
+
+public class MatPoolTest {
+    static {
+        nu.pattern.OpenCV.loadShared();
+    }
+
+    private static Mat createImage() {
+        Mat mat = new Mat(600, 800, CvType.CV_8UC3, new Scalar(40, 40, 40));
+        Imgproc.circle(mat, new Point(400, 300), 120, new Scalar(200, 180, 160), -1);
+        Imgproc.rectangle(mat, new Point(100, 100), new Point(250, 200), new Scalar(90, 220, 90), -1);
+        return mat;
+    }
+
+    public static class CreateImage extends CvStage {
+        @Override
+        public Result process(CvPipeline pipeline) throws Exception {
+            return new Result(createImage());
+        }
+    }
+
+    @Test
+    public void testPool() throws Exception {
+        MatPool pool = new MatPool(1000);
+        Mat a = pool.lease(10, 10, CvType.CV_8UC3);
+        Mat b = pool.lease(10, 10, CvType.CV_8UC3);
+        assertNotSame(a, b);
+        pool.giveBack(a);
+        assertEquals(300, pool.getFreeBytes());
+        assertSame(a, pool.lease(10, 10, CvType.CV_8UC3));
+        assertNotSame(a, pool.lease(10, 10, CvType.CV_8UC1));
+        assertEquals(0, pool.getFreeBytes());
+        // Beyond the maximum, Mats are released.
+        pool.giveBack(a);
+        pool.giveBack(b);
+        pool.giveBack(pool.lease(20, 20, CvType.CV_8UC3));
+        assertEquals(600, pool.getFreeBytes());
+        pool.clear();
+        assertEquals(0, pool.getFreeBytes());
+    }
+
+    /**
+     * The stock stages on the pool give the same results as the plain OpenCV operations, and a second run reuses
+     * the pooled Mats.
+     */
+    @Test
+    public void testPipeline() throws Exception {
+        Mat expected = createImage();
+        Imgproc.cvtColor(expected, expected, Imgproc.COLOR_BGR2GRAY);
+        Imgproc.GaussianBlur(expected, expected, new Size(9, 9), 0);
+        Mat mask = new Mat(expected.size(), CvType.CV_8UC1, new Scalar(0));
+        Imgproc.circle(mask, new Point(400, 300), 150, new Scalar(255), -1);
+        Mat masked = new Mat(expected.size(), expected.type(), new Scalar(0));
+        expected.copyTo(masked, mask);
+        Imgproc.Canny(masked, expected, 40, 180);
+
+        try (CvPipeline pipeline = new CvPipeline()) {
+            pipeline.add("create", new CreateImage());
+            ConvertColor convertColor = new ConvertColor();
+            convertColor.setConversion(FluentCv.ColorCode.Bgr2Gray);
+            pipeline.add("gray", convertColor);
+            BlurGaussian blur = new BlurGaussian();
+            blur.setKernelSize(9);
+            pipeline.add("blur", blur);
+            MaskCircle maskCircle = new MaskCircle();
+            maskCircle.setDiameter(300);
+            pipeline.add("mask", maskCircle);
+            DetectEdgesCanny canny = new DetectEdgesCanny();
+            canny.setThreshold1(40);
+            canny.setThreshold2(180);
+            pipeline.add("canny", canny);
+
+            long frameBytes = 600*800*3;
+            MatPool.get().clear();
+            long freeBytes = 0;
+            for (int run = 0; run < 3; run++) {
+                pipeline.process();
+                Mat diff = new Mat();
+                Core.absdiff(pipeline.getWorkingImage(), expected, diff);
+                assertEquals(0, Core.countNonZero(diff));
+                diff.release();
+                assertTrue(pipeline.getPeakNativeBytes() > 0);
+                assertTrue(pipeline.getPeakNativeBytes() <= 2*frameBytes,
+                        "peak native bytes "+pipeline.getPeakNativeBytes());
+                pipeline.release();
+                // The leased Mats are back in the pool, and the next run leases them again rather than
+                // allocating new ones.
+                assertTrue(MatPool.get().getFreeBytes() >= 600*800);
+                if (run > 0) {
+                    assertEquals(freeBytes, MatPool.get().getFreeBytes());
+                }
+                freeBytes = MatPool.get().getFreeBytes();
+            }
+        }
+    }
+
+    /**
+     * When the pipeline ends with a ComposeResult, the working image is also a retained result image. Releasing
+     * the pipeline gives it back to the pool once, intact.
+     */
+    @Test
+    public void testComposeResult() throws Exception {
+        try (CvPipeline pipeline = new CvPipeline()) {
+            pipeline.add("create", new CreateImage());
+            ConvertColor convertColor = new ConvertColor();
+            convertColor.setConversion(FluentCv.ColorCode.Bgr2Gray);
+            pipeline.add("gray", convertColor);
+            pipeline.add("blur", new BlurGaussian());
+            ComposeResult composeResult = new ComposeResult();
+            composeResult.setImageStageName("gray");
+            pipeline.add("result", composeResult);
+
+            MatPool.get().clear();
+            for (int run = 0; run < 2; run++) {
+                pipeline.process();
+                Mat workingImage = pipeline.getWorkingImage();
+                assertSame(pipeline.getResult("gray").image, workingImage);
+                long freeBytes = MatPool.get().getFreeBytes();
+                pipeline.release();
+                assertFalse(workingImage.empty());
+                // The other Mats went back while processing, the working image is given back once.
+                assertEquals(freeBytes + 600*800, MatPool.get().getFreeBytes());
+                Mat mat = MatPool.get().lease(600, 800, CvType.CV_8UC1);
+                assertFalse(mat.empty());
+                MatPool.get().giveBack(mat);
+            }
+        }
+    }
+
+    @Test
+    public void testConvertColorResultType() throws Exception {
+        Mat bgr = new Mat(2, 2, CvType.CV_8UC3);
+        Mat bgra = new Mat(2, 2, CvType.CV_8UC4);
+        Mat gray = new Mat(2, 2, CvType.CV_8UC1);
+        Mat grayFloat = new Mat(2, 2, CvType.CV_32FC1);
+        assertEquals(CvType.CV_8UC1, ConvertColor.getResultType(FluentCv.ColorCode.Bgr2Gray, bgr));
+        assertEquals(CvType.CV_8UC1, ConvertColor.getResultType(FluentCv.ColorCode.Bgr2Gray, bgra));
+        assertEquals(CvType.CV_8UC3, ConvertColor.getResultType(FluentCv.ColorCode.Gray2Bgr, gray));
+        assertEquals(CvType.CV_32FC3, ConvertColor.getResultType(FluentCv.ColorCode.Gray2Rgb, grayFloat));
+        assertEquals(CvType.CV_8UC3, ConvertColor.getResultType(FluentCv.ColorCode.Bgr2Hsv, bgra));
+        for (Mat mat : new Mat[] { bgr, bgra }) {
+            for (FluentCv.ColorCode code : new FluentCv.ColorCode[] { FluentCv.ColorCode.Bgr2Gray,
+                    FluentCv.ColorCode.Bgr2Hls, FluentCv.ColorCode.Bgr2HsvFull }) {
+                Mat converted = new Mat();
+                Imgproc.cvtColor(mat, converted, code.getCode());
+                assertEquals(converted.type(), ConvertColor.getResultType(code, mat), code.toString());
+            }
+        }
+    }
+}
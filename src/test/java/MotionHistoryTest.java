@@ -0,0 +1,109 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.openpnp.machine.reference.driver.MotionHistory;
+import org.openpnp.model.AxesLocation;
+import org.openpnp.model.Motion;
+
+public class MotionHistoryTest {
+
+    private static Motion createMotion(double time) {
+        Motion motion = new Motion(null, AxesLocation.zero, AxesLocation.zero, 1.0);
+        motion.setPlannedTime1(time);
+        return motion;
+    }
+
+    @Test
+    public void testSameAsTreeMap() {
+        Random random = new Random(1);
+        MotionHistory history = new MotionHistory(64);
+        TreeMap<Double, Motion> reference = new TreeMap<>();
+        assertEquals(Double.NEGATIVE_INFINITY, history.getLastTime());
+        assertNull(history.getMotionAfter(0));
+        double t = 0;
+        for (int i = 0; i < 1000; i++) {
+            t += random.nextDouble();
+            Motion motion = createMotion(t);
+            history.add(motion, t);
+            reference.put(t, motion);
+            // Bounded, like the TreeMap with the oldest entries cleared.
+            while (reference.size() > history.getCapacity()) {
+                reference.remove(reference.firstKey());
+            }
+            if (i % 100 == 99) {
+                double clearTime = t - 10;
+                history.removeOlderThan(clearTime);
+                while (reference.isEmpty() == false && reference.firstKey() < clearTime) {
+                    reference.remove(reference.firstKey());
+                }
+            }
+            assertEquals(reference.size(), history.size());
+            assertEquals(reference.lastKey(), history.getLastTime());
+            for (int k = 0; k < 10; k++) {
+                double time = reference.firstKey() - 1 + random.nextDouble()*(t - reference.firstKey() + 2);
+                Map.Entry<Double, Motion> entry = reference.higherEntry(time);
+                assertSame(entry == null ? null : entry.getValue(), history.getMotionAfter(time));
+            }
+            // Exact hits return the following motion.
+            Map.Entry<Double, Motion> entry = reference.higherEntry(reference.firstKey());
+            assertSame(entry == null ? null : entry.getValue(), history.getMotionAfter(reference.firstKey()));
+        }
+        assertSame(reference.lastEntry().getValue(), history.findLast((motion) -> true));
+        assertNull(history.findLast((motion) -> false));
+        history.removeOlderThan(Double.POSITIVE_INFINITY);
+        assertTrue(history.isEmpty());
+    }
+
+    @Test
+    public void testConcurrentReaders() throws Exception {
+        MotionHistory history = new MotionHistory(16);
+        int n = 200000;
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread [] readers = new Thread[3];
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread(() -> {
+                try {
+                    Random random = new Random();
+                    double last = 0;
+                    while (last < n - 1) {
+                        double time = last + random.nextDouble()*10 - 5;
+                        Motion motion = history.getMotionAfter(time);
+                        if (motion != null) {
+                            // Whatever the concurrent recycling, the result must be consistent.
+                            double plannedTime = motion.getPlannedTime1();
+                            if (!(plannedTime > time)) {
+                                throw new AssertionError("Motion at "+plannedTime+" returned for "+time);
+                            }
+                        }
+                        last = Math.max(last, history.getLastTime());
+                    }
+                }
+                catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            readers[r].start();
+        }
+        for (int i = 1; i <= n; i++) {
+            history.add(createMotion(i), i);
+            if (i % 1000 == 0) {
+                history.removeOlderThan(i - 8);
+            }
+        }
+        for (Thread reader : readers) {
+            reader.join(10000);
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertTrue(history.size() <= history.getCapacity());
+    }
+}
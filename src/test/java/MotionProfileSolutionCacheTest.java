@@ -0,0 +1,85 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.openpnp.model.MotionProfile;
+import org.openpnp.model.MotionProfile.ProfileOption;
+import org.openpnp.model.MotionProfileSolutionCache;
+
+public class MotionProfileSolutionCacheTest {
+
+    private static MotionProfile createProfile(Random random) {
+        double s0 = random.nextInt(200) - 100;
+        double s1 = random.nextInt(200) - 100;
+        double v0 = random.nextBoolean() ? 0 : random.nextInt(200) - 100;
+        double jerk = new double[] { 0, 30000, 90000 }[random.nextInt(3)];
+        int options = random.nextBoolean() ? ProfileOption.SimplifiedSCurve.flag() : 0;
+        return new MotionProfile(
+                s0, s1, v0, 0, 0, 0,
+                Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY,
+                500 + random.nextInt(3)*100, 2000, 2000, jerk, 0, Double.POSITIVE_INFINITY,
+                options);
+    }
+
+    private static void assertSameSolution(MotionProfile expected, MotionProfile actual, String message) {
+        assertEquals(expected.getTime(), actual.getTime(), message);
+        for (int segment = 0; segment <= MotionProfile.segments; segment++) {
+            assertEquals(expected.getLocation(segment), actual.getLocation(segment), message);
+            assertEquals(expected.getVelocity(segment), actual.getVelocity(segment), message);
+            assertEquals(expected.getAcceleration(segment), actual.getAcceleration(segment), message);
+            assertEquals(expected.getJerk(segment), actual.getJerk(segment), message);
+            assertEquals(expected.getSegmentBeginTime(segment), actual.getSegmentBeginTime(segment), message);
+        }
+        assertEquals(expected.getLowerSBoundary(), actual.getLowerSBoundary(), message);
+        assertEquals(expected.getHigherSBoundary(), actual.getHigherSBoundary(), message);
+        assertEquals(expected.getLowerVBoundary(), actual.getLowerVBoundary(), message);
+        assertEquals(expected.getHigherVBoundary(), actual.getHigherVBoundary(), message);
+        assertEquals(expected.getOptions(), actual.getOptions(), message);
+    }
+
+    @Test
+    public void testCachedSolutions() throws Exception {
+        MotionProfileSolutionCache cache = MotionProfile.getSolutionCache();
+        int capacity = cache.getCapacity();
+        try {
+            cache.setCapacity(0);
+            Random random = new Random(1);
+            int n = 200;
+            MotionProfile [] solved = new MotionProfile[n];
+            for (int i = 0; i < n; i++) {
+                solved[i] = createProfile(random);
+                solved[i].solve();
+            }
+            cache.setCapacity(n);
+            cache.clear();
+            cache.resetStatistics();
+            for (int pass = 0; pass < 2; pass++) {
+                random = new Random(1);
+                for (int i = 0; i < n; i++) {
+                    MotionProfile profile = createProfile(random);
+                    profile.solve();
+                    assertSameSolution(solved[i], profile, "pass "+pass+", profile "+i);
+                }
+            }
+            // Null moves are not cached, each other profile is a miss first, then a hit.
+            assertEquals(cache.getHits(), cache.getMisses());
+            assertTrue(cache.getHits() >= n/2);
+            assertEquals(0.5, cache.getHitRate());
+            assertTrue(cache.getSavedSolvingTime() > 0);
+
+            // Least recently used solutions are evicted.
+            cache.setCapacity(10);
+            assertEquals(0, cache.size());
+            random = new Random(1);
+            for (int i = 0; i < n; i++) {
+                createProfile(random).solve();
+            }
+            assertEquals(10, cache.size());
+        }
+        finally {
+            cache.setCapacity(capacity);
+        }
+    }
+}
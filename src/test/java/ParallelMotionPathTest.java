@@ -0,0 +1,137 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.openpnp.model.AbstractMotionPath;
+import org.openpnp.model.MotionProfile;
+import org.openpnp.model.MotionProfileSolutionCache;
+import org.openpnp.model.MotionProfile.ProfileOption;
+
+public class ParallelMotionPathTest {
+    static final int axes = 6;
+    static final double safeZ = -7;
+
+    private static class Path extends AbstractMotionPath {
+        private final List<MotionProfile []> path = new ArrayList<>();
+
+        @Override
+        public int size() {
+            return path.size();
+        }
+
+        @Override
+        public MotionProfile[] get(int i) {
+            return path.get(i);
+        }
+    }
+
+    /**
+     * Creates a random pick & place like path with X, Y, two Z and two rotation axes. Moves in the Safe Z zone
+     * are uncoordinated, like the ReferenceAdvancedMotionPlanner does when allowing uncoordinated motion.
+     */
+    private static Path createPath(long seed, double jerk, boolean sCurves) {
+        Random random = new Random(seed);
+        Path path = new Path();
+        double [] location = new double[axes];
+        location[2] = safeZ;
+        location[3] = -safeZ;
+        for (int move = 0; move < 40; move++) {
+            double [] location1 = location.clone();
+            int nozzle = 2 + random.nextInt(2);
+            switch (move % 3) {
+                case 0:
+                    // Travel at Safe Z, with some rotation.
+                    location1[0] = Math.round(random.nextDouble()*300);
+                    location1[1] = Math.round(random.nextDouble()*200);
+                    location1[4] = Math.round(random.nextDouble()*360 - 180);
+                    location1[5] = Math.round(random.nextDouble()*360 - 180);
+                    break;
+                case 1:
+                    // Down.
+                    location1[nozzle] = (nozzle == 2 ? -15 : 15) + random.nextInt(3);
+                    break;
+                default:
+                    // Up.
+                    location1[2] = safeZ;
+                    location1[3] = -safeZ;
+                    break;
+            }
+            boolean inSafeZone = location[2] == safeZ && location1[2] == safeZ
+                    && location[3] == -safeZ && location1[3] == -safeZ;
+            int options = (sCurves ? ProfileOption.SimplifiedSCurve.flag() : 0)
+                    | (inSafeZone ?
+                            ProfileOption.SynchronizeStraighten.flag()
+                            | ProfileOption.SynchronizeEarlyBird.flag()
+                            | ProfileOption.SynchronizeLastMinute.flag()
+                            : ProfileOption.Coordinated.flag());
+            MotionProfile [] profiles = new MotionProfile[axes];
+            for (int axis = 0; axis < axes; axis++) {
+                double sMin = Double.NEGATIVE_INFINITY;
+                double sMax = Double.POSITIVE_INFINITY;
+                if (inSafeZone && (axis == 2 || axis == 3)) {
+                    sMin = safeZ;
+                    sMax = -safeZ;
+                }
+                profiles[axis] = new MotionProfile(
+                        location[axis], location1[axis], 0, 0, 0, 0,
+                        sMin, sMax, axis < 2 ? 700 : 1000, 2000, 2000, jerk, 0, Double.POSITIVE_INFINITY,
+                        options);
+            }
+            // Solve as a single coordinated move.
+            int leadAxis = MotionProfile.getLeadAxisIndex(MotionProfile.getUnitVector(profiles));
+            profiles[leadAxis].solve();
+            MotionProfile.coordinateProfiles(profiles);
+            path.path.add(profiles);
+            location = location1;
+        }
+        return path;
+    }
+
+    @Test
+    public void testSameAsSequential() throws Exception {
+        // Solve everything for real.
+        MotionProfileSolutionCache cache = MotionProfile.getSolutionCache();
+        int capacity = cache.getCapacity();
+        cache.setCapacity(0);
+        try {
+            compareSequentialAndParallel();
+        }
+        finally {
+            cache.setCapacity(capacity);
+        }
+    }
+
+    private void compareSequentialAndParallel() throws Exception {
+        for (double jerk : new double[] { 90000, 30000, 0 }) {
+            for (boolean sCurves : new boolean[] { false, true }) {
+                for (long seed = 1; seed <= 5; seed++) {
+                    Path sequential = createPath(seed, jerk, sCurves);
+                    sequential.solve();
+                    Path parallel = createPath(seed, jerk, sCurves);
+                    parallel.setParallelSolving(true);
+                    parallel.solve();
+                    String title = "jerk "+jerk+(sCurves ? ", S-Curves" : "")+", seed "+seed;
+                    for (int i = 0; i < sequential.size(); i++) {
+                        for (int axis = 0; axis < axes; axis++) {
+                            MotionProfile expected = sequential.get(i)[axis];
+                            MotionProfile actual = parallel.get(i)[axis];
+                            String message = title+", move "+i+", axis "+axis;
+                            assertEquals(expected.getTime(), actual.getTime(), message);
+                            for (int segment = 0; segment <= MotionProfile.segments; segment++) {
+                                assertEquals(expected.getLocation(segment), actual.getLocation(segment), message);
+                                assertEquals(expected.getVelocity(segment), actual.getVelocity(segment), message);
+                                assertEquals(expected.getAcceleration(segment), actual.getAcceleration(segment), message);
+                                assertEquals(expected.getJerk(segment), actual.getJerk(segment), message);
+                                assertEquals(expected.getSegmentBeginTime(segment), actual.getSegmentBeginTime(segment), message);
+                            }
+                        }
+                    }
+                    sequential.validate(title);
+                }
+            }
+        }
+    }
+}
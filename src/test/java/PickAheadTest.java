@@ -0,0 +1,125 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.openpnp.machine.reference.ReferencePnpJobProcessor;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Job;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Location;
+import org.openpnp.spi.Machine;
+import org.openpnp.spi.Nozzle;
+import org.openpnp.spi.PnpJobProcessor;
+
+public class PickAheadTest {
+
+    /**
+     * A feeder that can feed ahead and counts the feeds done while the nozzles still carry the parts of the
+     * current cycle.
+     */
+    public static class AheadFeeder extends ReferenceJobProcessorRetryTests.TestFeeder {
+        int aheadCount = 0;
+
+        @Override
+        public void feed(Nozzle nozzle) throws Exception {
+            if (nozzle.getPart() != null) {
+                aheadCount++;
+            }
+            super.feed(nozzle);
+        }
+
+        @Override
+        public boolean canFeedAhead() {
+            return true;
+        }
+    }
+
+    private static AheadFeeder addFeeder(Machine machine, String name, String partId, double x)
+            throws Exception {
+        AheadFeeder feeder = new AheadFeeder();
+        feeder.setName(name);
+        feeder.setPart(Configuration.get().getPart(partId));
+        feeder.setLocation(new Location(LengthUnit.Millimeters, x, 0, 0, 0));
+        feeder.setEnabled(true);
+        feeder.setPartCount(100);
+        machine.addFeeder(feeder);
+        return feeder;
+    }
+
+    private static Machine createMachine() throws Exception {
+        Configuration.initialize();
+        Machine machine = new ReferenceJobProcessorRetryTests.MachineBuilder()
+                .head("H1")
+                .nozzleTip("NT1")
+                .nozzleTip("NT2")
+                .nozzle("N1", "NT1")
+                .nozzle("N2", "NT2")
+                .topCamera("TOP")
+                .bottomCamera("BOTTOM")
+                .build();
+        return machine;
+    }
+
+    private static Job createJob() throws Exception {
+        ReferenceJobProcessorRetryTests.JobBuilder builder = new ReferenceJobProcessorRetryTests.JobBuilder()
+                .board("B1", 10, 10, 0, 0)
+                .packag("R0402", "NT1", "NT2")
+                .part("R1", "R0402")
+                .part("R2", "R0402");
+        for (int i = 0; i < 6; i++) {
+            builder.placement("R"+i, (i % 2 == 0 ? "R1" : "R2"), i*2, 5, 0);
+        }
+        return builder.build();
+    }
+
+    private static int runJob(boolean pickAhead) throws Exception {
+        Machine machine = createMachine();
+        Job job = createJob();
+        AheadFeeder f1 = addFeeder(machine, "F1", "R1", 100);
+        AheadFeeder f2 = addFeeder(machine, "F2", "R2", 200);
+        ((ReferencePnpJobProcessor) machine.getPnpJobProcessor()).setPickAhead(pickAhead);
+        ReferenceJobProcessorRetryTests.runJob(machine, job);
+        // Each part is fed exactly once.
+        assertEquals(3, f1.feedCount);
+        assertEquals(3, f2.feedCount);
+        return f1.aheadCount + f2.aheadCount;
+    }
+
+    /**
+     * With pick-ahead, the parts of the next cycle are fed while the current cycle is still on the nozzles. The
+     * cycles pick from F1+F1, F1+F2 and F2+F2. A feeder presents only one part at a time, so only one of two
+     * picks from the same feeder is fed ahead, i.e. F1+F2 and then F2 are fed ahead.
+     */
+    @Test
+    public void testPickAhead() throws Exception {
+        assertEquals(0, runJob(false));
+        assertEquals(3, runJob(true));
+    }
+
+    /**
+     * A job aborted after feeding ahead does not leave the fed-ahead feeders to the next job, which feeds all its
+     * parts.
+     */
+    @Test
+    public void testAbortAfterFeedAhead() throws Exception {
+        Machine machine = createMachine();
+        Job job = createJob();
+        AheadFeeder f1 = addFeeder(machine, "F1", "R1", 100);
+        AheadFeeder f2 = addFeeder(machine, "F2", "R2", 200);
+        PnpJobProcessor jobProcessor = machine.getPnpJobProcessor();
+        ((ReferencePnpJobProcessor) jobProcessor).setPickAhead(true);
+        machine.setEnabled(true);
+        machine.home();
+        jobProcessor.initialize(job);
+        while (f1.aheadCount + f2.aheadCount == 0) {
+            assertTrue(jobProcessor.next());
+        }
+        jobProcessor.abort();
+
+        int feedCount1 = f1.feedCount;
+        int feedCount2 = f2.feedCount;
+        ReferenceJobProcessorRetryTests.runJob(machine, job);
+        assertEquals(3, f1.feedCount - feedCount1);
+        assertEquals(3, f2.feedCount - feedCount2);
+    }
+}
@@ -0,0 +1,108 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.openpnp.machine.reference.vision.ReferenceBottomVision.PreRotateUsage.AlwaysOff;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.openpnp.machine.reference.ReferenceNozzleTip;
+import org.openpnp.machine.reference.vision.ReferenceBottomVision;
+import org.openpnp.model.Board;
+import org.openpnp.model.Board.Side;
+import org.openpnp.model.BoardLocation;
+import org.openpnp.model.BottomVisionSettings;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Length;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Location;
+import org.openpnp.model.Part;
+import org.openpnp.spi.Camera;
+import org.openpnp.spi.Machine;
+import org.openpnp.spi.Nozzle;
+import org.openpnp.spi.NozzleTip;
+import org.openpnp.spi.PartAlignment.PartAlignmentOffset;
+import org.openpnp.util.VisionUtils;
+
+import com.google.common.io.Files;
+
+public class PipelinedAlignmentTest {
+    static File workingDirectory;
+
+    @BeforeAll
+    public static void setup() throws Exception {
+        workingDirectory = new File(Files.createTempDir(), ".openpnp");
+        FileUtils.copyURLToFile(ClassLoader.getSystemResource("config/ReferenceBottomVisionOffset/packages.xml"),
+                new File(workingDirectory, "packages.xml"));
+        FileUtils.copyURLToFile(ClassLoader.getSystemResource("config/ReferenceBottomVisionOffset/parts.xml"),
+                new File(workingDirectory, "parts.xml"));
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+        for (NozzleTip tip : Configuration.get().getMachine().getNozzleTips()) {
+            ((ReferenceNozzleTip) tip).setMaxPickTolerance(new Length(2, LengthUnit.Millimeters));
+        }
+    }
+
+    /**
+     * The deferred alignment captures the images up front, so the machine can move on before the images are
+     * processed on another thread, and the offsets are the same as with the synchronous alignment.
+     */
+    @Test
+    public void testDeferredAlignment() throws Exception {
+        Machine machine = Configuration.get().getMachine();
+        ReferenceBottomVision bottomVision = ReferenceBottomVision.getDefault();
+        Nozzle nozzle = machine.getDefaultHead().getDefaultNozzle();
+        Camera camera = VisionUtils.getBottomVisionCamera();
+
+        Part part = Configuration.get().getPart("R0805-1K");
+        BottomVisionSettings bottomVisionSettings = bottomVision.getInheritedVisionSettings(part);
+        bottomVisionSettings.setVisionOffset(new Location(LengthUnit.Millimeters, 1.0, 1.0, 0.0, 0.0));
+        bottomVisionSettings.setPreRotateUsage(AlwaysOff);
+
+        BoardLocation boardLocation = new BoardLocation(new Board());
+        boardLocation.setLocation(new Location(LengthUnit.Millimeters, 0, 0, -10, 0));
+        boardLocation.setSide(Side.Top);
+        Location [] placementLocations = {
+                new Location(LengthUnit.Millimeters, 10.0, 10.0, 0.0, 0.0),
+                new Location(LengthUnit.Millimeters, 10.0, 10.0, 0.0, 45.0),
+                new Location(LengthUnit.Millimeters, 10.0, 10.0, 0.0, 90.0),
+        };
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            machine.setEnabled(true);
+            machine.execute(() -> {
+                nozzle.pick(part);
+                List<Location> expected = new ArrayList<>();
+                for (Location placementLocation : placementLocations) {
+                    expected.add(bottomVision.findOffsets(part, boardLocation, placementLocation, nozzle).getLocation());
+                }
+                List<Future<PartAlignmentOffset>> futures = new ArrayList<>();
+                for (Location placementLocation : placementLocations) {
+                    Callable<PartAlignmentOffset> deferred =
+                            bottomVision.findOffsetsDeferred(part, boardLocation, placementLocation, nozzle);
+                    // Move away from the camera, before processing.
+                    nozzle.moveTo(camera.getLocation().add(new Location(LengthUnit.Millimeters, 20, 20, 0, 0)));
+                    futures.add(executor.submit(deferred));
+                }
+                for (int i = 0; i < placementLocations.length; i++) {
+                    Location offsets = futures.get(i).get().getLocation();
+                    Location expectedOffsets = expected.get(i);
+                    assertEquals(expectedOffsets.getX(), offsets.getX(), 0.01);
+                    assertEquals(expectedOffsets.getY(), offsets.getY(), 0.01);
+                    assertEquals(expectedOffsets.getRotation(), offsets.getRotation(), 0.01);
+                }
+                return true;
+            });
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+}
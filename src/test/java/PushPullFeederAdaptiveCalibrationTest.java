@@ -0,0 +1,100 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.openpnp.machine.reference.feeder.ReferencePushPullFeeder;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Length;
+import org.openpnp.model.LengthUnit;
+
+public class PushPullFeederAdaptiveCalibrationTest {
+
+    /**
+     * The number of tape feeds that can be done without calibration, until the predicted error exceeds the
+     * precision wanted.
+     */
+    private static int feedsWithoutCalibration(ReferencePushPullFeeder feeder) {
+        int feeds = 0;
+        while (feeds < 10000 && feeder.getAdaptivePredictedError(feeds + 1)
+                .divide(feeder.getPrecisionWanted()) <= 1.0) {
+            feeds++;
+        }
+        return feeds;
+    }
+
+    /**
+     * A stable feeder is calibrated much less often than a drifting one, and the statistics follow the feeder
+     * when it starts to drift.
+     */
+    @Test
+    public void testDriftStatistics() throws Exception {
+        Configuration.initialize();
+        new ReferenceJobProcessorRetryTests.MachineBuilder()
+                .head("H1")
+                .nozzleTip("NT1")
+                .nozzle("N1", "NT1")
+                .topCamera("TOP")
+                .build();
+        ReferencePushPullFeeder feeder = new ReferencePushPullFeeder();
+        feeder.setPrecisionWanted(new Length(0.1, LengthUnit.Millimeters));
+        Random random = new Random(1);
+
+        // Stable feeder, the calibration only finds the vision noise.
+        int feeds = 1;
+        for (int i = 0; i < 30; i++) {
+            double errorMm = Math.abs(random.nextGaussian()*0.01);
+            feeder.addAdaptiveDrift(new Length(errorMm, LengthUnit.Millimeters), feeds);
+            feeds = Math.max(1, feedsWithoutCalibration(feeder));
+        }
+        int stableFeeds = feedsWithoutCalibration(feeder);
+        assertTrue(stableFeeds >= 5, "stable feeder calibrates after "+stableFeeds+" feeds");
+
+        // The feeder starts to drift 0.05mm per feed.
+        for (int i = 0; i < 30; i++) {
+            double errorMm = feeds*0.05 + Math.abs(random.nextGaussian()*0.01);
+            feeder.addAdaptiveDrift(new Length(errorMm, LengthUnit.Millimeters), feeds);
+            feeds = Math.max(1, feedsWithoutCalibration(feeder));
+        }
+        int driftingFeeds = feedsWithoutCalibration(feeder);
+        assertTrue(driftingFeeds <= 1, "drifting feeder calibrates after "+driftingFeeds+" feeds");
+        assertEquals(60, feeder.getAdaptiveDriftCount());
+
+        feeder.resetCalibrationStatistics();
+        assertEquals(0, feeder.getAdaptiveDriftCount());
+        assertEquals(0, feeder.getAdaptivePredictedError(100).getValue(), 1e-9);
+    }
+
+    /**
+     * Vision noise is not taken as drift that shrinks with the growing number of feeds between calibrations. With 
+     * noise about the precision wanted, the interval stays short, rather than running up to the maximum feeds 
+     * without calibration.
+     */
+    @Test
+    public void testNoiseStatistics() throws Exception {
+        Configuration.initialize();
+        new ReferenceJobProcessorRetryTests.MachineBuilder()
+                .head("H1")
+                .nozzleTip("NT1")
+                .nozzle("N1", "NT1")
+                .topCamera("TOP")
+                .build();
+        ReferencePushPullFeeder feeder = new ReferencePushPullFeeder();
+        feeder.setPrecisionWanted(new Length(0.1, LengthUnit.Millimeters));
+        Random random = new Random(1);
+
+        // The first calibration only after a number of feeds.
+        int feeds = 10;
+        for (int i = 0; i < 30; i++) {
+            double errorMm = 0.1 + Math.abs(random.nextGaussian()*0.01);
+            feeder.addAdaptiveDrift(new Length(errorMm, LengthUnit.Millimeters), feeds);
+            feeds = Math.max(1, Math.min(50, feedsWithoutCalibration(feeder)));
+        }
+        assertTrue(feeds <= 1, "noisy feeder calibrates after "+feeds+" feeds");
+        // The predicted error is mostly noise, it does not grow in proportion to the feeds.
+        double predicted1 = feeder.getAdaptivePredictedError(1).getValue();
+        double predicted50 = feeder.getAdaptivePredictedError(50).getValue();
+        assertTrue(predicted50 < 1.5*predicted1, "predicted error "+predicted1+" after 1, "+predicted50+" after 50");
+    }
+}
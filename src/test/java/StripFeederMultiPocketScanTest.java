@@ -0,0 +1,91 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.openpnp.machine.reference.feeder.ReferenceStripFeeder;
+import org.openpnp.model.Length;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Location;
+
+public class StripFeederMultiPocketScanTest {
+    private static final Length holePitch = new Length(4, LengthUnit.Millimeters);
+    private static final Length tolerance = new Length(0.5, LengthUnit.Millimeters);
+    private static final Length maxDistance = new Length(2, LengthUnit.Millimeters);
+
+    /**
+     * The location of a hole of a strip that runs from x0, y0 at the given angle.
+     */
+    private static Location hole(double x0, double y0, double angle, double index) {
+        double a = Math.toRadians(angle);
+        return new Location(LengthUnit.Millimeters,
+                x0 + Math.cos(a)*4*index, y0 + Math.sin(a)*4*index, 0, 0);
+    }
+
+    private static Location[] line(double angle) {
+        return new Location[] { hole(0, 0, angle, 0), hole(0, 0, angle, 20) };
+    }
+
+    /**
+     * The holes of the strip in view are found in line, next to a parallel strip and some dirt, and indexed
+     * from the expected hole on.
+     */
+    @Test
+    public void testHolesInLine() throws Exception {
+        Random random = new Random(1);
+        double angle = 2;
+        List<Location> holes = new ArrayList<>();
+        // The camera view shows holes 3 to 7 of the strip, slightly off the ideal line.
+        for (int i = 2; i <= 7; i++) {
+            holes.add(hole(0.2, 0.3, angle, i + (random.nextDouble() - 0.5)*0.05));
+        }
+        // The parallel neighbouring strip.
+        for (int i = 2; i <= 7; i++) {
+            holes.add(hole(0, 8, angle, i + 0.5));
+        }
+        // Dirt.
+        for (int i = 0; i < 3; i++) {
+            holes.add(new Location(LengthUnit.Millimeters,
+                    8 + random.nextDouble()*20, -6 + random.nextDouble()*4, 0, 0));
+        }
+        Collections.shuffle(holes, random);
+
+        Location expected = hole(0, 0, angle, 3);
+        Map<Integer, Location> holesInLine = ReferenceStripFeeder.getHolesInLine(holes, expected, line(angle),
+                holePitch, tolerance, maxDistance, 3);
+        assertEquals(5, holesInLine.size());
+        for (int k = 0; k <= 4; k++) {
+            Location location = holesInLine.get(k);
+            Location ideal = hole(0.2, 0.3, angle, 3 + k);
+            assertTrue(location.getLinearDistanceTo(ideal) < 0.1, "hole "+k+" at "+location);
+        }
+    }
+
+    /**
+     * With too few holes in line, only the closest hole is trusted, and with no hole near the expected location,
+     * none.
+     */
+    @Test
+    public void testLowConfidence() throws Exception {
+        double angle = 0;
+        List<Location> holes = new ArrayList<>();
+        holes.add(hole(0.1, 0, angle, 5));
+        holes.add(hole(0.1, 0, angle, 6));
+        holes.add(hole(0, 8, angle, 5));
+        Location expected = hole(0, 0, angle, 5);
+
+        Map<Integer, Location> holesInLine = ReferenceStripFeeder.getHolesInLine(holes, expected, line(angle),
+                holePitch, tolerance, maxDistance, 3);
+        assertEquals(1, holesInLine.size());
+        assertEquals(holes.get(0), holesInLine.get(0));
+
+        holesInLine = ReferenceStripFeeder.getHolesInLine(holes, hole(0, 0, angle, 9), line(angle),
+                holePitch, tolerance, maxDistance, 3);
+        assertTrue(holesInLine.isEmpty());
+    }
+}
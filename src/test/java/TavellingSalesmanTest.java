@@ -20,6 +20,7 @@
 import java.io.File;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
 
@@ -91,4 +92,99 @@ public class TavellingSalesmanTest {
             }
         }
     }
+
+    private static List<Location> createLocations(int size, long seed) {
+        Random rnd = new java.util.Random(seed);
+        List<Location> list = new ArrayList<Location>();
+        for (int i = 0; i < size; i++) {
+            if (i % 3 == 0) {
+                // X-aligned rows of feeders
+                list.add(new Location(LengthUnit.Millimeters, Math.floor(rnd.nextDouble()*5.0)*250.0+rnd.nextDouble()*20.0, rnd.nextDouble()*500.0, rnd.nextDouble()*10.0, 0.0));
+            }
+            else {
+                // random Locations all over
+                list.add(new Location(LengthUnit.Millimeters, rnd.nextDouble()*1000.0, rnd.nextDouble()*500.0, rnd.nextDouble()*20.0, 0.0));
+            }
+        }
+        return list;
+    }
+
+    private static TravellingSalesman<Location> createSolver(List<Location> list) {
+        return new TravellingSalesman<>(
+                list, 
+                new TravellingSalesman.Locator<Location>() { 
+                    @Override
+                    public Location getLocation(Location locatable) {
+                        return locatable;
+                    }
+                }, 
+                new Location(LengthUnit.Millimeters), 
+                null);
+    }
+
+    /**
+     * The local search returns a complete route that is no longer than the initial one, and the best of the parallel
+     * restarts is deterministic.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testLocalSearch() throws Exception {
+        int size = 1000;
+        List<Location> list = createLocations(size, 42);
+
+        TravellingSalesman<Location> localSearch = createSolver(list);
+        double initialDistance = localSearch.simulateAnnealing(0.0, 0.0, 0);
+        double localSearchDistance = localSearch.solveLocalSearch(0, TravellingSalesman.defaultRestarts);
+        if (localSearchDistance > initialDistance) {
+            throw new Exception("Local search distance "+localSearchDistance+" is greater than the initial distance "+initialDistance);
+        }
+        // Complete route.
+        List<Location> travel = localSearch.getTravel();
+        if (travel.size() != size || !new HashSet<>(travel).equals(new HashSet<>(list))) {
+            throw new Exception("Local search route is not a permutation of the Locations.");
+        }
+        // The best of the restarts is no longer than the first restart alone.
+        double singleDistance = createSolver(list).solveLocalSearch(0, 1);
+        if (localSearchDistance > singleDistance) {
+            throw new Exception("Local search distance "+localSearchDistance+" is greater than the single restart distance "+singleDistance);
+        }
+        // Deterministic for the same seed, whatever restart finishes first.
+        for (int i = 0; i < 3; i++) {
+            TravellingSalesman<Location> repeated = createSolver(list);
+            double repeatedDistance = repeated.solveLocalSearch(0, TravellingSalesman.defaultRestarts);
+            if (repeatedDistance != localSearchDistance || !repeated.getTravel().equals(travel)) {
+                throw new Exception("Local search is not deterministic.");
+            }
+        }
+    }
+
+    /**
+     * The start and end Locations may be outside the bounding box of the Locations. 
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testStartOutside() throws Exception {
+        Random rnd = new java.util.Random(1);
+        List<Location> list = new ArrayList<Location>();
+        for (int i = 0; i < 1001; i++) {
+            list.add(new Location(LengthUnit.Millimeters, 100.0+rnd.nextDouble()*10.0, 100.0+rnd.nextDouble()*10.0, 0.0, 0.0));
+        }
+        TravellingSalesman<Location> tsm = new TravellingSalesman<>(
+                list, 
+                new TravellingSalesman.Locator<Location>() { 
+                    @Override
+                    public Location getLocation(Location locatable) {
+                        return locatable;
+                    }
+                }, 
+                new Location(LengthUnit.Millimeters), 
+                new Location(LengthUnit.Millimeters, 200.0, -50.0, 0.0, 0.0));
+        tsm.solve();
+        List<Location> travel = tsm.getTravel();
+        if (travel.size() != list.size() || !new HashSet<>(travel).equals(new HashSet<>(list))) {
+            throw new Exception("Route is not a permutation of the Locations.");
+        }
+    }
 }
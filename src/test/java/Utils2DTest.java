@@ -1,9 +1,17 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
 import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 import org.openpnp.model.Board;
 import org.openpnp.model.Board.Side;
 import org.openpnp.model.BoardLocation;
+import org.openpnp.model.BoardPlacementTransform;
 import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
 import org.openpnp.model.Placement;
@@ -161,6 +169,145 @@ public class Utils2DTest {
         }
     }
 
-}
+    /**
+     * The direct, non-cached calculation, as it was done before the transform was cached.
+     */
+    private static Location referenceBoardPlacementLocation(BoardLocation bl, Location placementLocation) {
+        AffineTransform tx = bl.getPlacementTransform();
+        if (tx == null) {
+            Location l = bl.getLocation().convertToUnits(LengthUnit.Millimeters);
+            tx = new AffineTransform();
+            tx.translate(l.getX(), l.getY());
+            tx.rotate(Math.toRadians(l.getRotation()));
+            if (bl.getSide() == Side.Bottom) {
+                tx.translate(bl.getBoard().getDimensions().convertToUnits(LengthUnit.Millimeters).getX(), 0);
+            }
+        }
+        LengthUnit placementUnits = placementLocation.getUnits();
+        placementLocation = placementLocation.convertToUnits(LengthUnit.Millimeters);
+        if (bl.getSide() == Side.Bottom) {
+            placementLocation = placementLocation.invert(true, false, false, false);
+        }
+        double angle = Utils2D.affineInfo(tx).rotationAngleDeg;
+        Point2D p = tx.transform(new Point2D.Double(placementLocation.getX(), placementLocation.getY()), null);
+        return new Location(LengthUnit.Millimeters, p.getX(), p.getY(),
+                bl.getLocation().convertToUnits(LengthUnit.Millimeters).getZ(),
+                angle + placementLocation.getRotation())
+                .convertToUnits(placementUnits);
+    }
+
+    private static void checkSame(Location expected, Location actual) throws Exception {
+        assertEquals(expected.getUnits(), actual.getUnits());
+        within("x", actual.getX(), expected.getX(), 1e-9);
+        within("y", actual.getY(), expected.getY(), 1e-9);
+        within("z", actual.getZ(), expected.getZ(), 1e-9);
+        within("angle", actual.getRotation(), expected.getRotation(), 1e-9);
+    }
+
+    /**
+     * Test the cached board placement transform against the direct calculation, in mixed units,
+     * with and without placement transform.
+     * @throws Exception
+     */
+    @Test
+    public void testBoardPlacementTransformRandom() throws Exception {
+        for (int i = 0; i < 10000; i++) {
+            BoardLocation boardLocation = randomBoardLocation();
+            boardLocation.getBoard().setDimensions(new Location(LengthUnit.Millimeters,
+                    Math.random()*100, Math.random()*100, 0, 0));
+            if (i % 3 == 0) {
+                boardLocation.setLocation(boardLocation.getLocation().convertToUnits(LengthUnit.Inches));
+            }
+            if (i % 2 == 0) {
+                AffineTransform tx = new AffineTransform();
+                tx.translate(Math.random()*100, Math.random()*100);
+                tx.rotate(Math.random()*Math.PI*2);
+                tx.scale(0.99 + Math.random()*0.02, 0.99 + Math.random()*0.02);
+                boardLocation.setPlacementTransform(tx);
+            }
+            for (int j = 0; j < 5; j++) {
+                Location placementLocation = randomLocation();
+                if (j % 2 == 0) {
+                    placementLocation = placementLocation.convertToUnits(LengthUnit.Inches);
+                }
+                checkSame(referenceBoardPlacementLocation(boardLocation, placementLocation),
+                        Utils2D.calculateBoardPlacementLocation(boardLocation, placementLocation));
+            }
+        }
+    }
+
+    /**
+     * Test that the cached transform is reused, and recreated when its inputs change.
+     * @throws Exception
+     */
+    @Test
+    public void testBoardPlacementTransformInvalidation() throws Exception {
+        Board board = new Board();
+        board.setDimensions(new Location(LengthUnit.Millimeters, 50, 30, 0, 0));
+        BoardLocation boardLocation = new BoardLocation(board);
+        boardLocation.setLocation(new Location(LengthUnit.Millimeters, 5, 15, -8, -6));
+        Location placementLocation = new Location(LengthUnit.Millimeters, 55, 5, 0, 90);
+
+        BoardPlacementTransform transform = boardLocation.getBoardPlacementTransform();
+        assertSame(transform, boardLocation.getBoardPlacementTransform());
 
+        boardLocation.setLocation(new Location(LengthUnit.Millimeters, 10, 20, -8, 30));
+        assertNotSame(transform, boardLocation.getBoardPlacementTransform());
+        checkSame(referenceBoardPlacementLocation(boardLocation, placementLocation),
+                Utils2D.calculateBoardPlacementLocation(boardLocation, placementLocation));
 
+        transform = boardLocation.getBoardPlacementTransform();
+        boardLocation.setSide(Side.Bottom);
+        assertNotSame(transform, boardLocation.getBoardPlacementTransform());
+        checkSame(referenceBoardPlacementLocation(boardLocation, placementLocation),
+                Utils2D.calculateBoardPlacementLocation(boardLocation, placementLocation));
+
+        // Changing the board dimensions affects bottom side boards.
+        transform = boardLocation.getBoardPlacementTransform();
+        board.setDimensions(new Location(LengthUnit.Millimeters, 80, 30, 0, 0));
+        assertNotSame(transform, boardLocation.getBoardPlacementTransform());
+        checkSame(referenceBoardPlacementLocation(boardLocation, placementLocation),
+                Utils2D.calculateBoardPlacementLocation(boardLocation, placementLocation));
+
+        AffineTransform tx = new AffineTransform();
+        tx.translate(5, 15);
+        tx.rotate(Math.toRadians(-6));
+        transform = boardLocation.getBoardPlacementTransform();
+        boardLocation.setPlacementTransform(tx);
+        assertNotSame(transform, boardLocation.getBoardPlacementTransform());
+        checkSame(referenceBoardPlacementLocation(boardLocation, placementLocation),
+                Utils2D.calculateBoardPlacementLocation(boardLocation, placementLocation));
+    }
+
+    /**
+     * Test that the bulk transforms give the same results as the single one.
+     * @throws Exception
+     */
+    @Test
+    public void testBoardPlacementTransformBulk() throws Exception {
+        BoardLocation boardLocation = randomBoardLocation();
+        List<Placement> placements = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            placements.add(randomPlacement());
+        }
+        BoardPlacementTransform transform = boardLocation.getBoardPlacementTransform();
+        List<Location> locations = transform.transform(placements);
+        double [] xyr = new double[placements.size()*3];
+        for (int i = 0; i < placements.size(); i++) {
+            Location l = placements.get(i).getLocation();
+            xyr[i*3] = l.getX();
+            xyr[i*3 + 1] = l.getY();
+            xyr[i*3 + 2] = l.getRotation();
+        }
+        transform.transform(xyr, placements.size());
+        for (int i = 0; i < placements.size(); i++) {
+            Location expected = referenceBoardPlacementLocation(boardLocation, placements.get(i).getLocation());
+            checkSame(expected, locations.get(i));
+            within("x", xyr[i*3], expected.getX(), 1e-9);
+            within("y", xyr[i*3 + 1], expected.getY(), 1e-9);
+            within("angle", xyr[i*3 + 2], expected.getRotation(), 1e-9);
+        }
+        // Repeated bulk transforms reuse the cached transform.
+        assertSame(transform, boardLocation.getBoardPlacementTransform());
+    }
+}